@@ -0,0 +1,153 @@
+#!/bin/bash
+# So sánh time-to-ready và RSS khi khởi động: jar thường, jar + AppCDS, native image
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# @Project smart-air-ngsi-ld
+# @Authors
+#    - TT (trungthanhcva2206@gmail.com)
+#    - Tankchoi (tadzltv22082004@gmail.com)
+#    - Panh (panh812004.apn@gmail.com)
+# @Copyright (C) 2025 TAA. All rights reserved
+# @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+#
+# Usage (from backend/):
+#   ./mvnw -Pcds -DskipTests package                 # target/cds/{smartair-*.jar, lib/, application.jsa}
+#   ./mvnw -Pnative,cds -DskipTests native:compile   # optional: target/smartair (H2 packaged via cds)
+#   scripts/startup-compare.sh [runs] [modes...]     # default: 5 runs, modes jar cds native
+#
+# Mỗi run: khởi động app trên H2 in-memory (Orion-LD trỏ tới cổng đóng), đo thời gian từ lúc launch tới khi
+# /actuator/health/readiness trả 200 và RSS của process lúc đó.
+# Dùng MySQL thật: DB_URL=jdbc:mysql://... DB_USER=... DB_PASSWORD=... scripts/startup-compare.sh
+set -u
+
+RUNS="${1:-5}"
+shift || true
+MODES=("$@")
+if [ ${#MODES[@]} -eq 0 ]; then
+    MODES=(jar cds native)
+fi
+
+CDS_DIR="target/cds"
+NATIVE_IMAGE="target/smartair"
+PORT="${PORT:-18123}"
+DB_URL="${DB_URL:-jdbc:h2:mem:startup;MODE=MySQL}"
+DB_USER="${DB_USER:-sa}"
+DB_PASSWORD="${DB_PASSWORD:-}"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-180}"
+LOG_DIR="${PWD}/target/startup-compare"
+JAVA="${JAVA_HOME:+${JAVA_HOME}/bin/}java"
+
+APP_ARGS=(
+    "--server.port=${PORT}"
+    "--spring.datasource.url=${DB_URL}"
+    "--spring.datasource.username=${DB_USER}"
+    "--spring.datasource.password=${DB_PASSWORD}"
+    "--spring.jpa.show-sql=false"
+    "--orion.url=http://127.0.0.1:9"
+    "--management.endpoint.health.probes.enabled=true"
+)
+if [[ "${DB_URL}" == jdbc:h2:* ]]; then
+    APP_ARGS+=("--spring.datasource.driver-class-name=org.h2.Driver" "--spring.jpa.hibernate.ddl-auto=create-drop")
+fi
+
+# Archive CDS ghi classpath tương đối lúc training run -> jar / cds đều chạy từ thư mục CDS_DIR
+JAR=$(cd "${CDS_DIR}" 2>/dev/null && ls smartair-*.jar 2>/dev/null | head -1)
+mkdir -p "${LOG_DIR}"
+
+command_for() {
+    case "$1" in
+        jar)    [ -n "${JAR}" ] && echo "${JAVA} -jar ${JAR}" ;;
+        cds)    [ -n "${JAR}" ] && [ -f "${CDS_DIR}/application.jsa" ] \
+                    && echo "${JAVA} -XX:SharedArchiveFile=application.jsa -Xlog:cds=error -jar ${JAR}" ;;
+        native) [ -x "${NATIVE_IMAGE}" ] && echo "./${NATIVE_IMAGE}" ;;
+    esac
+}
+
+workdir_for() {
+    case "$1" in
+        native) echo "." ;;
+        *)      echo "${CDS_DIR}" ;;
+    esac
+}
+
+rss_kb() {
+    ps -o rss= -p "$1" 2>/dev/null | tr -d ' '
+}
+
+now_ms() {
+    python3 -c 'import time; print(int(time.time() * 1000))'
+}
+
+# In: ready_ms rss_kb (hoặc "fail")
+run_once() {
+    local cmd="$1" workdir="$2" log="$3"
+    local start pid ready_ms rss
+    start=$(now_ms)
+    # shellcheck disable=SC2086
+    (cd "${workdir}" && exec ${cmd} "${APP_ARGS[@]}") > "${log}" 2>&1 &
+    pid=$!
+    while true; do
+        if [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:${PORT}/actuator/health/readiness")" = "200" ]; then
+            ready_ms=$(( $(now_ms) - start ))
+            rss=$(rss_kb "${pid}")
+            break
+        fi
+        if ! kill -0 "${pid}" 2>/dev/null || [ $(( $(now_ms) - start )) -gt $(( TIMEOUT_SECONDS * 1000 )) ]; then
+            ready_ms=""
+            break
+        fi
+        sleep 0.05
+    done
+    kill "${pid}" 2>/dev/null
+    wait "${pid}" 2>/dev/null
+    if [ -z "${ready_ms}" ]; then
+        echo "fail"
+    else
+        echo "${ready_ms} ${rss}"
+    fi
+}
+
+printf "%-8s %5s %14s %10s\n" "mode" "run" "ready (ms)" "RSS (MB)"
+SUMMARY=()
+for mode in "${MODES[@]}"; do
+    cmd=$(command_for "${mode}")
+    if [ -z "${cmd}" ]; then
+        echo "${mode}: not built, skipped (see Usage)"
+        continue
+    fi
+    total_ms=0
+    total_rss=0
+    ok=0
+    for run in $(seq 1 "${RUNS}"); do
+        result=$(run_once "${cmd}" "$(workdir_for "${mode}")" "${LOG_DIR}/${mode}-${run}.log")
+        if [ "${result}" = "fail" ]; then
+            printf "%-8s %5s %14s %10s\n" "${mode}" "${run}" "failed" "-"
+            continue
+        fi
+        read -r ready_ms rss <<< "${result}"
+        printf "%-8s %5s %14s %10s\n" "${mode}" "${run}" "${ready_ms}" "$(( rss / 1024 ))"
+        total_ms=$(( total_ms + ready_ms ))
+        total_rss=$(( total_rss + rss ))
+        ok=$(( ok + 1 ))
+    done
+    if [ "${ok}" -gt 0 ]; then
+        SUMMARY+=("$(printf "%-8s %5s %14s %10s" "${mode}" "avg" "$(( total_ms / ok ))" "$(( total_rss / ok / 1024 ))")")
+    fi
+done
+
+echo
+printf "%-8s %5s %14s %10s\n" "mode" "" "ready (ms)" "RSS (MB)"
+for line in "${SUMMARY[@]}"; do
+    echo "${line}"
+done
+echo "Logs: ${LOG_DIR}/"
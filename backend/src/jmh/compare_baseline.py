@@ -0,0 +1,90 @@
+#!/usr/bin/env python3
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# @Project smart-air-ngsi-ld
+# @Authors
+#    - TT (trungthanhcva2206@gmail.com)
+#    - Tankchoi (tadzltv22082004@gmail.com)
+#    - Panh (panh812004.apn@gmail.com)
+# @Copyright (C) 2025 TAA. All rights reserved
+# @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+"""
+So sánh kết quả JMH (-rf json) với baseline.
+
+Usage:
+    python3 src/jmh/compare_baseline.py <baseline.json> <result.json> [--max-slowdown 0.10] [--max-alloc-growth 0.05]
+
+Exit code 1 nếu có benchmark:
+- throughput giảm quá --max-slowdown (mặc định 10%), hoặc
+- gc.alloc.rate.norm (B/op) tăng quá --max-alloc-growth (mặc định 5%)
+
+B/op ổn định giữa các máy nên là tín hiệu regression đáng tin nhất;
+throughput chỉ nên so sánh khi chạy trên cùng một máy.
+"""
+import argparse
+import json
+import sys
+
+
+def load(path):
+    with open(path, encoding="utf-8") as f:
+        results = {}
+        for entry in json.load(f):
+            params = entry.get("params") or {}
+            key = entry["benchmark"].rsplit(".", 2)[-2] + "." + entry["benchmark"].rsplit(".", 1)[-1]
+            if params:
+                key += "[" + ",".join(f"{k}={v}" for k, v in sorted(params.items())) + "]"
+            alloc = entry.get("secondaryMetrics", {}).get("gc.alloc.rate.norm", {}).get("score")
+            results[key] = (entry["primaryMetric"]["score"], entry["primaryMetric"]["scoreUnit"], alloc)
+        return results
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("baseline")
+    parser.add_argument("result")
+    parser.add_argument("--max-slowdown", type=float, default=0.10)
+    parser.add_argument("--max-alloc-growth", type=float, default=0.05)
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    result = load(args.result)
+    regressions = 0
+
+    print(f"{'Benchmark':70} {'baseline':>14} {'current':>14} {'Δ':>8} {'B/op base':>12} {'B/op now':>12} {'Δ':>8}")
+    for key in sorted(result):
+        score, unit, alloc = result[key]
+        if key not in baseline:
+            print(f"{key:70} {'-':>14} {score:>14.3f} {'new':>8}")
+            continue
+        base_score, _, base_alloc = baseline[key]
+        delta = (score - base_score) / base_score if base_score else 0.0
+        alloc_delta = (alloc - base_alloc) / base_alloc if alloc is not None and base_alloc else 0.0
+
+        flag = ""
+        if delta < -args.max_slowdown:
+            flag += " SLOWER"
+        if alloc_delta > args.max_alloc_growth:
+            flag += " ALLOC"
+        if flag:
+            regressions += 1
+
+        print(f"{key:70} {base_score:>14.3f} {score:>14.3f} {delta:>+8.1%} "
+              f"{(base_alloc or 0):>12.0f} {(alloc or 0):>12.0f} {alloc_delta:>+8.1%}{flag}")
+
+    print(f"\nunit: {next(iter(result.values()))[1] if result else '-'}; regressions: {regressions}")
+    return 1 if regressions else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dữ liệu dùng chung cho các benchmark
+ * - NGSI-LD payload (normalized) giống notification thật từ Orion-LD (src/jmh/resources/payloads)
+ * - Danh sách phường/xã thật từ GeoJSON
+ */
+final class BenchmarkFixtures {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private BenchmarkFixtures() {
+    }
+
+    static Map<String, Object> payload(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/payloads/" + name + ".json")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing payload: " + name);
+            }
+            return OBJECT_MAPPER.readValue(in, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * DistrictRegistry build từ GeoJSON thật (như khi chạy trong Spring context)
+     */
+    static DistrictRegistry districtRegistry() {
+        GeoJsonService geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        DistrictRegistry registry = new DistrictRegistry(geoJsonService);
+        registry.build();
+        return registry;
+    }
+
+    /**
+     * @return cặp [Tên đơn vị, Phân loại] của 126 phường/xã
+     */
+    static List<String[]> districtNames() {
+        try (InputStream in = new ClassPathResource("static/ha_noi_with_latlon2.geojson").getInputStream()) {
+            List<String[]> names = new ArrayList<>();
+            for (JsonNode feature : OBJECT_MAPPER.readTree(in).get("features")) {
+                JsonNode properties = feature.get("properties");
+                names.add(new String[] {
+                        properties.get("Tên đơn vị").asText(),
+                        properties.get("Phân loại").asText() });
+            }
+            return names;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
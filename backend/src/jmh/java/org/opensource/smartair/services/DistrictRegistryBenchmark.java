@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity id → slug phường/xã trên id thật của cả 126 phường/xã, trộn 4 dạng id
+ * (WeatherObserved, AirQualityObserved kèm timestamp, Device *Sensor-, Platform *Station-)
+ * - registry: DistrictRegistry.districtFromEntityId
+ * - legacySplit: cách cũ split(":") / split("-") / substring (để so sánh)
+ * Kết quả tính trên cả lô 504 id mỗi op
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistrictRegistryBenchmark {
+
+    private DistrictRegistry registry;
+    private String[] entityIds;
+
+    @Setup
+    public void setup() {
+        registry = BenchmarkFixtures.districtRegistry();
+        List<String> ids = new ArrayList<>();
+        for (String slug : registry.slugs()) {
+            ids.add("urn:ngsi-ld:WeatherObserved:Hanoi-" + slug);
+            ids.add("urn:ngsi-ld:AirQualityObserved:Hanoi-" + slug + "-2025-11-05T10:00:00Z");
+            ids.add("urn:ngsi-ld:Device:AirQualitySensor-" + slug);
+            ids.add("urn:ngsi-ld:Platform:EnvironmentStation-" + slug);
+        }
+        entityIds = ids.toArray(String[]::new);
+    }
+
+    @Benchmark
+    public void registry(Blackhole blackhole) {
+        for (String entityId : entityIds) {
+            blackhole.consume(registry.districtFromEntityId(entityId));
+        }
+    }
+
+    @Benchmark
+    public void legacySplit(Blackhole blackhole) {
+        for (String entityId : entityIds) {
+            blackhole.consume(legacyExtractDistrictFromId(entityId));
+        }
+    }
+
+    /**
+     * NgsiTransformerService.extractDistrictFromId trước khi có DistrictRegistry
+     */
+    private static String legacyExtractDistrictFromId(String entityId) {
+        if (entityId == null)
+            return null;
+
+        String[] parts = entityId.split(":");
+        if (parts.length < 4)
+            return null;
+
+        String lastPart = parts[3];
+        if (lastPart.contains("Hanoi-")) {
+            String[] subParts = lastPart.split("-");
+            if (subParts.length >= 2) {
+                return subParts[1];
+            }
+        }
+        if (lastPart.contains("Sensor-")) {
+            return lastPart.substring(lastPart.indexOf("Sensor-") + 7);
+        }
+        if (lastPart.contains("Station-")) {
+            return lastPart.substring(lastPart.indexOf("Station-") + 8);
+        }
+        return null;
+    }
+}
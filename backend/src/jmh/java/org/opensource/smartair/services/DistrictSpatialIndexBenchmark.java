@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DistrictSpatialIndex lookups trên GeoJSON thật (126 phường/xã), 1 op = 1 lookup
+ * với điểm ngẫu nhiên trong bounding box Hà Nội.
+ * linearScanDistrictAt: point-in-polygon tuần tự trên toàn bộ polygon (cách làm trước khi có index)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistrictSpatialIndexBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private DistrictSpatialIndex index;
+    private List<GeoJsonService.DistrictFeature> features;
+    private double[] lats;
+    private double[] lons;
+    private Point[] points;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        GeoJsonService geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        features = geoJsonService.getDistrictFeatures();
+        index = new DistrictSpatialIndex(geoJsonService);
+        index.build();
+
+        GeometryFactory factory = new GeometryFactory();
+        Random random = new Random(42);
+        lats = new double[POINTS];
+        lons = new double[POINTS];
+        points = new Point[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 20.55 + random.nextDouble() * 0.85;
+            lons[i] = 105.30 + random.nextDouble() * 0.75;
+            points[i] = factory.createPoint(new Coordinate(lons[i], lats[i]));
+        }
+    }
+
+    @Benchmark
+    public Object districtAt() {
+        int i = next();
+        return index.districtAt(lats[i], lons[i]);
+    }
+
+    @Benchmark
+    public Object linearScanDistrictAt() {
+        Point point = points[next()];
+        for (GeoJsonService.DistrictFeature feature : features) {
+            if (feature.geometry().covers(point)) {
+                return feature.district();
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Object nearestStations() {
+        int i = next();
+        return index.nearestStations(lats[i], lons[i], 5);
+    }
+
+    @Benchmark
+    public Object districtsWithin() {
+        int i = next();
+        return index.districtsWithin(lats[i], lons[i], lats[i] + 0.02, lons[i] + 0.02);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (POINTS - 1);
+        return cursor;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Vector tile phường/xã quanh trung tâm Hà Nội (khối 3x3 tile quanh Hoàn Kiếm)
+ * - renderTile: cache miss (clip + chiếu + encode MVT)
+ * - cachedTile: cache hit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistrictTileBenchmark {
+
+    @Param({"10", "14"})
+    private int zoom;
+
+    private DistrictTileService service;
+    private final List<int[]> tiles = new ArrayList<>();
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        GeoJsonService geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        service = new DistrictTileService(geoJsonService, mock(OrionLdClient.class), mock(SseEventBus.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", 4096);
+        ReflectionTestUtils.invokeMethod(service, "init");
+
+        double n = 1 << zoom;
+        double phi = Math.toRadians(21.0285);
+        int centerX = (int) Math.floor((105.8542 + 180) / 360 * n);
+        int centerY = (int) Math.floor((1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2 * n);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                tiles.add(new int[] { centerX + dx, centerY + dy });
+                service.getTile(zoom, centerX + dx, centerY + dy);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object renderTile() {
+        int[] tile = nextTile();
+        return service.render(zoom, tile[0], tile[1]);
+    }
+
+    @Benchmark
+    public Object cachedTile() {
+        int[] tile = nextTile();
+        return service.getTile(zoom, tile[0], tile[1]);
+    }
+
+    private int[] nextTile() {
+        cursor = (cursor + 1) % tiles.size();
+        return tiles.get(cursor);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render email cảnh báo
+ * - buildAlertEmailContent: chạy template + ghép tên (chi phí mỗi recipient trước khi cache theo sự kiện)
+ * - renderAlertBody: chạy template 1 lần cho sự kiện AQI của district
+ * - personalize: chi phí thêm cho mỗi recipient (chỉ ghép lời chào)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailRenderBenchmark {
+
+    private EmailService emailService;
+    private AirQualityDataDTO airQuality;
+    private EmailService.AlertEmailBody alertBody;
+
+    @Setup
+    public void setup() {
+        emailService = new EmailService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(emailService, "frontendUrl", "https://airtrack.example.com");
+
+        airQuality = new NgsiTransformerService(BenchmarkFixtures.districtRegistry())
+                .transformAirQualityObserved(BenchmarkFixtures.payload("airQualityObserved"));
+        alertBody = emailService.renderAlertBody(airQuality);
+    }
+
+    @Benchmark
+    public String buildAlertEmailContent() {
+        return emailService.buildAlertEmailContent("Nguyễn Văn A", airQuality);
+    }
+
+    @Benchmark
+    public EmailService.AlertEmailBody renderAlertBody() {
+        return emailService.renderAlertBody(airQuality);
+    }
+
+    @Benchmark
+    public String personalize() {
+        return alertBody.personalize("Nguyễn Văn A");
+    }
+}
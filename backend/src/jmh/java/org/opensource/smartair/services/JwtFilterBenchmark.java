@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensource.smartair.configs.JwtAuthenticationFilter;
+import org.opensource.smartair.models.User;
+import org.opensource.smartair.models.UserRole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead của JwtAuthenticationFilter cho mỗi request có Bearer token
+ * (parse header + verify token + set SecurityContext); cacheEntries=0 tắt verified-token cache
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtFilterBenchmark {
+
+    @Param({"0", "10000"})
+    public int cacheEntries;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private Authentication authentication;
+    private final FilterChain chain = (req, res) ->
+            authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    @Setup
+    public void setup() {
+        JwtService jwtService = new JwtService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtService, "secretKey",
+                "benchmark-secret-key-benchmark-secret-key-benchmark-secret-key-0123456789");
+        ReflectionTestUtils.setField(jwtService, "expiration", TimeUnit.DAYS.toMillis(1));
+        ReflectionTestUtils.setField(jwtService, "cacheMaxEntries", cacheEntries);
+        jwtService.init();
+        filter = new JwtAuthenticationFilter(jwtService);
+
+        String token = jwtService.generateToken(User.builder()
+                .id(42L)
+                .email("resident@example.com")
+                .fullName("Nguyễn Văn A")
+                .role(UserRole.RESIDENT)
+                .build());
+
+        request = new MockHttpServletRequest("GET", "/api/residents/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Authentication authenticatedRequest() throws Exception {
+        filter.doFilter(request, response, chain);
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.PlatformDataDTO;
+import org.opensource.smartair.dtos.WeatherDataDTO;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NgsiTransformerService trên payload NGSI-LD normalized thật
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NgsiTransformerBenchmark {
+
+    private NgsiTransformerService transformer;
+    private Map<String, Object> weatherEntity;
+    private Map<String, Object> airQualityEntity;
+    private Map<String, Object> platformEntity;
+
+    @Setup
+    public void setup() {
+        transformer = new NgsiTransformerService(BenchmarkFixtures.districtRegistry());
+        weatherEntity = BenchmarkFixtures.payload("weatherObserved");
+        airQualityEntity = BenchmarkFixtures.payload("airQualityObserved");
+        platformEntity = BenchmarkFixtures.payload("Platform");
+    }
+
+    @Benchmark
+    public WeatherDataDTO transformWeatherObserved() {
+        return transformer.transformWeatherObserved(weatherEntity);
+    }
+
+    @Benchmark
+    public AirQualityDataDTO transformAirQualityObserved() {
+        return transformer.transformAirQualityObserved(airQualityEntity);
+    }
+
+    @Benchmark
+    public PlatformDataDTO transformPlatform() {
+        return transformer.transformPlatform(platformEntity);
+    }
+
+    @Benchmark
+    public String extractDistrictFromId() {
+        return transformer.extractDistrictFromId("urn:ngsi-ld:AirQualityObserved:Hanoi-PhuongHoanKiem");
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.opensource.smartair.utils.IdwGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grid IDW trên bounding box Hà Nội (cell 500m, bán kính 15km) với 126 trạm tại vị trí thật
+ * - updateStation: 1 bản tin đổi giá trị một trạm (incremental, chỉ cell trong bán kính)
+ * - fullRebuild: tính lại toàn grid từ 126 trạm (song song theo hàng)
+ * - updatePatch: update + đọc float32 của vùng bị ảnh hưởng (payload SSE grid.patch)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PollutantGridBenchmark {
+
+    private IdwGrid grid;
+    private List<IdwGrid.Station> stations;
+    private final Random random = new Random(42);
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        GeoJsonService geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+
+        stations = new ArrayList<>();
+        double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (GeoJsonService.DistrictFeature feature : geoJsonService.getDistrictFeatures()) {
+            var envelope = feature.geometry().getEnvelopeInternal();
+            minLat = Math.min(minLat, envelope.getMinY());
+            minLon = Math.min(minLon, envelope.getMinX());
+            maxLat = Math.max(maxLat, envelope.getMaxY());
+            maxLon = Math.max(maxLon, envelope.getMaxX());
+            stations.add(new IdwGrid.Station(feature.district(), feature.stationLatitude(),
+                    feature.stationLongitude(), random.nextDouble() * 150));
+        }
+        grid = new IdwGrid(minLat, minLon, maxLat, maxLon, 500, 15_000, 2);
+        grid.rebuild(stations);
+    }
+
+    @Benchmark
+    public Object updateStation() {
+        IdwGrid.Station station = nextStation();
+        return grid.update(station.id(), station.lat(), station.lon(), random.nextDouble() * 150);
+    }
+
+    @Benchmark
+    public Object updatePatch() {
+        IdwGrid.Station station = nextStation();
+        IdwGrid.Region region = grid.update(station.id(), station.lat(), station.lon(), random.nextDouble() * 150);
+        return IdwGrid.toBytes(grid.values(region));
+    }
+
+    @Benchmark
+    public void fullRebuild() {
+        grid.rebuild(stations);
+    }
+
+    private IdwGrid.Station nextStation() {
+        cursor = (cursor + 1) % stations.size();
+        return stations.get(cursor);
+    }
+}
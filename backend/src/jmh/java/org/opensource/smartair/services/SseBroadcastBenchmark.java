@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.WeatherDataDTO;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SseService.broadcast* fan-out theo số subscriber cùng district
+ * Subscriber tiêu thụ event đồng bộ (Blackhole) nên đo được chi phí emit + dispatch
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SseBroadcastBenchmark {
+
+    private static final String DISTRICT = "PhuongHoanKiem";
+
+    @Param({ "0", "1", "100", "1000" })
+    public int subscribers;
+
+    private SseService sseService;
+    private WeatherDataDTO weather;
+    private AirQualityDataDTO airQuality;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        OrionLdClient orionLdClient = Mockito.mock(OrionLdClient.class);
+        Mockito.when(orionLdClient.getLatestWeather(Mockito.anyString())).thenReturn(Mono.empty());
+        Mockito.when(orionLdClient.getLatestAirQuality(Mockito.anyString())).thenReturn(Mono.empty());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        sseService = new SseService(orionLdClient, meterRegistry, new LatencyTrackerService(meterRegistry),
+                new InMemorySseEventBus());
+        sseService.subscribeToBus();
+        sseService.registerMeters();
+
+        NgsiTransformerService transformer = new NgsiTransformerService(BenchmarkFixtures.districtRegistry());
+        weather = transformer.transformWeatherObserved(BenchmarkFixtures.payload("weatherObserved"));
+        // AQI 2 để không đi vào nhánh alert
+        airQuality = transformer.transformAirQualityObserved(BenchmarkFixtures.payload("airQualityObserved"));
+        airQuality.setAirQualityIndex(2);
+        airQuality.setAirQualityLevel("fair");
+
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(sseService.subscribeWeather(DISTRICT).subscribe(blackhole::consume));
+            subscriptions.add(sseService.subscribeAirQuality(DISTRICT).subscribe(blackhole::consume));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void broadcastWeather() {
+        sseService.broadcastWeather(weather);
+    }
+
+    @Benchmark
+    public void broadcastAirQuality() {
+        sseService.broadcastAirQuality(airQuality);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số liệu thu thập trong một lần chạy load test
+ * - deliveryLatency: observedAt (= lúc gửi notification) → client SSE nhận được event
+ * - notifyLatency: thời gian POST /api/notify/ngsi
+ * - heap / thread: lấy mẫu mỗi giây trong JVM chạy cả app lẫn client
+ */
+final class LoadTestMetrics {
+
+    private static final long MAX_LATENCY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    final Histogram deliveryLatency = new ConcurrentHistogram(MAX_LATENCY_MILLIS, 3);
+    final Histogram notifyLatency = new ConcurrentHistogram(MAX_LATENCY_MILLIS, 3);
+
+    final LongAdder notificationsSent = new LongAdder();
+    final LongAdder notificationsAccepted = new LongAdder();
+    final LongAdder notificationsFailed = new LongAdder();
+    final LongAdder eventsDelivered = new LongAdder();
+    final LongAdder clientErrors = new LongAdder();
+    final AtomicInteger connectedClients = new AtomicInteger();
+
+    private final AtomicLong peakHeapUsed = new AtomicLong();
+    private final AtomicInteger peakThreads = new AtomicInteger();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loadtest-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long startedAtNanos;
+    private long stoppedAtNanos;
+
+    void startSampling() {
+        sampler.scheduleAtFixedRate(() -> {
+            peakHeapUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        }, 0, 1, TimeUnit.SECONDS);
+    }
+
+    void markLoadStarted() {
+        startedAtNanos = System.nanoTime();
+    }
+
+    void markLoadStopped() {
+        stoppedAtNanos = System.nanoTime();
+    }
+
+    void stopSampling() {
+        sampler.shutdownNow();
+    }
+
+    void recordDelivery(long latencyMillis) {
+        eventsDelivered.increment();
+        deliveryLatency.recordValue(Math.min(Math.max(latencyMillis, 0), MAX_LATENCY_MILLIS));
+    }
+
+    void recordNotify(long latencyMillis, boolean accepted) {
+        if (accepted) {
+            notificationsAccepted.increment();
+        } else {
+            notificationsFailed.increment();
+        }
+        notifyLatency.recordValue(Math.min(Math.max(latencyMillis, 0), MAX_LATENCY_MILLIS));
+    }
+
+    Map<String, Object> report(Map<String, Object> settings) {
+        double seconds = Math.max(1e-9, (stoppedAtNanos - startedAtNanos) / 1e9);
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("durationSeconds", round(seconds));
+        throughput.put("notificationsSent", notificationsSent.sum());
+        throughput.put("notificationsAccepted", notificationsAccepted.sum());
+        throughput.put("notificationsFailed", notificationsFailed.sum());
+        throughput.put("notificationsPerSecond", round(notificationsAccepted.sum() / seconds));
+        throughput.put("eventsDelivered", eventsDelivered.sum());
+        throughput.put("eventsDeliveredPerSecond", round(eventsDelivered.sum() / seconds));
+
+        Map<String, Object> clients = new LinkedHashMap<>();
+        clients.put("connectedAtEnd", connectedClients.get());
+        clients.put("errors", clientErrors.sum());
+
+        Map<String, Object> resources = new LinkedHashMap<>();
+        resources.put("peakHeapUsedMb", peakHeapUsed.get() / (1024 * 1024));
+        resources.put("heapUsedAtEndMb", memory.getHeapMemoryUsage().getUsed() / (1024 * 1024));
+        resources.put("heapMaxMb", memory.getHeapMemoryUsage().getMax() / (1024 * 1024));
+        resources.put("peakThreads", peakThreads.get());
+        resources.put("threadsAtEnd", threads.getThreadCount());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("throughput", throughput);
+        report.put("deliveryLatencyMs", percentiles(deliveryLatency));
+        report.put("notifyLatencyMs", percentiles(notifyLatency));
+        report.put("sseClients", clients);
+        report.put("resources", resources);
+        return report;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", histogram.getTotalCount());
+        result.put("p50", histogram.getValueAtPercentile(50));
+        result.put("p90", histogram.getValueAtPercentile(90));
+        result.put("p99", histogram.getValueAtPercentile(99));
+        result.put("p999", histogram.getValueAtPercentile(99.9));
+        result.put("max", histogram.getMaxValue());
+        result.put("mean", round(histogram.getMean()));
+        return result;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
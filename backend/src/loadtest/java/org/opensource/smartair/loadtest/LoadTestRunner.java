@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.opensource.smartair.SmartairApplication;
+import org.opensource.smartair.services.GeoJsonService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test chạy trên một máy, không cần docker-compose:
+ * 1. WireMock giả lập Orion-LD + QuantumLeap (UpstreamStubs)
+ * 2. Backend chạy in-process với H2 (MySQL mode)
+ * 3. SseClientFleet mở N kết nối SSE
+ * 4. NotificationGenerator POST notification theo rate + burst
+ * 5. In báo cáo và ghi target/loadtest-report.json
+ *
+ * Cấu hình qua system property (xem README - Load test)
+ */
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("loadtest.clients", 2000);
+        int rampSeconds = Integer.getInteger("loadtest.ramp-seconds", 10);
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+        int burstSize = Integer.getInteger("loadtest.burst-size", 126);
+        int burstEvery = Integer.getInteger("loadtest.burst-every-seconds", 15);
+        int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+        int drainSeconds = Integer.getInteger("loadtest.drain-seconds", 5);
+        int orionDelay = Integer.getInteger("loadtest.orion.delay-ms", 5);
+        int quantumLeapDelay = Integer.getInteger("loadtest.quantumleap.delay-ms", 50);
+        String reportFile = System.getProperty("loadtest.report", "target/loadtest-report.json");
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("clients", clients);
+        settings.put("rampSeconds", rampSeconds);
+        settings.put("ratePerSecond", rate);
+        settings.put("burstSize", burstSize);
+        settings.put("burstEverySeconds", burstEvery);
+        settings.put("durationSeconds", durationSeconds);
+        settings.put("orionDelayMs", orionDelay);
+        settings.put("quantumLeapDelayMs", quantumLeapDelay);
+        settings.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+        GeoJsonService geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        List<String> districts = geoJsonService.getAllDistricts();
+
+        LoadTestMetrics metrics = new LoadTestMetrics();
+        metrics.startSampling();
+
+        try (UpstreamStubs stubs = new UpstreamStubs(districts, orionDelay, quantumLeapDelay)) {
+            stubs.start();
+
+            ConfigurableApplicationContext app = new SpringApplicationBuilder(SmartairApplication.class)
+                    .properties(appProperties(stubs))
+                    .run();
+            try {
+                String baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+                log("Backend started at %s (Orion stub %s, QuantumLeap stub %s)",
+                        baseUrl, stubs.orionUrl(), stubs.quantumLeapUrl());
+
+                try (SseClientFleet fleet = new SseClientFleet(baseUrl, clients, metrics);
+                        NotificationGenerator generator = new NotificationGenerator(
+                                URI.create(baseUrl + "/api/notify/ngsi"), districts, metrics)) {
+
+                    log("Connecting %d SSE clients over %ds...", clients, rampSeconds);
+                    fleet.connect(districts, clients, rampSeconds);
+                    waitForClients(metrics, clients, 30);
+                    log("%d SSE clients connected", metrics.connectedClients.get());
+
+                    log("Generating load for %ds (rate %.1f/s, burst %d every %ds)...",
+                            durationSeconds, rate, burstSize, burstEvery);
+                    metrics.markLoadStarted();
+                    generator.start(rate, burstSize, burstEvery);
+                    TimeUnit.SECONDS.sleep(durationSeconds);
+                    generator.close();
+                    TimeUnit.SECONDS.sleep(drainSeconds);
+                    metrics.markLoadStopped();
+                }
+            } finally {
+                app.close();
+            }
+        } finally {
+            metrics.stopSampling();
+        }
+
+        Map<String, Object> report = metrics.report(settings);
+        String json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        Path output = Path.of(reportFile);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.writeString(output, json);
+
+        System.out.println(json);
+        log("Report written to %s", output.toAbsolutePath());
+        System.exit(0);
+    }
+
+    private static Map<String, Object> appProperties(UpstreamStubs stubs) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.devtools.restart.enabled", false);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("spring.mail.host", "localhost");
+        properties.put("spring.mail.port", 2525);
+        properties.put("spring.mail.username", "loadtest@example.com");
+        properties.put("jwt.secret", "loadtest-secret-key-loadtest-secret-key-loadtest-secret-key-0123456789");
+        properties.put("jwt.expiration", 86400000);
+        properties.put("orion.url", stubs.orionUrl());
+        properties.put("quantumleap.url", stubs.quantumLeapUrl());
+        properties.put("backend.url", "http://localhost:0");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.opensource.smartair", "WARN");
+        properties.put("server.tomcat.max-connections", 20000);
+        properties.put("spring.mvc.async.request-timeout", -1);
+        return properties;
+    }
+
+    private static void waitForClients(LoadTestMetrics metrics, int expected, int timeoutSeconds)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (metrics.connectedClients.get() < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.printf("[loadtest] " + format + "%n", args);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * POST notification NGSI-LD (giống Orion-LD) tới /api/notify/ngsi
+ * - Tải đều: ratePerSecond notification/giây, xoay vòng district và loại entity
+ * - Burst: mỗi burstEverySeconds gửi burstSize notification cùng lúc
+ *   (giống ETL đẩy cả 126 trạm trong một lượt)
+ *
+ * observedAt của mọi attribute = thời điểm gửi, nên client SSE tính được latency notification → delivery
+ */
+final class NotificationGenerator implements AutoCloseable {
+
+    private static final String RECORDED_DISTRICT = "PhuongHoanKiem";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI endpoint;
+    private final List<String> districts;
+    private final Map<String, ObjectNode> templates;
+    private final LoadTestMetrics metrics;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "loadtest-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private double carry;
+
+    NotificationGenerator(URI endpoint, List<String> districts, LoadTestMetrics metrics) throws Exception {
+        this.endpoint = endpoint;
+        this.districts = districts;
+        this.metrics = metrics;
+        this.templates = Map.of(
+                "airQualityObserved", (ObjectNode) objectMapper.readTree(
+                        UpstreamStubs.recording("orion-airQualityObserved.json")),
+                "weatherObserved", (ObjectNode) objectMapper.readTree(
+                        UpstreamStubs.recording("orion-weatherObserved.json")));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+    }
+
+    void start(double ratePerSecond, int burstSize, int burstEverySeconds) {
+        if (ratePerSecond > 0) {
+            double perTick = ratePerSecond / 100.0;
+            scheduler.scheduleAtFixedRate(() -> {
+                carry += perTick;
+                int count = (int) carry;
+                carry -= count;
+                for (int i = 0; i < count; i++) {
+                    sendNext();
+                }
+            }, 0, 10, TimeUnit.MILLISECONDS);
+        }
+        if (burstSize > 0 && burstEverySeconds > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                for (int i = 0; i < burstSize; i++) {
+                    sendNext();
+                }
+            }, burstEverySeconds, burstEverySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sendNext() {
+        int n = cursor.getAndIncrement() & Integer.MAX_VALUE;
+        String district = districts.get(n % districts.size());
+        String type = (n / districts.size()) % 2 == 0 ? "airQualityObserved" : "weatherObserved";
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(notification(type, district));
+        } catch (Exception e) {
+            metrics.notificationsFailed.increment();
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("Fiware-Service", "hanoi")
+                .header("Fiware-ServicePath", "/")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        long start = System.nanoTime();
+        metrics.notificationsSent.increment();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> metrics.recordNotify(
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        error == null && response.statusCode() / 100 == 2));
+    }
+
+    private ObjectNode notification(String type, String district) {
+        String now = Instant.now().toString();
+
+        ObjectNode entity = templates.get(type).deepCopy();
+        entity.put("id", entity.get("id").asText().replace(RECORDED_DISTRICT, district));
+        ((ObjectNode) entity.get("stationName")).put("value", district);
+        Iterator<JsonNode> attributes = entity.elements();
+        while (attributes.hasNext()) {
+            JsonNode attribute = attributes.next();
+            if (attribute instanceof ObjectNode objectNode && attribute.has("observedAt")) {
+                objectNode.put("observedAt", now);
+            }
+        }
+        if (entity.has("airQualityIndex")) {
+            int aqi = ThreadLocalRandom.current().nextInt(1, 6);
+            ((ObjectNode) entity.get("airQualityIndex")).put("value", aqi);
+            ((ObjectNode) entity.get("airQualityLevel")).put("value",
+                    List.of("good", "fair", "moderate", "poor", "very poor").get(aqi - 1));
+        }
+
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("id", "urn:ngsi-ld:Notification:" + UUID.randomUUID());
+        notification.put("type", "Notification");
+        notification.put("subscriptionId", "urn:ngsi-ld:Subscription:loadtest");
+        notification.put("notifiedAt", now);
+        ArrayNode data = notification.putArray("data");
+        data.add(entity);
+        return notification;
+    }
+}
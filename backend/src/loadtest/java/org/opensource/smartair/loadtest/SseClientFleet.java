@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * N client SSE đồng thời, chia đều vào /api/sse/airquality/{district} và /api/sse/weather/{district}
+ * Mỗi event *.update / *.alert được đo latency = now - timestamp (observedAt do generator đặt)
+ */
+final class SseClientFleet implements AutoCloseable {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadTestMetrics metrics;
+    private final WebClient webClient;
+    private final LoopResources loops;
+    private final ConnectionProvider connections;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+
+    SseClientFleet(String baseUrl, int clients, LoadTestMetrics metrics) {
+        this.metrics = metrics;
+        this.loops = LoopResources.create("loadtest-sse", Math.max(2, Runtime.getRuntime().availableProcessors()), true);
+        this.connections = ConnectionProvider.builder("loadtest-sse")
+                .maxConnections(clients + 16)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections).runOn(loops)))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(4 * 1024 * 1024))
+                .build();
+    }
+
+    /**
+     * Mở kết nối dần dần trong rampSeconds để không dồn toàn bộ initial fetch vào cùng một thời điểm
+     */
+    void connect(List<String> districts, int clients, int rampSeconds) throws InterruptedException {
+        long pauseNanos = clients > 0 ? Duration.ofSeconds(rampSeconds).toNanos() / clients : 0;
+        for (int i = 0; i < clients; i++) {
+            String district = districts.get(i % districts.size());
+            String path = i % 2 == 0 ? "/api/sse/airquality/" + district : "/api/sse/weather/" + district;
+            subscriptions.add(open(path));
+            if (pauseNanos > 0) {
+                Thread.sleep(pauseNanos / 1_000_000, (int) (pauseNanos % 1_000_000));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        subscriptions.forEach(Disposable::dispose);
+        connections.dispose();
+        loops.dispose();
+    }
+
+    private Disposable open(String path) {
+        AtomicBoolean connected = new AtomicBoolean();
+        Flux<ServerSentEvent<String>> events = webClient.get()
+                .uri(path)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchangeToFlux(response -> {
+                    // Server đã trả header 200 → kết nối SSE đã mở
+                    if (response.statusCode().is2xxSuccessful() && connected.compareAndSet(false, true)) {
+                        metrics.connectedClients.incrementAndGet();
+                    }
+                    return response.bodyToFlux(SSE_TYPE);
+                });
+
+        return events
+                .doFinally(signal -> {
+                    if (connected.compareAndSet(true, false)) {
+                        metrics.connectedClients.decrementAndGet();
+                    }
+                })
+                .subscribe(this::onEvent, error -> metrics.clientErrors.increment());
+    }
+
+    private void onEvent(ServerSentEvent<String> event) {
+        String name = event.event();
+        if (name == null || event.data() == null || !(name.endsWith(".update") || name.endsWith(".alert"))) {
+            return;
+        }
+        try {
+            JsonNode payload = objectMapper.readTree(event.data());
+            String eventType = payload.path("eventType").asText();
+            String timestamp = payload.path("timestamp").asText(null);
+            if (timestamp == null || eventType.endsWith(".initial")) {
+                return;
+            }
+            metrics.recordDelivery(System.currentTimeMillis() - Instant.parse(timestamp).toEpochMilli());
+        } catch (Exception e) {
+            metrics.clientErrors.increment();
+        }
+    }
+}
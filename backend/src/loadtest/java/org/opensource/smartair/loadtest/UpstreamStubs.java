@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.loadtest;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Orion-LD và QuantumLeap giả lập bằng WireMock, trả lại response đã ghi
+ * (src/loadtest/resources/loadtest/recordings)
+ *
+ * Có thể thêm mapping ghi từ hệ thống thật vào classpath:loadtest/wiremock/{orion,quantumleap}/mappings
+ */
+final class UpstreamStubs implements AutoCloseable {
+
+    private static final String RECORDED_DISTRICT = "PhuongHoanKiem";
+
+    private final WireMockServer orion;
+    private final WireMockServer quantumLeap;
+
+    UpstreamStubs(List<String> districts, int orionDelayMillis, int quantumLeapDelayMillis) {
+        this.orion = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(200)
+                .disableRequestJournal()
+                .usingFilesUnderClasspath("loadtest/wiremock/orion"));
+        this.quantumLeap = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(200)
+                .disableRequestJournal()
+                .usingFilesUnderClasspath("loadtest/wiremock/quantumleap"));
+
+        stubOrion(districts, orionDelayMillis);
+        stubQuantumLeap(quantumLeapDelayMillis);
+    }
+
+    void start() {
+        orion.start();
+        quantumLeap.start();
+    }
+
+    String orionUrl() {
+        return "http://localhost:" + orion.port();
+    }
+
+    String quantumLeapUrl() {
+        return "http://localhost:" + quantumLeap.port();
+    }
+
+    @Override
+    public void close() {
+        orion.stop();
+        quantumLeap.stop();
+    }
+
+    private void stubOrion(List<String> districts, int delayMillis) {
+        for (String type : List.of("airQualityObserved", "weatherObserved")) {
+            String recorded = recording("orion-" + type + ".json");
+
+            // Latest by stationName (SSE initial data)
+            orion.stubFor(get(urlPathEqualTo("/ngsi-ld/v1/entities"))
+                    .atPriority(1)
+                    .withQueryParam("type", equalTo(type))
+                    .withQueryParam("q", matching(".+"))
+                    .willReturn(json("[" + recorded + "]", delayMillis)));
+
+            // All entities of type (environment-data stream, Open Data API)
+            orion.stubFor(get(urlPathEqualTo("/ngsi-ld/v1/entities"))
+                    .atPriority(2)
+                    .withQueryParam("type", equalTo(type))
+                    .withQueryParam("q", absent())
+                    .willReturn(json(allDistricts(recorded, districts), delayMillis)));
+        }
+
+        orion.stubFor(get(urlPathEqualTo("/ngsi-ld/v1/entities"))
+                .atPriority(5)
+                .willReturn(json("[]", delayMillis)));
+        orion.stubFor(get(urlPathMatching("/ngsi-ld/v1/entities/.+"))
+                .willReturn(aResponse().withStatus(404)));
+
+        // Subscriptions (OrionSubscriptionService on startup)
+        orion.stubFor(get(urlPathEqualTo("/ngsi-ld/v1/subscriptions"))
+                .willReturn(json("[]", 0)));
+        orion.stubFor(get(urlPathMatching("/ngsi-ld/v1/subscriptions/.+"))
+                .willReturn(aResponse().withStatus(404)));
+        orion.stubFor(delete(urlPathMatching("/ngsi-ld/v1/subscriptions/.+"))
+                .willReturn(aResponse().withStatus(204)));
+        orion.stubFor(post(urlPathEqualTo("/ngsi-ld/v1/subscriptions"))
+                .willReturn(aResponse().withStatus(201)
+                        .withHeader("Location", "/ngsi-ld/v1/subscriptions/urn:ngsi-ld:Subscription:loadtest")));
+    }
+
+    private void stubQuantumLeap(int delayMillis) {
+        quantumLeap.stubFor(any(urlPathMatching("/v2/entities/urn:ngsi-ld:AirQualityObserved:.*"))
+                .willReturn(json(recording("quantumleap-airQualityObserved.json"), delayMillis)));
+        quantumLeap.stubFor(any(urlPathMatching("/v2/entities/urn:ngsi-ld:WeatherObserved:.*"))
+                .willReturn(json(recording("quantumleap-weatherObserved.json"), delayMillis)));
+    }
+
+    private static ResponseDefinitionBuilder json(String body, int delayMillis) {
+        return aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withFixedDelay(delayMillis)
+                .withBody(body);
+    }
+
+    private static String allDistricts(String recorded, List<String> districts) {
+        List<String> entities = new ArrayList<>(districts.size());
+        for (String district : districts) {
+            entities.add(recorded.replace(RECORDED_DISTRICT, district));
+        }
+        return "[" + String.join(",", entities) + "]";
+    }
+
+    static String recording(String name) {
+        try {
+            return new ClassPathResource("loadtest/recordings/" + name)
+                    .getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import org.opensource.smartair.utils.SmtpConnectionPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Email delivery pipeline: pool kết nối SMTP dùng lại giữa các batch
+ * + executor giới hạn số batch gửi song song (mail.outbox.parallelism)
+ */
+@Configuration
+public class EmailOutboxConfig {
+
+    @Bean(destroyMethod = "close")
+    public SmtpConnectionPool smtpConnectionPool(
+            JavaMailSenderImpl mailSender,
+            @Value("${mail.outbox.parallelism:4}") int parallelism) {
+
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+        return new SmtpConnectionPool(mailSender.getSession(), protocol,
+                mailSender.getHost(), mailSender.getPort(),
+                mailSender.getUsername(), mailSender.getPassword(), parallelism);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor emailDeliveryExecutor(
+            @Value("${mail.outbox.parallelism:4}") int parallelism) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("email-delivery-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -22,6 +22,7 @@
 package org.opensource.smartair.configs;
 
 import org.opensource.smartair.dtos.ApiResponseDTO;
+import org.opensource.smartair.utils.UpstreamUnavailableException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -63,6 +64,15 @@ public class GlobalExceptionHandler {
                 .body(ApiResponseDTO.error(message, errors));
     }
 
+    /**
+     * Upstream (QuantumLeap, Orion-LD) không khả dụng và không có stale response: 503 để client retry
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<ApiResponseDTO<Object>> handleUpstreamUnavailable(UpstreamUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponseDTO.error(ex.getUpstream() + " is temporarily unavailable", null));
+    }
+
     /**
      * Handle các runtime exceptions khác
      */
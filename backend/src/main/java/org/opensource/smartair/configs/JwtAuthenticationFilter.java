@@ -27,6 +27,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.JwtClaims;
 import org.opensource.smartair.services.JwtService;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -42,7 +43,7 @@ import java.util.List;
 /**
  * JWT Authentication Filter
  * - Extract JWT from Authorization header
- * - Validate token
+ * - Validate token (parse + verify một lần qua JwtService.parseAndVerify)
  * - Set Authentication in SecurityContext
  * - Cho phép controllers access được userId từ SecurityContext
  */
@@ -74,33 +75,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        // Đã có authentication trong context thì không cần parse token
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         try {
             // Extract token (remove "Bearer " prefix)
             final String jwt = authHeader.substring(7);
 
-            // Extract user info từ token
-            final String email = jwtService.extractEmail(jwt);
-            final Long userId = jwtService.extractUserId(jwt);
-            final String role = jwtService.extractRole(jwt);
-
-            // Nếu token valid và chưa có authentication trong context
-            if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtService.validateToken(jwt, email)) {
-                    // Tạo Authentication object với userId và role
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userId, // Principal = userId (để controllers truy cập)
-                            null, // Credentials = null (không cần password)
-                            List.of(new SimpleGrantedAuthority("ROLE_" + role)) // Authorities
-                    );
-
-                    // Set details (IP address, session ID, etc.)
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    // Set vào SecurityContext
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-
-                    log.debug("JWT authenticated: userId={}, email={}, role={}", userId, email, role);
-                }
+            // Parse + verify chữ ký một lần (cache theo token tới khi hết hạn)
+            final JwtClaims claims = jwtService.parseAndVerify(jwt);
+
+            if (claims.email() != null) {
+                // Tạo Authentication object với userId và role
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        claims.userId(), // Principal = userId (để controllers truy cập)
+                        null, // Credentials = null (không cần password)
+                        List.of(new SimpleGrantedAuthority("ROLE_" + claims.role())) // Authorities
+                );
+
+                // Set details (IP address, session ID, etc.)
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                // Set vào SecurityContext
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+
+                log.debug("JWT authenticated: userId={}, email={}, role={}",
+                        claims.userId(), claims.email(), claims.role());
             }
         } catch (Exception e) {
             log.error("Cannot set user authentication: {}", e.getMessage());
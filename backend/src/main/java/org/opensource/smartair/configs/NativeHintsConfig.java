@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import org.opensource.smartair.models.EmailOutbox;
+import org.opensource.smartair.models.Resident;
+import org.opensource.smartair.models.ResidentStation;
+import org.opensource.smartair.models.User;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Runtime hints cho GraalVM native image (profile native - Spring AOT đọc lúc build, JVM bỏ qua).
+ * Spring AOT tự suy ra phần lớn hints từ bean definition; ở đây bổ sung những gì chỉ dùng qua reflection:
+ * - DTO Lombok / record / enum trong package dtos (Jackson serialize response, bind request và SSE payload)
+ * - JPA entity (Hibernate đọc field / gọi constructor không tham số qua reflection)
+ * - Collection mà Jackson khởi tạo khi bind vào Map / List thô (bodyToMono(Map.class), NGSI-LD payload)
+ * - Resource đọc qua ClassPathResource (GeoJSON phường/xã, template email)
+ */
+@Configuration(proxyBeanMethods = false)
+@ImportRuntimeHints(NativeHintsConfig.SmartairRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static final String DTO_PACKAGE = "org.opensource.smartair.dtos";
+
+    static final List<Class<?>> ENTITIES = List.of(User.class, Resident.class, ResidentStation.class,
+            EmailOutbox.class);
+
+    static final List<Class<?>> JACKSON_CONTAINERS = List.of(LinkedHashMap.class, HashMap.class,
+            ArrayList.class, LinkedHashSet.class);
+
+    static class SmartairRuntimeHints implements RuntimeHintsRegistrar {
+
+        private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Field, getter/setter, constructor và kiểu lồng nhau (enum, record component, generic)
+            bindingRegistrar.registerReflectionHints(hints.reflection(),
+                    findClasses(DTO_PACKAGE, classLoader).toArray(Class<?>[]::new));
+
+            for (Class<?> entity : ENTITIES) {
+                hints.reflection().registerType(entity,
+                        MemberCategory.DECLARED_FIELDS,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_DECLARED_METHODS);
+                bindingRegistrar.registerReflectionHints(hints.reflection(), entity);
+            }
+
+            for (Class<?> container : JACKSON_CONTAINERS) {
+                hints.reflection().registerType(container, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            }
+
+            hints.resources().registerPattern("static/*.geojson");
+            hints.resources().registerPattern("templates/email/*.mustache");
+        }
+
+        /**
+         * Mọi class (top-level và static nested) trong package - quét lúc build AOT
+         */
+        private static List<Class<?>> findClasses(String basePackage, ClassLoader classLoader) {
+            ClassPathScanningCandidateComponentProvider scanner =
+                    new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+
+            List<Class<?>> classes = new ArrayList<>();
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                classes.add(ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader));
+            }
+            return classes;
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package org.opensource.smartair.configs;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -51,6 +52,7 @@ public class SecurityConfig {
 
     private final UserDetailsService userDetailsService;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final MetricsScrapeTokenFilter metricsScrapeTokenFilter;
 
     /**
      * Security filter chain for WebMVC
@@ -68,10 +70,12 @@ public class SecurityConfig {
                         .requestMatchers(request -> "OPTIONS".equals(request.getMethod())).permitAll()
 
                         .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        // Metrics lộ tên district, endpoint, số resident...: chỉ ADMIN hoặc scraper có token
+                        .requestMatchers("/actuator/**").hasAnyRole("ADMIN", MetricsScrapeTokenFilter.ROLE)
 
                         // Public endpoints
                         .requestMatchers("/api/auth/**", "/api/open/**", "/api/notify/**", "/api/sse/**",
-                                "/api/platforms/**", "/api/weather/**", "/api/airquality/**",
+                                "/api/platforms/**", "/api/weather/**", "/api/airquality/**", "/api/geo/**",
                                 "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html")
                         .permitAll()
 
@@ -85,6 +89,7 @@ public class SecurityConfig {
                 .formLogin(AbstractHttpConfigurer::disable)
                 // Add JWT filter BEFORE UsernamePasswordAuthenticationFilter
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(metricsScrapeTokenFilter, JwtAuthenticationFilter.class)
                 .build();
     }
 
@@ -108,9 +113,10 @@ public class SecurityConfig {
 
     /**
      * Password encoder (BCrypt)
+     * Tăng security.bcrypt.strength: hash cũ được rehash khi user đăng nhập thành công
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
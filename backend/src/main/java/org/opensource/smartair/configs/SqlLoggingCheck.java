@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kiểm tra lúc khởi động: cảnh báo nếu SQL / bind parameter đang được log.
+ * show-sql ghi đồng bộ ra stdout, org.hibernate.SQL=DEBUG và bind=TRACE format + ghi log
+ * cho mọi câu query (alert, login) - chấp nhận được khi dev, không chấp nhận được ở prod.
+ * WARN khi profile prod đang active, INFO với các profile khác
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SqlLoggingCheck {
+
+    static final String SQL_LOGGER = "org.hibernate.SQL";
+    static final String BIND_LOGGER = "org.hibernate.orm.jdbc.bind";
+    static final String LEGACY_BIND_LOGGER = "org.hibernate.type.descriptor.sql.BasicBinder";
+
+    private final Environment environment;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkOnStartup() {
+        List<String> findings = findVerboseSqlLogging();
+        if (findings.isEmpty()) {
+            return;
+        }
+        String message = "SQL logging is on the request path: " + String.join(", ", findings);
+        if (environment.acceptsProfiles(Profiles.of("prod"))) {
+            log.warn("{} - disable it in production (see application-prod.properties)", message);
+        } else {
+            log.info(message);
+        }
+    }
+
+    /**
+     * Danh sách các cấu hình log SQL đang bật (rỗng nếu không có)
+     */
+    List<String> findVerboseSqlLogging() {
+        List<String> findings = new ArrayList<>();
+        if (environment.getProperty("spring.jpa.show-sql", Boolean.class, false)) {
+            findings.add("spring.jpa.show-sql=true");
+        }
+        if (environment.getProperty("spring.jpa.properties.hibernate.generate_statistics", Boolean.class, false)) {
+            findings.add("hibernate.generate_statistics=true");
+        }
+        if (LoggerFactory.getLogger(SQL_LOGGER).isDebugEnabled()) {
+            findings.add(SQL_LOGGER + " at DEBUG");
+        }
+        for (String bindLogger : List.of(BIND_LOGGER, LEGACY_BIND_LOGGER)) {
+            if (LoggerFactory.getLogger(bindLogger).isTraceEnabled()) {
+                findings.add(bindLogger + " at TRACE");
+            }
+        }
+        return findings;
+    }
+}
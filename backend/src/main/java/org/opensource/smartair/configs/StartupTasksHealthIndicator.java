@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.services.GeoJsonService;
+import org.opensource.smartair.services.OrionSubscriptionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Health "startupTasks" cho readiness probe: OUT_OF_SERVICE tới khi các việc khởi động chạy nền
+ * (load + simplify GeoJSON, đăng ký subscription Orion-LD) xong, DOWN nếu một việc thất bại.
+ * Thêm vào group readiness qua management.endpoint.health.group.readiness.include;
+ * liveness không bị ảnh hưởng
+ */
+@Slf4j
+@Component
+public class StartupTasksHealthIndicator implements HealthIndicator {
+
+    private final Map<String, CompletableFuture<?>> tasks;
+    private final Map<String, Long> finishedAtUptimeMillis = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StartupTasksHealthIndicator(GeoJsonService geoJsonService,
+            OrionSubscriptionService orionSubscriptionService) {
+        this(startupTasks(geoJsonService, orionSubscriptionService));
+    }
+
+    StartupTasksHealthIndicator(Map<String, CompletableFuture<?>> tasks) {
+        this.tasks = new LinkedHashMap<>(tasks);
+        this.tasks.forEach((name, task) -> task.whenComplete(
+                (result, error) -> finishedAtUptimeMillis.put(name, uptimeMillis())));
+        CompletableFuture.allOf(this.tasks.values().toArray(CompletableFuture[]::new))
+                .whenComplete((result, error) -> log.info("Startup tasks {} finished, ready {} ms after JVM start",
+                        this.tasks.keySet(), uptimeMillis()));
+    }
+
+    private static Map<String, CompletableFuture<?>> startupTasks(GeoJsonService geoJsonService,
+            OrionSubscriptionService orionSubscriptionService) {
+        Map<String, CompletableFuture<?>> tasks = new LinkedHashMap<>();
+        tasks.put("geojson", geoJsonService.whenLoaded());
+        tasks.put("orionSubscriptions", orionSubscriptionService.whenSubscriptionsRegistered());
+        return tasks;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = Health.up();
+        boolean pending = false;
+        boolean failed = false;
+        for (Map.Entry<String, CompletableFuture<?>> entry : tasks.entrySet()) {
+            CompletableFuture<?> task = entry.getValue();
+            if (!task.isDone()) {
+                pending = true;
+                builder.withDetail(entry.getKey(), "pending");
+            } else if (task.isCompletedExceptionally()) {
+                failed = true;
+                builder.withDetail(entry.getKey(), "failed");
+            } else {
+                Long finishedAt = finishedAtUptimeMillis.get(entry.getKey());
+                builder.withDetail(entry.getKey(),
+                        finishedAt != null ? "done at " + finishedAt + " ms uptime" : "done");
+            }
+        }
+        if (failed) {
+            return builder.down().build();
+        }
+        return pending ? builder.outOfService().build() : builder.build();
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
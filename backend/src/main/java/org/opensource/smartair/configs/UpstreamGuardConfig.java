@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.opensource.smartair.utils.AimdConcurrencyLimiter;
+import org.opensource.smartair.utils.CircuitBreaker;
+import org.opensource.smartair.utils.UpstreamGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Upstream protection for QuantumLeap and Orion-LD clients
+ * (adaptive concurrency limit + circuit breaker + stale fallback)
+ */
+@Configuration
+public class UpstreamGuardConfig {
+
+    @Bean
+    public UpstreamGuard quantumLeapGuard(
+            MeterRegistry meterRegistry,
+            @Value("${upstream.quantumleap.limiter.initial-limit:20}") int initialLimit,
+            @Value("${upstream.quantumleap.limiter.min-limit:2}") int minLimit,
+            @Value("${upstream.quantumleap.limiter.max-limit:50}") int maxLimit,
+            @Value("${upstream.quantumleap.limiter.latency-threshold-ms:5000}") long latencyThresholdMs,
+            @Value("${upstream.quantumleap.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${upstream.quantumleap.circuit.open-seconds:30}") long openSeconds,
+            @Value("${upstream.quantumleap.stale.max-age-minutes:60}") long staleMaxAgeMinutes) {
+
+        return new UpstreamGuard("quantumleap",
+                new AimdConcurrencyLimiter(initialLimit, minLimit, maxLimit, 0.9, latencyThresholdMs),
+                new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds), 1),
+                Duration.ofMinutes(staleMaxAgeMinutes), 1024, meterRegistry);
+    }
+
+    @Bean
+    public UpstreamGuard orionGuard(
+            MeterRegistry meterRegistry,
+            @Value("${upstream.orion.limiter.initial-limit:20}") int initialLimit,
+            @Value("${upstream.orion.limiter.min-limit:2}") int minLimit,
+            @Value("${upstream.orion.limiter.max-limit:100}") int maxLimit,
+            @Value("${upstream.orion.limiter.latency-threshold-ms:2000}") long latencyThresholdMs,
+            @Value("${upstream.orion.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${upstream.orion.circuit.open-seconds:15}") long openSeconds,
+            @Value("${upstream.orion.stale.max-age-minutes:10}") long staleMaxAgeMinutes) {
+
+        return new UpstreamGuard("orion",
+                new AimdConcurrencyLimiter(initialLimit, minLimit, maxLimit, 0.9, latencyThresholdMs),
+                new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds), 1),
+                Duration.ofMinutes(staleMaxAgeMinutes), 2048, meterRegistry);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.opensource.smartair.services.LatencyTrackerService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Giám sát pipeline notification → SSE cho ADMIN
+ * Base path: /api/admin/pipeline (ROLE_ADMIN)
+ */
+@RestController
+@RequestMapping("/api/admin/pipeline")
+@RequiredArgsConstructor
+@Tag(name = "Admin - Pipeline", description = "Độ trễ / freshness của dữ liệu realtime (ADMIN)")
+public class AdminPipelineController {
+
+    private final LatencyTrackerService latencyTracker;
+
+    /**
+     * GET /api/admin/pipeline/freshness
+     * Freshness lag (now - observedAt mới nhất) theo district
+     */
+    @GetMapping("/freshness")
+    @Operation(summary = "Freshness lag theo district",
+            description = "observedAt mới nhất, lag và lần ghi SSE gần nhất cho từng district")
+    public ResponseEntity<Map<String, Object>> getFreshness() {
+        return ResponseEntity.ok(latencyTracker.getFreshnessReport());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.ApiResponseDTO;
+import org.opensource.smartair.dtos.ResidentImportRequestDTO;
+import org.opensource.smartair.dtos.ResidentImportResultDTO;
+import org.opensource.smartair.dtos.ResidentPageDTO;
+import org.opensource.smartair.dtos.SubscriberStatsDTO;
+import org.opensource.smartair.services.ResidentService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller quản lý residents cho ADMIN
+ * Base path: /api/admin/residents (ROLE_ADMIN)
+ */
+@RestController
+@RequestMapping("/api/admin/residents")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Admin - Residents", description = "Quản lý residents (ADMIN)")
+public class AdminResidentController {
+
+    private final ResidentService residentService;
+
+    /**
+     * GET /api/admin/residents?afterId=&size=&district=
+     * Danh sách residents theo keyset: lấy trang sau bằng afterId = nextCursor của trang trước
+     */
+    @GetMapping
+    @Operation(summary = "Danh sách residents",
+            description = "Keyset pagination theo id; lọc theo district nếu có")
+    public ResponseEntity<ApiResponseDTO<ResidentPageDTO>> listResidents(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String district) {
+        try {
+            return ResponseEntity.ok(ApiResponseDTO.success(residentService.listResidents(afterId, size, district)));
+        } catch (Exception e) {
+            log.error("Failed to list residents: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponseDTO.error(e.getMessage(), null));
+        }
+    }
+
+    /**
+     * GET /api/admin/residents/stats
+     * Số subscriber theo district
+     */
+    @GetMapping("/stats")
+    @Operation(summary = "Thống kê subscriber theo district")
+    public ResponseEntity<ApiResponseDTO<SubscriberStatsDTO>> getSubscriberStats() {
+        try {
+            return ResponseEntity.ok(ApiResponseDTO.success(residentService.getSubscriberStats()));
+        } catch (Exception e) {
+            log.error("Failed to load subscriber stats: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponseDTO.error(e.getMessage(), null));
+        }
+    }
+
+    /**
+     * POST /api/admin/residents/import
+     * Bulk import residents (batch insert users / residents / subscriptions)
+     */
+    @PostMapping("/import")
+    @Operation(summary = "Bulk import residents",
+            description = "Tạo hàng loạt tài khoản RESIDENT; email trùng hoặc đã tồn tại được bỏ qua")
+    public ResponseEntity<ApiResponseDTO<ResidentImportResultDTO>> importResidents(
+            @Valid @RequestBody ResidentImportRequestDTO request) {
+        log.info("POST /api/admin/residents/import - {} residents", request.getResidents().size());
+
+        try {
+            ResidentImportResultDTO result = residentService.importResidents(request.getResidents());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponseDTO.success("Import residents thành công", result));
+        } catch (Exception e) {
+            log.error("Resident import failed: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(ApiResponseDTO.error("Import thất bại: " + e.getMessage(), null));
+        }
+    }
+}
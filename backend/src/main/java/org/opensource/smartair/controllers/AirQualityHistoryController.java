@@ -25,6 +25,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.ApiResponseDTO;
 import org.opensource.smartair.services.QuantumLeapClient;
+import org.opensource.smartair.utils.UpstreamUnavailableException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
@@ -90,7 +91,8 @@ public class AirQualityHistoryController {
                                                                         "Successfully retrieved air quality attribute history",
                                                                         historyData));
                                 })
-                                .onErrorResume(e -> {
+                                // QuantumLeap không khả dụng: để GlobalExceptionHandler trả 503
+                                .onErrorResume(e -> !(e instanceof UpstreamUnavailableException), e -> {
                                         log.error("Error fetching air quality {} history for {}: {}", attrName,
                                                         district, e.getMessage());
                                         return Mono.just(
@@ -23,6 +23,7 @@ package org.opensource.smartair.controllers;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,8 @@ import org.opensource.smartair.dtos.AuthResponseDTO;
 import org.opensource.smartair.dtos.CreateResidentDTO;
 import org.opensource.smartair.dtos.LoginRequestDTO;
 import org.opensource.smartair.services.AuthService;
+import org.opensource.smartair.utils.RateLimitedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -82,17 +85,27 @@ public class AuthController {
      */
     @PostMapping("/login")
     @Operation(summary = "Đăng nhập", description = "Authenticate và trả về JWT token")
-    public ResponseEntity<ApiResponseDTO<AuthResponseDTO>> login(@Valid @RequestBody LoginRequestDTO dto) {
+    public ResponseEntity<ApiResponseDTO<AuthResponseDTO>> login(@Valid @RequestBody LoginRequestDTO dto,
+            HttpServletRequest request) {
         log.info("POST /api/auth/login - email: {}", dto.getEmail());
 
         try {
-            AuthResponseDTO authData = authService.login(dto);
+            AuthResponseDTO authData = authService.login(dto, request.getRemoteAddr());
             ApiResponseDTO<AuthResponseDTO> response = ApiResponseDTO.<AuthResponseDTO>builder()
                     .ec(0)
                     .em("Đăng nhập thành công")
                     .dt(authData)
                     .build();
             return ResponseEntity.ok(response);
+        } catch (RateLimitedException e) {
+            ApiResponseDTO<AuthResponseDTO> errorResponse = ApiResponseDTO.<AuthResponseDTO>builder()
+                    .ec(1)
+                    .em("Đăng nhập thất bại: " + e.getMessage())
+                    .dt(null)
+                    .build();
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(errorResponse);
         } catch (Exception e) {
             log.error("Login failed: {}", e.getMessage());
             ApiResponseDTO<AuthResponseDTO> errorResponse = ApiResponseDTO.<AuthResponseDTO>builder()
@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.ApiResponseDTO;
+import org.opensource.smartair.dtos.DistrictLocationDTO;
+import org.opensource.smartair.dtos.GeometryFormat;
+import org.opensource.smartair.dtos.GridMetaDTO;
+import org.opensource.smartair.dtos.GridPollutant;
+import org.opensource.smartair.dtos.NearbyStationDTO;
+import org.opensource.smartair.services.DistrictSpatialIndex;
+import org.opensource.smartair.services.DistrictTileService;
+import org.opensource.smartair.services.GeoJsonService;
+import org.opensource.smartair.services.PollutantGridService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Spatial lookup trên polygon phường/xã (public)
+ * Base path: /api/geo - frontend và route-finding dùng thay cho point-in-polygon tự scan GeoJSON
+ */
+@RestController
+@RequestMapping("/api/geo")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Geo", description = "Point-in-district, nearest stations, districts in bounding box")
+public class GeoController {
+
+    private static final int MAX_NEAREST = 50;
+
+    /**
+     * Tile có dữ liệu đổi theo mức AQI nên chỉ cache ngắn (client revalidate bằng ETag);
+     * tile rỗng chỉ phụ thuộc geometry nên cache lâu
+     */
+    private static final Duration TILE_MAX_AGE = Duration.ofSeconds(60);
+    private static final Duration EMPTY_TILE_MAX_AGE = Duration.ofDays(1);
+
+    /**
+     * Geometry simplify chỉ đổi khi deploy GeoJSON mới: cache lâu, revalidate bằng ETag
+     */
+    private static final Duration GEOMETRY_MAX_AGE = Duration.ofDays(1);
+
+    private final DistrictSpatialIndex districtSpatialIndex;
+    private final PollutantGridService pollutantGridService;
+    private final DistrictTileService districtTileService;
+    private final GeoJsonService geoJsonService;
+
+    /**
+     * GET /api/geo/district?lat=&lon=
+     * Phường/xã chứa điểm, 404 nếu điểm nằm ngoài Hà Nội
+     */
+    @GetMapping("/district")
+    @Operation(summary = "Phường/xã chứa một điểm")
+    public ResponseEntity<ApiResponseDTO<DistrictLocationDTO>> districtAt(
+            @RequestParam double lat,
+            @RequestParam double lon) {
+        try {
+            return districtSpatialIndex.districtAt(lat, lon)
+                    .map(district -> ResponseEntity.ok(ApiResponseDTO.success(district)))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(ApiResponseDTO.error("Point is outside all districts", null)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponseDTO.error(e.getMessage(), null));
+        }
+    }
+
+    /**
+     * GET /api/geo/stations/nearest?lat=&lon=&k=
+     * k trạm quan trắc gần nhất (k tối đa 50)
+     */
+    @GetMapping("/stations/nearest")
+    @Operation(summary = "Trạm quan trắc gần nhất", description = "Sắp xếp theo khoảng cách tăng dần (mét)")
+    public ResponseEntity<ApiResponseDTO<List<NearbyStationDTO>>> nearestStations(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @Parameter(description = "Số trạm (1-50, default 5)") @RequestParam(defaultValue = "5") int k) {
+        try {
+            int limit = Math.max(1, Math.min(k, MAX_NEAREST));
+            return ResponseEntity.ok(ApiResponseDTO.success(districtSpatialIndex.nearestStations(lat, lon, limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponseDTO.error(e.getMessage(), null));
+        }
+    }
+
+    /**
+     * GET /api/geo/districts?minLat=&minLon=&maxLat=&maxLon=
+     * Các phường/xã giao với bounding box (vd: viewport bản đồ)
+     */
+    @GetMapping("/districts")
+    @Operation(summary = "Phường/xã trong bounding box")
+    public ResponseEntity<ApiResponseDTO<List<DistrictLocationDTO>>> districtsWithin(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon) {
+        try {
+            return ResponseEntity.ok(ApiResponseDTO.success(
+                    districtSpatialIndex.districtsWithin(minLat, minLon, maxLat, maxLon)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponseDTO.error(e.getMessage(), null));
+        }
+    }
+
+    /**
+     * GET /api/geo/districts?zoom=&format=geojson|topojson
+     * Geometry toàn bộ phường/xã đã simplify cho zoom (ranh giới chung không hở), encode sẵn;
+     * gzip nếu Accept-Encoding cho phép (theo q-value), ETag strong theo từng biến thể
+     */
+    @GetMapping(value = "/districts", params = "zoom")
+    @Operation(summary = "Geometry phường/xã đã simplify theo zoom (GeoJSON / TopoJSON)")
+    public ResponseEntity<byte[]> simplifiedDistricts(
+            @RequestParam int zoom,
+            @Parameter(description = "geojson (default) hoặc topojson") @RequestParam(defaultValue = "geojson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        GeoJsonService.EncodedDistricts encoded;
+        try {
+            encoded = geoJsonService.getSimplifiedDistricts(zoom, GeometryFormat.fromName(format));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (encoded == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? encoded.gzipEtag() : encoded.etag();
+        if (notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.maxAge(GEOMETRY_MAX_AGE).cachePublic())
+                .contentType(MediaType.parseMediaType(encoded.contentType()));
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.gzipBody());
+        }
+        return response.body(encoded.body());
+    }
+
+    /**
+     * GET /api/geo/grid/{pollutant}/meta
+     * Kích thước, gốc tọa độ và version của grid nội suy (aqi, pm2_5, pm10, no2, o3, co, so2)
+     */
+    @GetMapping("/grid/{pollutant}/meta")
+    @Operation(summary = "Metadata grid nội suy IDW")
+    public ResponseEntity<ApiResponseDTO<GridMetaDTO>> gridMeta(@PathVariable String pollutant) {
+        try {
+            return ResponseEntity.ok(ApiResponseDTO.success(
+                    pollutantGridService.getMeta(GridPollutant.fromName(pollutant))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponseDTO.error(e.getMessage(), null));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ApiResponseDTO.error(e.getMessage(), null));
+        }
+    }
+
+    /**
+     * GET /api/geo/grid/{pollutant}
+     * Toàn bộ grid: float32 little-endian row-major (new Float32Array(arrayBuffer) ở frontend)
+     * ETag = version, 304 nếu client đã có version hiện tại
+     */
+    @GetMapping(value = "/grid/{pollutant}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "Grid nội suy IDW (float32 little-endian)")
+    public ResponseEntity<byte[]> gridValues(
+            @PathVariable String pollutant,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        GridPollutant gridPollutant;
+        try {
+            gridPollutant = GridPollutant.fromName(pollutant);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            GridMetaDTO meta = pollutantGridService.getMeta(gridPollutant);
+            String etag = "\"" + gridPollutant.getName() + "-" + meta.getVersion() + "\"";
+            if (notModified(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .header("X-Grid-Rows", String.valueOf(meta.getRows()))
+                    .header("X-Grid-Cols", String.valueOf(meta.getCols()))
+                    .header("X-Grid-Version", String.valueOf(meta.getVersion()))
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(pollutantGridService.getValues(gridPollutant));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * GET /api/geo/tiles/{z}/{x}/{y}.mvt
+     * Mapbox Vector Tile lớp "districts" (district, name, aqi) cho MapLibre source type=vector
+     * 204 nếu tile không giao phường nào, 304 nếu If-None-Match khớp ETag
+     */
+    @GetMapping(value = "/tiles/{z}/{x}/{y}.mvt", produces = DistrictTileService.CONTENT_TYPE)
+    @Operation(summary = "Vector tile choropleth phường/xã theo AQI")
+    public ResponseEntity<byte[]> districtTile(
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        DistrictTileService.DistrictTile tile;
+        try {
+            tile = districtTileService.getTile(z, x, y);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (tile.isEmpty()) {
+            return ResponseEntity.noContent().cacheControl(CacheControl.maxAge(EMPTY_TILE_MAX_AGE).cachePublic()).build();
+        }
+        if (notModified(ifNoneMatch, tile.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tile.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(tile.etag())
+                .cacheControl(CacheControl.maxAge(TILE_MAX_AGE).cachePublic())
+                .contentType(MediaType.parseMediaType(DistrictTileService.CONTENT_TYPE))
+                .body(tile.data());
+    }
+
+    /**
+     * If-None-Match khớp ETag hiện tại: so sánh weak (bỏ qua W/ do proxy thêm), header có thể là
+     * danh sách nhiều ETag hoặc "*"
+     */
+    static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        ETag current = ETag.create(etag);
+        return ETag.parse(ifNoneMatch).stream()
+                .anyMatch(candidate -> candidate.isWildcard() || candidate.compare(current, false));
+    }
+
+    /**
+     * Accept-Encoding cho phép gzip: "gzip" / "x-gzip" với q > 0, hoặc "*" với q > 0 khi gzip
+     * không được nêu riêng (vd: "gzip;q=0" là từ chối gzip)
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        Double gzipQuality = null;
+        double wildcardQuality = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+            } else if (coding.equals("*")) {
+                wildcardQuality = quality;
+            }
+        }
+        return gzipQuality != null ? gzipQuality > 0 : wildcardQuality > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
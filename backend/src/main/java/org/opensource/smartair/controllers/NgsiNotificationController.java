@@ -21,15 +21,20 @@
  */
 package org.opensource.smartair.controllers;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.*;
-import org.opensource.smartair.services.GeoJsonService;
+import org.opensource.smartair.services.DistrictRegistry;
+import org.opensource.smartair.services.EntityVersionTracker;
+import org.opensource.smartair.services.LatencyTrackerService;
 import org.opensource.smartair.services.NgsiTransformerService;
 import org.opensource.smartair.services.NotificationService;
 import org.opensource.smartair.services.OrionLdClient;
 import org.opensource.smartair.services.QuantumLeapClient;
 import org.opensource.smartair.services.SseService;
+import org.opensource.smartair.utils.PipelineTrace;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -39,6 +44,7 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Controller for receiving NGSI-LD notifications from Orion-LD
@@ -55,7 +61,10 @@ public class NgsiNotificationController {
     private final QuantumLeapClient quantumLeapClient;
     private final OrionLdClient orionLdClient;
     private final NotificationService notificationService;
-    private final GeoJsonService geoJsonService;
+    private final DistrictRegistry districtRegistry;
+    private final MeterRegistry meterRegistry;
+    private final LatencyTrackerService latencyTracker;
+    private final EntityVersionTracker versionTracker;
 
     @Value("${quantumleap.query.delay.seconds:2}")
     private int quantumLeapDelaySeconds;
@@ -73,62 +82,147 @@ public class NgsiNotificationController {
         log.info("Received NGSI-LD notification. Fiware-Service: {}, Fiware-ServicePath: {}",
                 fiwareService, fiwareServicePath);
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ok";
+
         try {
             // Parse notification data
             List<Map<String, Object>> entities = (List<Map<String, Object>>) notification.get("data");
 
             if (entities == null || entities.isEmpty()) {
                 log.warn("Notification contains no entities");
+                outcome = "empty";
                 return ResponseEntity.ok().build();
             }
 
             // Process each entity
+            boolean allHandled = true;
             for (Map<String, Object> entity : entities) {
                 String entityType = (String) entity.get("type");
                 String entityId = (String) entity.get("id");
 
                 log.debug("Processing entity: {} (type: {})", entityId, entityType);
+                meterRegistry.counter("ngsi.entities.received", "type", metricType(entityType)).increment();
+
+                // Bỏ bản trùng / đến trễ trước broadcast, query QuantumLeap và email cảnh báo
+                long observedAt = EntityVersionTracker.toEpochMillis(observedAt(entity, entityType));
+                long modifiedAt = EntityVersionTracker.toEpochMillis(modifiedAt(entity, entityType));
+                EntityVersionTracker.Verdict verdict = versionTracker.check(entityId, observedAt, modifiedAt);
+                if (!verdict.isAccepted()) {
+                    log.debug("Dropping {} entity {} ({})", verdict, entityId, entityType);
+                    meterRegistry.counter("ngsi.entities.dropped", "type", metricType(entityType),
+                            "reason", verdict == EntityVersionTracker.Verdict.DUPLICATE ? "duplicate" : "out_of_order")
+                            .increment();
+                    continue;
+                }
 
                 // Transform and broadcast based on entity type
-                switch (entityType) {
-                    case "weatherObserved":
-                        handleWeatherObserved(entity);
-                        break;
-                    case "airQualityObserved":
-                        handleAirQualityObserved(entity);
-                        break;
-                    case "Device":
-                        handleDevice(entity);
-                        break;
-                    case "Platform":
-                        handlePlatform(entity);
-                        break;
-                    default:
-                        log.warn("Unknown entity type: {}", entityType);
+                boolean handled;
+                try {
+                    handled = switch (entityType) {
+                        case "weatherObserved" -> handleWeatherObserved(entity, latencyTracker.start(entityType));
+                        case "airQualityObserved" ->
+                            handleAirQualityObserved(entity, latencyTracker.start(entityType));
+                        case "Device" -> handleDevice(entity);
+                        case "Platform" -> handlePlatform(entity);
+                        default -> {
+                            log.warn("Unknown entity type: {}", entityType);
+                            yield true;
+                        }
+                    };
+                } catch (RuntimeException e) {
+                    log.error("Error handling {} entity {}", entityType, entityId, e);
+                    handled = false;
+                }
+
+                // Xử lý thất bại: bỏ version vừa ghi nhận để lần đo này đến lại (notification sau,
+                // subscription khác, republish) không bị coi là trùng. Orion-LD không gửi lại notification
+                // lỗi nên vẫn trả 200 - entity lỗi chỉ thể hiện qua ngsi.notification.handle{outcome=error}
+                if (!handled) {
+                    versionTracker.rollback(entityId, observedAt, modifiedAt);
+                    allHandled = false;
                 }
             }
 
+            if (!allHandled) {
+                outcome = "error";
+            }
             return ResponseEntity.ok().build();
 
         } catch (Exception e) {
             log.error("Error processing NGSI-LD notification", e);
+            outcome = "error";
             return ResponseEntity.internalServerError().build();
+        } finally {
+            sample.stop(meterRegistry.timer("ngsi.notification.handle", "outcome", outcome));
         }
     }
 
+    /**
+     * Giới hạn cardinality của tag type (entity type lạ gộp vào "unknown")
+     */
+    private String metricType(String entityType) {
+        if (entityType == null) {
+            return "unknown";
+        }
+        return switch (entityType) {
+            case "weatherObserved", "airQualityObserved", "Device", "Platform" -> entityType;
+            default -> "unknown";
+        };
+    }
+
+    /**
+     * Thuộc tính mang observedAt của lần đo - cùng thuộc tính NgsiTransformerService dùng cho DTO
+     */
+    private static String versionAttribute(String entityType) {
+        if ("weatherObserved".equals(entityType)) {
+            return "temperature";
+        }
+        if ("airQualityObserved".equals(entityType)) {
+            return "pm2_5";
+        }
+        return null;
+    }
+
+    private static Object observedAt(Map<String, Object> entity, String entityType) {
+        String attribute = versionAttribute(entityType);
+        return attribute != null && entity.get(attribute) instanceof Map<?, ?> property
+                ? property.get("observedAt")
+                : null;
+    }
+
+    /**
+     * modifiedAt của entity (notification sysAttrs), fallback modifiedAt của thuộc tính mang observedAt
+     */
+    private static Object modifiedAt(Map<String, Object> entity, String entityType) {
+        Object modifiedAt = entity.get("modifiedAt");
+        if (modifiedAt != null) {
+            return modifiedAt;
+        }
+        String attribute = versionAttribute(entityType);
+        return attribute != null && entity.get(attribute) instanceof Map<?, ?> property
+                ? property.get("modifiedAt")
+                : null;
+    }
+
+    private <T> T timeTransform(String entityType, Supplier<T> transform) {
+        return meterRegistry.timer("ngsi.transform", "type", entityType).record(transform);
+    }
+
     /**
      * Handle WeatherObserved entity
      */
-    private void handleWeatherObserved(Map<String, Object> entity) {
+    private boolean handleWeatherObserved(Map<String, Object> entity, PipelineTrace trace) {
         try {
-            WeatherDataDTO data = transformerService.transformWeatherObserved(entity);
+            WeatherDataDTO data = timeTransform("weatherObserved", () -> transformerService.transformWeatherObserved(entity));
             String district = data.getDistrict();
+            latencyTracker.markTransformed(trace, district, data.getObservedAt());
 
             log.info("Transformed weather data for district: {} (temp: {}°C)",
                     district, data.getTemperature());
 
             // 1. Broadcast live update immediately
-            sseService.broadcastWeather(data);
+            sseService.broadcastWeather(data, trace);
 
             // 2. Query QuantumLeap for historical data (with delay)
             queryAndBroadcastWeatherHistory(district);
@@ -136,15 +230,17 @@ public class NgsiNotificationController {
             // ✅ NEW: 3. Update aggregated weather history
             updateAggregatedWeatherHistory();
 
+            return true;
         } catch (Exception e) {
             log.error("Error handling WeatherObserved entity", e);
+            return false;
         }
     }
 
     private void updateAggregatedWeatherHistory() {
         Mono.delay(Duration.ofSeconds(quantumLeapDelaySeconds))
             .flatMap(tick -> {
-                List<String> allDistricts = geoJsonService.getAllDistricts();
+                List<String> allDistricts = districtRegistry.slugs();
                 return quantumLeapClient.getAggregatedWeatherHistory(allDistricts);
             })
             .subscribe(
@@ -187,16 +283,17 @@ public class NgsiNotificationController {
     /**
      * Handle AirQualityObserved entity
      */
-    private void handleAirQualityObserved(Map<String, Object> entity) {
+    private boolean handleAirQualityObserved(Map<String, Object> entity, PipelineTrace trace) {
         try {
-            AirQualityDataDTO data = transformerService.transformAirQualityObserved(entity);
+            AirQualityDataDTO data = timeTransform("airQualityObserved", () -> transformerService.transformAirQualityObserved(entity));
             String district = data.getDistrict();
+            latencyTracker.markTransformed(trace, district, data.getObservedAt());
 
             log.info("Transformed air quality data for district: {} (AQI: {})",
                     district, data.getAirQualityIndex());
 
             // 1. Broadcast live update immediately
-            sseService.broadcastAirQuality(data);
+            sseService.broadcastAirQuality(data, trace);
 
             // 2. Query QuantumLeap for historical data (with delay)
             queryAndBroadcastAirQualityHistory(district);
@@ -210,15 +307,17 @@ public class NgsiNotificationController {
             // 5. Auto-trigger email notifications if air quality is poor/very poor
             notificationService.sendAirQualityAlert(data);
 
+            return true;
         } catch (Exception e) {
             log.error("Error handling AirQualityObserved entity", e);
+            return false;
         }
     }
 
     private void updateAggregatedAirQualityHistory() {
         Mono.delay(Duration.ofSeconds(quantumLeapDelaySeconds))
             .flatMap(tick -> {
-                List<String> allDistricts = geoJsonService.getAllDistricts();
+                List<String> allDistricts = districtRegistry.slugs();
                 return quantumLeapClient.getAggregatedAirQualityHistory(allDistricts);
             })
             .subscribe(
@@ -250,26 +349,30 @@ public class NgsiNotificationController {
     /**
      * Handle Device entity
      */
-    private void handleDevice(Map<String, Object> entity) {
+    private boolean handleDevice(Map<String, Object> entity) {
         try {
-            DeviceDataDTO data = transformerService.transformDevice(entity);
+            DeviceDataDTO data = timeTransform("Device", () -> transformerService.transformDevice(entity));
             log.info("Transformed device data: {} ({})", data.getName(), data.getSensorType());
             sseService.broadcastDevice(data);
+            return true;
         } catch (Exception e) {
             log.error("Error handling Device entity", e);
+            return false;
         }
     }
 
     /**
      * Handle Platform entity
      */
-    private void handlePlatform(Map<String, Object> entity) {
+    private boolean handlePlatform(Map<String, Object> entity) {
         try {
-            PlatformDataDTO data = transformerService.transformPlatform(entity);
+            PlatformDataDTO data = timeTransform("Platform", () -> transformerService.transformPlatform(entity));
             log.info("Transformed platform data: {} (status: {})", data.getName(), data.getStatus());
             sseService.broadcastPlatform(data);
+            return true;
         } catch (Exception e) {
             log.error("Error handling Platform entity", e);
+            return false;
         }
     }
 
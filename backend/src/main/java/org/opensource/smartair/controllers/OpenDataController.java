@@ -33,6 +33,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.*;
 import org.opensource.smartair.services.OrionLdClient;
 import org.opensource.smartair.services.QuantumLeapClient;
+import org.opensource.smartair.utils.UpstreamUnavailableException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
@@ -299,7 +300,8 @@ public class OpenDataController {
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Successfully retrieved historical data in NGSI-LD format", content = @Content(schema = @Schema(implementation = Map.class))),
                         @ApiResponse(responseCode = "404", description = "No data found"),
-                        @ApiResponse(responseCode = "500", description = "Internal server error")
+                        @ApiResponse(responseCode = "500", description = "Internal server error"),
+                        @ApiResponse(responseCode = "503", description = "QuantumLeap unavailable and no recent response cached")
         })
         @GetMapping("/weather/{district}/attrs/{attrName}/history")
         public Mono<ResponseEntity<Map<String, Object>>> getWeatherAttributeHistory(
@@ -327,7 +329,8 @@ public class OpenDataController {
                                         }
                                         return ResponseEntity.ok(historyData);
                                 })
-                                .onErrorResume(e -> {
+                                // QuantumLeap không khả dụng: để GlobalExceptionHandler trả 503
+                                .onErrorResume(e -> !(e instanceof UpstreamUnavailableException), e -> {
                                         log.error("Open API: Error fetching weather {} history for {}: {}", attrName,
                                                         district, e.getMessage());
                                         return Mono.just(ResponseEntity.ok(Map.of()));
@@ -345,7 +348,8 @@ public class OpenDataController {
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Successfully retrieved historical data in NGSI-LD format", content = @Content(schema = @Schema(implementation = Map.class))),
                         @ApiResponse(responseCode = "404", description = "No data found"),
-                        @ApiResponse(responseCode = "500", description = "Internal server error")
+                        @ApiResponse(responseCode = "500", description = "Internal server error"),
+                        @ApiResponse(responseCode = "503", description = "QuantumLeap unavailable and no recent response cached")
         })
         @GetMapping("/airquality/{district}/attrs/{attrName}/history")
         public Mono<ResponseEntity<Map<String, Object>>> getAirQualityAttributeHistory(
@@ -373,7 +377,8 @@ public class OpenDataController {
                                         }
                                         return ResponseEntity.ok(historyData);
                                 })
-                                .onErrorResume(e -> {
+                                // QuantumLeap không khả dụng: để GlobalExceptionHandler trả 503
+                                .onErrorResume(e -> !(e instanceof UpstreamUnavailableException), e -> {
                                         log.error("Open API: Error fetching air quality {} history for {}: {}",
                                                         attrName,
                                                         district, e.getMessage());
@@ -24,9 +24,12 @@ package org.opensource.smartair.controllers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.*;
-import org.opensource.smartair.services.GeoJsonService;
+import org.opensource.smartair.services.DistrictRegistry;
+import org.opensource.smartair.services.LatencyTrackerService;
 import org.opensource.smartair.services.OrionLdClient;
+import org.opensource.smartair.services.PollutantGridService;
 import org.opensource.smartair.services.SseService;
+import org.opensource.smartair.utils.UpstreamUnavailableException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.opensource.smartair.services.QuantumLeapClient;
@@ -38,6 +41,7 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Controller for SSE (Server-Sent Events) streaming
@@ -53,7 +57,9 @@ public class SseController {
         private final SseService sseService;
         private final QuantumLeapClient quantumLeapClient;
         private final OrionLdClient orionLdClient;
-        private final GeoJsonService geoJsonService;
+        private final DistrictRegistry districtRegistry;
+        private final LatencyTrackerService latencyTracker;
+        private final PollutantGridService pollutantGridService;
 
         /**
          * SSE endpoint for weather updates
@@ -66,8 +72,8 @@ public class SseController {
 
                 log.info("Client connecting to weather SSE stream for district: {}", district);
 
-                return sseService.subscribeWeather(district)
-                                .map(event -> ServerSentEvent.<SseEventDTO<WeatherDataDTO>>builder()
+                return toServerSentEvents(sseService.subscribeWeather(district),
+                                event -> ServerSentEvent.<SseEventDTO<WeatherDataDTO>>builder()
                                                 .id(String.valueOf(System.currentTimeMillis()))
                                                 .event("weather.update")
                                                 .data(event)
@@ -86,8 +92,8 @@ public class SseController {
 
                 log.info("Client connecting to air quality SSE stream for district: {}", district);
 
-                return sseService.subscribeAirQuality(district)
-                                .map(event -> ServerSentEvent.<SseEventDTO<AirQualityDataDTO>>builder()
+                return toServerSentEvents(sseService.subscribeAirQuality(district),
+                                event -> ServerSentEvent.<SseEventDTO<AirQualityDataDTO>>builder()
                                                 .id(String.valueOf(System.currentTimeMillis()))
                                                 .event("airquality.update")
                                                 .data(event)
@@ -114,8 +120,8 @@ public class SseController {
         public Flux<ServerSentEvent<SseEventDTO<AirQualityDataDTO>>> streamAirQualityAlerts() {
                 log.info("Client connecting to GLOBAL air quality alerts stream");
 
-                return sseService.subscribeAirQualityAlerts()
-                                .map(event -> ServerSentEvent.<SseEventDTO<AirQualityDataDTO>>builder()
+                return toServerSentEvents(sseService.subscribeAirQualityAlerts(),
+                                event -> ServerSentEvent.<SseEventDTO<AirQualityDataDTO>>builder()
                                                 .id(String.valueOf(System.currentTimeMillis()))
                                                 .event("airquality.alert")
                                                 .data(event)
@@ -129,7 +135,7 @@ public class SseController {
                 log.info("Client subscribed to aggregated air quality history stream");
 
                 // Get all districts from GeoJSON
-                List<String> allDistricts = geoJsonService.getAllDistricts();
+                List<String> allDistricts = districtRegistry.slugs();
                 log.info("📊 Fetching history for {} districts", allDistricts.size());
 
                 // Fetch initial aggregated data from QuantumLeap
@@ -161,7 +167,7 @@ public class SseController {
         public Flux<ServerSentEvent<Map<String, Object>>> streamAggregatedWeatherHistory() {
                 log.info("Client subscribed to aggregated weather history stream");
 
-                List<String> allDistricts = geoJsonService.getAllDistricts();
+                List<String> allDistricts = districtRegistry.slugs();
                 log.info("📊 Fetching weather history for {} districts", allDistricts.size());
 
                 // Step 1: Send initial data
@@ -242,15 +248,17 @@ public class SseController {
 
                 log.info("Client connecting to combined district SSE stream: {}", district);
 
-                Flux<ServerSentEvent<Map<String, Object>>> weatherStream = sseService.subscribeWeather(district)
-                                .map(event -> ServerSentEvent.<Map<String, Object>>builder()
+                Flux<ServerSentEvent<Map<String, Object>>> weatherStream = toServerSentEvents(
+                                sseService.subscribeWeather(district),
+                                event -> ServerSentEvent.<Map<String, Object>>builder()
                                                 .id(String.valueOf(System.currentTimeMillis()))
                                                 .event("weather.update")
                                                 .data(Map.of("type", "weather", "data", event))
                                                 .build());
 
-                Flux<ServerSentEvent<Map<String, Object>>> airQualityStream = sseService.subscribeAirQuality(district)
-                                .map(event -> ServerSentEvent.<Map<String, Object>>builder()
+                Flux<ServerSentEvent<Map<String, Object>>> airQualityStream = toServerSentEvents(
+                                sseService.subscribeAirQuality(district),
+                                event -> ServerSentEvent.<Map<String, Object>>builder()
                                                 .id(String.valueOf(System.currentTimeMillis()))
                                                 .event("airquality.update")
                                                 .data(Map.of("type", "airquality", "data", event))
@@ -279,7 +287,13 @@ public class SseController {
                                                 .build())
                                 .flux()
                                 .doOnNext(event -> log.info("Sending initial weather history for district: {}",
-                                                district));
+                                                district))
+                                // QuantumLeap không khả dụng: bỏ bản initial, vẫn giữ stream live update
+                                .onErrorResume(UpstreamUnavailableException.class, e -> {
+                                        log.warn("Skipping initial weather history for district {}: {}", district,
+                                                        e.getMessage());
+                                        return Flux.empty();
+                                });
 
                 // Subscribe to live updates
                 Flux<ServerSentEvent<Map<String, Object>>> liveUpdates = sseService.subscribeWeatherHistory(district)
@@ -313,7 +327,13 @@ public class SseController {
                                                 .build())
                                 .flux()
                                 .doOnNext(event -> log.info("Sending initial air quality history for district: {}",
-                                                district));
+                                                district))
+                                // QuantumLeap không khả dụng: bỏ bản initial, vẫn giữ stream live update
+                                .onErrorResume(UpstreamUnavailableException.class, e -> {
+                                        log.warn("Skipping initial air quality history for district {}: {}", district,
+                                                        e.getMessage());
+                                        return Flux.empty();
+                                });
 
                 // Subscribe to live updates
                 Flux<ServerSentEvent<Map<String, Object>>> liveUpdates = sseService.subscribeAirQualityHistory(district)
@@ -393,6 +413,47 @@ public class SseController {
                                 .concatWith(keepAlive());
         }
 
+        /**
+         * SSE endpoint for interpolated pollutant grid updates
+         * URL: GET /api/sse/grid/{pollutant} (aqi, pm2_5, pm10, no2, o3, co, so2)
+         * Event đầu "grid.meta" (GridMetaDTO), sau đó "grid.patch" (GridPatchDTO) mỗi khi một trạm đổi giá trị.
+         * Client tải /api/geo/grid/{pollutant} rồi áp các patch có version lớn hơn;
+         * patch bị nhảy version (drop khi client chậm) → tải lại toàn bộ grid
+         */
+        @GetMapping(value = "/grid/{pollutant}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        public Flux<ServerSentEvent<Object>> streamGrid(@PathVariable String pollutant) {
+                GridPollutant gridPollutant = GridPollutant.fromName(pollutant);
+                log.info("Client connecting to grid SSE stream for {}", gridPollutant.getName());
+
+                Flux<ServerSentEvent<Object>> meta = Flux.just(ServerSentEvent.<Object>builder()
+                                .id(String.valueOf(System.currentTimeMillis()))
+                                .event("grid.meta")
+                                .data(pollutantGridService.getMeta(gridPollutant))
+                                .build());
+
+                Flux<ServerSentEvent<Object>> patches = pollutantGridService.subscribePatches(gridPollutant)
+                                .map(patch -> ServerSentEvent.<Object>builder()
+                                                .id(String.valueOf(patch.getVersion()))
+                                                .event("grid.patch")
+                                                .data(patch)
+                                                .build());
+
+                return Flux.concat(meta, patches)
+                                .concatWith(keepAlive());
+        }
+
+        /**
+         * Mốc 4 (LatencyTrackerService.markWritten) đóng SAU khi ServerSentEvent đã được dựng và đẩy xuống
+         * downstream (writer của HTTP response), thay vì trước bước map
+         */
+        private <E extends SseEventDTO<?>, T> Flux<ServerSentEvent<T>> toServerSentEvents(Flux<E> events,
+                        Function<E, ServerSentEvent<T>> mapper) {
+                return events.handle((event, sink) -> {
+                        sink.next(mapper.apply(event));
+                        latencyTracker.markWritten(event.getTrace());
+                });
+        }
+
         /**
          * Keep-alive mechanism to prevent connection timeout
          * Sends a comment every 30 seconds
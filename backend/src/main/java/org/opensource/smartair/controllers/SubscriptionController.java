@@ -44,24 +44,29 @@ public class SubscriptionController {
     private final OrionSubscriptionService subscriptionService;
 
     /**
-     * Create all subscriptions manually
+     * Reconcile subscriptions manually (tạo thiếu / tạo lại lệch spec / xóa thừa)
      * POST /api/subscriptions/create
      */
     @PostMapping("/create")
-    public Mono<ResponseEntity<Map<String, String>>> createAllSubscriptions() {
-        log.info("Manual subscription creation triggered");
+    public Mono<ResponseEntity<Map<String, Object>>> createAllSubscriptions() {
+        log.info("Manual subscription reconcile triggered");
 
-        return subscriptionService.createWeatherSubscription()
-                .then(subscriptionService.createAirQualitySubscription())
-                .then(subscriptionService.createPlatformSubscription())
-                .then(subscriptionService.createDeviceSubscription())
-                .then(Mono.just(ResponseEntity.ok(Map.of(
-                        "status", "success",
-                        "message", "All subscriptions created"))))
+        return subscriptionService.reconcile()
+                // Một phần thao tác bị Orion-LD từ chối: 502, số liệu chỉ tính thao tác thành công
+                .map(result -> ResponseEntity.status(result.failed() > 0 ? 502 : 200).body(Map.<String, Object>of(
+                        "status", result.failed() > 0 ? "partial" : "success",
+                        "created", result.created(),
+                        "updated", result.updated(),
+                        "deleted", result.deleted(),
+                        "unchanged", result.unchanged(),
+                        "failed", result.failed())))
+                .switchIfEmpty(Mono.just(ResponseEntity.status(409).body(Map.of(
+                        "status", "busy",
+                        "message", "Subscription reconcile already in progress"))))
                 .onErrorResume(e -> {
-                    log.error("Error creating subscriptions", e);
+                    log.error("Error reconciling subscriptions", e);
                     return Mono.just(ResponseEntity.internalServerError()
-                            .body(Map.of("status", "error", "message", e.getMessage())));
+                            .body(Map.of("status", "error", "message", String.valueOf(e.getMessage()))));
                 });
     }
 
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.dtos;
+
+/**
+ * Định dạng geometry phường/xã của /api/geo/districts?zoom=&format=
+ */
+public enum GeometryFormat {
+    GEOJSON("geojson", "application/geo+json"),
+    TOPOJSON("topojson", "application/json");
+
+    private final String name;
+    private final String contentType;
+
+    GeometryFormat(String name, String contentType) {
+        this.name = name;
+        this.contentType = contentType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static GeometryFormat fromName(String name) {
+        for (GeometryFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown geometry format: " + name);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Mô tả grid nội suy của một pollutant
+ * Cell (row, col) có tâm tại (minLat + (row + 0.5) * cellLat, minLon + (col + 0.5) * cellLon);
+ * row 0 là hàng phía nam. Dữ liệu: float32 little-endian, row-major, NaN = không có trạm trong bán kính
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GridMetaDTO {
+    private String pollutant;
+    private long version;
+    private int rows;
+    private int cols;
+    private double minLat;
+    private double minLon;
+    private double cellLat;
+    private double cellLon;
+    private double radiusMeters;
+    private double power;
+    private int stations;
+}
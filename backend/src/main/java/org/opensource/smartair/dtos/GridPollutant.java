@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.dtos;
+
+import java.util.function.Function;
+
+/**
+ * Các trường của AirQualityDataDTO được nội suy thành grid (tên dùng trong URL /api/geo/grid/{name})
+ */
+public enum GridPollutant {
+    AQI("aqi", data -> data.getAirQualityIndex() != null ? data.getAirQualityIndex().doubleValue() : null),
+    PM2_5("pm2_5", AirQualityDataDTO::getPm2_5),
+    PM10("pm10", AirQualityDataDTO::getPm10),
+    NO2("no2", AirQualityDataDTO::getNo2),
+    O3("o3", AirQualityDataDTO::getO3),
+    CO("co", AirQualityDataDTO::getCo),
+    SO2("so2", AirQualityDataDTO::getSo2);
+
+    private final String name;
+    private final Function<AirQualityDataDTO, Double> extractor;
+
+    GridPollutant(String name, Function<AirQualityDataDTO, Double> extractor) {
+        this.name = name;
+        this.extractor = extractor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Giá trị của pollutant trong bản tin (null nếu trạm không đo)
+     */
+    public Double extract(AirQualityDataDTO data) {
+        return extractor.apply(data);
+    }
+
+    public static GridPollutant fromName(String name) {
+        for (GridPollutant pollutant : values()) {
+            if (pollutant.name.equalsIgnoreCase(name)) {
+                return pollutant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown pollutant: " + name);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.opensource.smartair.models.UserRole;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng của query login (users LEFT JOIN residents LEFT JOIN resident_stations)
+ * Mỗi district đã subscribe là một dòng; ADMIN / resident chưa subscribe có 1 dòng với district = null
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginAccountDTO {
+    private Long userId;
+    private String email;
+    private String passwordHash;
+    private String fullName;
+    private UserRole role;
+    private Long residentId;
+    private Boolean isVerified;
+    private LocalDateTime residentCreatedAt;
+    private LocalDateTime residentUpdatedAt;
+    private String district;
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.opensource.smartair.utils.PipelineTrace;
+
+/**
+ * Message trên SseEventBus: dữ liệu đã transform, mỗi replica tự fan-out
+ * tới SSE subscribers cục bộ
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SseBusMessage {
+    private SseTopic topic;
+    private String key; // district / platformId / deviceId (null với topic global)
+    private Object payload; // Kiểu theo topic.getPayloadType()
+    private String origin; // Instance id của replica publish
+
+    @JsonIgnore
+    private PipelineTrace trace; // Chỉ có ở replica nhận notification
+}
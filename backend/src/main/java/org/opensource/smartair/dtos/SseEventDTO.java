@@ -21,10 +21,12 @@
  */
 package org.opensource.smartair.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.opensource.smartair.utils.PipelineTrace;
 
 /**
  * Generic SSE Event wrapper
@@ -38,4 +40,7 @@ public class SseEventDTO<T> {
     private String district; // Extracted from entity ID
     private String timestamp;
     private T data; // WeatherDataDTO, AirQualityDataDTO, PlatformDataDTO, or DeviceDataDTO
+
+    @JsonIgnore
+    private PipelineTrace trace; // Latency stamps (server-side only, not serialized)
 }
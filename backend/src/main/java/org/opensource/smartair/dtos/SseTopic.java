@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.dtos;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.Map;
+
+/**
+ * Các topic SSE được phân phối qua SseEventBus
+ * payloadType dùng để deserialize payload khi message đến từ replica khác
+ */
+public enum SseTopic {
+    WEATHER("weather", new TypeReference<WeatherDataDTO>() {
+    }),
+    AIR_QUALITY("airquality", new TypeReference<AirQualityDataDTO>() {
+    }),
+    PLATFORM("platform", new TypeReference<PlatformDataDTO>() {
+    }),
+    DEVICE("device", new TypeReference<DeviceDataDTO>() {
+    }),
+    WEATHER_HISTORY("weather-history", new TypeReference<Map<String, Object>>() {
+    }),
+    AIR_QUALITY_HISTORY("airquality-history", new TypeReference<Map<String, Object>>() {
+    }),
+    AGGREGATED_WEATHER_HISTORY("aggregated-weather-history", new TypeReference<Map<String, Object>>() {
+    }),
+    AGGREGATED_AIR_QUALITY_HISTORY("aggregated-airquality-history", new TypeReference<Map<String, Object>>() {
+    }),
+    ALL_ENVIRONMENT("all-environment", new TypeReference<Map<String, AirQualityDataDTO>>() {
+    });
+
+    private final String name;
+    private final TypeReference<?> payloadType;
+
+    SseTopic(String name, TypeReference<?> payloadType) {
+        this.name = name;
+        this.payloadType = payloadType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TypeReference<?> getPayloadType() {
+        return payloadType;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.models;
+
+/**
+ * Trạng thái của email trong outbox
+ */
+public enum EmailOutboxStatus {
+    /**
+     * Chờ gửi (mới tạo hoặc chờ retry sau nextAttemptAt)
+     */
+    PENDING,
+
+    /**
+     * Đã được một worker claim - nếu process chết giữa chừng,
+     * email được claim lại sau khi lease (nextAttemptAt) hết hạn
+     */
+    SENDING,
+
+    /**
+     * SMTP server đã nhận
+     */
+    SENT,
+
+    /**
+     * Hết số lần retry
+     */
+    FAILED
+}
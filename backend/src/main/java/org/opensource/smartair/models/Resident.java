@@ -37,7 +37,9 @@ import java.util.List;
  * CHỈ dành cho users có role = RESIDENT
  */
 @Entity
-@Table(name = "residents")
+@Table(name = "residents", indexes = {
+        @Index(name = "idx_residents_verified_notification", columnList = "is_verified, notification_enabled")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -36,7 +36,10 @@ import java.util.Objects;
  * Lưu thông tin subscription của cư dân cho các trạm quan trắc
  */
 @Entity
-@Table(name = "resident_stations")
+@Table(name = "resident_stations", indexes = {
+        @Index(name = "idx_resident_stations_district", columnList = "district"),
+        @Index(name = "idx_resident_stations_resident_district", columnList = "resident_id, district")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.repositories;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.opensource.smartair.models.EmailOutbox;
+import org.opensource.smartair.models.EmailOutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository cho EmailOutbox entity
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Email đến hạn gửi: PENDING đã qua backoff, hoặc SENDING đã hết lease (worker chết)
+     * FOR UPDATE SKIP LOCKED (lock.timeout = -2) để nhiều instance claim song song không trùng
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM EmailOutbox e " +
+            "WHERE e.status IN :statuses AND e.nextAttemptAt <= :now " +
+            "ORDER BY e.nextAttemptAt, e.id")
+    List<EmailOutbox> findDueForUpdate(@Param("statuses") Collection<EmailOutboxStatus> statuses,
+            @Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claim batch cho worker: SENDING với lease đến leaseUntil
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = org.opensource.smartair.models.EmailOutboxStatus.SENDING, " +
+            "e.nextAttemptAt = :leaseUntil WHERE e.id IN :ids")
+    int markSending(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Đánh dấu đã gửi cho cả batch bằng 1 câu UPDATE
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = org.opensource.smartair.models.EmailOutboxStatus.SENT, " +
+            "e.sentAt = :sentAt, e.lastError = null WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Số email theo trạng thái (gauge email.outbox.size)
+     */
+    long countByStatus(EmailOutboxStatus status);
+
+    /**
+     * Dọn email đã gửi quá thời gian lưu trữ
+     */
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.status = org.opensource.smartair.models.EmailOutboxStatus.SENT " +
+            "AND e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
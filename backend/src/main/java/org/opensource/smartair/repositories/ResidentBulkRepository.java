@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.models.UserRole;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bulk insert users / residents / resident_stations bằng JDBC batch
+ * Các bảng dùng IDENTITY nên Hibernate không batch INSERT; JdbcTemplate.batchUpdate gửi theo lô
+ * (MySQL + rewriteBatchedStatements=true: mỗi lô thành một INSERT nhiều dòng)
+ * Id sinh ra được đọc lại theo unique key (users.email, residents.user_id)
+ */
+@Slf4j
+@Repository
+public class ResidentBulkRepository {
+
+    private static final String INSERT_USER = "INSERT INTO users (full_name, email, password, role, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RESIDENT = "INSERT INTO residents (user_id, is_verified, notification_enabled, "
+            + "created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_STATION = "INSERT INTO resident_stations (resident_id, district, subscribed_at) "
+            + "VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Value("${resident.bulk.batch-size:500}")
+    private int batchSize;
+
+    public ResidentBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * User mới cần insert (password đã hash)
+     */
+    public record NewUser(String fullName, String email, String passwordHash, UserRole role) {
+    }
+
+    /**
+     * Resident mới cần insert cho một user đã có id
+     */
+    public record NewResident(Long userId, boolean verified, boolean notificationEnabled) {
+    }
+
+    /**
+     * Insert subscriptions của một resident trong các lô batchSize dòng
+     *
+     * @return số dòng đã insert
+     */
+    public int insertStations(Long residentId, Collection<String> districts) {
+        return insertStations(Map.of(residentId, districts));
+    }
+
+    /**
+     * Insert subscriptions của nhiều residents (residentId → districts)
+     */
+    public int insertStations(Map<Long, ? extends Collection<String>> districtsByResident) {
+        List<Object[]> rows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        districtsByResident.forEach((residentId, districts) -> {
+            for (String district : districts) {
+                rows.add(new Object[] { residentId, district, now });
+            }
+        });
+        return batchInsert(INSERT_STATION, rows);
+    }
+
+    /**
+     * Insert users theo lô
+     *
+     * @return email (lower-case) → user id
+     */
+    public Map<String, Long> insertUsers(List<NewUser> users) {
+        List<Object[]> rows = new ArrayList<>(users.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (NewUser user : users) {
+            rows.add(new Object[] { user.fullName(), user.email(), user.passwordHash(), user.role().name(), now, now });
+        }
+        batchInsert(INSERT_USER, rows);
+
+        Map<String, Long> ids = new HashMap<>(users.size() * 2);
+        for (List<String> chunk : chunks(users.stream().map(NewUser::email).toList())) {
+            namedJdbcTemplate.query("SELECT id, email FROM users WHERE email IN (:emails)",
+                    new MapSqlParameterSource("emails", chunk),
+                    rs -> {
+                        ids.put(rs.getString("email").toLowerCase(Locale.ROOT), rs.getLong("id"));
+                    });
+        }
+        return ids;
+    }
+
+    /**
+     * Insert residents theo lô
+     *
+     * @return user id → resident id
+     */
+    public Map<Long, Long> insertResidents(List<NewResident> residents) {
+        List<Object[]> rows = new ArrayList<>(residents.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (NewResident resident : residents) {
+            rows.add(new Object[] { resident.userId(), resident.verified(), resident.notificationEnabled(), now, now });
+        }
+        batchInsert(INSERT_RESIDENT, rows);
+
+        Map<Long, Long> ids = new HashMap<>(residents.size() * 2);
+        for (List<Long> chunk : chunks(residents.stream().map(NewResident::userId).toList())) {
+            namedJdbcTemplate.query("SELECT id, user_id FROM residents WHERE user_id IN (:userIds)",
+                    new MapSqlParameterSource("userIds", chunk),
+                    rs -> {
+                        ids.put(rs.getLong("user_id"), rs.getLong("id"));
+                    });
+        }
+        return ids;
+    }
+
+    /**
+     * Các email (lower-case) trong danh sách đã có tài khoản
+     */
+    public List<String> findExistingEmails(Collection<String> emails) {
+        List<String> existing = new ArrayList<>();
+        for (List<String> chunk : chunks(List.copyOf(emails))) {
+            existing.addAll(namedJdbcTemplate.queryForList("SELECT LOWER(email) FROM users WHERE email IN (:emails)",
+                    new MapSqlParameterSource("emails", chunk), String.class));
+        }
+        return existing;
+    }
+
+    private int batchInsert(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int inserted = 0;
+        for (List<Object[]> chunk : chunks(rows)) {
+            jdbcTemplate.batchUpdate(sql, chunk);
+            inserted += chunk.size();
+        }
+        log.debug("Batch inserted {} rows in {}ms: {}", inserted, (System.nanoTime() - start) / 1_000_000, sql);
+        return inserted;
+    }
+
+    private <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += batchSize) {
+            chunks.add(items.subList(i, Math.min(items.size(), i + batchSize)));
+        }
+        return chunks;
+    }
+}
@@ -22,8 +22,10 @@
 package org.opensource.smartair.repositories;
 
 import org.opensource.smartair.models.Resident;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -46,13 +48,21 @@ public interface ResidentRepository extends JpaRepository<Resident, Long> {
     boolean existsByUserId(Long userId);
 
     /**
-     * Tìm tất cả residents đã verified và bật notification
-     * Eager fetch User và Stations để tránh N+1 queries và
-     * LazyInitializationException trong @Async
+     * Keyset page: residents có id > afterId theo thứ tự id (range scan trên PRIMARY KEY, không OFFSET)
      */
-    @Query("SELECT DISTINCT r FROM Resident r " +
-            "JOIN FETCH r.user u " +
-            "LEFT JOIN FETCH r.stations s " +
-            "WHERE r.isVerified = true AND r.notificationEnabled = true")
-    List<Resident> findVerifiedResidentsWithNotificationEnabled();
+    @Query("SELECT r FROM Resident r JOIN FETCH r.user WHERE r.id > :afterId ORDER BY r.id")
+    List<Resident> findPageAfter(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Keyset page lọc theo district đã subscribe
+     */
+    @Query("SELECT r FROM Resident r JOIN FETCH r.user WHERE r.id > :afterId AND EXISTS " +
+            "(SELECT 1 FROM ResidentStation s WHERE s.resident = r AND s.district = :district) ORDER BY r.id")
+    List<Resident> findPageAfterByDistrict(@Param("afterId") Long afterId, @Param("district") String district,
+            Limit limit);
+
+    /**
+     * Số residents đang nhận cảnh báo (idx_residents_verified_notification)
+     */
+    long countByIsVerifiedTrueAndNotificationEnabledTrue();
 }
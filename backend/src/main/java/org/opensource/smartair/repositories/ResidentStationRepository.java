@@ -21,10 +21,17 @@
  */
 package org.opensource.smartair.repositories;
 
+import org.opensource.smartair.dtos.AlertRecipientDTO;
+import org.opensource.smartair.dtos.DistrictSubscriberCountDTO;
+import org.opensource.smartair.dtos.ResidentDistrictDTO;
 import org.opensource.smartair.models.ResidentStation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -43,4 +50,57 @@ public interface ResidentStationRepository extends JpaRepository<ResidentStation
      * Xóa tất cả subscriptions của một resident
      */
     void deleteByResidentId(Long residentId);
+
+    /**
+     * Các district đã subscribe của resident (không load entity)
+     */
+    @Query("SELECT s.district FROM ResidentStation s WHERE s.resident.id = :residentId")
+    List<String> findDistrictsByResidentId(@Param("residentId") Long residentId);
+
+    /**
+     * Xóa các subscriptions bị bỏ của resident trong 1 câu DELETE
+     */
+    @Modifying
+    @Query("DELETE FROM ResidentStation s WHERE s.resident.id = :residentId AND s.district IN :districts")
+    int deleteByResidentIdAndDistrictIn(@Param("residentId") Long residentId,
+            @Param("districts") Collection<String> districts);
+
+    /**
+     * Người nhận cảnh báo của một district (dùng index idx_resident_stations_district)
+     */
+    @Query("SELECT new org.opensource.smartair.dtos.AlertRecipientDTO(r.id, s.district, u.email, u.fullName) " +
+            "FROM ResidentStation s JOIN s.resident r JOIN r.user u " +
+            "WHERE s.district = :district AND r.isVerified = true AND r.notificationEnabled = true")
+    List<AlertRecipientDTO> findAlertRecipientsByDistrict(@Param("district") String district);
+
+    /**
+     * Tất cả cặp (district, người nhận) - dùng để build SubscriberIndexService lúc startup
+     */
+    @Query("SELECT new org.opensource.smartair.dtos.AlertRecipientDTO(r.id, s.district, u.email, u.fullName) " +
+            "FROM ResidentStation s JOIN s.resident r JOIN r.user u " +
+            "WHERE r.isVerified = true AND r.notificationEnabled = true")
+    List<AlertRecipientDTO> findAllAlertRecipients();
+
+    /**
+     * Các district mà một resident nhận cảnh báo (rỗng nếu chưa verify hoặc tắt notification)
+     */
+    @Query("SELECT new org.opensource.smartair.dtos.AlertRecipientDTO(r.id, s.district, u.email, u.fullName) " +
+            "FROM ResidentStation s JOIN s.resident r JOIN r.user u " +
+            "WHERE r.id = :residentId AND r.isVerified = true AND r.notificationEnabled = true")
+    List<AlertRecipientDTO> findAlertRecipientsByResidentId(@Param("residentId") Long residentId);
+
+    /**
+     * Districts của một nhóm residents (dùng cho trang admin, tránh N+1)
+     */
+    @Query("SELECT new org.opensource.smartair.dtos.ResidentDistrictDTO(s.resident.id, s.district) " +
+            "FROM ResidentStation s WHERE s.resident.id IN :residentIds")
+    List<ResidentDistrictDTO> findDistrictsByResidentIds(@Param("residentIds") Collection<Long> residentIds);
+
+    /**
+     * Số subscriber theo district, tính bằng GROUP BY trong DB
+     */
+    @Query("SELECT new org.opensource.smartair.dtos.DistrictSubscriberCountDTO(s.district, COUNT(s), " +
+            "SUM(CASE WHEN r.isVerified = true AND r.notificationEnabled = true THEN 1L ELSE 0L END)) " +
+            "FROM ResidentStation s JOIN s.resident r GROUP BY s.district ORDER BY COUNT(s) DESC, s.district")
+    List<DistrictSubscriberCountDTO> countSubscribersByDistrict();
 }
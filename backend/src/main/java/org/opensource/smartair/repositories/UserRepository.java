@@ -21,10 +21,16 @@
  */
 package org.opensource.smartair.repositories;
 
+import org.opensource.smartair.dtos.LoginAccountDTO;
 import org.opensource.smartair.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -43,4 +49,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * Kiểm tra email đã tồn tại chưa (dùng cho registration validation)
      */
     boolean existsByEmail(String email);
+
+    /**
+     * Login trong 1 query: user + resident profile + subscribed districts
+     * Rỗng nếu email không tồn tại
+     */
+    @Query("SELECT new org.opensource.smartair.dtos.LoginAccountDTO(u.id, u.email, u.password, u.fullName, u.role, " +
+            "r.id, r.isVerified, r.createdAt, r.updatedAt, s.district) " +
+            "FROM User u LEFT JOIN Resident r ON r.user = u LEFT JOIN r.stations s " +
+            "WHERE u.email = :email")
+    List<LoginAccountDTO> findLoginAccount(@Param("email") String email);
+
+    /**
+     * Cập nhật password hash (rehash khi tăng BCrypt strength)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
 }
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import java.time.Duration;
+
+/**
+ * Lưu trạng thái throttle của cảnh báo AQI (district + level)
+ * - memory: trong process (mặc định, 1 replica)
+ * - redis: dùng chung giữa các replica, SET NX PX (notification.throttle.store=redis)
+ */
+public interface AlertThrottleStore {
+
+    /**
+     * Check-and-set nguyên tử: true nếu caller được quyền gửi cảnh báo
+     * (chưa có cảnh báo nào cho key trong window), đồng thời mở window mới
+     */
+    boolean tryAcquire(String district, String level, Duration window);
+
+    /**
+     * Hủy window vừa mở (gửi cảnh báo thất bại) để lần sau được gửi lại
+     */
+    void release(String district, String level);
+}
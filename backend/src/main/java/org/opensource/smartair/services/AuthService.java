@@ -21,31 +21,37 @@
  */
 package org.opensource.smartair.services;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.AuthResponseDTO;
 import org.opensource.smartair.dtos.CreateResidentDTO;
+import org.opensource.smartair.dtos.LoginAccountDTO;
 import org.opensource.smartair.dtos.LoginRequestDTO;
+import org.opensource.smartair.dtos.ResidentSubscriptionChangedEvent;
 import org.opensource.smartair.models.Resident;
-import org.opensource.smartair.models.ResidentStation;
 import org.opensource.smartair.models.User;
 import org.opensource.smartair.models.UserRole;
 import org.opensource.smartair.repositories.ResidentRepository;
-import org.opensource.smartair.repositories.ResidentStationRepository;
+import org.opensource.smartair.repositories.ResidentBulkRepository;
 import org.opensource.smartair.repositories.UserRepository;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * Service xử lý Authentication & Authorization (Blocking JPA)
  * - Register (tạo User + Resident)
- * - Login (validate credentials, generate JWT)
+ * - Login (rate limit, validate credentials trong 1 query, generate JWT)
  */
 @Service
 @RequiredArgsConstructor
@@ -54,17 +60,28 @@ public class AuthService {
 
         private final UserRepository userRepository;
         private final ResidentRepository residentRepository;
-        private final ResidentStationRepository residentStationRepository;
+        private final ResidentBulkRepository residentBulkRepository;
         private final PasswordEncoder passwordEncoder;
         private final JwtService jwtService;
-        private final AuthenticationManager authenticationManager;
+        private final LoginRateLimiter loginRateLimiter;
+        private final ApplicationEventPublisher eventPublisher;
+
+        /**
+         * Hash giả (cùng strength) dùng khi email không tồn tại, tạo 1 lần lúc startup
+         */
+        private String dummyPasswordHash;
+
+        @PostConstruct
+        void initDummyPasswordHash() {
+                dummyPasswordHash = passwordEncoder.encode(UUID.randomUUID().toString());
+        }
 
         /**
          * Register new resident (BLOCKING)
          * 1. Check email đã tồn tại chưa
          * 2. Create User (role = RESIDENT)
          * 3. Create Resident (link với User qua @OneToOne)
-         * 4. Subscribe districts nếu có (save to ResidentStation)
+         * 4. Subscribe districts nếu có (batch insert vào resident_stations)
          * 5. Generate JWT token
          */
         @Transactional
@@ -99,17 +116,14 @@ public class AuthService {
                 // 4. Subscribe districts nếu có
                 Set<String> districts = Set.of();
                 if (resident.getNotificationEnabled() && dto.getDistricts() != null && !dto.getDistricts().isEmpty()) {
-                        for (String districtName : dto.getDistricts()) {
-                                ResidentStation station = ResidentStation.builder()
-                                                .resident(resident)
-                                                .district(districtName)
-                                                .build();
-                                residentStationRepository.save(station);
-                        }
-                        districts = Set.copyOf(dto.getDistricts());
+                        districts = new LinkedHashSet<>(dto.getDistricts());
+                        residentBulkRepository.insertStations(resident.getId(), districts);
                         log.info("Subscribed to {} districts", districts.size());
                 }
 
+                // Cập nhật subscriber index sau khi commit
+                eventPublisher.publishEvent(new ResidentSubscriptionChangedEvent(resident.getId()));
+
                 // 5. Generate JWT
                 String token = jwtService.generateToken(user);
                 return AuthResponseDTO.builder()
@@ -128,27 +142,43 @@ public class AuthService {
 
         /**
          * Login existing user (BLOCKING)
-         * 1. Authenticate với Spring Security
-         * 2. Load User từ database
-         * 3. Generate JWT token
-         * 4. Load Resident profile + subscribed districts nếu là RESIDENT
+         * 1. Rate limit theo email + IP (trước BCrypt)
+         * 2. Load User + Resident + subscribed districts trong 1 query
+         * 3. Verify password (BCrypt), rehash nếu hash cũ yếu hơn security.bcrypt.strength
+         * 4. Generate JWT token
          * 5. Return user info + token
          */
-        public AuthResponseDTO login(LoginRequestDTO dto) {
+        public AuthResponseDTO login(LoginRequestDTO dto, String clientIp) {
                 log.info("Login attempt for email: {}", dto.getEmail());
 
-                // 1. Authenticate
-                authenticationManager.authenticate(
-                                new UsernamePasswordAuthenticationToken(dto.getEmail(), dto.getPassword()));
+                // 1. Rate limit
+                loginRateLimiter.acquire(dto.getEmail(), clientIp);
+
+                // 2. Load user + resident + districts
+                List<LoginAccountDTO> rows = userRepository.findLoginAccount(dto.getEmail());
 
-                // 2. Load user
-                User user = userRepository.findByEmail(dto.getEmail())
-                                .orElseThrow(() -> new RuntimeException("User not found"));
+                // 3. Verify password
+                if (rows.isEmpty()) {
+                        // Email không tồn tại: vẫn chạy BCrypt để thời gian phản hồi không lộ email nào có tài khoản
+                        passwordEncoder.matches(dto.getPassword(), dummyPasswordHash);
+                        throw new BadCredentialsException("Bad credentials");
+                }
+                LoginAccountDTO account = rows.get(0);
+                if (!passwordEncoder.matches(dto.getPassword(), account.getPasswordHash())) {
+                        throw new BadCredentialsException("Bad credentials");
+                }
+                upgradePasswordHashIfNeeded(account, dto.getPassword());
 
-                // 3. Generate JWT
+                // 4. Generate JWT
+                User user = User.builder()
+                                .id(account.getUserId())
+                                .email(account.getEmail())
+                                .fullName(account.getFullName())
+                                .role(account.getRole())
+                                .build();
                 String token = jwtService.generateToken(user);
 
-                // 4. Build response
+                // 5. Build response
                 AuthResponseDTO.AuthResponseDTOBuilder responseBuilder = AuthResponseDTO.builder()
                                 .token(token)
                                 .type("Bearer")
@@ -157,22 +187,21 @@ public class AuthService {
                                 .fullName(user.getFullName())
                                 .role(user.getRole());
 
-                // 5. Load Resident info nếu là RESIDENT
                 if (user.isResident()) {
-                        Resident resident = residentRepository.findByUserId(user.getId())
-                                        .orElseThrow(() -> new RuntimeException("Resident profile not found"));
+                        if (account.getResidentId() == null) {
+                                throw new RuntimeException("Resident profile not found");
+                        }
 
-                        // Load subscribed districts
-                        Set<String> districts = residentStationRepository.findByResidentId(resident.getId())
-                                        .stream()
-                                        .map(ResidentStation::getDistrict)
+                        Set<String> districts = rows.stream()
+                                        .map(LoginAccountDTO::getDistrict)
+                                        .filter(Objects::nonNull)
                                         .collect(Collectors.toSet());
 
                         responseBuilder
-                                        .isVerified(resident.getIsVerified())
+                                        .isVerified(account.getIsVerified())
                                         .subscribedDistricts(districts)
-                                        .createdAt(resident.getCreatedAt())
-                                        .updatedAt(resident.getUpdatedAt());
+                                        .createdAt(account.getResidentCreatedAt())
+                                        .updatedAt(account.getResidentUpdatedAt());
                 } else {
                         // ADMIN không có resident profile
                         responseBuilder
@@ -183,4 +212,21 @@ public class AuthService {
                 log.info("Login successful for user: {}", dto.getEmail());
                 return responseBuilder.build();
         }
+
+        /**
+         * Hash tạo với BCrypt strength thấp hơn cấu hình hiện tại -> rehash bằng password vừa verify
+         * Lỗi khi rehash không làm hỏng login (lần sau thử lại)
+         */
+        private void upgradePasswordHashIfNeeded(LoginAccountDTO account, String rawPassword) {
+                if (!passwordEncoder.upgradeEncoding(account.getPasswordHash())) {
+                        return;
+                }
+                try {
+                        userRepository.updatePassword(account.getUserId(), passwordEncoder.encode(rawPassword));
+                        log.info("Upgraded password hash for user {}", account.getUserId());
+                } catch (Exception e) {
+                        log.warn("Failed to upgrade password hash for user {}: {}", account.getUserId(),
+                                        e.getMessage());
+                }
+        }
 }
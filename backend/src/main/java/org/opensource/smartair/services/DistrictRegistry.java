@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Danh mục phường/xã chuẩn (build một lần từ GeoJSON, immutable sau khi build):
+ * slug backend (PhuongHoanKiem, đã intern), tên hiển thị, index polygon trong
+ * GeoJsonService.getDistrictFeatures() và các entity id NGSI-LD dựng sẵn
+ *
+ * Parser entity id → slug không cấp phát: tìm slug trong id theo vị trí rồi tra bảng băm
+ * open-addressing bằng regionMatches, trả về đúng instance slug của registry
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DistrictRegistry {
+
+    public static final String WEATHER_OBSERVED_PREFIX = "urn:ngsi-ld:WeatherObserved:Hanoi-";
+    public static final String AIR_QUALITY_OBSERVED_PREFIX = "urn:ngsi-ld:AirQualityObserved:Hanoi-";
+    public static final String PLATFORM_PREFIX = "urn:ngsi-ld:Platform:EnvironmentStation-";
+
+    private static final String OBSERVATION_MARKER = "Hanoi-";
+    private static final String SENSOR_MARKER = "Sensor-";
+    private static final String STATION_MARKER = "Station-";
+
+    private final GeoJsonService geoJsonService;
+
+    private volatile Index index = new Index(List.of(), Map.of(), new District[1], 0);
+
+    /**
+     * Một phường/xã; polygonIndex = -1 nếu GeoJSON không có geometry dùng được
+     */
+    public record District(String slug, String name, int polygonIndex,
+            String weatherObservedId, String airQualityObservedId, String platformId) {
+    }
+
+    @PostConstruct
+    public void build() {
+        Map<String, GeoJsonService.DistrictFeature> features = new HashMap<>();
+        Map<String, Integer> polygonIndexes = new HashMap<>();
+        List<GeoJsonService.DistrictFeature> districtFeatures = geoJsonService.getDistrictFeatures();
+        for (int i = 0; i < districtFeatures.size(); i++) {
+            features.put(districtFeatures.get(i).district(), districtFeatures.get(i));
+            polygonIndexes.put(districtFeatures.get(i).district(), i);
+        }
+
+        List<String> slugs = new ArrayList<>();
+        Map<String, District> bySlug = new HashMap<>();
+        for (String rawSlug : geoJsonService.getAllDistricts()) {
+            String slug = rawSlug.intern();
+            if (bySlug.containsKey(slug)) {
+                continue;
+            }
+            GeoJsonService.DistrictFeature feature = features.get(slug);
+            District district = new District(slug,
+                    feature != null ? feature.name() : slug,
+                    polygonIndexes.getOrDefault(slug, -1),
+                    WEATHER_OBSERVED_PREFIX + slug,
+                    AIR_QUALITY_OBSERVED_PREFIX + slug,
+                    PLATFORM_PREFIX + slug);
+            slugs.add(slug);
+            bySlug.put(slug, district);
+        }
+
+        // Load factor <= 0.5 để chuỗi probe ngắn
+        int capacity = Integer.highestOneBit(Math.max(1, slugs.size()) * 4);
+        District[] table = new District[capacity];
+        for (String slug : slugs) {
+            int slot = slug.hashCode() & (capacity - 1);
+            while (table[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = bySlug.get(slug);
+        }
+
+        index = new Index(Collections.unmodifiableList(slugs), Map.copyOf(bySlug), table, capacity - 1);
+        log.info("District registry built: {} districts", slugs.size());
+    }
+
+    /**
+     * Tất cả slug theo thứ tự GeoJSON (immutable, không copy mỗi lần gọi)
+     */
+    public List<String> slugs() {
+        return index.slugs();
+    }
+
+    public District get(String slug) {
+        return slug != null ? index.bySlug().get(slug) : null;
+    }
+
+    public int size() {
+        return index.slugs().size();
+    }
+
+    /**
+     * Entity id WeatherObserved của phường (dựng sẵn, fallback ghép chuỗi nếu slug lạ)
+     */
+    public String weatherObservedId(String slug) {
+        District district = get(slug);
+        return district != null ? district.weatherObservedId() : WEATHER_OBSERVED_PREFIX + slug;
+    }
+
+    public String airQualityObservedId(String slug) {
+        District district = get(slug);
+        return district != null ? district.airQualityObservedId() : AIR_QUALITY_OBSERVED_PREFIX + slug;
+    }
+
+    /**
+     * Slug phường/xã trong entity id NGSI-LD (null nếu id không theo quy ước):
+     * - urn:ngsi-ld:{Type}:Hanoi-{Slug}[-timestamp] (observations)
+     * - urn:ngsi-ld:{Type}:...Sensor-{Slug} (devices), urn:ngsi-ld:{Type}:...Station-{Slug} (platforms)
+     * Slug có trong registry được trả về không cấp phát; slug lạ trả về substring như trước
+     */
+    public String districtFromEntityId(String entityId) {
+        if (entityId == null) {
+            return null;
+        }
+        // Phần thứ 4 của id: sau dấu ':' thứ 3, đến dấu ':' kế tiếp hoặc hết chuỗi
+        int start = 0;
+        for (int colons = 0; colons < 3; colons++) {
+            start = entityId.indexOf(':', start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int end = entityId.indexOf(':', start);
+        if (end < 0) {
+            end = entityId.length();
+        }
+
+        int slugStart;
+        int slugEnd;
+        if (indexOf(entityId, OBSERVATION_MARKER, start, end) >= 0) {
+            // Token thứ hai khi tách theo '-': Hanoi-{Slug}-2025-11-05T...
+            int dash = entityId.indexOf('-', start);
+            slugStart = dash + 1;
+            slugEnd = entityId.indexOf('-', slugStart);
+            if (slugEnd < 0 || slugEnd > end) {
+                slugEnd = end;
+            }
+        } else {
+            int marker = indexOf(entityId, SENSOR_MARKER, start, end);
+            if (marker >= 0) {
+                slugStart = marker + SENSOR_MARKER.length();
+            } else {
+                marker = indexOf(entityId, STATION_MARKER, start, end);
+                if (marker < 0) {
+                    return null;
+                }
+                slugStart = marker + STATION_MARKER.length();
+            }
+            slugEnd = end;
+        }
+
+        if (slugStart >= slugEnd) {
+            return null;
+        }
+        District district = lookup(entityId, slugStart, slugEnd);
+        if (district != null) {
+            return district.slug();
+        }
+        return entityId.substring(slugStart, slugEnd);
+    }
+
+    /**
+     * Phường/xã của entity id, null nếu id không theo quy ước hoặc slug không có trong registry
+     */
+    public District findByEntityId(String entityId) {
+        String slug = districtFromEntityId(entityId);
+        return get(slug);
+    }
+
+    private District lookup(String source, int start, int end) {
+        Index current = index;
+        int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int slot = hash & current.mask();
+        District candidate;
+        while ((candidate = current.table()[slot]) != null) {
+            String slug = candidate.slug();
+            if (slug.length() == length && source.regionMatches(start, slug, 0, length)) {
+                return candidate;
+            }
+            slot = (slot + 1) & current.mask();
+        }
+        return null;
+    }
+
+    /**
+     * indexOf giới hạn trong [from, to) - không tạo substring
+     */
+    private static int indexOf(String source, String marker, int from, int to) {
+        int last = to - marker.length();
+        for (int i = from; i <= last; i++) {
+            if (source.startsWith(marker, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record Index(List<String> slugs, Map<String, District> bySlug, District[] table, int mask) {
+    }
+}
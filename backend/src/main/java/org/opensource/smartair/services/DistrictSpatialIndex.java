@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opensource.smartair.dtos.DistrictLocationDTO;
+import org.opensource.smartair.dtos.NearbyStationDTO;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spatial index trên polygon phường/xã và vị trí trạm quan trắc (load từ GeoJsonService)
+ * - districts: STR-tree theo bounding box, mỗi entry giữ PreparedGeometry để point-in-polygon
+ *   chỉ chạy trên vài polygon ứng viên thay vì scan cả 126
+ * - stations: STR-tree trên điểm trạm đã chiếu equirectangular (lon * cos(lat0)) để k-nearest
+ *   theo khoảng cách Euclid xếp hạng gần đúng như khoảng cách thật trong phạm vi Hà Nội
+ * Cả hai tree được build một lần (immutable) nên query không cần lock
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DistrictSpatialIndex {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final int NODE_CAPACITY = 8;
+
+    private final GeoJsonService geoJsonService;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private volatile Index index = new Index(new STRtree(), new STRtree(), 1.0, 0);
+
+    /**
+     * Build index từ district features (gọi lại được nếu GeoJSON được reload)
+     */
+    @PostConstruct
+    public void build() {
+        List<GeoJsonService.DistrictFeature> features = geoJsonService.getDistrictFeatures();
+        double meanLatitude = features.stream()
+                .mapToDouble(GeoJsonService.DistrictFeature::stationLatitude)
+                .average()
+                .orElse(0);
+        double lonScale = Math.cos(Math.toRadians(meanLatitude));
+
+        STRtree districts = new STRtree(NODE_CAPACITY);
+        STRtree stations = new STRtree(NODE_CAPACITY);
+        for (GeoJsonService.DistrictFeature feature : features) {
+            districts.insert(feature.geometry().getEnvelopeInternal(),
+                    new DistrictEntry(feature, PreparedGeometryFactory.prepare(feature.geometry())));
+
+            StationEntry station = new StationEntry(feature,
+                    feature.stationLongitude() * lonScale, feature.stationLatitude());
+            stations.insert(new Envelope(station.x(), station.x(), station.y(), station.y()), station);
+        }
+        districts.build();
+        stations.build();
+
+        index = new Index(districts, stations, lonScale, features.size());
+        log.info("District spatial index built: {} districts / stations", features.size());
+    }
+
+    /**
+     * Phường/xã chứa điểm (lat, lon); empty nếu điểm nằm ngoài Hà Nội.
+     * Điểm nằm đúng trên ranh giới chung thuộc về polygon được tìm thấy trước
+     */
+    public Optional<DistrictLocationDTO> districtAt(double lat, double lon) {
+        validateCoordinate(lat, lon);
+        Point point = geometryFactory.createPoint(new Coordinate(lon, lat));
+
+        for (Object candidate : index.districts().query(new Envelope(lon, lon, lat, lat))) {
+            DistrictEntry entry = (DistrictEntry) candidate;
+            if (entry.prepared().covers(point)) {
+                return Optional.of(toLocation(entry.feature()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * k trạm gần (lat, lon) nhất, sắp xếp theo khoảng cách tăng dần
+     */
+    public List<NearbyStationDTO> nearestStations(double lat, double lon, int k) {
+        validateCoordinate(lat, lon);
+        Index current = index;
+        int limit = Math.min(k, current.size());
+        if (limit < 1) {
+            return List.of();
+        }
+
+        StationEntry probe = new StationEntry(null, lon * current.lonScale(), lat);
+        Object[] nearest = current.stations().nearestNeighbour(
+                new Envelope(probe.x(), probe.x(), probe.y(), probe.y()), probe,
+                (a, b) -> ((StationEntry) a.getItem()).distance((StationEntry) b.getItem()), limit);
+
+        List<NearbyStationDTO> result = new ArrayList<>(nearest.length);
+        for (Object item : nearest) {
+            GeoJsonService.DistrictFeature feature = ((StationEntry) item).feature();
+            result.add(NearbyStationDTO.builder()
+                    .district(feature.district())
+                    .name(feature.name())
+                    .latitude(feature.stationLatitude())
+                    .longitude(feature.stationLongitude())
+                    .distanceMeters(haversineMeters(lat, lon, feature.stationLatitude(), feature.stationLongitude()))
+                    .build());
+        }
+        result.sort(Comparator.comparingDouble(NearbyStationDTO::getDistanceMeters));
+        return result;
+    }
+
+    /**
+     * Các phường/xã có phần diện tích giao với bounding box
+     */
+    public List<DistrictLocationDTO> districtsWithin(double minLat, double minLon, double maxLat, double maxLon) {
+        validateCoordinate(minLat, minLon);
+        validateCoordinate(maxLat, maxLon);
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new IllegalArgumentException("Invalid bounding box: min must not exceed max");
+        }
+
+        Envelope envelope = new Envelope(minLon, maxLon, minLat, maxLat);
+        Geometry box = geometryFactory.toGeometry(envelope);
+
+        List<DistrictLocationDTO> result = new ArrayList<>();
+        for (Object candidate : index.districts().query(envelope)) {
+            DistrictEntry entry = (DistrictEntry) candidate;
+            if (entry.prepared().intersects(box)) {
+                result.add(toLocation(entry.feature()));
+            }
+        }
+        result.sort(Comparator.comparing(DistrictLocationDTO::getDistrict));
+        return result;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private static DistrictLocationDTO toLocation(GeoJsonService.DistrictFeature feature) {
+        return DistrictLocationDTO.builder()
+                .district(feature.district())
+                .name(feature.name())
+                .build();
+    }
+
+    private static void validateCoordinate(double lat, double lon) {
+        if (!(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinate: lat=" + lat + ", lon=" + lon);
+        }
+    }
+
+    static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private record Index(STRtree districts, STRtree stations, double lonScale, int size) {
+    }
+
+    private record DistrictEntry(GeoJsonService.DistrictFeature feature, PreparedGeometry prepared) {
+    }
+
+    private record StationEntry(GeoJsonService.DistrictFeature feature, double x, double y) {
+        double distance(StationEntry other) {
+            return Math.hypot(x - other.x, y - other.y);
+        }
+    }
+}
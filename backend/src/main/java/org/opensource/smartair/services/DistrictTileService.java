@@ -0,0 +1,305 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.TopologyException;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.SseBusMessage;
+import org.opensource.smartair.dtos.SseTopic;
+import org.opensource.smartair.utils.VectorTileEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mapbox Vector Tile (z/x/y) của lớp choropleth phường/xã, thay cho việc frontend tải cả GeoJSON 1.5 MB
+ * - Polygon được simplify theo zoom (~1 pixel màn hình ở tile 256px), clip theo tile + buffer
+ * - Mỗi feature mang district, name, aqi (mức AQI hiện tại 1-5, join từ bản tin airQualityObserved)
+ * - LRU cache theo tile; tile chỉ bị xóa khi AQI của một phường nằm trong tile đổi mức,
+ *   các giá trị pollutant khác không nằm trong tile nên không làm tile cũ đi
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DistrictTileService {
+
+    public static final String LAYER_NAME = "districts";
+    public static final String CONTENT_TYPE = "application/vnd.mapbox-vector-tile";
+
+    private static final int EXTENT = 4096;
+    private static final int BUFFER = 64;
+    private static final int MAX_ZOOM = 22;
+    private static final int SIMPLIFY_MAX_ZOOM = 16;
+
+    private final GeoJsonService geoJsonService;
+    private final OrionLdClient orionLdClient;
+    private final SseEventBus eventBus;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tiles.cache.max-entries:4096}")
+    private int cacheMaxEntries;
+
+    /**
+     * district → mức AQI mới nhất (AQI của pipeline đã là thang 1-5 nên mức = giá trị AQI)
+     */
+    private final Map<String, Integer> aqiByDistrict = new ConcurrentHashMap<>();
+
+    /**
+     * zoom → STR-tree các polygon đã simplify cho zoom đó (build lazily, immutable sau khi build)
+     */
+    private final Map<Integer, STRtree> simplifiedByZoom = new ConcurrentHashMap<>();
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private Map<Long, DistrictTile> cache;
+
+    /**
+     * Tăng mỗi khi có phường đổi mức AQI (guarded by cache): tile render song song với
+     * một lần đổi mức không được đưa vào cache vì có thể đã đọc mức cũ
+     */
+    private long generation;
+
+    private Counter cacheHits;
+    private Counter cacheMisses;
+    private Counter invalidations;
+    private Timer renderTimer;
+
+    /**
+     * Tile đã render: data rỗng nếu tile không giao phường nào, districts dùng để invalidate
+     */
+    public record DistrictTile(byte[] data, String etag, Set<String> districts) {
+        public boolean isEmpty() {
+            return data.length == 0;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        int maxEntries = cacheMaxEntries;
+        cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DistrictTile> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        cacheHits = Counter.builder("tiles.cache.requests").tag("result", "hit").register(meterRegistry);
+        cacheMisses = Counter.builder("tiles.cache.requests").tag("result", "miss").register(meterRegistry);
+        invalidations = Counter.builder("tiles.cache.invalidations")
+                .description("Cached tiles dropped because a district AQI level changed")
+                .register(meterRegistry);
+        renderTimer = Timer.builder("tiles.render").register(meterRegistry);
+        Gauge.builder("tiles.cache.size", this, service -> service.cacheSize()).register(meterRegistry);
+
+        eventBus.subscribe(this::onBusMessage);
+    }
+
+    /**
+     * Seed mức AQI hiện tại từ Orion-LD
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedOnStartup() {
+        orionLdClient.getAllAirQualityData()
+                .subscribe(observations -> observations.forEach(this::onAirQuality),
+                        error -> log.warn("Could not seed district AQI levels from Orion-LD: {}", error.getMessage()));
+    }
+
+    /**
+     * Tile z/x/y (từ cache nếu có)
+     */
+    public DistrictTile getTile(int z, int x, int y) {
+        validateTile(z, x, y);
+        long key = ((long) z << 48) | ((long) x << 24) | y;
+
+        long renderGeneration;
+        synchronized (cache) {
+            DistrictTile cached = cache.get(key);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+            renderGeneration = generation;
+        }
+        cacheMisses.increment();
+        DistrictTile tile = renderTimer.record(() -> render(z, x, y));
+        synchronized (cache) {
+            if (renderGeneration == generation) {
+                cache.put(key, tile);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Cập nhật mức AQI của một phường; xóa khỏi cache các tile chứa phường đó nếu mức thay đổi
+     */
+    public void onAirQuality(AirQualityDataDTO data) {
+        if (data.getDistrict() == null || data.getAirQualityIndex() == null) {
+            return;
+        }
+        Integer previous = aqiByDistrict.put(data.getDistrict(), data.getAirQualityIndex());
+        if (Objects.equals(previous, data.getAirQualityIndex())) {
+            return;
+        }
+        int removed;
+        synchronized (cache) {
+            generation++;
+            int before = cache.size();
+            cache.values().removeIf(tile -> tile.districts().contains(data.getDistrict()));
+            removed = before - cache.size();
+        }
+        if (removed > 0) {
+            invalidations.increment(removed);
+            log.debug("AQI level of {} changed {} → {}, {} cached tiles dropped",
+                    data.getDistrict(), previous, data.getAirQualityIndex(), removed);
+        }
+    }
+
+    public int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    DistrictTile render(int z, int x, int y) {
+        double tiles = 1L << z;
+        double buffer = (double) BUFFER / EXTENT;
+        Envelope clip = new Envelope(
+                tileToLon(x - buffer, tiles), tileToLon(x + 1 + buffer, tiles),
+                tileToLat(y + 1 + buffer, tiles), tileToLat(y - buffer, tiles));
+        Geometry clipBox = geometryFactory.toGeometry(clip);
+
+        VectorTileEncoder encoder = new VectorTileEncoder(LAYER_NAME, EXTENT);
+        Set<String> districts = new HashSet<>();
+        for (Object candidate : featuresForZoom(z).query(clip)) {
+            SimplifiedFeature feature = (SimplifiedFeature) candidate;
+            Geometry geometry = feature.geometry();
+            if (!clip.contains(geometry.getEnvelopeInternal())) {
+                try {
+                    geometry = geometry.intersection(clipBox);
+                } catch (TopologyException e) {
+                    geometry = geometry.buffer(0).intersection(clipBox);
+                }
+            }
+            if (geometry.isEmpty()) {
+                continue;
+            }
+
+            // Copy trước khi chiếu để không sửa geometry dùng chung trong STR-tree
+            Geometry projected = geometry.copy();
+            projected.apply((CoordinateFilter) c -> {
+                c.x = (lonToTile(c.x, tiles) - x) * EXTENT;
+                c.y = (latToTile(c.y, tiles) - y) * EXTENT;
+            });
+            projected.geometryChanged();
+
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("district", feature.district());
+            attributes.put("name", feature.name());
+            attributes.put("aqi", aqiByDistrict.get(feature.district()));
+            if (encoder.addPolygonFeature(feature.id(), attributes, projected)) {
+                districts.add(feature.district());
+            }
+        }
+
+        byte[] data = encoder.encode();
+        String etag = data.length == 0 ? null : "\"" + DigestUtils.md5DigestAsHex(data) + "\"";
+        return new DistrictTile(data, etag, Set.copyOf(districts));
+    }
+
+    /**
+     * Polygon simplify cho zoom (tolerance ≈ 1 pixel ở tile 256px); zoom lớn hơn SIMPLIFY_MAX_ZOOM dùng chung bản gốc
+     */
+    private STRtree featuresForZoom(int z) {
+        int level = Math.min(z, SIMPLIFY_MAX_ZOOM + 1);
+        return simplifiedByZoom.computeIfAbsent(level, zoom -> {
+            double tolerance = zoom > SIMPLIFY_MAX_ZOOM ? 0 : 360.0 / (1L << zoom) / 256;
+            STRtree tree = new STRtree();
+            List<GeoJsonService.DistrictFeature> features = geoJsonService.getDistrictFeatures();
+            for (int i = 0; i < features.size(); i++) {
+                GeoJsonService.DistrictFeature feature = features.get(i);
+                Geometry geometry = tolerance > 0
+                        ? TopologyPreservingSimplifier.simplify(feature.geometry(), tolerance)
+                        : feature.geometry();
+                tree.insert(geometry.getEnvelopeInternal(),
+                        new SimplifiedFeature(i + 1, feature.district(), feature.name(), geometry));
+            }
+            tree.build();
+            return tree;
+        });
+    }
+
+    private static void validateTile(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= (1L << z) || y >= (1L << z)) {
+            throw new IllegalArgumentException("Invalid tile: " + z + "/" + x + "/" + y);
+        }
+    }
+
+    private static double lonToTile(double lon, double tiles) {
+        return (lon + 180) / 360 * tiles;
+    }
+
+    private static double latToTile(double lat, double tiles) {
+        double phi = Math.toRadians(lat);
+        return (1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2 * tiles;
+    }
+
+    private static double tileToLon(double x, double tiles) {
+        return x / tiles * 360 - 180;
+    }
+
+    private static double tileToLat(double y, double tiles) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / tiles))));
+    }
+
+    private void onBusMessage(SseBusMessage message) {
+        if (message.getTopic() == SseTopic.AIR_QUALITY && message.getPayload() instanceof AirQualityDataDTO data) {
+            onAirQuality(data);
+        }
+    }
+
+    private record SimplifiedFeature(long id, String district, String name, Geometry geometry) {
+    }
+}
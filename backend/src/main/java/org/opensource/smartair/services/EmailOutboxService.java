@@ -0,0 +1,335 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.AlertRecipientDTO;
+import org.opensource.smartair.models.EmailOutbox;
+import org.opensource.smartair.models.EmailOutboxStatus;
+import org.opensource.smartair.repositories.EmailOutboxRepository;
+import org.opensource.smartair.utils.SmtpConnectionPool;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UnsupportedEncodingException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Email delivery pipeline dựa trên outbox (bảng email_outbox)
+ * 1. enqueueAlerts: render + lưu email PENDING trong 1 transaction (bền vững qua restart)
+ * 2. processOutbox (@Scheduled): claim tối đa batchSize * parallelism email đến hạn
+ *    (SELECT ... FOR UPDATE SKIP LOCKED → SENDING với lease), chia batch
+ * 3. Mỗi batch chạy trên emailDeliveryExecutor (bounded parallelism), mượn 1 kết nối
+ *    SMTP từ SmtpConnectionPool và gửi tuần tự trên kết nối đó
+ * 4. Kết quả: SENT (1 UPDATE cho cả batch), lỗi theo từng người nhận → retry với
+ *    exponential backoff, quá maxAttempts → FAILED
+ */
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+    private static final List<EmailOutboxStatus> DUE_STATUSES = List.of(
+            EmailOutboxStatus.PENDING, EmailOutboxStatus.SENDING);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final SmtpConnectionPool connectionPool;
+    private final Executor deliveryExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong pendingCount = new AtomicLong();
+    private Timer sentTimer;
+    private Timer failedTimer;
+    private Counter retryScheduled;
+    private Counter failedPermanently;
+
+    /**
+     * Số email gửi trên 1 kết nối SMTP mỗi lần mượn
+     */
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * Số batch gửi song song (= số kết nối SMTP tối đa)
+     */
+    @Value("${mail.outbox.parallelism:4}")
+    private int parallelism;
+
+    @Value("${mail.outbox.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry.initial-backoff-seconds:30}")
+    private long initialBackoffSeconds;
+
+    @Value("${mail.outbox.retry.max-backoff-seconds:1800}")
+    private long maxBackoffSeconds;
+
+    /**
+     * Email SENDING quá thời gian này (worker chết / restart) được claim lại
+     */
+    @Value("${mail.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${mail.outbox.retention-days:7}")
+    private int retentionDays;
+
+    public EmailOutboxService(
+            EmailOutboxRepository emailOutboxRepository,
+            EmailService emailService,
+            SmtpConnectionPool connectionPool,
+            @Qualifier("emailDeliveryExecutor") Executor deliveryExecutor,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.connectionPool = connectionPool;
+        this.deliveryExecutor = deliveryExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void registerMeters() {
+        sentTimer = meterRegistry.timer("email.send", "result", "sent");
+        failedTimer = meterRegistry.timer("email.send", "result", "failed");
+        retryScheduled = meterRegistry.counter("email.outbox.retries");
+        failedPermanently = meterRegistry.counter("email.outbox.failed");
+        Gauge.builder("email.outbox.pending", pendingCount, AtomicLong::get)
+                .description("PENDING emails in the outbox at the end of the last poll")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Render và lưu email cảnh báo cho tất cả người nhận (chưa gửi)
+     *
+     * @return số email đã đưa vào outbox
+     */
+    @Transactional
+    public int enqueueAlerts(List<AlertRecipientDTO> recipients, AirQualityDataDTO airQuality) {
+        List<EmailOutbox> emails = emailService.renderAirQualityAlerts(recipients, airQuality);
+        emailOutboxRepository.saveAll(emails);
+        return emails.size();
+    }
+
+    /**
+     * Gửi email đến hạn cho tới khi outbox hết việc
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:1000}")
+    public void processOutbox() {
+        int claimLimit = batchSize * parallelism;
+        try {
+            while (true) {
+                List<EmailOutbox> claimed = claim(claimLimit);
+                if (claimed.isEmpty()) {
+                    break;
+                }
+
+                long start = System.nanoTime();
+                List<CompletableFuture<DeliveryResult>> futures = new ArrayList<>();
+                for (int i = 0; i < claimed.size(); i += batchSize) {
+                    List<EmailOutbox> batch = claimed.subList(i, Math.min(i + batchSize, claimed.size()));
+                    futures.add(CompletableFuture.supplyAsync(() -> {
+                        DeliveryResult result = deliver(batch);
+                        record(result);
+                        return result;
+                    }, deliveryExecutor));
+                }
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+                int sent = futures.stream().mapToInt(f -> f.join().sent().size()).sum();
+                long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                log.info("Email outbox: sent {}/{} in {}ms ({} msg/s)",
+                        sent, claimed.size(), elapsedMillis, sent * 1000L / elapsedMillis);
+
+                if (claimed.size() < claimLimit) {
+                    break;
+                }
+            }
+            pendingCount.set(emailOutboxRepository.countByStatus(EmailOutboxStatus.PENDING));
+        } catch (Exception e) {
+            log.error("Error processing email outbox", e);
+        }
+    }
+
+    /**
+     * Xóa email đã gửi quá retentionDays
+     */
+    @Scheduled(cron = "${mail.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeSent() {
+        Integer deleted = transactionTemplate.execute(status -> emailOutboxRepository
+                .deleteSentBefore(LocalDateTime.now().minusDays(retentionDays)));
+        log.info("Purged {} sent emails older than {} days from outbox", deleted, retentionDays);
+    }
+
+    /**
+     * Claim email đến hạn và chuyển sang SENDING (lease leaseSeconds)
+     */
+    List<EmailOutbox> claim(int limit) {
+        List<EmailOutbox> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutbox> due = emailOutboxRepository.findDueForUpdate(DUE_STATUSES, now, PageRequest.of(0, limit));
+            if (!due.isEmpty()) {
+                emailOutboxRepository.markSending(due.stream().map(EmailOutbox::getId).toList(),
+                        now.plusSeconds(leaseSeconds));
+            }
+            return due;
+        });
+        return claimed != null ? claimed : List.of();
+    }
+
+    /**
+     * Gửi 1 batch trên 1 kết nối SMTP của pool
+     * Lỗi theo từng message (địa chỉ sai, bị từ chối) không dừng batch;
+     * mất kết nối → các message còn lại trả về PENDING không tính attempt
+     */
+    DeliveryResult deliver(List<EmailOutbox> batch) {
+        DeliveryResult result = new DeliveryResult(new ArrayList<>(), new IdentityHashMap<>(), new ArrayList<>());
+
+        // Không lấy được kết nối (SMTP down, pool đã đóng) không phải lỗi của message: trả về PENDING, không tính attempt
+        Transport transport;
+        try {
+            transport = connectionPool.borrow();
+        } catch (MessagingException | IllegalStateException e) {
+            log.warn("Cannot open SMTP connection: {}", e.getMessage());
+            result.notAttempted().addAll(batch);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.notAttempted().addAll(batch);
+            return result;
+        }
+
+        boolean healthy = true;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                EmailOutbox email = batch.get(i);
+                long start = System.nanoTime();
+                try {
+                    MimeMessage message = emailService.createMimeMessage(connectionPool.getSession(), email);
+                    message.saveChanges();
+                    transport.sendMessage(message, message.getAllRecipients());
+                    sentTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    result.sent().add(email);
+                } catch (MessagingException | UnsupportedEncodingException e) {
+                    failedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    result.failed().put(email, e);
+                    if (!transport.isConnected()) {
+                        healthy = false;
+                        result.notAttempted().addAll(batch.subList(i + 1, batch.size()));
+                        break;
+                    }
+                }
+            }
+        } finally {
+            connectionPool.release(transport, healthy);
+        }
+        return result;
+    }
+
+    /**
+     * Lưu kết quả gửi của 1 batch
+     */
+    void record(DeliveryResult result) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> updated = new ArrayList<>(result.failed().size() + result.notAttempted().size());
+
+        result.failed().forEach((email, error) -> {
+            int attempts = email.getAttempts() + 1;
+            email.setAttempts(attempts);
+            email.setLastError(truncate(error.getClass().getSimpleName() + ": " + error.getMessage()));
+            if (attempts >= maxAttempts) {
+                email.setStatus(EmailOutboxStatus.FAILED);
+                failedPermanently.increment();
+                log.error("Giving up on email to {} after {} attempts: {}",
+                        email.getRecipientEmail(), attempts, error.getMessage());
+            } else {
+                email.setStatus(EmailOutboxStatus.PENDING);
+                email.setNextAttemptAt(now.plusSeconds(backoffSeconds(attempts)));
+                retryScheduled.increment();
+                log.warn("Failed to send email to {} (attempt {}), retrying at {}: {}",
+                        email.getRecipientEmail(), attempts, email.getNextAttemptAt(), error.getMessage());
+            }
+            updated.add(email);
+        });
+
+        for (EmailOutbox email : result.notAttempted()) {
+            email.setStatus(EmailOutboxStatus.PENDING);
+            email.setNextAttemptAt(now);
+            updated.add(email);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!result.sent().isEmpty()) {
+                emailOutboxRepository.markSent(result.sent().stream().map(EmailOutbox::getId).toList(), now);
+            }
+            if (!updated.isEmpty()) {
+                emailOutboxRepository.saveAll(updated);
+            }
+        });
+    }
+
+    /**
+     * Exponential backoff: initial * 2^(attempts-1), tối đa maxBackoff, jitter 0-10%
+     */
+    long backoffSeconds(int attempts) {
+        long backoff = initialBackoffSeconds << Math.min(attempts - 1, 20);
+        backoff = Math.min(backoff, maxBackoffSeconds);
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 10 + 1);
+    }
+
+    private String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Kết quả gửi 1 batch
+     */
+    record DeliveryResult(List<EmailOutbox> sent, Map<EmailOutbox, Exception> failed, List<EmailOutbox> notAttempted) {
+    }
+}
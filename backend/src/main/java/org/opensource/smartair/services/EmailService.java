@@ -21,29 +21,51 @@
  */
 package org.opensource.smartair.services;
 
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.AlertRecipientDTO;
+import org.opensource.smartair.models.EmailOutbox;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Service gửi email thông báo
+ * Service render email thông báo (gửi qua EmailOutboxService)
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    /**
+     * Template compile 1 lần, thread-safe (src/main/resources/templates/email)
+     */
+    private static final Template ALERT_TEMPLATE = compileTemplate("templates/email/air-quality-alert.mustache");
+
+    /**
+     * Marker thay cho tên người nhận khi chạy template, sau đó tách thành prefix/suffix
+     */
+    private static final String RECIPIENT_SLOT = "\u0000recipient\u0000";
+
+    private final MeterRegistry meterRegistry;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
@@ -55,28 +77,39 @@ public class EmailService {
     private String frontendUrl;
 
     /**
-     * Gửi email cảnh báo chất lượng không khí
+     * Render email cảnh báo cho tất cả người nhận của 1 sự kiện AQI (chưa lưu DB)
+     * Template chỉ chạy 1 lần cho district, mỗi người nhận chỉ ghép thêm lời chào
      */
-    @Async
-    public void sendAirQualityAlert(String toEmail, String fullName, AirQualityDataDTO airQuality) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            // Set FROM with display name: "Tên Hiển Thị <email@example.com>"
-            helper.setFrom(fromEmail, fromName);
-            helper.setTo(toEmail);
-            helper.setSubject(getAlertSubject(airQuality));
-            helper.setText(buildAlertEmailContent(fullName, airQuality), true);
-
-            mailSender.send(message);
-            log.info("Sent air quality alert email to: {}", toEmail);
-
-        } catch (MessagingException e) {
-            log.error("Failed to send email to: {}", toEmail, e);
-        } catch (Exception e) {
-            log.error("Unexpected error sending email to: {}", toEmail, e);
+    public List<EmailOutbox> renderAirQualityAlerts(List<AlertRecipientDTO> recipients, AirQualityDataDTO airQuality) {
+        AlertEmailBody body = meterRegistry.timer("email.render").record(() -> renderAlertBody(airQuality));
+        String subject = getAlertSubject(airQuality);
+
+        List<EmailOutbox> emails = new ArrayList<>(recipients.size());
+        for (AlertRecipientDTO recipient : recipients) {
+            emails.add(EmailOutbox.builder()
+                    .recipientEmail(recipient.getEmail())
+                    .recipientName(recipient.getFullName())
+                    .subject(subject)
+                    .body(body.personalize(recipient.getFullName()))
+                    .build());
         }
+        return emails;
+    }
+
+    /**
+     * Tạo MimeMessage từ entry outbox trên session của pool SMTP
+     */
+    public MimeMessage createMimeMessage(Session session, EmailOutbox email)
+            throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = new MimeMessage(session);
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        // Set FROM with display name: "Tên Hiển Thị <email@example.com>"
+        helper.setFrom(fromEmail, fromName);
+        helper.setTo(email.getRecipientEmail());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), true);
+        return message;
     }
 
     /**
@@ -95,170 +128,80 @@ public class EmailService {
     }
 
     /**
-     * Xây dựng nội dung email HTML
+     * Xây dựng nội dung email HTML cho 1 người nhận
+     * Package-private để benchmark (src/jmh) gọi trực tiếp
      */
-    private String buildAlertEmailContent(String fullName, AirQualityDataDTO airQuality) {
-        String district = airQuality.getDistrict() != null ? airQuality.getDistrict() : airQuality.getStationName();
-        String level = airQuality.getAirQualityLevel();
-        Integer aqi = airQuality.getAirQualityIndex();
-
-        String levelColor = getLevelColor(level);
-        String levelText = getLevelText(level);
-
-        StringBuilder html = new StringBuilder();
-        html.append("<!DOCTYPE html>");
-        html.append("<html>");
-        html.append("<head>");
-        html.append("<meta charset='UTF-8'>");
-        html.append("<style>");
-        html.append("body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }");
-        html.append(".container { max-width: 600px; margin: 0 auto; padding: 20px; }");
-        html.append(
-                ".header { background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; padding: 30px; text-align: center; border-radius: 10px 10px 0 0; }");
-        html.append(".content { background: #f9f9f9; padding: 30px; border-radius: 0 0 10px 10px; }");
-        html.append(".alert-box { background: ").append(levelColor)
-                .append("; color: white; padding: 20px; border-radius: 8px; margin: 20px 0; text-align: center; }");
-        html.append(
-                ".metric { background: white; padding: 15px; margin: 10px 0; border-radius: 5px; border-left: 4px solid ")
-                .append(levelColor).append("; }");
-        html.append(".metric-label { font-size: 12px; color: #666; text-transform: uppercase; }");
-        html.append(".metric-value { font-size: 24px; font-weight: bold; color: #333; }");
-        html.append(
-                ".recommendations { background: #fff3cd; padding: 15px; border-radius: 5px; margin: 20px 0; border-left: 4px solid #ffc107; }");
-        html.append(".footer { text-align: center; padding: 20px; color: #666; font-size: 12px; }");
-        html.append(
-                ".button { display: inline-block; padding: 12px 30px; background: #667eea; color: white; text-decoration: none; border-radius: 5px; margin: 10px 0; }");
-        html.append("</style>");
-        html.append("</head>");
-        html.append("<body>");
-        html.append("<div class='container'>");
-
-        // Header
-        html.append("<div class='header'>");
-        html.append("<h1>CẢNH BÁO CHẤT LƯỢNG KHÔNG KHÍ</h1>");
-        html.append("<p>Hệ thống giám sát môi trường Hà Nội</p>");
-        html.append("</div>");
-
-        // Content
-        html.append("<div class='content'>");
-        html.append("<p>Xin chào <strong>").append(fullName).append("</strong>,</p>");
-        html.append("<p>Hệ thống phát hiện chất lượng không khí tại <strong>").append(district)
-                .append("</strong> đang ở mức <strong>").append(levelText).append("</strong>.</p>");
-
-        // Alert Box
-        html.append("<div class='alert-box'>");
-        html.append("<h2 style='margin: 0;'>").append(levelText).append("</h2>");
-        html.append("<p style='font-size: 48px; margin: 10px 0;'>AQI: ").append(aqi).append("</p>");
-        html.append("<p style='margin: 0;'>Khu vực: ").append(district).append("</p>");
-        html.append("</div>");
-
-        // Metrics
-        html.append("<h3>Chi tiết các chỉ số ô nhiễm:</h3>");
+    String buildAlertEmailContent(String fullName, AirQualityDataDTO airQuality) {
+        return renderAlertBody(airQuality).personalize(fullName);
+    }
 
-        if (airQuality.getPm2_5() != null) {
-            html.append("<div class='metric'>");
-            html.append("<div class='metric-label'>PM2.5 (Bụi mịn 2.5 micromet)</div>");
-            html.append("<div class='metric-value'>").append(String.format("%.1f", airQuality.getPm2_5()))
-                    .append(" µg/m³</div>");
-            if (airQuality.getPm2_5Level() != null) {
-                html.append("<div style='color: #666;'>Mức độ: ").append(getLevelText(airQuality.getPm2_5Level()))
-                        .append("</div>");
-            }
-            html.append("</div>");
-        }
+    /**
+     * Chạy template cho 1 sự kiện AQI, tách kết quả tại vị trí tên người nhận
+     */
+    AlertEmailBody renderAlertBody(AirQualityDataDTO airQuality) {
+        String level = airQuality.getAirQualityLevel();
 
-        if (airQuality.getPm10() != null) {
-            html.append("<div class='metric'>");
-            html.append("<div class='metric-label'>PM10 (Bụi mịn 10 micromet)</div>");
-            html.append("<div class='metric-value'>").append(String.format("%.1f", airQuality.getPm10()))
-                    .append(" µg/m³</div>");
-            if (airQuality.getPm10Level() != null) {
-                html.append("<div style='color: #666;'>Mức độ: ").append(getLevelText(airQuality.getPm10Level()))
-                        .append("</div>");
-            }
-            html.append("</div>");
+        Map<String, Object> context = new HashMap<>();
+        context.put("recipientName", RECIPIENT_SLOT);
+        context.put("district", airQuality.getDistrict() != null ? airQuality.getDistrict() : airQuality.getStationName());
+        context.put("aqi", airQuality.getAirQualityIndex());
+        context.put("levelColor", getLevelColor(level));
+        context.put("levelText", getLevelText(level));
+        context.put("recommendations", getHealthRecommendations(level));
+        context.put("frontendUrl", frontendUrl);
+        if (airQuality.getObservedAt() != null) {
+            context.put("observedAt", airQuality.getObservedAt());
         }
 
-        if (airQuality.getO3() != null) {
-            html.append("<div class='metric'>");
-            html.append("<div class='metric-label'>O3 (Ozon)</div>");
-            html.append("<div class='metric-value'>").append(String.format("%.1f", airQuality.getO3()))
-                    .append(" µg/m³</div>");
-            if (airQuality.getO3Level() != null) {
-                html.append("<div style='color: #666;'>Mức độ: ").append(getLevelText(airQuality.getO3Level()))
-                        .append("</div>");
-            }
-            html.append("</div>");
-        }
+        List<Map<String, Object>> metrics = new ArrayList<>(6);
+        addMetric(metrics, "PM2.5 (Bụi mịn 2.5 micromet)", airQuality.getPm2_5(), airQuality.getPm2_5Level());
+        addMetric(metrics, "PM10 (Bụi mịn 10 micromet)", airQuality.getPm10(), airQuality.getPm10Level());
+        addMetric(metrics, "O3 (Ozon)", airQuality.getO3(), airQuality.getO3Level());
+        addMetric(metrics, "NO2 (Nitơ dioxit)", airQuality.getNo2(), airQuality.getNo2Level());
+        addMetric(metrics, "SO2 (Lưu huỳnh dioxit)", airQuality.getSo2(), airQuality.getSo2Level());
+        addMetric(metrics, "CO (Cacbon monoxit)", airQuality.getCo(), airQuality.getCoLevel());
+        context.put("metrics", metrics);
+
+        String html = ALERT_TEMPLATE.execute(context);
+        int slot = html.indexOf(RECIPIENT_SLOT);
+        return new AlertEmailBody(html.substring(0, slot), html.substring(slot + RECIPIENT_SLOT.length()));
+    }
 
-        if (airQuality.getNo2() != null) {
-            html.append("<div class='metric'>");
-            html.append("<div class='metric-label'>NO2 (Nitơ dioxit)</div>");
-            html.append("<div class='metric-value'>").append(String.format("%.1f", airQuality.getNo2()))
-                    .append(" µg/m³</div>");
-            if (airQuality.getNo2Level() != null) {
-                html.append("<div style='color: #666;'>Mức độ: ").append(getLevelText(airQuality.getNo2Level()))
-                        .append("</div>");
-            }
-            html.append("</div>");
+    private void addMetric(List<Map<String, Object>> metrics, String label, Double value, String metricLevel) {
+        if (value == null) {
+            return;
         }
-
-        if (airQuality.getSo2() != null) {
-            html.append("<div class='metric'>");
-            html.append("<div class='metric-label'>SO2 (Lưu huỳnh dioxit)</div>");
-            html.append("<div class='metric-value'>").append(String.format("%.1f", airQuality.getSo2()))
-                    .append(" µg/m³</div>");
-            if (airQuality.getSo2Level() != null) {
-                html.append("<div style='color: #666;'>Mức độ: ").append(getLevelText(airQuality.getSo2Level()))
-                        .append("</div>");
-            }
-            html.append("</div>");
+        Map<String, Object> metric = new HashMap<>(4);
+        metric.put("label", label);
+        metric.put("value", String.format("%.1f", value));
+        if (metricLevel != null) {
+            metric.put("metricLevel", getLevelText(metricLevel));
         }
+        metrics.add(metric);
+    }
 
-        if (airQuality.getCo() != null) {
-            html.append("<div class='metric'>");
-            html.append("<div class='metric-label'>CO (Cacbon monoxit)</div>");
-            html.append("<div class='metric-value'>").append(String.format("%.1f", airQuality.getCo()))
-                    .append(" µg/m³</div>");
-            if (airQuality.getCoLevel() != null) {
-                html.append("<div style='color: #666;'>Mức độ: ").append(getLevelText(airQuality.getCoLevel()))
-                        .append("</div>");
-            }
-            html.append("</div>");
+    private static Template compileTemplate(String location) {
+        try (InputStream in = new ClassPathResource(location).getInputStream()) {
+            return Mustache.compiler()
+                    .escapeHTML(true)
+                    .compile(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load email template: " + location, e);
         }
+    }
 
-        // Recommendations
-        html.append("<div class='recommendations'>");
-        html.append("<h3 style='margin-top: 0;'>Khuyến cáo sức khỏe:</h3>");
-        html.append(getHealthRecommendations(level));
-        html.append("</div>");
-
-        // Time
-        if (airQuality.getObservedAt() != null) {
-            html.append("<p style='color: #666; font-size: 12px;'>Thời gian quan trắc: ")
-                    .append(airQuality.getObservedAt()).append("</p>");
+    /**
+     * Nội dung email của 1 sự kiện AQI đã render, thiếu tên người nhận
+     */
+    record AlertEmailBody(String prefix, String suffix) {
+
+        /**
+         * Ghép tên người nhận (HTML-escaped) vào giữa prefix và suffix
+         */
+        String personalize(String fullName) {
+            String name = fullName != null ? HtmlUtils.htmlEscape(fullName, "UTF-8") : "";
+            return prefix + name + suffix;
         }
-
-        // CTA Button
-        html.append("<div style='text-align: center; margin: 30px 0;'>");
-        html.append("<a href='").append(frontendUrl).append("/stations' class='button'>Xem bản đồ đầy đủ</a>");
-        html.append("</div>");
-
-        html.append("</div>");
-
-        // Footer
-        html.append("<div class='footer'>");
-        html.append(
-                "<p>Bạn nhận được email này vì bạn đã đăng ký nhận thông báo từ Hệ thống giám sát môi trường Hà Nội.</p>");
-        html.append("<p>Nguồn dữ liệu: OpenWeatherMap API | Powered by FIWARE Orion-LD</p>");
-        html.append("<p>&copy; 2024 Smart Air Quality Monitoring System</p>");
-        html.append("</div>");
-
-        html.append("</div>");
-        html.append("</body>");
-        html.append("</html>");
-
-        return html.toString();
     }
 
     /**
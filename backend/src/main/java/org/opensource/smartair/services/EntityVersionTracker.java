@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Version cuối cùng đã xử lý của mỗi entity NGSI-LD (observedAt, modifiedAt) để bỏ notification
+ * trùng (Orion-LD gửi lại, ETL publish lại cùng observedAt) hoặc đến trễ trước mọi bước downstream
+ *
+ * So sánh: observedAt nếu cả hai bên đều có (bằng nhau = trùng, kể cả khi modifiedAt mới hơn - ETL publish
+ * lại cùng lần đo vẫn làm modifiedAt tăng), chỉ dùng modifiedAt khi thiếu observedAt (Device, Platform);
+ * entity không có timestamp nào luôn được nhận.
+ * Key: entity id, Value: observedAt, modifiedAt, thời điểm nhận (để dọn entry cũ) và version trước đó
+ * (để rollback khi xử lý thất bại)
+ */
+@Slf4j
+@Service
+public class EntityVersionTracker {
+
+    public enum Verdict {
+        ACCEPTED, UNVERSIONED, DUPLICATE, OUT_OF_ORDER;
+
+        public boolean isAccepted() {
+            return this == ACCEPTED || this == UNVERSIONED;
+        }
+    }
+
+    private record Version(long observedAt, long modifiedAt, long seenAt, Version previous) {
+
+        boolean is(long observedAt, long modifiedAt) {
+            return this.observedAt == observedAt && this.modifiedAt == modifiedAt;
+        }
+
+        /**
+         * Chỉ giữ một version trước đó, không để chuỗi previous dài ra
+         */
+        Version withoutPrevious() {
+            return previous == null ? this : new Version(observedAt, modifiedAt, seenAt, null);
+        }
+    }
+
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Quá số entry này thì entity mới không được theo dõi (vẫn được nhận), tránh map phình vô hạn
+     * nếu entity id chứa timestamp
+     */
+    @Value("${ngsi.dedup.max-entries:50000}")
+    private int maxEntries;
+
+    @Value("${ngsi.dedup.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    public EntityVersionTracker(MeterRegistry meterRegistry) {
+        Gauge.builder("ngsi.dedup.entries", versions, Map::size)
+                .description("Entities with a tracked last-seen version")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Check-and-set: ghi nhận version nếu mới hơn version đã thấy
+     *
+     * @param observedAt epoch millis, 0 = không có
+     * @param modifiedAt epoch millis, 0 = không có
+     */
+    public Verdict check(String entityId, long observedAt, long modifiedAt) {
+        if (entityId == null || (observedAt == 0 && modifiedAt == 0)) {
+            return Verdict.UNVERSIONED;
+        }
+
+        // Hot path không lock: bản trùng / cũ hơn bị loại mà không cần compute
+        Version current = versions.get(entityId);
+        if (current != null) {
+            Verdict verdict = compare(current, observedAt, modifiedAt);
+            if (!verdict.isAccepted()) {
+                return verdict;
+            }
+        } else if (versions.size() >= maxEntries) {
+            return Verdict.UNVERSIONED;
+        }
+
+        long now = System.currentTimeMillis();
+        Verdict[] verdict = new Verdict[1];
+        versions.compute(entityId, (id, existing) -> {
+            verdict[0] = existing == null ? Verdict.ACCEPTED : compare(existing, observedAt, modifiedAt);
+            return verdict[0].isAccepted()
+                    ? new Version(observedAt, modifiedAt, now, existing != null ? existing.withoutPrevious() : null)
+                    : existing;
+        });
+        return verdict[0];
+    }
+
+    /**
+     * Chỉ kiểm tra, không ghi nhận (vd: đường live MQTT so với version Orion-LD đã xử lý)
+     */
+    public Verdict peek(String entityId, long observedAt, long modifiedAt) {
+        if (entityId == null || (observedAt == 0 && modifiedAt == 0)) {
+            return Verdict.UNVERSIONED;
+        }
+        Version current = versions.get(entityId);
+        return current != null ? compare(current, observedAt, modifiedAt) : Verdict.ACCEPTED;
+    }
+
+    /**
+     * Hoàn tác check() đã ACCEPTED khi xử lý entity thất bại, để bản gửi lại không bị coi là trùng.
+     * Không làm gì nếu version đã bị một notification mới hơn thay thế
+     */
+    public void rollback(String entityId, long observedAt, long modifiedAt) {
+        if (entityId == null) {
+            return;
+        }
+        versions.computeIfPresent(entityId, (id, current) -> current.is(observedAt, modifiedAt)
+                ? current.previous()
+                : current);
+    }
+
+    private static Verdict compare(Version last, long observedAt, long modifiedAt) {
+        if (observedAt != 0 && last.observedAt() != 0) {
+            if (observedAt == last.observedAt()) {
+                return Verdict.DUPLICATE;
+            }
+            return observedAt > last.observedAt() ? Verdict.ACCEPTED : Verdict.OUT_OF_ORDER;
+        }
+        if (modifiedAt != 0 && last.modifiedAt() != 0 && modifiedAt != last.modifiedAt()) {
+            return modifiedAt > last.modifiedAt() ? Verdict.ACCEPTED : Verdict.OUT_OF_ORDER;
+        }
+        return Verdict.DUPLICATE;
+    }
+
+    /**
+     * Dọn entity không còn notification trong ttl (vd: entity đã bị xóa trên Orion-LD)
+     */
+    @Scheduled(fixedDelayString = "${ngsi.dedup.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - Duration.ofMinutes(ttlMinutes).toMillis();
+        int before = versions.size();
+        versions.values().removeIf(version -> version.seenAt() < cutoff);
+        int removed = before - versions.size();
+        if (removed > 0) {
+            log.debug("Purged {} expired entity versions", removed);
+        }
+    }
+
+    public int size() {
+        return versions.size();
+    }
+
+    /**
+     * ISO-8601 (2025-11-05T03:00:00.000Z hoặc có offset) → epoch millis, 0 nếu không có / không parse được
+     */
+    public static long toEpochMillis(Object timestamp) {
+        if (!(timestamp instanceof String text) || text.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Instant.parse(text).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
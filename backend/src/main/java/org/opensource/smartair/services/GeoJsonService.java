@@ -21,16 +21,35 @@
  */
 package org.opensource.smartair.services;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.opensource.smartair.dtos.GeometryFormat;
+import org.opensource.smartair.utils.DistrictTopology;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Service to load and parse GeoJSON data
@@ -40,86 +59,414 @@ import java.util.List;
 public class GeoJsonService {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private List<String> allDistricts = new ArrayList<>();
+    private final GeometryFactory geometryFactory = new GeometryFactory();
 
     /**
-     * Load all district names from GeoJSON on startup
+     * Kết quả parse GeoJSON / geometry đã simplify - complete bởi loadDistricts()
+     */
+    private final CompletableFuture<LoadedDistricts> districts = new CompletableFuture<>();
+    private final CompletableFuture<List<Map<GeometryFormat, EncodedDistricts>>> simplified =
+            new CompletableFuture<>();
+
+    /**
+     * Properties chỉ dùng cho style (frontend tự tô màu) - bỏ khỏi output đã simplify
+     */
+    private static final Set<String> STYLE_PROPERTIES = Set.of(
+            "stroke", "stroke-width", "stroke-opacity", "fill", "fill-opacity");
+
+    /**
+     * Mức simplify theo zoom: tolerance ≈ 0.7 pixel (tile 256px) ở zoom lớn nhất của mức,
+     * tọa độ lượng tử khoảng 1/5 tolerance; mức cuối giữ nguyên geometry gốc (1e-6 độ)
+     */
+    private static final List<SimplificationLevel> SIMPLIFICATION_LEVELS = List.of(
+            new SimplificationLevel(9, 0.002, 0.0005),
+            new SimplificationLevel(11, 0.0005, 0.0001),
+            new SimplificationLevel(13, 0.0001, 0.00002),
+            new SimplificationLevel(Integer.MAX_VALUE, 0, 0.000001));
+
+    private static final String[] ADMINISTRATIVE_PREFIXES = { "Phường", "Xã" };
+
+    /**
+     * Chữ tiếng Việt có dấu → chữ không dấu; index theo char (tới U+1EF9 'ỹ')
+     */
+    private static final char[] DIACRITIC_TABLE = buildDiacriticTable();
+
+    private record SimplificationLevel(int maxZoom, double toleranceDegrees, double quantumDegrees) {
+    }
+
+    /**
+     * Geometry phường/xã đã encode sẵn: body gốc và gzip, ETag (strong) riêng cho từng biến thể
+     */
+    public record EncodedDistricts(String contentType, byte[] body, String etag, byte[] gzipBody, String gzipEtag) {
+    }
+
+    private record LoadedDistricts(List<String> names, List<DistrictFeature> features) {
+    }
+
+    /**
+     * Phường/xã với polygon và vị trí trạm quan trắc (properties lat/lon - cùng điểm ETL dùng cho sensor)
+     *
+     * @param district  tên theo backend format (PhuongHoanKiem)
+     * @param name      tên hiển thị (Phường Hoàn Kiếm)
+     * @param geometry  Polygon / MultiPolygon, tọa độ (x = lon, y = lat)
+     */
+    public record DistrictFeature(String district, String name, Geometry geometry,
+            double stationLatitude, double stationLongitude) {
+    }
+
+    /**
+     * Bắt đầu load GeoJSON trên thread nền khi khởi động: các bean cần danh sách phường/xã
+     * (DistrictRegistry, DistrictSpatialIndex, ...) chỉ chờ bước parse, phần simplify chạy tiếp
+     * song song với phần còn lại của startup (readiness chờ qua {@link #whenLoaded()})
      */
     @PostConstruct
+    public void loadDistrictsAsync() {
+        Thread.ofPlatform().name("geojson-loader").daemon().start(this::loadDistricts);
+    }
+
+    /**
+     * Load all district names (and geometries) from GeoJSON, then precompute simplified geometry.
+     * Chạy đồng bộ trên thread gọi (test / benchmark gọi trực tiếp)
+     */
     public void loadDistricts() {
+        long start = System.nanoTime();
+        List<Geometry> geometries = new ArrayList<>();
+        List<ObjectNode> outputProperties = new ArrayList<>();
         try {
-            ClassPathResource resource = new ClassPathResource("static/ha_noi_with_latlon2.geojson");
-            JsonNode root = objectMapper.readTree(resource.getInputStream());
-            JsonNode features = root.get("features");
-
-            if (features != null && features.isArray()) {
-                for (JsonNode feature : features) {
-                    JsonNode properties = feature.get("properties");
-                    String name = properties.get("Tên đơn vị").asText();
-                    String classification = properties.get("Phân loại").asText();
-
-                    // Convert to backend format
-                    String backendFormat = convertToBackendFormat(name, classification);
-                    allDistricts.add(backendFormat);
-                }
-            }
-
-            log.info("✅ Loaded {} districts from GeoJSON", allDistricts.size());
+            districts.complete(parseDistricts(geometries, outputProperties));
+            log.info("✅ Loaded {} districts from GeoJSON in {} ms", districts.join().names().size(),
+                    (System.nanoTime() - start) / 1_000_000);
         } catch (IOException e) {
             log.error("❌ Failed to load GeoJSON: {}", e.getMessage());
             // Fallback to empty list
-            allDistricts = new ArrayList<>();
+            districts.complete(new LoadedDistricts(List.of(), List.of()));
+            simplified.complete(List.of());
+            return;
+        } catch (RuntimeException e) {
+            log.error("❌ Failed to parse GeoJSON", e);
+            districts.completeExceptionally(e);
+            simplified.completeExceptionally(e);
+            return;
         }
+
+        try {
+            simplified.complete(precomputeSimplified(geometries, outputProperties));
+        } catch (RuntimeException e) {
+            log.error("❌ Failed to precompute simplified districts", e);
+            simplified.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Hoàn tất khi GeoJSON đã parse và geometry simplify đã encode xong (dùng cho readiness)
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return simplified.thenApply(levels -> null);
     }
 
     /**
-     * Get all district names
+     * Get all district names (chờ parse GeoJSON nếu còn đang load)
      */
     public List<String> getAllDistricts() {
-        return new ArrayList<>(allDistricts);
+        return new ArrayList<>(districts.join().names());
+    }
+
+    /**
+     * Get all districts with geometry (for the spatial index)
+     */
+    public List<DistrictFeature> getDistrictFeatures() {
+        return districts.join().features();
+    }
+
+    /**
+     * Geometry phường/xã đã simplify cho zoom, encode sẵn
+     * (null nếu chưa precompute xong hoặc GeoJSON không load được - không block request thread)
+     */
+    public EncodedDistricts getSimplifiedDistricts(int zoom, GeometryFormat format) {
+        List<Map<GeometryFormat, EncodedDistricts>> levels = simplified.getNow(List.of());
+        for (int i = 0; i < levels.size(); i++) {
+            if (zoom <= SIMPLIFICATION_LEVELS.get(i).maxZoom()) {
+                return levels.get(i).get(format);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Dựng topology arc dùng chung rồi encode GeoJSON / TopoJSON cho từng mức simplify
+     */
+    private List<Map<GeometryFormat, EncodedDistricts>> precomputeSimplified(List<Geometry> geometries,
+            List<ObjectNode> properties) {
+        long start = System.nanoTime();
+        DistrictTopology topology = DistrictTopology.build(geometries);
+
+        List<Map<GeometryFormat, EncodedDistricts>> levels = new ArrayList<>();
+        for (SimplificationLevel level : SIMPLIFICATION_LEVELS) {
+            Map<GeometryFormat, EncodedDistricts> encoded = new EnumMap<>(GeometryFormat.class);
+            encoded.put(GeometryFormat.GEOJSON, encode(GeometryFormat.GEOJSON, topology.toGeoJson(
+                    objectMapper, properties, level.toleranceDegrees(), level.quantumDegrees())));
+            encoded.put(GeometryFormat.TOPOJSON, encode(GeometryFormat.TOPOJSON, topology.toTopoJson(
+                    objectMapper, properties, level.toleranceDegrees(), level.quantumDegrees())));
+            levels.add(encoded);
+            log.debug("Simplified districts (zoom <= {}): geojson {} B ({} B gzip), topojson {} B ({} B gzip)",
+                    level.maxZoom(),
+                    encoded.get(GeometryFormat.GEOJSON).body().length,
+                    encoded.get(GeometryFormat.GEOJSON).gzipBody().length,
+                    encoded.get(GeometryFormat.TOPOJSON).body().length,
+                    encoded.get(GeometryFormat.TOPOJSON).gzipBody().length);
+        }
+        log.info("Precomputed {} simplification levels from {} arcs ({} shared) in {} ms",
+                levels.size(), topology.getArcCount(), topology.getSharedArcCount(),
+                (System.nanoTime() - start) / 1_000_000);
+        return List.copyOf(levels);
+    }
+
+    private static EncodedDistricts encode(GeometryFormat format, byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] gzipBody = compressed.toByteArray();
+        return new EncodedDistricts(format.getContentType(),
+                body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"",
+                gzipBody, "\"" + DigestUtils.md5DigestAsHex(gzipBody) + "\"");
+    }
+
+    private ObjectNode toOutputProperties(JsonNode properties, String district) {
+        ObjectNode output = objectMapper.createObjectNode();
+        output.put("district", district);
+        properties.properties().forEach(entry -> {
+            if (!STYLE_PROPERTIES.contains(entry.getKey())) {
+                output.set(entry.getKey(), entry.getValue());
+            }
+        });
+        return output;
+    }
+
+    /**
+     * Stream-parse FeatureCollection bằng JsonParser: chỉ properties của từng feature được đọc thành
+     * JsonNode (nhỏ), tọa độ đi thẳng vào Coordinate - không dựng cây JsonNode cho cả file 1.5 MB
+     */
+    private LoadedDistricts parseDistricts(List<Geometry> geometries, List<ObjectNode> outputProperties)
+            throws IOException {
+        List<String> names = new ArrayList<>();
+        List<DistrictFeature> features = new ArrayList<>();
+        ClassPathResource resource = new ClassPathResource("static/ha_noi_with_latlon2.geojson");
+        try (InputStream input = resource.getInputStream();
+                JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("GeoJSON root is not an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"features".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    parseFeature(parser, names, features, geometries, outputProperties);
+                }
+            }
+        }
+        return new LoadedDistricts(List.copyOf(names), List.copyOf(features));
+    }
+
+    /**
+     * Đọc một feature (parser đang ở START_OBJECT, kết thúc ở END_OBJECT tương ứng)
+     */
+    private void parseFeature(JsonParser parser, List<String> names, List<DistrictFeature> features,
+            List<Geometry> geometries, List<ObjectNode> outputProperties) throws IOException {
+        JsonNode properties = null;
+        Geometry geometry = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("properties".equals(field) && value == JsonToken.START_OBJECT) {
+                properties = objectMapper.readTree(parser);
+            } else if ("geometry".equals(field) && value == JsonToken.START_OBJECT) {
+                geometry = parseGeometry(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (properties == null) {
+            return;
+        }
+
+        String name = properties.get("Tên đơn vị").asText();
+        String classification = properties.get("Phân loại").asText();
+
+        // Convert to backend format
+        String backendFormat = convertToBackendFormat(name, classification);
+        names.add(backendFormat);
+
+        if (geometry != null && properties.hasNonNull("lat") && properties.hasNonNull("lon")) {
+            features.add(new DistrictFeature(backendFormat, name, geometry,
+                    properties.get("lat").asDouble(), properties.get("lon").asDouble()));
+            geometries.add(geometry);
+            outputProperties.add(toOutputProperties(properties, backendFormat));
+        } else {
+            log.warn("District {} has no usable geometry / station location, skipped in spatial index",
+                    backendFormat);
+        }
+    }
+
+    /**
+     * GeoJSON Polygon / MultiPolygon → JTS geometry (null với kiểu khác).
+     * "coordinates" có thể đứng trước "type" nên đọc tọa độ trước, dựng geometry sau
+     */
+    private Geometry parseGeometry(JsonParser parser) throws IOException {
+        String type = null;
+        List<?> coordinates = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("type".equals(field) && value == JsonToken.VALUE_STRING) {
+                type = parser.getText();
+            } else if ("coordinates".equals(field) && value == JsonToken.START_ARRAY) {
+                coordinates = (List<?>) readCoordinates(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (type == null || coordinates == null) {
+            return null;
+        }
+        switch (type) {
+            case "Polygon":
+                return toPolygon(coordinates);
+            case "MultiPolygon":
+                Polygon[] polygons = new Polygon[coordinates.size()];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = toPolygon((List<?>) coordinates.get(i));
+                }
+                return geometryFactory.createMultiPolygon(polygons);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Mảng tọa độ lồng nhau (parser đang ở START_ARRAY): position [lon, lat, ...] → Coordinate,
+     * các mức ngoài → List
+     */
+    private static Object readCoordinates(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != null && token.isNumeric()) {
+            double x = parser.getDoubleValue();
+            parser.nextToken();
+            double y = parser.getDoubleValue();
+            // Bỏ qua altitude nếu có
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+            }
+            return new Coordinate(x, y);
+        }
+        List<Object> children = new ArrayList<>();
+        while (token == JsonToken.START_ARRAY) {
+            children.add(readCoordinates(parser));
+            token = parser.nextToken();
+        }
+        return children;
+    }
+
+    private Polygon toPolygon(List<?> rings) {
+        LinearRing shell = toRing((List<?>) rings.get(0));
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 1; i < rings.size(); i++) {
+            holes[i - 1] = toRing((List<?>) rings.get(i));
+        }
+        return geometryFactory.createPolygon(shell, holes);
+    }
+
+    private LinearRing toRing(List<?> positions) {
+        return geometryFactory.createLinearRing(positions.toArray(new Coordinate[0]));
     }
 
     /**
      * Convert to backend format (same logic as frontend geoJsonParser)
+     * Một lượt qua tên: bỏ tiền tố "Phường"/"Xã", bỏ dấu qua bảng tra, tách từ theo khoảng trắng / '-'
+     * và viết hoa chữ cái đầu mỗi từ
+     * Package-private để benchmark (src/jmh) gọi trực tiếp
+     */
+    String convertToBackendFormat(String name, String classification) {
+        int start = skipAdministrativePrefix(name);
+
+        StringBuilder result = new StringBuilder(name.length() + 6);
+        result.append(classification.equals("Phường") ? "Phuong" : "Xa");
+        boolean wordStart = true;
+        for (int i = start; i < name.length(); i++) {
+            char c = removeDiacritic(name.charAt(i));
+            if (isWordSeparator(c)) {
+                wordStart = true;
+            } else {
+                result.append(wordStart ? Character.toUpperCase(c) : Character.toLowerCase(c));
+                wordStart = false;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Vị trí sau tiền tố "Phường " / "Xã " (regex cũ: ^(Phường|Xã)\s+), 0 nếu không có
      */
-    private String convertToBackendFormat(String name, String classification) {
-        // Remove "Phường" or "Xã" prefix
-        String cleanName = name.replaceFirst("^(Phường|Xã)\\s+", "");
-        
-        // Remove diacritics
-        String withoutDiacritics = removeDiacritics(cleanName);
-        
-        // Split and capitalize
-        String[] words = withoutDiacritics.split("[\\s\\-]+");
-        StringBuilder result = new StringBuilder();
-        
-        for (String word : words) {
-            if (!word.isEmpty()) {
-                result.append(word.substring(0, 1).toUpperCase())
-                      .append(word.substring(1).toLowerCase());
+    private static int skipAdministrativePrefix(String name) {
+        for (String prefix : ADMINISTRATIVE_PREFIXES) {
+            if (name.startsWith(prefix) && name.length() > prefix.length()
+                    && isRegexWhitespace(name.charAt(prefix.length()))) {
+                int i = prefix.length();
+                while (i < name.length() && isRegexWhitespace(name.charAt(i))) {
+                    i++;
+                }
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static char[] buildDiacriticTable() {
+        String[][] groups = {
+                { "àáạảãâầấậẩẫăằắặẳẵ", "a" }, { "èéẹẻẽêềếệểễ", "e" }, { "ìíịỉĩ", "i" },
+                { "òóọỏõôồốộổỗơờớợởỡ", "o" }, { "ùúụủũưừứựửữ", "u" }, { "ỳýỵỷỹ", "y" }, { "đ", "d" },
+                { "ÀÁẠẢÃÂẦẤẬẨẪĂẰẮẶẲẴ", "A" }, { "ÈÉẸẺẼÊỀẾỆỂỄ", "E" }, { "ÌÍỊỈĨ", "I" },
+                { "ÒÓỌỎÕÔỒỐỘỔỖƠỜỚỢỞỠ", "O" }, { "ÙÚỤỦŨƯỪỨỰỬỮ", "U" }, { "ỲÝỴỶỸ", "Y" }, { "Đ", "D" },
+        };
+        char max = 0;
+        for (String[] group : groups) {
+            for (char c : group[0].toCharArray()) {
+                max = (char) Math.max(max, c);
+            }
+        }
+        char[] table = new char[max + 1];
+        for (String[] group : groups) {
+            for (char c : group[0].toCharArray()) {
+                table[c] = group[1].charAt(0);
             }
         }
-        
-        // Add prefix
-        String prefix = classification.equals("Phường") ? "Phuong" : "Xa";
-        return prefix + result.toString();
-    }
-
-    private String removeDiacritics(String text) {
-        return text
-            .replaceAll("[àáạảãâầấậẩẫăằắặẳẵ]", "a")
-            .replaceAll("[èéẹẻẽêềếệểễ]", "e")
-            .replaceAll("[ìíịỉĩ]", "i")
-            .replaceAll("[òóọỏõôồốộổỗơờớợởỡ]", "o")
-            .replaceAll("[ùúụủũưừứựửữ]", "u")
-            .replaceAll("[ỳýỵỷỹ]", "y")
-            .replaceAll("đ", "d")
-            .replaceAll("[ÀÁẠẢÃÂẦẤẬẨẪĂẰẮẶẲẴ]", "A")
-            .replaceAll("[ÈÉẸẺẼÊỀẾỆỂỄ]", "E")
-            .replaceAll("[ÌÍỊỈĨ]", "I")
-            .replaceAll("[ÒÓỌỎÕÔỒỐỘỔỖƠỜỚỢỞỠ]", "O")
-            .replaceAll("[ÙÚỤỦŨƯỪỨỰỬỮ]", "U")
-            .replaceAll("[ỲÝỴỶỸ]", "Y")
-            .replaceAll("Đ", "D");
+        return table;
+    }
+
+    private static char removeDiacritic(char c) {
+        if (c < DIACRITIC_TABLE.length && DIACRITIC_TABLE[c] != 0) {
+            return DIACRITIC_TABLE[c];
+        }
+        return c;
+    }
+
+    /**
+     * Ký tự tách từ của split("[\s\-]+")
+     */
+    private static boolean isWordSeparator(char c) {
+        return c == '-' || isRegexWhitespace(c);
+    }
+
+    /**
+     * \s của java.util.regex: [ \t\n\x0B\f\r]
+     */
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
     }
 }
\ No newline at end of file
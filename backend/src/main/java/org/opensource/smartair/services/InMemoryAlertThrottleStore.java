@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AlertThrottleStore trong process - state mất khi restart, không chia sẻ giữa replicas
+ * Key: district:level, Value: thời điểm hết window (epoch millis)
+ */
+@Service
+@ConditionalOnProperty(name = "notification.throttle.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryAlertThrottleStore implements AlertThrottleStore {
+
+    private final Map<String, Long> windowEnds = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public InMemoryAlertThrottleStore(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean tryAcquire(String district, String level, Duration window) {
+        String key = district + ":" + level;
+        long now = System.currentTimeMillis();
+
+        // Hot path không lock: window còn hiệu lực
+        Long windowEnd = windowEnds.get(key);
+        if (windowEnd != null && windowEnd > now) {
+            count("throttled");
+            return false;
+        }
+
+        long newWindowEnd = now + window.toMillis();
+        boolean[] acquired = new boolean[1];
+        windowEnds.compute(key, (k, current) -> {
+            if (current != null && current > now) {
+                return current;
+            }
+            acquired[0] = true;
+            return newWindowEnd;
+        });
+        count(acquired[0] ? "acquired" : "throttled");
+        return acquired[0];
+    }
+
+    @Override
+    public void release(String district, String level) {
+        windowEnds.remove(district + ":" + level);
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("notification.throttle", "store", "memory", "result", result).increment();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.SseBusMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * SseEventBus trong process: publish gọi listener đồng bộ (như broadcast trực tiếp)
+ * Một instance có thể dùng chung cho nhiều SseService để mô phỏng cluster trong test
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "sse.bus", havingValue = "local", matchIfMissing = true)
+public class InMemorySseEventBus implements SseEventBus {
+
+    private final List<Consumer<SseBusMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(SseBusMessage message) {
+        for (Consumer<SseBusMessage> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (Exception e) {
+                log.error("Error delivering {} event: {}", message.getTopic(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<SseBusMessage> listener) {
+        listeners.add(listener);
+    }
+}
@@ -22,36 +22,87 @@
 package org.opensource.smartair.services;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.JwtClaims;
 import org.opensource.smartair.models.User;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service xử lý JWT operations
  * - Generate token
  * - Validate token
  * - Extract claims (userId, email, role)
+ *
+ * parseAndVerify: parse + verify chữ ký một lần, trả JwtClaims.
+ * Token đã verify được cache (key = SHA-256 của token) tới khi hết hạn, giới hạn jwt.cache.max-entries
  */
 @Service
 @Slf4j
 public class JwtService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${jwt.secret}")
     private String secretKey;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    private final Map<String, JwtClaims> verifiedTokens = new ConcurrentHashMap<>();
+
+    private Counter cacheHits;
+    private Counter verified;
+    private Counter rejected;
+
+    public JwtService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Build signing key + parser một lần (thread-safe, dùng lại cho mọi request)
+     */
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+
+        cacheHits = verifyCounter("cache_hit");
+        verified = verifyCounter("verified");
+        rejected = verifyCounter("rejected");
+        Gauge.builder("jwt.cache.size", verifiedTokens, Map::size)
+                .description("Verified JWTs cached until expiry")
+                .register(meterRegistry);
+    }
+
     /**
      * Generate JWT token từ User
      */
@@ -65,13 +116,53 @@ public class JwtService {
         return createToken(claims, user.getEmail());
     }
 
+    /**
+     * Parse + verify chữ ký và expiration một lần, trả về claims đã verify
+     * Token đã verify trước đó được lấy từ cache (không parse / HMAC lại)
+     *
+     * @throws JwtException nếu chữ ký sai, token malformed hoặc đã hết hạn
+     */
+    public JwtClaims parseAndVerify(String token) {
+        String cacheKey = cacheMaxEntries > 0 ? hash(token) : null;
+        if (cacheKey != null) {
+            JwtClaims cached = verifiedTokens.get(cacheKey);
+            if (cached != null) {
+                if (!cached.isExpired(System.currentTimeMillis())) {
+                    cacheHits.increment();
+                    return cached;
+                }
+                // Hết hạn: bỏ khỏi cache, parser bên dưới ném ExpiredJwtException
+                verifiedTokens.remove(cacheKey);
+            }
+        }
+
+        JwtClaims claims;
+        try {
+            Claims payload = parser.parseSignedClaims(token).getPayload();
+            claims = new JwtClaims(
+                    payload.get("userId", Long.class),
+                    payload.getSubject(),
+                    payload.get("role", String.class),
+                    payload.get("fullName", String.class),
+                    payload.getExpiration() != null ? payload.getExpiration().getTime() : Long.MAX_VALUE);
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.increment();
+            throw e;
+        }
+        verified.increment();
+
+        if (cacheKey != null) {
+            remember(cacheKey, claims);
+        }
+        return claims;
+    }
+
     /**
      * Validate token: check expiration và signature
      */
     public boolean validateToken(String token, String email) {
         try {
-            String extractedEmail = extractEmail(token);
-            return extractedEmail.equals(email) && !isTokenExpired(token);
+            return parseAndVerify(token).email().equals(email);
         } catch (Exception e) {
             log.error("Token validation failed: {}", e.getMessage());
             return false;
@@ -82,45 +173,55 @@ public class JwtService {
      * Extract email từ token
      */
     public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseAndVerify(token).email();
     }
 
     /**
      * Extract userId từ token
      */
     public Long extractUserId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("userId", Long.class);
+        return parseAndVerify(token).userId();
     }
 
     /**
      * Extract role từ token
      */
     public String extractRole(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("role", String.class);
+        return parseAndVerify(token).role();
     }
 
     /**
      * Extract fullName từ token
      */
     public String extractFullName(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("fullName", String.class);
+        return parseAndVerify(token).fullName();
     }
 
     /**
      * Extract expiration date từ token
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return new Date(parseAndVerify(token).expiresAtMillis());
     }
 
     /**
      * Check xem token đã hết hạn chưa
      */
     public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        try {
+            return parseAndVerify(token).isExpired(System.currentTimeMillis());
+        } catch (ExpiredJwtException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Dọn các token đã hết hạn khỏi cache
+     */
+    @Scheduled(fixedDelayString = "${jwt.cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        verifiedTokens.values().removeIf(claims -> claims.isExpired(now));
     }
 
     // ============ Private Helper Methods ============
@@ -137,34 +238,39 @@ public class JwtService {
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     /**
-     * Extract specific claim từ token
+     * Cache đầy: dọn token hết hạn trước, vẫn đầy thì bỏ qua (request sau verify lại)
      */
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    private void remember(String cacheKey, JwtClaims claims) {
+        if (verifiedTokens.size() >= cacheMaxEntries) {
+            purgeExpired();
+            if (verifiedTokens.size() >= cacheMaxEntries) {
+                return;
+            }
+        }
+        verifiedTokens.put(cacheKey, claims);
     }
 
     /**
-     * Extract tất cả claims từ token
+     * SHA-256 của token - cache không giữ token gốc
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
-    /**
-     * Get signing key từ secret
-     */
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private Counter verifyCounter(String result) {
+        return Counter.builder("jwt.verify")
+                .tag("result", result)
+                .description("JWT verifications by result")
+                .register(meterRegistry);
     }
 }
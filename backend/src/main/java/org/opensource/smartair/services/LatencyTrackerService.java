@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.utils.PipelineTrace;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo latency end-to-end từ observedAt của sensor tới lúc event được ghi ra SSE
+ *
+ * Metrics (tag type=weatherObserved|airQualityObserved):
+ * - pipeline.ingest.lag: observedAt → nhận notification
+ * - pipeline.stage{stage=transform|emit|write}: thời gian từng chặng
+ * - pipeline.end.to.end: observedAt → ghi ra SSE (mỗi subscriber 1 mẫu)
+ * - pipeline.freshness.lag.max: lag lớn nhất (giây) giữa các district, dùng để alert
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LatencyTrackerService {
+
+    public static final List<String> TRACED_TYPES = List.of("weatherObserved", "airQualityObserved");
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Tỉ lệ event được log chi tiết từng chặng (0.0 = tắt, 1.0 = tất cả)
+     */
+    @Value("${pipeline.trace.sample-rate:0.0}")
+    private double traceSampleRate;
+
+    /**
+     * Key: entityType + ":" + district
+     */
+    private final Map<String, Freshness> freshness = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMeters() {
+        for (String type : TRACED_TYPES) {
+            Gauge.builder("pipeline.freshness.lag.max", this, tracker -> tracker.maxLagSeconds(type))
+                    .tag("type", type)
+                    .baseUnit("seconds")
+                    .description("Largest observedAt lag across districts")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Mốc 1: nhận notification
+     */
+    public PipelineTrace start(String entityType) {
+        return new PipelineTrace(entityType);
+    }
+
+    /**
+     * Mốc 2: transform xong - biết district và observedAt
+     */
+    public void markTransformed(PipelineTrace trace, String district, String observedAt) {
+        if (trace == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        trace.setTransformedAtNanos(now);
+        trace.setDistrict(district);
+        trace.setObservedAtMillis(parseObservedAt(observedAt));
+
+        stageTimer(trace, "transform").record(now - trace.getReceivedAtNanos(), TimeUnit.NANOSECONDS);
+
+        if (trace.getObservedAtMillis() > 0) {
+            long ingestLag = trace.getReceivedAtMillis() - trace.getObservedAtMillis();
+            if (ingestLag >= 0) {
+                meterRegistry.timer("pipeline.ingest.lag", "type", trace.getEntityType())
+                        .record(ingestLag, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (district != null) {
+            freshness.compute(freshnessKey(trace.getEntityType(), district), (key, previous) -> new Freshness(
+                    Math.max(trace.getObservedAtMillis(), previous != null ? previous.observedAtMillis() : -1),
+                    trace.getReceivedAtMillis(),
+                    previous != null ? previous.deliveredAtMillis() : -1));
+        }
+    }
+
+    /**
+     * Mốc 3: ngay trước khi emit vào sink
+     */
+    public void markEmitted(PipelineTrace trace) {
+        if (trace == null || trace.getTransformedAtNanos() == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        trace.setEmittedAtNanos(now);
+        stageTimer(trace, "emit").record(now - trace.getTransformedAtNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Mốc 4: event được đưa xuống SSE connection của một subscriber
+     */
+    public void markWritten(PipelineTrace trace) {
+        if (trace == null || trace.getEmittedAtNanos() == 0) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        stageTimer(trace, "write").record(nowNanos - trace.getEmittedAtNanos(), TimeUnit.NANOSECONDS);
+
+        long endToEndMillis = -1;
+        if (trace.getObservedAtMillis() > 0) {
+            endToEndMillis = nowMillis - trace.getObservedAtMillis();
+            if (endToEndMillis >= 0) {
+                meterRegistry.timer("pipeline.end.to.end", "type", trace.getEntityType())
+                        .record(endToEndMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (trace.getDistrict() != null) {
+            freshness.computeIfPresent(freshnessKey(trace.getEntityType(), trace.getDistrict()),
+                    (key, previous) -> new Freshness(previous.observedAtMillis(), previous.receivedAtMillis(),
+                            nowMillis));
+        }
+
+        if (traceSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < traceSampleRate) {
+            log.info("Pipeline trace {} {}: ingest={}ms transform={}us emit={}us write={}us endToEnd={}ms",
+                    trace.getEntityType(), trace.getDistrict(),
+                    trace.getObservedAtMillis() > 0 ? trace.getReceivedAtMillis() - trace.getObservedAtMillis() : -1,
+                    TimeUnit.NANOSECONDS.toMicros(trace.getTransformedAtNanos() - trace.getReceivedAtNanos()),
+                    TimeUnit.NANOSECONDS.toMicros(trace.getEmittedAtNanos() - trace.getTransformedAtNanos()),
+                    TimeUnit.NANOSECONDS.toMicros(nowNanos - trace.getEmittedAtNanos()),
+                    endToEndMillis);
+        }
+    }
+
+    /**
+     * Freshness lag hiện tại theo district
+     * lagSeconds = now - observedAt mới nhất đã nhận cho district đó
+     */
+    public Map<String, Object> getFreshnessReport() {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Object>> districts = new TreeMap<>();
+        Map<String, Long> maxLag = new LinkedHashMap<>();
+
+        freshness.forEach((key, entry) -> {
+            int separator = key.indexOf(':');
+            String type = key.substring(0, separator);
+            String district = key.substring(separator + 1);
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("observedAt", entry.observedAtMillis() > 0 ? Instant.ofEpochMilli(entry.observedAtMillis()).toString() : null);
+            item.put("lagSeconds", entry.observedAtMillis() > 0 ? (now - entry.observedAtMillis()) / 1000 : null);
+            item.put("receivedAt", Instant.ofEpochMilli(entry.receivedAtMillis()).toString());
+            item.put("lastDeliveredAt", entry.deliveredAtMillis() > 0 ? Instant.ofEpochMilli(entry.deliveredAtMillis()).toString() : null);
+
+            districts.computeIfAbsent(district, d -> new TreeMap<>()).put(type, item);
+        });
+
+        for (String type : TRACED_TYPES) {
+            maxLag.put(type, (long) maxLagSeconds(type));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.ofEpochMilli(now).toString());
+        report.put("maxLagSeconds", maxLag);
+        report.put("districts", districts);
+        return report;
+    }
+
+    private double maxLagSeconds(String type) {
+        long now = System.currentTimeMillis();
+        String prefix = type + ":";
+        long maxLag = 0;
+        for (Map.Entry<String, Freshness> entry : freshness.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && entry.getValue().observedAtMillis() > 0) {
+                maxLag = Math.max(maxLag, now - entry.getValue().observedAtMillis());
+            }
+        }
+        return maxLag / 1000.0;
+    }
+
+    private Timer stageTimer(PipelineTrace trace, String stage) {
+        return meterRegistry.timer("pipeline.stage", "type", trace.getEntityType(), "stage", stage);
+    }
+
+    private static String freshnessKey(String entityType, String district) {
+        return entityType + ":" + district;
+    }
+
+    private static long parseObservedAt(String observedAt) {
+        if (observedAt == null || observedAt.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Instant.parse(observedAt).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private record Freshness(long observedAtMillis, long receivedAtMillis, long deliveredAtMillis) {
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.utils.RateLimitedException;
+import org.opensource.smartair.utils.TokenBucketRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+
+/**
+ * Giới hạn số lần đăng nhập theo email và theo IP (token bucket in-memory)
+ * Chạy trước bước BCrypt để burst brute-force bị từ chối mà không tốn CPU
+ *
+ * Metrics: auth.login.rate_limited{key=email|ip}, auth.login.rate_limiter.keys{key}
+ */
+@Slf4j
+@Service
+public class LoginRateLimiter {
+
+    private final TokenBucketRateLimiter byEmail;
+    private final TokenBucketRateLimiter byIp;
+    private final Counter emailRejections;
+    private final Counter ipRejections;
+
+    public LoginRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${security.login.rate-limit.email.capacity:5}") int emailCapacity,
+            @Value("${security.login.rate-limit.email.refill-per-minute:5}") double emailRefillPerMinute,
+            @Value("${security.login.rate-limit.ip.capacity:20}") int ipCapacity,
+            @Value("${security.login.rate-limit.ip.refill-per-minute:30}") double ipRefillPerMinute,
+            @Value("${security.login.rate-limit.max-keys:100000}") int maxKeys) {
+        this.byEmail = new TokenBucketRateLimiter(emailCapacity, emailRefillPerMinute, maxKeys);
+        this.byIp = new TokenBucketRateLimiter(ipCapacity, ipRefillPerMinute, maxKeys);
+
+        this.emailRejections = Counter.builder("auth.login.rate_limited")
+                .tag("key", "email")
+                .description("Login attempts rejected by the rate limiter")
+                .register(meterRegistry);
+        this.ipRejections = Counter.builder("auth.login.rate_limited")
+                .tag("key", "ip")
+                .description("Login attempts rejected by the rate limiter")
+                .register(meterRegistry);
+        Gauge.builder("auth.login.rate_limiter.keys", byEmail, TokenBucketRateLimiter::size)
+                .tag("key", "email")
+                .register(meterRegistry);
+        Gauge.builder("auth.login.rate_limiter.keys", byIp, TokenBucketRateLimiter::size)
+                .tag("key", "ip")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tiêu 1 token cho IP và 1 token cho email
+     *
+     * @throws RateLimitedException nếu IP hoặc email đã hết token
+     */
+    public void acquire(String email, String clientIp) {
+        if (clientIp != null) {
+            long retryAfter = byIp.tryAcquire(clientIp);
+            if (retryAfter > 0) {
+                ipRejections.increment();
+                log.warn("Login rate limit exceeded for IP {}", clientIp);
+                throw new RateLimitedException("Too many login attempts, retry after " + retryAfter + "s",
+                        retryAfter);
+            }
+        }
+        if (email != null) {
+            long retryAfter = byEmail.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+            if (retryAfter > 0) {
+                emailRejections.increment();
+                log.warn("Login rate limit exceeded for email {}", email);
+                throw new RateLimitedException("Too many login attempts, retry after " + retryAfter + "s",
+                        retryAfter);
+            }
+        }
+    }
+
+    /**
+     * Dọn bucket idle định kỳ để map không giữ mọi email / IP từng thấy
+     */
+    @Scheduled(fixedDelayString = "${security.login.rate-limit.evict-interval-ms:300000}")
+    public void evictIdle() {
+        byEmail.evictIdle();
+        byIp.evictIdle();
+    }
+}
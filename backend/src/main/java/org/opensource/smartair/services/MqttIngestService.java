@@ -0,0 +1,273 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.opensource.smartair.utils.IotaJsonDecoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kênh ingest trực tiếp từ Mosquitto (tùy chọn, mqtt.ingest.enabled=true)
+ *
+ * Subscribe cùng topic IoTA-JSON mà IoT Agent nghe (/{apikey}/{device_id}/attrs), decode thành
+ * WeatherDataDTO / AirQualityDataDTO và đẩy thẳng qua SseService - bỏ qua các hop
+ * IoT Agent → Orion-LD → HTTP notification cho live update.
+ *
+ * Chỉ phục vụ live SSE: lịch sử QuantumLeap, cảnh báo email và mọi thứ cần lưu trữ vẫn đi theo
+ * notification của Orion-LD (đường chính thức). Khi notification tới, dashboard nhận lại bản ghi
+ * đã chuẩn hóa và ghi đè bản live.
+ *
+ * Mỗi replica subscribe với client id riêng nên đều nhận đủ message: chỉ fan-out tới subscriber
+ * cục bộ (không qua SseEventBus), nếu không mỗi event bị nhân N lần với N replica.
+ *
+ * Message có dateObserved đi qua EntityVersionTracker: bỏ nếu Orion-LD đã xử lý lần đo này hoặc
+ * lần đo mới hơn (peek, không ghi vào version của Orion-LD), và thứ tự riêng của kênh MQTT được
+ * theo dõi dưới key "mqtt:{entityId}". Message không có dateObserved không so được version nên
+ * luôn được broadcast và không tính vào mqtt.ingest.lag.
+ *
+ * Metrics: mqtt.ingest.messages{type,result}, mqtt.ingest.lag (dateObserved → broadcast)
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "mqtt.ingest.enabled", havingValue = "true")
+public class MqttIngestService implements MqttCallbackExtended {
+
+    private final NgsiTransformerService transformerService;
+    private final SseService sseService;
+    private final DistrictRegistry districtRegistry;
+    private final EntityVersionTracker versionTracker;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final MqttClient client;
+    private final String[] topics;
+
+    /**
+     * QoS 0: live update mất một bản cũng không sao, bản kế tiếp hoặc notification Orion-LD sẽ bù
+     */
+    @Value("${mqtt.ingest.qos:0}")
+    private int qos;
+
+    public MqttIngestService(
+            NgsiTransformerService transformerService,
+            SseService sseService,
+            DistrictRegistry districtRegistry,
+            EntityVersionTracker versionTracker,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${mqtt.ingest.broker-url:tcp://localhost:1883}") String brokerUrl,
+            @Value("${mqtt.ingest.topics:/${orion.tenant:hanoi}/+/attrs}") List<String> topics,
+            @Value("${mqtt.ingest.client-id:}") String clientId) throws MqttException {
+        this.transformerService = transformerService;
+        this.sseService = sseService;
+        this.districtRegistry = districtRegistry;
+        this.versionTracker = versionTracker;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.topics = topics.toArray(String[]::new);
+
+        // Client id phải duy nhất trên broker: mỗi replica một id nếu không cấu hình
+        String id = clientId.isBlank() ? "smartair-ingest-" + UUID.randomUUID().toString().substring(0, 8) : clientId;
+        this.client = new MqttClient(brokerUrl, id, new MemoryPersistence());
+        this.client.setCallback(this);
+
+        log.info("Initialized MQTT ingest for {} (client {}), topics {}", brokerUrl, id, topics);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void connectOnStartup() {
+        ensureConnected();
+    }
+
+    /**
+     * Kết nối lần đầu (Paho chỉ tự reconnect sau khi đã connect thành công một lần)
+     */
+    @Scheduled(fixedDelayString = "${mqtt.ingest.reconnect-interval-ms:10000}",
+            initialDelayString = "${mqtt.ingest.reconnect-interval-ms:10000}")
+    public synchronized void ensureConnected() {
+        if (client.isConnected()) {
+            return;
+        }
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(true);
+        options.setConnectionTimeout(5);
+        try {
+            client.connect(options);
+            subscribe();
+        } catch (MqttException e) {
+            // Đã connect / đang connect lại: để automatic reconnect lo
+            if (e.getReasonCode() != MqttException.REASON_CODE_CLIENT_CONNECTED
+                    && e.getReasonCode() != MqttException.REASON_CODE_CONNECT_IN_PROGRESS) {
+                log.warn("MQTT ingest broker unavailable ({}), retrying later", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        // Clean session: subscription mất sau khi automatic reconnect nên subscribe lại
+        // (lần connect đầu tiên đã subscribe trong ensureConnected)
+        if (!reconnect) {
+            return;
+        }
+        try {
+            subscribe();
+            log.info("MQTT ingest reconnected to {}", serverURI);
+        } catch (MqttException e) {
+            log.error("MQTT ingest failed to resubscribe to {}", String.join(", ", topics), e);
+        }
+    }
+
+    private void subscribe() throws MqttException {
+        int[] qosLevels = new int[topics.length];
+        Arrays.fill(qosLevels, qos);
+        client.subscribe(topics, qosLevels);
+        log.info("MQTT ingest subscribed to {}", String.join(", ", topics));
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        log.warn("MQTT ingest connection lost: {}", cause != null ? cause.getMessage() : "unknown");
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // Chỉ subscribe, không publish
+    }
+
+    /**
+     * Chạy trên thread callback của Paho: không được ném exception (Paho sẽ ngắt kết nối)
+     */
+    @Override
+    public void messageArrived(String topic, MqttMessage message) {
+        String deviceId = IotaJsonDecoder.deviceIdFromTopic(topic);
+        String type = IotaJsonDecoder.entityTypeForDevice(deviceId);
+        if (type == null) {
+            count("unknown", "ignored");
+            return;
+        }
+        try {
+            Map<String, Object> payload = objectMapper.readValue(message.getPayload(),
+                    new TypeReference<Map<String, Object>>() {
+                    });
+            Map<String, Object> entity = IotaJsonDecoder.toEntity(deviceId, payload, Instant.now().toString());
+            String entityId = entity != null ? (String) entity.get("id") : null;
+            if (entityId == null || districtRegistry.findByEntityId(entityId) == null) {
+                count(type, "unmapped");
+                return;
+            }
+
+            // Không có dateObserved: observedAt là thời điểm nhận, không dùng để so version / đo lag
+            String dateObserved = payload.get("dateObserved") instanceof String date ? date : null;
+            String dropReason = checkVersion(entityId, EntityVersionTracker.toEpochMillis(dateObserved));
+            if (dropReason != null) {
+                count(type, dropReason);
+                return;
+            }
+
+            if (IotaJsonDecoder.WEATHER_TYPE.equals(type)) {
+                sseService.broadcastWeatherLocally(transformerService.transformWeatherObserved(entity));
+            } else {
+                sseService.broadcastAirQualityLocally(transformerService.transformAirQualityObserved(entity));
+            }
+            recordLag(dateObserved);
+            count(type, "broadcast");
+        } catch (Exception e) {
+            count(type, "error");
+            log.warn("MQTT ingest could not decode message on {}: {}", topic, e.getMessage());
+        }
+    }
+
+    /**
+     * @return lý do bỏ message (result của mqtt.ingest.messages), null nếu được broadcast
+     */
+    private String checkVersion(String entityId, long observedAt) {
+        // Orion-LD đã xử lý lần đo này hoặc mới hơn: bản live chỉ kéo dashboard lùi lại
+        if (!versionTracker.peek(entityId, observedAt, 0).isAccepted()) {
+            return "stale";
+        }
+        return switch (versionTracker.check("mqtt:" + entityId, observedAt, 0)) {
+            case DUPLICATE -> "duplicate";
+            case OUT_OF_ORDER -> "out_of_order";
+            default -> null;
+        };
+    }
+
+    private void count(String type, String result) {
+        meterRegistry.counter("mqtt.ingest.messages", "type", type, "result", result).increment();
+    }
+
+    private void recordLag(String observedAt) {
+        if (observedAt == null) {
+            return;
+        }
+        try {
+            long lagMillis = Duration.between(Instant.parse(observedAt), Instant.now()).toMillis();
+            if (lagMillis >= 0) {
+                meterRegistry.timer("mqtt.ingest.lag").record(lagMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (DateTimeParseException e) {
+            // observedAt không theo ISO-8601 (vd: cảm biến thật): bỏ qua metric
+        }
+    }
+
+    @PreDestroy
+    public void disconnect() {
+        try {
+            if (client.isConnected()) {
+                client.disconnect(1000);
+            }
+            client.close();
+        } catch (MqttException e) {
+            log.debug("MQTT ingest disconnect failed: {}", e.getMessage());
+        }
+    }
+}
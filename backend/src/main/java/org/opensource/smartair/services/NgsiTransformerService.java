@@ -21,6 +21,7 @@
  */
 package org.opensource.smartair.services;
 
+import lombok.RequiredArgsConstructor;
 import org.opensource.smartair.dtos.*;
 import org.springframework.stereotype.Service;
 
@@ -32,8 +33,11 @@ import java.util.Map;
  * Handles data conversion (integer to double) for numeric fields
  */
 @Service
+@RequiredArgsConstructor
 public class NgsiTransformerService {
 
+    private final DistrictRegistry districtRegistry;
+
     /**
      * Transform WeatherObserved entity to DTO
      * NO conversion needed - ETL sends float values directly
@@ -366,33 +370,9 @@ public class NgsiTransformerService {
      * Extract district slug from entity ID
      * Pattern: urn:ngsi-ld:Type:Hanoi-{DistrictSlug}-timestamp
      * or: urn:ngsi-ld:Type:Sensor-{DistrictSlug}
+     * Delegates to DistrictRegistry (no split / substring for known districts)
      */
     public String extractDistrictFromId(String entityId) {
-        if (entityId == null)
-            return null;
-
-        String[] parts = entityId.split(":");
-        if (parts.length < 4)
-            return null;
-
-        String lastPart = parts[3]; // e.g., "Hanoi-PhuongHoanKiem-2025-11-05T..."
-
-        // For observations: extract between "Hanoi-" and "-timestamp"
-        if (lastPart.contains("Hanoi-")) {
-            String[] subParts = lastPart.split("-");
-            if (subParts.length >= 2) {
-                return subParts[1]; // "PhuongHoanKiem"
-            }
-        }
-
-        // For devices/platforms: extract after "Sensor-" or "Station-"
-        if (lastPart.contains("Sensor-")) {
-            return lastPart.substring(lastPart.indexOf("Sensor-") + 7);
-        }
-        if (lastPart.contains("Station-")) {
-            return lastPart.substring(lastPart.indexOf("Station-") + 8);
-        }
-
-        return null;
+        return districtRegistry.districtFromEntityId(entityId);
     }
 }
@@ -21,19 +21,18 @@
  */
 package org.opensource.smartair.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.AirQualityDataDTO;
-import org.opensource.smartair.models.Resident;
-import org.opensource.smartair.repositories.ResidentRepository;
+import org.opensource.smartair.dtos.AlertRecipientDTO;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service xử lý logic gửi thông báo (BLOCKING JPA)
@@ -43,27 +42,26 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class NotificationService {
 
-    private final ResidentRepository residentRepository;
-    private final EmailService emailService;
+    private final SubscriberIndexService subscriberIndexService;
+    private final EmailOutboxService emailOutboxService;
+    private final AlertThrottleStore alertThrottleStore;
+    private final MeterRegistry meterRegistry;
 
     /**
-     * Cache để lưu thời điểm gửi email cuối cùng cho mỗi district
-     * Key: district name
-     * Value: LocalDateTime của lần gửi cuối
-     */
-    private final Map<String, LocalDateTime> lastAlertTimestamps = new ConcurrentHashMap<>();
-
-    /**
-     * Khoảng thời gian tối thiểu giữa 2 lần gửi email (mặc định: 180 phút)
+     * Khoảng thời gian tối thiểu giữa 2 lần gửi email cho cùng district + level (mặc định: 180 phút)
      * Đọc từ application.properties: notification.alert.throttle.minutes
+     * Có thể đặt riêng cho từng level: notification.alert.throttle.poor-minutes / very-poor-minutes
      */
-    @Value("${notification.alert.throttle.minutes:180}")
-    private int throttleMinutes;
+    @Value("${notification.alert.throttle.poor-minutes:${notification.alert.throttle.minutes:180}}")
+    private int poorThrottleMinutes;
+
+    @Value("${notification.alert.throttle.very-poor-minutes:${notification.alert.throttle.minutes:180}}")
+    private int veryPoorThrottleMinutes;
 
     /**
      * Gửi cảnh báo chất lượng không khí đến residents theo dõi district đó
      * CHỈ gửi khi AQI ở mức poor (4) hoặc very poor (5)
-     * VÀ chỉ gửi 1 lần trong khoảng THROTTLE_MINUTES (mặc định 180 phút)
+     * VÀ chỉ gửi 1 lần cho mỗi district + level trong throttle window (mặc định 180 phút)
      * 
      * @Async để không block notification thread
      */
@@ -73,31 +71,30 @@ public class NotificationService {
         if (!shouldSendAlert(airQuality)) {
             log.debug("Air quality level is acceptable ({}), no alert needed",
                     airQuality.getAirQualityLevel());
+            countAlert("not_needed");
             return;
         }
 
         String district = airQuality.getDistrict() != null ? airQuality.getDistrict() : airQuality.getStationName();
 
-        // KIỂM TRA RATE LIMITING: Chỉ gửi nếu đã qua đủ thời gian throttle
-        if (isThrottled(district)) {
-            LocalDateTime lastAlert = lastAlertTimestamps.get(district);
-            long minutesSinceLastAlert = java.time.Duration.between(lastAlert, LocalDateTime.now()).toMinutes();
-            log.info("Alert throttled for {} - last alert sent {} minutes ago (threshold: {} minutes)",
-                    district, minutesSinceLastAlert, throttleMinutes);
-            return;
-        }
-
-        // Lấy tất cả residents đã verify và bật notification (JPA với JOIN FETCH)
-        List<Resident> allResidents = residentRepository.findVerifiedResidentsWithNotificationEnabled();
-
-        // FILTER chỉ lấy residents subscribe district này
-        List<Resident> subscribedResidents = allResidents.stream()
-                .filter(resident -> resident.getStations().stream()
-                        .anyMatch(station -> station.getDistrict().equals(district)))
-                .toList();
+        // Lấy residents (đã verify, bật notification) subscribe district này từ inverted index
+        List<AlertRecipientDTO> subscribedResidents = meterRegistry.timer("notification.recipients.lookup")
+                .record(() -> subscriberIndexService.getRecipients(district));
 
         if (subscribedResidents.isEmpty()) {
             log.info("No residents subscribed to {} for air quality alert", district);
+            countAlert("no_subscribers");
+            return;
+        }
+
+        // KIỂM TRA RATE LIMITING: check-and-set window theo district + level (dùng chung giữa replicas)
+        // Làm sau khi biết có người nhận để district chưa ai theo dõi không chiếm window
+        String level = alertLevel(airQuality);
+        Duration window = Duration.ofMinutes("very-poor".equals(level) ? veryPoorThrottleMinutes : poorThrottleMinutes);
+        if (!alertThrottleStore.tryAcquire(district, level, window)) {
+            log.info("Alert throttled for {} ({}) - already sent within the last {} minutes",
+                    district, level, window.toMinutes());
+            countAlert("throttled");
             return;
         }
 
@@ -105,46 +102,39 @@ public class NotificationService {
                 district, airQuality.getAirQualityIndex(), airQuality.getAirQualityLevel(),
                 subscribedResidents.size());
 
-        // Gửi email đến từng resident
-        int successCount = 0;
-        for (Resident resident : subscribedResidents) {
-            try {
-                emailService.sendAirQualityAlert(
-                        resident.getUser().getEmail(),
-                        resident.getUser().getFullName(),
-                        airQuality);
-                successCount++;
-            } catch (Exception e) {
-                log.error("Failed to send alert to resident: {}", resident.getUser().getEmail(), e);
-            }
+        // Render + lưu vào email outbox, EmailOutboxService gửi theo batch qua pool SMTP
+        Timer.Sample dispatchSample = Timer.start(meterRegistry);
+        int queuedCount;
+        try {
+            queuedCount = emailOutboxService.enqueueAlerts(subscribedResidents, airQuality);
+        } catch (RuntimeException e) {
+            // Mở lại window để sự kiện sau được gửi
+            alertThrottleStore.release(district, level);
+            countAlert("failed");
+            throw e;
         }
 
-        // CẬP NHẬT timestamp của lần gửi cuối
-        lastAlertTimestamps.put(district, LocalDateTime.now());
+        dispatchSample.stop(meterRegistry.timer("notification.alert.dispatch"));
+        meterRegistry.summary("notification.alert.recipients").record(subscribedResidents.size());
+        countAlert("dispatched");
 
-        log.info("Successfully sent air quality alerts to {}/{} residents for {}",
-                successCount, subscribedResidents.size(), district);
+        log.info("Queued air quality alerts for {}/{} residents for {}",
+                queuedCount, subscribedResidents.size(), district);
+    }
+
+    private void countAlert(String result) {
+        meterRegistry.counter("notification.alerts", "result", result).increment();
     }
 
     /**
-     * Kiểm tra xem district có bị throttle không (đã gửi email gần đây)
-     * 
-     * @param district Tên quận/phường
-     * @return true nếu bị throttle (không được gửi), false nếu được phép gửi
+     * Level dùng cho throttle window: "poor" (AQI 4) hoặc "very-poor" (AQI 5)
      */
-    private boolean isThrottled(String district) {
-        LocalDateTime lastAlert = lastAlertTimestamps.get(district);
-
-        if (lastAlert == null) {
-            // Chưa từng gửi email cho district này
-            return false;
+    private String alertLevel(AirQualityDataDTO airQuality) {
+        Integer aqi = airQuality.getAirQualityIndex();
+        if (aqi != null) {
+            return aqi >= 5 ? "very-poor" : "poor";
         }
-
-        LocalDateTime now = LocalDateTime.now();
-        long minutesSinceLastAlert = java.time.Duration.between(lastAlert, now).toMinutes();
-
-        // Nếu chưa đủ throttleMinutes thì bị throttle
-        return minutesSinceLastAlert < throttleMinutes;
+        return "very poor".equalsIgnoreCase(airQuality.getAirQualityLevel()) ? "very-poor" : "poor";
     }
 
     /**
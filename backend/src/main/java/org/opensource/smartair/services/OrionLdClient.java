@@ -24,6 +24,8 @@ package org.opensource.smartair.services;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.*;
+import org.opensource.smartair.utils.UpstreamGuard;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -45,6 +47,7 @@ public class OrionLdClient {
     private final WebClient webClientNoContext; // Without Link header for ID queries
     private final NgsiTransformerService transformerService;
     private final ObjectMapper objectMapper;
+    private final UpstreamGuard guard;
 
     @Value("${orion.url:http://orion:1026}")
     private String orionUrl;
@@ -54,8 +57,10 @@ public class OrionLdClient {
 
     public OrionLdClient(NgsiTransformerService transformerService,
             @Value("${orion.url:http://orion:1026}") String orionUrl,
-            @Value("${orion.tenant:hanoi}") String tenant) {
+            @Value("${orion.tenant:hanoi}") String tenant,
+            @Qualifier("orionGuard") UpstreamGuard guard) {
         this.transformerService = transformerService;
+        this.guard = guard;
         this.objectMapper = new ObjectMapper();
         this.orionUrl = orionUrl;
         this.tenant = tenant;
@@ -102,7 +107,7 @@ public class OrionLdClient {
 
         log.debug("Querying weather data: type={}, q={}", entityType, query);
 
-        return webClient.get()
+        return guard.execute("weather:" + district, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", entityType)
@@ -111,7 +116,8 @@ public class OrionLdClient {
                         // Remove keyValues to get normalized format (which transformerService expects)
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("weather:" + district, error))
                 .flatMap(entities -> {
                     if (entities == null || entities.isEmpty()) {
                         log.warn("No weather data found for district: {}", district);
@@ -145,7 +151,7 @@ public class OrionLdClient {
 
         log.debug("Querying air quality data: type={}, q={}", entityType, query);
 
-        return webClient.get()
+        return guard.execute("airquality:" + district, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", entityType)
@@ -154,7 +160,8 @@ public class OrionLdClient {
                         // Remove keyValues to get normalized format
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("airquality:" + district, error))
                 .flatMap(entities -> {
                     if (entities == null || entities.isEmpty()) {
                         log.warn("No air quality data found for district: {}", district);
@@ -183,10 +190,11 @@ public class OrionLdClient {
      * Uses webClientNoContext (no Link header needed for direct entity fetch)
      */
     public Mono<PlatformDataDTO> getPlatform(String platformId) {
-        return webClientNoContext.get()
+        return guard.execute("platform:" + platformId, webClientNoContext.get()
                 .uri("/ngsi-ld/v1/entities/{entityId}", platformId)
                 .retrieve()
-                .bodyToMono(Map.class)
+                .bodyToMono(Map.class))
+                .onErrorResume(error -> guard.staleOrError("platform:" + platformId, error))
                 .flatMap(entity -> {
                     try {
                         PlatformDataDTO data = transformerService.transformPlatform(entity);
@@ -208,10 +216,11 @@ public class OrionLdClient {
      * Uses webClientNoContext (no Link header needed for direct entity fetch)
      */
     public Mono<DeviceDataDTO> getDevice(String deviceId) {
-        return webClientNoContext.get()
+        return guard.execute("device:" + deviceId, webClientNoContext.get()
                 .uri("/ngsi-ld/v1/entities/{entityId}", deviceId)
                 .retrieve()
-                .bodyToMono(Map.class)
+                .bodyToMono(Map.class))
+                .onErrorResume(error -> guard.staleOrError("device:" + deviceId, error))
                 .flatMap(entity -> {
                     try {
                         DeviceDataDTO data = transformerService.transformDevice(entity);
@@ -230,14 +239,15 @@ public class OrionLdClient {
 
     public Mono<List<AirQualityDataDTO>> getAllAirQualityData() {
         log.info("Client: Đang lấy TẤT CẢ AirQualityObserved entities...");
-        return webClient.get()
+        return guard.execute("airquality:all", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", "airQualityObserved") // Lấy loại entity AirQualityObserved
                         .queryParam("limit", "1000") // Lấy tối đa 1000 bản ghi
                         .build())
                 .retrieve()
-                .bodyToMono(List.class) // Lấy về 1 danh sách
+                .bodyToMono(List.class)) // Lấy về 1 danh sách
+                .onErrorResume(error -> guard.staleOrError("airquality:all", error))
                 .map(entities -> {
                     // Biến đổi (transform) từng entity trong danh sách
                     List<AirQualityDataDTO> airData = ((List<Map<String, Object>>) entities).stream()
@@ -264,7 +274,7 @@ public class OrionLdClient {
 
         log.debug("Querying weather data (RAW): type={}, q={}", entityType, query);
 
-        return webClient.get()
+        return guard.execute("weather-raw:" + district, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", entityType)
@@ -272,7 +282,8 @@ public class OrionLdClient {
                         .queryParam("limit", "1")
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("weather-raw:" + district, error))
                 .flatMap(entities -> {
                     if (entities == null || entities.isEmpty()) {
                         log.warn("No weather data found for district: {}", district);
@@ -298,7 +309,7 @@ public class OrionLdClient {
 
         log.debug("Querying air quality data (RAW): type={}, q={}", entityType, query);
 
-        return webClient.get()
+        return guard.execute("airquality-raw:" + district, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", entityType)
@@ -306,7 +317,8 @@ public class OrionLdClient {
                         .queryParam("limit", "1")
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("airquality-raw:" + district, error))
                 .flatMap(entities -> {
                     if (entities == null || entities.isEmpty()) {
                         log.warn("No air quality data found for district: {}", district);
@@ -328,14 +340,15 @@ public class OrionLdClient {
      */
     public Mono<List<Map<String, Object>>> getAllWeatherDataRaw() {
         log.info("Client: Fetching ALL WeatherObserved entities (RAW)...");
-        return webClient.get()
+        return guard.execute("weather-raw:all", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", "weatherObserved")
                         .queryParam("limit", "1000")
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("weather-raw:all", error))
                 .map(entities -> {
                     List<Map<String, Object>> weatherData = (List<Map<String, Object>>) entities;
                     log.info("Client: Fetched {} weatherObserved entities (RAW).", weatherData.size());
@@ -353,14 +366,15 @@ public class OrionLdClient {
      */
     public Mono<List<Map<String, Object>>> getAllAirQualityDataRaw() {
         log.info("Client: Fetching ALL AirQualityObserved entities (RAW)...");
-        return webClient.get()
+        return guard.execute("airquality-raw:all", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", "airQualityObserved")
                         .queryParam("limit", "1000")
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("airquality-raw:all", error))
                 .map(entities -> {
                     List<Map<String, Object>> airData = (List<Map<String, Object>>) entities;
                     log.info("Client: Fetched {} airQualityObserved entities (RAW).", airData.size());
@@ -378,14 +392,15 @@ public class OrionLdClient {
      */
     public Mono<List<Map<String, Object>>> getAllPlatformsRaw() {
         log.info("Fetching all platforms (RAW)...");
-        return webClient.get()
+        return guard.execute("platform-raw:all", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", "Platform")
                         .queryParam("limit", "1000")
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("platform-raw:all", error))
                 .map(entities -> {
                     List<Map<String, Object>> platforms = (List<Map<String, Object>>) entities;
                     log.info("Fetched {} platforms (RAW) from Orion-LD", platforms.size());
@@ -401,7 +416,7 @@ public class OrionLdClient {
      * Get all platforms
      */
     public Mono<List<PlatformDataDTO>> getAllPlatforms() {
-        return webClient.get()
+        return guard.execute("platform:all", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", "Platform")
@@ -409,7 +424,8 @@ public class OrionLdClient {
                         // Remove keyValues to get normalized format
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("platform:all", error))
                 .map(entities -> {
                     List<PlatformDataDTO> platforms = ((List<Map<String, Object>>) entities).stream()
                             .map(transformerService::transformPlatform)
@@ -434,7 +450,7 @@ public class OrionLdClient {
     public Mono<List<DeviceDataDTO>> getDevicesByPlatform(String platformId) {
         log.info("Querying devices for platform: {}", platformId);
 
-        return webClient.get()
+        return guard.execute("devices-by-platform:" + platformId, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/ngsi-ld/v1/entities")
                         .queryParam("type", "Device")
@@ -442,7 +458,8 @@ public class OrionLdClient {
                         .queryParam("limit", "1000")
                         .build())
                 .retrieve()
-                .bodyToMono(List.class)
+                .bodyToMono(List.class))
+                .onErrorResume(error -> guard.staleOrError("devices-by-platform:" + platformId, error))
                 .map(entities -> {
                     List<DeviceDataDTO> devices = ((List<Map<String, Object>>) entities).stream()
                             .map(transformerService::transformDevice)
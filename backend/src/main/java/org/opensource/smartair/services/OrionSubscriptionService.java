@@ -21,26 +21,92 @@
  */
 package org.opensource.smartair.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.utils.SubscriptionReconciler;
+import org.opensource.smartair.utils.SubscriptionReconciler.Plan;
+import org.opensource.smartair.utils.SubscriptionReconciler.Spec;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Service to manage NGSI-LD subscriptions in Orion-LD
- * Automatically creates subscriptions when backend starts
+ *
+ * Khai báo trạng thái subscription mong muốn (desiredSubscriptions) rồi reconcile với Orion-LD
+ * lúc startup và định kỳ: tạo cái thiếu, tạo lại cái lệch spec, xóa cái backend không còn dùng.
+ * Subscription bị mất (Orion-LD restart với DB mới, bị xóa tay) sẽ được khôi phục ở lượt kế tiếp.
+ *
+ * Giảm lượng notification:
+ * - watchedAttributes: chỉ notify khi update chạm vào thuộc tính backend thực sự quan tâm
+ * - notification.attributes: chỉ gửi các thuộc tính NotificationService đọc (payload nhỏ hơn)
+ * - throttling: NGSI-LD tính throttling theo từng subscription, nên khi bật throttling cho
+ *   WeatherObserved / AirQualityObserved mỗi phường có subscription riêng (id = base:slug);
+ *   một subscription chung cho cả type sẽ nuốt notification của các phường khác
  */
 @Slf4j
 @Service
 public class OrionSubscriptionService {
 
+    static final String CONTEXT =
+            "https://raw.githubusercontent.com/smart-data-models/dataModel.Environment/master/context.jsonld";
+
+    static final String WEATHER_SUBSCRIPTION_ID = "urn:ngsi-ld:Subscription:WeatherObserved-Backend";
+    static final String AIR_QUALITY_SUBSCRIPTION_ID = "urn:ngsi-ld:Subscription:AirQualityObserved-Backend";
+    static final String PLATFORM_SUBSCRIPTION_ID = "urn:ngsi-ld:Subscription:Platform-Backend";
+    static final String DEVICE_SUBSCRIPTION_ID = "urn:ngsi-ld:Subscription:Device-Backend";
+
+    private static final List<String> OWNED_BASE_IDS = List.of(
+            WEATHER_SUBSCRIPTION_ID, AIR_QUALITY_SUBSCRIPTION_ID, PLATFORM_SUBSCRIPTION_ID, DEVICE_SUBSCRIPTION_ID);
+
+    /**
+     * Thuộc tính NotificationService / EnvironmentDataTransformer đọc từ mỗi loại entity
+     */
+    static final List<String> WEATHER_ATTRIBUTES = List.of(
+            "temperature", "feelsLikeTemperature", "windSpeed", "precipitation", "pressureTendency",
+            "stationName", "stationCode", "location", "relativeHumidity", "atmosphericPressure",
+            "windDirection", "visibility", "cloudiness", "illuminance", "weatherType", "weatherDescription",
+            "refDevice");
+    static final List<String> AIR_QUALITY_ATTRIBUTES = List.of(
+            "CO", "CO_Level", "NH3", "NO", "NO2", "NO2_Level", "NOx", "O3", "O3_Level", "SO2", "SO2_Level",
+            "airQualityIndex", "airQualityLevel", "location", "pm10", "pm10_Level", "pm2_5", "pm2_5_Level",
+            "precipitation", "refDevice", "refPointOfInterest", "relativeHumidity", "reliability",
+            "stationCode", "stationName", "temperature", "windDirection", "windSpeed");
+    static final List<String> PLATFORM_ATTRIBUTES = List.of(
+            "name", "description", "location", "address", "platformType", "monitoringCategories", "status",
+            "hosts", "deploymentDate", "owner", "operator", "purpose");
+    static final List<String> DEVICE_ATTRIBUTES = List.of(
+            "name", "description", "location", "deviceCategory", "sensorType", "controlledProperty", "observes",
+            "isHostedBy", "serialNumber", "hardwareVersion", "softwareVersion", "firmwareVersion", "brandName",
+            "modelName", "deviceState", "dateInstalled", "dateFirstUsed", "dataProvider", "owner");
+
+    private static final ParameterizedTypeReference<Map<String, Object>> SUBSCRIPTION_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int WRITE_CONCURRENCY = 8;
+
     private final WebClient webClient;
+    private final DistrictRegistry districtRegistry;
+    private final MeterRegistry meterRegistry;
 
     @Value("${orion.url:http://orion:1026}")
     private String orionUrl;
@@ -51,11 +117,54 @@ public class OrionSubscriptionService {
     @Value("${backend.url:http://backend:8081}")
     private String backendUrl;
 
+    /**
+     * Readiness không chờ quá mức này nếu Orion-LD chậm / không phản hồi
+     */
+    @Value("${orion.subscriptions.startup-timeout-seconds:30}")
+    private long startupTimeoutSeconds;
+
+    /**
+     * false = notification chứa toàn bộ entity (như trước khi có projection)
+     */
+    @Value("${orion.subscriptions.projection-enabled:true}")
+    private boolean projectionEnabled;
+
+    @Value("${orion.subscriptions.weather.watched-attributes:temperature}")
+    private List<String> weatherWatchedAttributes;
+
+    @Value("${orion.subscriptions.weather.throttling-seconds:30}")
+    private int weatherThrottlingSeconds;
+
+    @Value("${orion.subscriptions.air-quality.watched-attributes:airQualityIndex,pm2_5}")
+    private List<String> airQualityWatchedAttributes;
+
+    @Value("${orion.subscriptions.air-quality.throttling-seconds:10}")
+    private int airQualityThrottlingSeconds;
+
+    @Value("${orion.subscriptions.platform.watched-attributes:status}")
+    private List<String> platformWatchedAttributes;
+
+    @Value("${orion.subscriptions.platform.throttling-seconds:0}")
+    private int platformThrottlingSeconds;
+
+    @Value("${orion.subscriptions.device.watched-attributes:deviceState}")
+    private List<String> deviceWatchedAttributes;
+
+    @Value("${orion.subscriptions.device.throttling-seconds:0}")
+    private int deviceThrottlingSeconds;
+
+    private final CompletableFuture<Void> subscriptionsRegistered = new CompletableFuture<>();
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
     public OrionSubscriptionService(
             @Value("${orion.url:http://orion:1026}") String orionUrl,
-            @Value("${orion.tenant:hanoi}") String tenant) {
+            @Value("${orion.tenant:hanoi}") String tenant,
+            DistrictRegistry districtRegistry,
+            MeterRegistry meterRegistry) {
         this.orionUrl = orionUrl;
         this.tenant = tenant;
+        this.districtRegistry = districtRegistry;
+        this.meterRegistry = meterRegistry;
 
         this.webClient = WebClient.builder()
                 .baseUrl(orionUrl)
@@ -69,143 +178,166 @@ public class OrionSubscriptionService {
     }
 
     /**
-     * Create all subscriptions when application starts
+     * Reconcile lần đầu khi application start
      */
     @EventListener(ApplicationReadyEvent.class)
     public void createSubscriptionsOnStartup() {
-        log.info("Creating NGSI-LD subscriptions in Orion-LD...");
+        log.info("Reconciling NGSI-LD subscriptions in Orion-LD...");
 
-        createWeatherSubscription()
-                .then(createAirQualitySubscription())
-                .then(createPlatformSubscription())
-                .then(createDeviceSubscription())
-                .doOnSuccess(v -> log.info("All subscriptions created successfully"))
-                .doOnError(e -> log.error("Error creating subscriptions", e))
-                .subscribe();
+        reconcile()
+                .timeout(Duration.ofSeconds(startupTimeoutSeconds))
+                .doOnError(e -> log.error("Error reconciling subscriptions", e))
+                .doFinally(signal -> subscriptionsRegistered.complete(null))
+                .subscribe(result -> {
+                }, e -> {
+                });
     }
 
     /**
-     * Create subscription for WeatherObserved entities
+     * Reconcile định kỳ để khôi phục subscription bị mất / bị sửa ngoài backend
      */
-    public Mono<Void> createWeatherSubscription() {
-        String subscriptionId = "urn:ngsi-ld:Subscription:WeatherObserved-Backend";
-
-        Map<String, Object> subscription = Map.of(
-                "id", subscriptionId,
-                "type", "Subscription",
-                "entities", List.of(Map.of("type", "weatherObserved")),
-                "notification", Map.of(
-                        "endpoint", Map.of(
-                                "uri", backendUrl + "/api/notify/ngsi",
-                                "accept", "application/json"),
-                        "format", "normalized"),
-                "@context",
-                "https://raw.githubusercontent.com/smart-data-models/dataModel.Environment/master/context.jsonld");
-
-        return createOrUpdateSubscription(subscriptionId, subscription, "WeatherObserved");
+    @Scheduled(fixedDelayString = "${orion.subscriptions.reconcile-interval-ms:600000}",
+            initialDelayString = "${orion.subscriptions.reconcile-interval-ms:600000}")
+    public void reconcilePeriodically() {
+        reconcile()
+                .subscribe(result -> {
+                }, e -> log.warn("Periodic subscription reconcile failed: {}", e.getMessage()));
     }
 
     /**
-     * Create subscription for AirQualityObserved entities
+     * Hoàn tất khi lượt đăng ký subscription lúc startup kết thúc
+     * (kể cả khi lỗi / timeout - lỗi đã được log, Orion-LD không chặn readiness vô thời hạn)
      */
-    public Mono<Void> createAirQualitySubscription() {
-        String subscriptionId = "urn:ngsi-ld:Subscription:AirQualityObserved-Backend";
-
-        Map<String, Object> subscription = Map.of(
-                "id", subscriptionId,
-                "type", "Subscription",
-                "entities", List.of(Map.of("type", "airQualityObserved")),
-                "notification", Map.of(
-                        "endpoint", Map.of(
-                                "uri", backendUrl + "/api/notify/ngsi",
-                                "accept", "application/json"),
-                        "format", "normalized"),
-                "@context",
-                "https://raw.githubusercontent.com/smart-data-models/dataModel.Environment/master/context.jsonld");
+    public CompletableFuture<Void> whenSubscriptionsRegistered() {
+        return subscriptionsRegistered.thenApply(v -> null);
+    }
 
-        return createOrUpdateSubscription(subscriptionId, subscription, "AirQualityObserved");
+    /**
+     * Kết quả một lượt reconcile: số thao tác Orion-LD đã chấp nhận theo loại, failed = số thao tác lỗi
+     * (không tính vào created / updated / deleted, sẽ được thử lại ở lượt kế tiếp)
+     */
+    public record ReconcileResult(int created, int updated, int deleted, int unchanged, int failed) {
     }
 
     /**
-     * Create subscription for Platform entities
+     * Đưa subscription trên Orion-LD về đúng desiredSubscriptions.
+     * Bỏ qua (Mono rỗng) nếu đang có một lượt reconcile khác chạy
      */
-    public Mono<Void> createPlatformSubscription() {
-        String subscriptionId = "urn:ngsi-ld:Subscription:Platform-Backend";
+    public Mono<ReconcileResult> reconcile() {
+        return Mono.defer(() -> {
+            if (!reconciling.compareAndSet(false, true)) {
+                log.debug("Subscription reconcile already in progress, skipping");
+                return Mono.empty();
+            }
+            long start = System.nanoTime();
+            List<Spec> desired = desiredSubscriptions();
+            String endpointUri = endpointUri();
 
-        Map<String, Object> subscription = Map.of(
-                "id", subscriptionId,
-                "type", "Subscription",
-                "entities", List.of(Map.of("type", "Platform")),
-                "notification", Map.of(
-                        "endpoint", Map.of(
-                                "uri", backendUrl + "/api/notify/ngsi",
-                                "accept", "application/json"),
-                        "format", "normalized"),
-                "@context",
-                "https://raw.githubusercontent.com/smart-data-models/dataModel.Environment/master/context.jsonld");
+            return fetchAllSubscriptions()
+                    .map(existing -> SubscriptionReconciler.plan(desired, existing, isOwned(), endpointUri))
+                    .flatMap(plan -> apply(plan, endpointUri))
+                    .doOnSuccess(result -> log.info(
+                            "Subscriptions reconciled in {} ms: {} created, {} updated, {} deleted, {} unchanged, {} failed",
+                            (System.nanoTime() - start) / 1_000_000, result.created(), result.updated(),
+                            result.deleted(), result.unchanged(), result.failed()))
+                    .doFinally(signal -> reconciling.set(false));
+        });
+    }
 
-        return createOrUpdateSubscription(subscriptionId, subscription, "Platform");
+    /**
+     * Trạng thái subscription mong muốn theo cấu hình hiện tại
+     */
+    public List<Spec> desiredSubscriptions() {
+        List<Spec> specs = new ArrayList<>();
+        addSpecs(specs, WEATHER_SUBSCRIPTION_ID, "weatherObserved", WEATHER_ATTRIBUTES,
+                weatherWatchedAttributes, weatherThrottlingSeconds, districtRegistry::weatherObservedId);
+        addSpecs(specs, AIR_QUALITY_SUBSCRIPTION_ID, "airQualityObserved", AIR_QUALITY_ATTRIBUTES,
+                airQualityWatchedAttributes, airQualityThrottlingSeconds, districtRegistry::airQualityObservedId);
+        addSpecs(specs, PLATFORM_SUBSCRIPTION_ID, "Platform", PLATFORM_ATTRIBUTES,
+                platformWatchedAttributes, platformThrottlingSeconds, null);
+        addSpecs(specs, DEVICE_SUBSCRIPTION_ID, "Device", DEVICE_ATTRIBUTES,
+                deviceWatchedAttributes, deviceThrottlingSeconds, null);
+        return specs;
     }
 
     /**
-     * Create subscription for Device entities
+     * Throttling > 0 và có entity id theo phường → một subscription / phường, ngược lại một subscription / type
      */
-    public Mono<Void> createDeviceSubscription() {
-        String subscriptionId = "urn:ngsi-ld:Subscription:Device-Backend";
+    private void addSpecs(List<Spec> specs, String baseId, String entityType, List<String> notifiedAttributes,
+            List<String> watchedAttributes, int throttlingSeconds,
+            Function<String, String> entityIdForDistrict) {
+        List<String> attributes = projectionEnabled ? notifiedAttributes : List.of();
+        if (throttlingSeconds <= 0 || entityIdForDistrict == null) {
+            specs.add(new Spec(baseId, entityType, null, watchedAttributes, attributes,
+                    Math.max(0, throttlingSeconds)));
+            return;
+        }
+        for (String slug : districtRegistry.slugs()) {
+            specs.add(new Spec(baseId + ":" + slug, entityType, entityIdForDistrict.apply(slug),
+                    watchedAttributes, attributes, throttlingSeconds));
+        }
+    }
 
-        Map<String, Object> subscription = Map.of(
-                "id", subscriptionId,
-                "type", "Subscription",
-                "entities", List.of(Map.of("type", "Device")),
-                "notification", Map.of(
-                        "endpoint", Map.of(
-                                "uri", backendUrl + "/api/notify/ngsi",
-                                "accept", "application/json"),
-                        "format", "normalized"),
-                "@context",
-                "https://raw.githubusercontent.com/smart-data-models/dataModel.Environment/master/context.jsonld");
+    static Predicate<String> isOwned() {
+        return id -> OWNED_BASE_IDS.stream().anyMatch(base -> id.equals(base) || id.startsWith(base + ":"));
+    }
 
-        return createOrUpdateSubscription(subscriptionId, subscription, "Device");
+    private String endpointUri() {
+        return backendUrl + "/api/notify/ngsi";
+    }
+
+    private Mono<ReconcileResult> apply(Plan plan, String endpointUri) {
+        // Update = xóa rồi tạo lại: PATCH của NGSI-LD merge từng field nên không gỡ được watchedAttributes / throttling cũ
+        Flux<String> deletes = Flux.fromIterable(plan.delete())
+                .flatMap(id -> write("delete", id, deleteSubscription(id)), WRITE_CONCURRENCY);
+        Flux<String> creates = Flux.fromIterable(plan.create())
+                .flatMap(spec -> write("create", spec.id(), createSubscription(spec, endpointUri)),
+                        WRITE_CONCURRENCY);
+        Flux<String> updates = Flux.fromIterable(plan.update())
+                .flatMap(spec -> write("update", spec.id(), deleteSubscription(spec.id())
+                        .then(createSubscription(spec, endpointUri))), WRITE_CONCURRENCY);
+        return Flux.concat(deletes, creates, updates)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .map(counts -> new ReconcileResult(
+                        counts.getOrDefault("create", 0L).intValue(),
+                        counts.getOrDefault("update", 0L).intValue(),
+                        counts.getOrDefault("delete", 0L).intValue(),
+                        plan.unchanged(),
+                        counts.getOrDefault("error", 0L).intValue()));
     }
 
     /**
-     * Create or update subscription (idempotent)
-     * Check if exists, delete old one, create new one
+     * Một thao tác ghi lên Orion-LD: lỗi được log và đếm (result=error) nhưng không chặn các thao tác còn lại
+     *
+     * @return action nếu thành công, "error" nếu lỗi
      */
-    private Mono<Void> createOrUpdateSubscription(String subscriptionId, Map<String, Object> subscription,
-            String entityType) {
-        return checkSubscriptionExists(subscriptionId)
-                .flatMap(exists -> {
-                    if (exists) {
-                        log.info("Subscription {} already exists, deleting old one...", subscriptionId);
-                        return deleteSubscription(subscriptionId);
-                    }
-                    return Mono.empty();
-                })
-                .then(webClient.post()
-                        .uri("/ngsi-ld/v1/subscriptions")
-                        .bodyValue(subscription)
-                        .retrieve()
-                        .bodyToMono(Void.class)
-                        .doOnSuccess(v -> log.info("Created subscription for {} entities", entityType))
-                        .doOnError(e -> log.error("Failed to create subscription for {}: {}", entityType,
-                                e.getMessage())))
+    private Mono<String> write(String action, String subscriptionId, Mono<Void> request) {
+        return request
+                .then(Mono.fromCallable(() -> {
+                    count(action, "ok");
+                    return action;
+                }))
                 .onErrorResume(e -> {
-                    log.warn("Error in subscription creation for {}, continuing...", entityType);
-                    return Mono.empty();
+                    log.warn("Failed to {} subscription {}: {}", action, subscriptionId, e.getMessage());
+                    count(action, "error");
+                    return Mono.just("error");
                 });
     }
 
+    private void count(String action, String result) {
+        meterRegistry.counter("orion.subscriptions.reconcile", "action", action, "result", result).increment();
+    }
+
     /**
-     * Check if subscription exists
+     * Create subscription
      */
-    private Mono<Boolean> checkSubscriptionExists(String subscriptionId) {
-        return webClient.get()
-                .uri("/ngsi-ld/v1/subscriptions/{id}", subscriptionId)
+    private Mono<Void> createSubscription(Spec spec, String endpointUri) {
+        return webClient.post()
+                .uri("/ngsi-ld/v1/subscriptions")
+                .bodyValue(spec.toPayload(endpointUri, CONTEXT))
                 .retrieve()
-                .toBodilessEntity()
-                .map(response -> response.getStatusCode().is2xxSuccessful())
-                .onErrorReturn(false);
+                .bodyToMono(Void.class)
+                .doOnSuccess(v -> log.debug("Created subscription {}", spec.id()));
     }
 
     /**
@@ -216,11 +348,40 @@ public class OrionSubscriptionService {
                 .uri("/ngsi-ld/v1/subscriptions/{id}", subscriptionId)
                 .retrieve()
                 .bodyToMono(Void.class)
-                .doOnSuccess(v -> log.info("Deleted old subscription: {}", subscriptionId))
-                .onErrorResume(e -> {
-                    log.warn("Failed to delete subscription {}: {}", subscriptionId, e.getMessage());
-                    return Mono.empty();
-                });
+                .doOnSuccess(v -> log.debug("Deleted subscription: {}", subscriptionId))
+                // Đã không còn trên Orion-LD (vd: bị xóa tay) là kết quả mong muốn
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty());
+    }
+
+    /**
+     * Toàn bộ subscription của tenant (phân trang), gửi kèm @context để tên thuộc tính trả về dạng rút gọn
+     */
+    private Mono<List<Map<String, Object>>> fetchAllSubscriptions() {
+        return fetchPage(0)
+                .expand(page -> page.size() < PAGE_SIZE ? Mono.empty() : fetchPage(page.offset() + PAGE_SIZE))
+                .concatMapIterable(SubscriptionPage::items)
+                .collectList();
+    }
+
+    private Mono<SubscriptionPage> fetchPage(int offset) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/ngsi-ld/v1/subscriptions")
+                        .queryParam("limit", PAGE_SIZE)
+                        .queryParam("offset", offset)
+                        .build())
+                .header("Link", "<" + CONTEXT
+                        + ">; rel=\"http://www.w3.org/ns/json-ld#context\"; type=\"application/ld+json\"")
+                .retrieve()
+                .bodyToFlux(SUBSCRIPTION_TYPE)
+                .collectList()
+                .map(items -> new SubscriptionPage(offset, items));
+    }
+
+    private record SubscriptionPage(int offset, List<Map<String, Object>> items) {
+
+        int size() {
+            return items.size();
+        }
     }
 
     /**
@@ -230,10 +391,8 @@ public class OrionSubscriptionService {
         return webClient.get()
                 .uri("/ngsi-ld/v1/subscriptions")
                 .retrieve()
-                .bodyToFlux(Map.class)
-                .cast(Map.class)
+                .bodyToFlux(SUBSCRIPTION_TYPE)
                 .collectList()
-                .map(list -> (List<Map<String, Object>>) (List<?>) list)
                 .doOnSuccess(subs -> log.info("Found {} subscriptions", subs != null ? subs.size() : 0))
                 .onErrorResume(e -> {
                     log.error("Error listing subscriptions", e);
@@ -0,0 +1,266 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.GridMetaDTO;
+import org.opensource.smartair.dtos.GridPatchDTO;
+import org.opensource.smartair.dtos.GridPollutant;
+import org.opensource.smartair.dtos.SseBusMessage;
+import org.opensource.smartair.dtos.SseTopic;
+import org.opensource.smartair.utils.IdwGrid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid nội suy IDW cho từng pollutant trên bounding box của GeoJSON phường/xã
+ * - Cập nhật incremental từ bản tin airQualityObserved nhận qua SseEventBus (mọi replica cùng cập nhật)
+ * - Seed từ Orion-LD khi khởi động và rebuild song song định kỳ
+ * - Mỗi update phát một GridPatchDTO (vùng cell bị thay đổi) tới subscribers SSE của pollutant đó
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PollutantGridService {
+
+    private final GeoJsonService geoJsonService;
+    private final OrionLdClient orionLdClient;
+    private final SseEventBus eventBus;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${interpolation.grid.cell-meters:500}")
+    private double cellMeters;
+
+    @Value("${interpolation.grid.radius-meters:15000}")
+    private double radiusMeters;
+
+    @Value("${interpolation.grid.power:2}")
+    private double power;
+
+    private final Map<GridPollutant, IdwGrid> grids = new EnumMap<>(GridPollutant.class);
+
+    /**
+     * directBestEffort: không buffer khi chưa có subscriber, subscriber chậm bị drop patch
+     * (client so version với snapshot và tải lại grid khi thấy khoảng trống)
+     */
+    private final Map<GridPollutant, Sinks.Many<GridPatchDTO>> patchSinks = new EnumMap<>(GridPollutant.class);
+
+    /**
+     * district → vị trí trạm trong GeoJSON (fallback khi bản tin không có location)
+     */
+    private final Map<String, double[]> stationPositions = new HashMap<>();
+
+    private Timer updateTimer;
+    private Timer rebuildTimer;
+
+    @PostConstruct
+    void init() {
+        Envelope bounds = new Envelope();
+        for (GeoJsonService.DistrictFeature feature : geoJsonService.getDistrictFeatures()) {
+            bounds.expandToInclude(feature.geometry().getEnvelopeInternal());
+            stationPositions.put(feature.district(),
+                    new double[] { feature.stationLatitude(), feature.stationLongitude() });
+        }
+        if (bounds.isNull()) {
+            log.warn("No district geometry loaded, pollutant grids disabled");
+            return;
+        }
+
+        for (GridPollutant pollutant : GridPollutant.values()) {
+            grids.put(pollutant, new IdwGrid(bounds.getMinY(), bounds.getMinX(), bounds.getMaxY(), bounds.getMaxX(),
+                    cellMeters, radiusMeters, power));
+            patchSinks.put(pollutant, Sinks.many().multicast().directBestEffort());
+        }
+        updateTimer = Timer.builder("interpolation.grid.update")
+                .description("Incremental grid update for one station notification (all pollutants)")
+                .register(meterRegistry);
+        rebuildTimer = Timer.builder("interpolation.grid.rebuild")
+                .description("Full parallel rebuild of all pollutant grids")
+                .register(meterRegistry);
+
+        eventBus.subscribe(this::onBusMessage);
+
+        IdwGrid any = grids.get(GridPollutant.AQI);
+        log.info("Pollutant grids initialized: {}x{} cells of {}m, radius {}m, {} pollutants",
+                any.getRows(), any.getCols(), cellMeters, radiusMeters, grids.size());
+    }
+
+    /**
+     * Seed grid từ dữ liệu hiện tại trên Orion-LD
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedOnStartup() {
+        if (grids.isEmpty()) {
+            return;
+        }
+        orionLdClient.getAllAirQualityData()
+                .subscribe(this::rebuild,
+                        error -> log.warn("Could not seed pollutant grids from Orion-LD: {}", error.getMessage()));
+    }
+
+    /**
+     * Rebuild định kỳ từ các trạm đã biết - xóa sai số floating point của các update incremental
+     */
+    @Scheduled(fixedDelayString = "${interpolation.grid.rebuild-interval-ms:3600000}",
+            initialDelayString = "${interpolation.grid.rebuild-interval-ms:3600000}")
+    public void rebuildFromKnownStations() {
+        rebuildTimer.record(() -> grids.values().forEach(IdwGrid::rebuild));
+    }
+
+    /**
+     * Tính lại toàn bộ grid từ danh sách bản tin (một bản tin / trạm)
+     */
+    public void rebuild(List<AirQualityDataDTO> observations) {
+        rebuildTimer.record(() -> {
+            for (Map.Entry<GridPollutant, IdwGrid> entry : grids.entrySet()) {
+                List<IdwGrid.Station> stations = new ArrayList<>();
+                for (AirQualityDataDTO data : observations) {
+                    Double value = entry.getKey().extract(data);
+                    double[] position = positionOf(data);
+                    if (value != null && position != null) {
+                        stations.add(new IdwGrid.Station(stationId(data), position[0], position[1], value));
+                    }
+                }
+                entry.getValue().rebuild(stations);
+            }
+        });
+        log.info("Pollutant grids rebuilt from {} observations", observations.size());
+    }
+
+    /**
+     * Cập nhật incremental các grid theo một bản tin của một trạm
+     */
+    public void onAirQuality(AirQualityDataDTO data) {
+        double[] position = positionOf(data);
+        if (position == null || grids.isEmpty()) {
+            return;
+        }
+        String stationId = stationId(data);
+        updateTimer.record(() -> {
+            for (Map.Entry<GridPollutant, IdwGrid> entry : grids.entrySet()) {
+                Double value = entry.getKey().extract(data);
+                if (value == null) {
+                    continue;
+                }
+                IdwGrid grid = entry.getValue();
+                IdwGrid.Region region = grid.update(stationId, position[0], position[1], value);
+                if (!region.isEmpty()) {
+                    publishPatch(entry.getKey(), grid, region);
+                }
+            }
+        });
+    }
+
+    public GridMetaDTO getMeta(GridPollutant pollutant) {
+        IdwGrid grid = grid(pollutant);
+        return GridMetaDTO.builder()
+                .pollutant(pollutant.getName())
+                .version(grid.getVersion())
+                .rows(grid.getRows())
+                .cols(grid.getCols())
+                .minLat(grid.getMinLat())
+                .minLon(grid.getMinLon())
+                .cellLat(grid.getCellLat())
+                .cellLon(grid.getCellLon())
+                .radiusMeters(radiusMeters)
+                .power(power)
+                .stations(grid.getStations().size())
+                .build();
+    }
+
+    /**
+     * Toàn bộ grid dạng float32 little-endian, row-major
+     */
+    public byte[] getValues(GridPollutant pollutant) {
+        return IdwGrid.toBytes(grid(pollutant).values());
+    }
+
+    public long getVersion(GridPollutant pollutant) {
+        return grid(pollutant).getVersion();
+    }
+
+    public Flux<GridPatchDTO> subscribePatches(GridPollutant pollutant) {
+        grid(pollutant);
+        return patchSinks.get(pollutant).asFlux();
+    }
+
+    private void onBusMessage(SseBusMessage message) {
+        if (message.getTopic() == SseTopic.AIR_QUALITY && message.getPayload() instanceof AirQualityDataDTO data) {
+            onAirQuality(data);
+        }
+    }
+
+    private void publishPatch(GridPollutant pollutant, IdwGrid grid, IdwGrid.Region region) {
+        Sinks.Many<GridPatchDTO> sink = patchSinks.get(pollutant);
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        GridPatchDTO patch = GridPatchDTO.builder()
+                .pollutant(pollutant.getName())
+                .version(grid.getVersion())
+                .row(region.row())
+                .col(region.col())
+                .rows(region.rows())
+                .cols(region.cols())
+                .values(IdwGrid.toBytes(grid.values(region)))
+                .build();
+        // Notification có thể đến song song trên nhiều thread: retry ngắn khi FAIL_NON_SERIALIZED
+        sink.emitNext(patch, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+    }
+
+    private IdwGrid grid(GridPollutant pollutant) {
+        IdwGrid grid = grids.get(pollutant);
+        if (grid == null) {
+            throw new IllegalStateException("Pollutant grids are not available");
+        }
+        return grid;
+    }
+
+    private double[] positionOf(AirQualityDataDTO data) {
+        if (data.getLocation() != null && data.getLocation().getLat() != null && data.getLocation().getLon() != null) {
+            return new double[] { data.getLocation().getLat(), data.getLocation().getLon() };
+        }
+        return data.getDistrict() != null ? stationPositions.get(data.getDistrict()) : null;
+    }
+
+    private static String stationId(AirQualityDataDTO data) {
+        return data.getEntityId() != null ? data.getEntityId() : data.getDistrict();
+    }
+}
@@ -31,6 +31,9 @@ import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
 import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.utils.UpstreamGuard;
+import org.opensource.smartair.utils.UpstreamUnavailableException;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
@@ -55,22 +58,28 @@ public class QuantumLeapClient {
 
     private final WebClient webClient;
     private final String fiwareService;
+    private final UpstreamGuard guard;
+    private final DistrictRegistry districtRegistry;
 
     @Value("${quantumleap.query.lastN:720}")
     private int lastN;
 
     public QuantumLeapClient(
             @Value("${quantumleap.url}") String quantumLeapUrl,
-            @Value("${quantumleap.fiware-service:hanoi}") String fiwareService) {
+            @Value("${quantumleap.fiware-service:hanoi}") String fiwareService,
+            @Qualifier("quantumLeapGuard") UpstreamGuard guard,
+            DistrictRegistry districtRegistry) {
 
         this.fiwareService = fiwareService;
+        this.guard = guard;
+        this.districtRegistry = districtRegistry;
 
         // ✅ Cấu hình Connection Pool
         ConnectionProvider connectionProvider = ConnectionProvider.builder("quantumleap-pool")
                 .maxConnections(50)
                 .maxIdleTime(Duration.ofSeconds(20))
                 .maxLifeTime(Duration.ofSeconds(60))
-                .pendingAcquireTimeout(Duration.ofSeconds(45))
+                .pendingAcquireTimeout(Duration.ofSeconds(5)) // limiter (max 50) giữ hàng chờ ngắn, không chờ pool 45s
                 .evictInBackground(Duration.ofSeconds(120))
                 .build();
 
@@ -98,8 +107,6 @@ public class QuantumLeapClient {
         // Fetch history for each district in parallel
         List<Mono<Map.Entry<String, Object>>> monos = districts.stream()
                 .map(district -> {
-                    String entityId = String.format("urn:ngsi-ld:AirQualityObserved:Hanoi-%s", district);
-
                     return getAirQualityHistory(district)
                             .map(historyData -> Map.entry(district, (Object) historyData))
                             .onErrorResume(error -> {
@@ -143,7 +150,7 @@ public class QuantumLeapClient {
 
         log.info("Querying QuantumLeap for entity: {}", entityId);
 
-        return webClient.get()
+        Mono<Map<String, Object>> request = webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/v2/entities/{entityId}")
                         .queryParam("lastN", lastN)
@@ -152,11 +159,16 @@ public class QuantumLeapClient {
                 .header("Fiware-Service", fiwareService)
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
-                }) // ✅ FIX: Use ParameterizedTypeReference
+                }); // ✅ FIX: Use ParameterizedTypeReference
+
+        return guard.execute(entityId, request)
                 .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
                         .filter(throwable -> throwable instanceof org.springframework.web.reactive.function.client.WebClientRequestException)
                         .doBeforeRetry(retrySignal -> log.warn("🔄 Retrying QuantumLeap request for {} (attempt {})",
                                 entityId, retrySignal.totalRetries() + 1)))
+                .onErrorResume(e -> guard.staleOrError(entityId, e))
+                // Upstream lỗi và không có stale: 503 cho caller thay vì history rỗng giả
+                .onErrorMap(UpstreamGuard::isUpstreamFailure, guard::unavailable)
                 .doOnSuccess(data -> log.info("✅ Successfully fetched historical data for: {}", entityId))
                 .onErrorResume(WebClientResponseException.NotFound.class, e -> {
                     log.warn("⚠️ No historical data found in QuantumLeap for: {}", entityId);
@@ -167,7 +179,7 @@ public class QuantumLeapClient {
                             entityId, e.getStatusCode(), e.getMessage());
                     return Mono.just(Map.of());
                 })
-                .onErrorResume(Exception.class, e -> {
+                .onErrorResume(e -> !(e instanceof UpstreamUnavailableException), e -> {
                     log.error("❌ Error fetching historical data from QuantumLeap for: {}", entityId, e);
                     return Mono.just(Map.of());
                 })
@@ -182,7 +194,7 @@ public class QuantumLeapClient {
 
         log.info("Querying QuantumLeap for entity: {}", entityId);
 
-        return webClient.get()
+        Mono<Map<String, Object>> request = webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/v2/entities/{entityId}")
                         .queryParam("lastN", lastN)
@@ -191,11 +203,16 @@ public class QuantumLeapClient {
                 .header("Fiware-Service", fiwareService)
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
-                }) // ✅ FIX: Use ParameterizedTypeReference
+                }); // ✅ FIX: Use ParameterizedTypeReference
+
+        return guard.execute(entityId, request)
                 .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
                         .filter(throwable -> throwable instanceof org.springframework.web.reactive.function.client.WebClientRequestException)
                         .doBeforeRetry(retrySignal -> log.warn("🔄 Retrying QuantumLeap request for {} (attempt {})",
                                 entityId, retrySignal.totalRetries() + 1)))
+                .onErrorResume(e -> guard.staleOrError(entityId, e))
+                // Upstream lỗi và không có stale: 503 cho caller thay vì history rỗng giả
+                .onErrorMap(UpstreamGuard::isUpstreamFailure, guard::unavailable)
                 .doOnSuccess(data -> log.info("✅ Successfully fetched historical data for: {}", entityId))
                 .onErrorResume(WebClientResponseException.NotFound.class, e -> {
                     log.warn("⚠️ No historical data found in QuantumLeap for: {}", entityId);
@@ -206,7 +223,7 @@ public class QuantumLeapClient {
                             entityId, e.getStatusCode(), e.getMessage());
                     return Mono.just(Map.of());
                 })
-                .onErrorResume(Exception.class, e -> {
+                .onErrorResume(e -> !(e instanceof UpstreamUnavailableException), e -> {
                     log.error("❌ Error fetching historical data from QuantumLeap for: {}", entityId, e);
                     return Mono.just(Map.of());
                 })
@@ -242,7 +259,11 @@ public class QuantumLeapClient {
                 "Querying QuantumLeap: {} attr: {} (fromDate: {}, toDate: {}, aggrMethod: {}, aggrPeriod: {}, lastN: {})",
                 entityId, attrName, cleanFromDate, cleanToDate, aggrMethod, aggrPeriod, lastN);
 
-        return webClient.get()
+        String cacheKey = String.join("|", entityId, attrName, String.valueOf(cleanFromDate),
+                String.valueOf(cleanToDate), String.valueOf(aggrMethod), String.valueOf(aggrPeriod),
+                String.valueOf(lastN));
+
+        Mono<Map<String, Object>> request = webClient.get()
                 .uri(uriBuilder -> {
                     var builder = uriBuilder
                             .path("/v2/entities/{entityId}/attrs/{attrName}");
@@ -269,12 +290,17 @@ public class QuantumLeapClient {
                 .header("Fiware-Service", fiwareService)
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
-                })
+                });
+
+        return guard.execute(cacheKey, request)
                 .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
                         .filter(throwable -> throwable instanceof org.springframework.web.reactive.function.client.WebClientRequestException)
                         .doBeforeRetry(
                                 retrySignal -> log.warn("Retrying QuantumLeap request for {} attr {} (attempt {})",
                                         entityId, attrName, retrySignal.totalRetries() + 1)))
+                .onErrorResume(e -> guard.staleOrError(cacheKey, e))
+                // Upstream lỗi và không có stale: 503 cho caller thay vì history rỗng giả
+                .onErrorMap(UpstreamGuard::isUpstreamFailure, guard::unavailable)
                 .doOnSuccess(data -> log.info("Successfully fetched {} history for: {}", attrName, entityId))
                 .onErrorResume(WebClientResponseException.NotFound.class, e -> {
                     log.warn("No historical data found in QuantumLeap for: {} attr: {}", entityId, attrName);
@@ -285,7 +311,7 @@ public class QuantumLeapClient {
                             attrName, entityId, e.getStatusCode(), e.getMessage());
                     return Mono.just(Map.of());
                 })
-                .onErrorResume(Exception.class, e -> {
+                .onErrorResume(e -> !(e instanceof UpstreamUnavailableException), e -> {
                     log.error("Error fetching {} history from QuantumLeap for: {}", attrName, entityId, e);
                     return Mono.just(Map.of());
                 })
@@ -320,11 +346,11 @@ public class QuantumLeapClient {
     // ============ Helper Methods ============
 
     private String buildWeatherEntityId(String district) {
-        return String.format("urn:ngsi-ld:WeatherObserved:Hanoi-%s", district);
+        return districtRegistry.weatherObservedId(district);
     }
 
     private String buildAirQualityEntityId(String district) {
-        return String.format("urn:ngsi-ld:AirQualityObserved:Hanoi-%s", district);
+        return districtRegistry.airQualityObservedId(district);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlertThrottleStore dùng chung qua Redis (redis-cache trong docker-compose)
+ * - tryAcquire: SET key owner NX PX window - chỉ 1 replica thắng mỗi window
+ * - Near-cache cục bộ giữ thời điểm hết window đã biết (từ SET thành công hoặc PTTL)
+ *   nên các notification lặp lại trong window không chạm Redis
+ * - Redis lỗi: fallback quyết định theo near-cache cục bộ (throttle theo từng replica)
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "notification.throttle.store", havingValue = "redis")
+public class RedisAlertThrottleStore implements AlertThrottleStore {
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Giá trị lưu trong key - để biết replica nào đã gửi cảnh báo
+     */
+    private final String owner = UUID.randomUUID().toString();
+
+    /**
+     * Near-cache: key → thời điểm hết window (epoch millis)
+     */
+    private final Map<String, Long> knownWindowEnds = new ConcurrentHashMap<>();
+
+    @Value("${notification.throttle.redis.key-prefix:smartair:alert-throttle:}")
+    private String keyPrefix;
+
+    public RedisAlertThrottleStore(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean tryAcquire(String district, String level, Duration window) {
+        String key = keyPrefix + district + ":" + level;
+        long now = System.currentTimeMillis();
+
+        Long knownEnd = knownWindowEnds.get(key);
+        if (knownEnd != null && knownEnd > now) {
+            count("near_cache");
+            return false;
+        }
+
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(key, owner, window);
+            if (Boolean.TRUE.equals(acquired)) {
+                knownWindowEnds.put(key, now + window.toMillis());
+                count("acquired");
+                return true;
+            }
+
+            // Replica khác đã mở window - cache lại thời điểm hết hạn
+            Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+            if (ttlMillis != null && ttlMillis > 0) {
+                knownWindowEnds.put(key, now + ttlMillis);
+            }
+            count("throttled");
+            return false;
+
+        } catch (Exception e) {
+            log.warn("Redis throttle store unavailable for {}, using local state: {}", key, e.getMessage());
+            count("error");
+            return acquireLocally(key, now, window);
+        }
+    }
+
+    @Override
+    public void release(String district, String level) {
+        String key = keyPrefix + district + ":" + level;
+        knownWindowEnds.remove(key);
+        try {
+            // Chỉ xóa nếu chính replica này giữ window (compare-and-delete nguyên tử)
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(key), owner);
+        } catch (Exception e) {
+            log.warn("Failed to release alert throttle {}: {}", key, e.getMessage());
+        }
+    }
+
+    private boolean acquireLocally(String key, long now, Duration window) {
+        boolean[] acquired = new boolean[1];
+        knownWindowEnds.compute(key, (k, current) -> {
+            if (current != null && current > now) {
+                return current;
+            }
+            acquired[0] = true;
+            return now + window.toMillis();
+        });
+        return acquired[0];
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("notification.throttle", "store", "redis", "result", result).increment();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.SseBusMessage;
+import org.opensource.smartair.dtos.SseTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * SseEventBus qua Redis pub/sub (redis-cache trong docker-compose)
+ * - publish: fan-out cục bộ ngay (không chờ round-trip Redis), rồi PUBLISH JSON lên channel
+ * - nhận: bỏ qua message do chính instance publish (origin), deserialize payload theo topic
+ * Pub/sub không lưu lại event: replica mất kết nối Redis sẽ bỏ lỡ update trong khoảng đó,
+ * client SSE vẫn nhận dữ liệu mới nhất (initial) khi kết nối lại
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "sse.bus", havingValue = "redis")
+public class RedisSseEventBus implements SseEventBus {
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final List<Consumer<SseBusMessage>> listeners = new CopyOnWriteArrayList<>();
+    private Disposable subscription;
+
+    @Value("${sse.bus.redis.channel:smartair:sse-events}")
+    private String channel;
+
+    public RedisSseEventBus(ReactiveStringRedisTemplate redisTemplate,
+            ReactiveRedisConnectionFactory connectionFactory,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = new ReactiveRedisMessageListenerContainer(connectionFactory);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        subscription = listenerContainer.receive(ChannelTopic.of(channel))
+                .map(ReactiveSubscription.Message::getMessage)
+                .doOnError(e -> log.warn("Redis SSE bus subscription error, resubscribing: {}", e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(this::onRemoteMessage);
+        log.info("Redis SSE bus subscribed to channel {} (instance {})", channel, instanceId);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        listenerContainer.destroyLater().subscribe();
+    }
+
+    @Override
+    public void publish(SseBusMessage message) {
+        message.setOrigin(instanceId);
+        deliverLocally(message);
+
+        String json;
+        try {
+            json = encode(message);
+        } catch (JsonProcessingException e) {
+            log.error("Cannot serialize {} event for SSE bus: {}", message.getTopic(), e.getMessage());
+            count("published", "serialize_error");
+            return;
+        }
+
+        redisTemplate.convertAndSend(channel, json)
+                .subscribe(
+                        receivers -> count("published", "ok"),
+                        error -> {
+                            log.warn("Failed to publish {} event to Redis SSE bus: {}",
+                                    message.getTopic(), error.getMessage());
+                            count("published", "error");
+                        });
+    }
+
+    @Override
+    public void subscribe(Consumer<SseBusMessage> listener) {
+        listeners.add(listener);
+    }
+
+    private void onRemoteMessage(String json) {
+        SseBusMessage message;
+        try {
+            message = decode(json);
+        } catch (Exception e) {
+            log.warn("Ignoring malformed SSE bus message: {}", e.getMessage());
+            count("received", "malformed");
+            return;
+        }
+
+        if (instanceId.equals(message.getOrigin())) {
+            return; // Đã fan-out cục bộ lúc publish
+        }
+        count("received", "ok");
+        deliverLocally(message);
+    }
+
+    private void deliverLocally(SseBusMessage message) {
+        for (Consumer<SseBusMessage> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (Exception e) {
+                log.error("Error delivering {} event: {}", message.getTopic(), e.getMessage());
+            }
+        }
+    }
+
+    String encode(SseBusMessage message) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    SseBusMessage decode(String json) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(json);
+        SseTopic topic = SseTopic.valueOf(node.get("topic").asText());
+        JsonNode payload = node.get("payload");
+        return SseBusMessage.builder()
+                .topic(topic)
+                .key(node.hasNonNull("key") ? node.get("key").asText() : null)
+                .origin(node.hasNonNull("origin") ? node.get("origin").asText() : null)
+                .payload(payload == null || payload.isNull() ? null
+                        : objectMapper.convertValue(payload, topic.getPayloadType()))
+                .build();
+    }
+
+    private void count(String direction, String result) {
+        meterRegistry.counter("sse.bus." + direction, "bus", "redis", "result", result).increment();
+    }
+}
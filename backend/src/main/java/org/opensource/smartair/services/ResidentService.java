@@ -22,28 +22,62 @@
 package org.opensource.smartair.services;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.CreateResidentDTO;
 import org.opensource.smartair.dtos.ResidentDTO;
+import org.opensource.smartair.dtos.ResidentDistrictDTO;
+import org.opensource.smartair.dtos.ResidentImportResultDTO;
+import org.opensource.smartair.dtos.ResidentPageDTO;
+import org.opensource.smartair.dtos.ResidentSubscriptionChangedEvent;
+import org.opensource.smartair.dtos.ResidentsImportedEvent;
+import org.opensource.smartair.dtos.SubscriberStatsDTO;
 import org.opensource.smartair.dtos.UpdateResidentDTO;
 import org.opensource.smartair.models.Resident;
 import org.opensource.smartair.models.ResidentStation;
+import org.opensource.smartair.models.UserRole;
+import org.opensource.smartair.repositories.ResidentBulkRepository;
 import org.opensource.smartair.repositories.ResidentRepository;
 import org.opensource.smartair.repositories.ResidentStationRepository;
 import org.opensource.smartair.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Service xử lý business logic cho Resident
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ResidentService {
 
     private final ResidentRepository residentRepository;
     private final UserRepository userRepository;
+    private final ResidentStationRepository residentStationRepository;
+    private final ResidentBulkRepository residentBulkRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${resident.import.max-size:10000}")
+    private int importMaxSize;
+
+    @Value("${resident.admin.page-max-size:200}")
+    private int adminPageMaxSize;
 
     /**
      * Lấy thông tin resident theo userId
@@ -86,32 +120,160 @@ public class ResidentService {
             resident.setNotificationEnabled(updateDTO.getNotificationEnabled());
         }
 
-        // 3. Update subscriptions (CẬP NHẬT ResidentStation table)
+        // 3. Update subscriptions: chỉ DELETE district bị bỏ và batch INSERT district mới
         if (updateDTO.getDistricts() != null) {
-            // Xóa hết subscriptions cũ (orphanRemoval=true sẽ DELETE khỏi DB)
-            resident.getStations().clear();
-
-            // Thêm subscriptions mới (cascade=ALL sẽ INSERT vào DB)
-            for (String district : updateDTO.getDistricts()) {
-                ResidentStation station = new ResidentStation();
-                station.setResident(resident);
-                station.setDistrict(district);
-                station.setSubscribedAt(LocalDateTime.now());
-                resident.getStations().add(station);
+            Set<String> requested = new LinkedHashSet<>(updateDTO.getDistricts());
+            Set<String> current = new HashSet<>(residentStationRepository.findDistrictsByResidentId(resident.getId()));
+
+            Set<String> removed = new HashSet<>(current);
+            removed.removeAll(requested);
+            Set<String> added = new LinkedHashSet<>(requested);
+            added.removeAll(current);
+
+            if (!removed.isEmpty()) {
+                residentStationRepository.deleteByResidentIdAndDistrictIn(resident.getId(), removed);
+            }
+            if (!added.isEmpty()) {
+                residentBulkRepository.insertStations(resident.getId(), added);
             }
+            log.debug("Resident {} subscriptions: +{} -{}", resident.getId(), added.size(), removed.size());
         }
 
         // 4. Force update updatedAt timestamp
         resident.setUpdatedAt(LocalDateTime.now());
 
         Resident saved = residentRepository.save(resident);
+
+        // 5. Cập nhật subscriber index sau khi commit
+        eventPublisher.publishEvent(new ResidentSubscriptionChangedEvent(saved.getId()));
         return mapToDTO(saved);
     }
 
+    /**
+     * Bulk import residents (ADMIN)
+     * - Bỏ qua email trùng trong request hoặc đã có tài khoản
+     * - BCrypt song song, INSERT users / residents / resident_stations theo lô trong 1 transaction
+     * - Subscriber index được build lại một lần sau khi commit
+     */
+    @Transactional
+    public ResidentImportResultDTO importResidents(List<CreateResidentDTO> residents) {
+        if (residents.size() > importMaxSize) {
+            throw new RuntimeException("Too many residents in one import: " + residents.size()
+                    + " (max " + importMaxSize + ")");
+        }
+        long start = System.currentTimeMillis();
+
+        // 1. Loại email trùng trong request và email đã tồn tại
+        Map<String, CreateResidentDTO> unique = new LinkedHashMap<>();
+        List<String> skipped = new ArrayList<>();
+        for (CreateResidentDTO dto : residents) {
+            String key = dto.getEmail().trim().toLowerCase(Locale.ROOT);
+            if (unique.putIfAbsent(key, dto) != null) {
+                skipped.add(dto.getEmail());
+            }
+        }
+        for (String existing : residentBulkRepository.findExistingEmails(unique.keySet())) {
+            CreateResidentDTO dto = unique.remove(existing);
+            if (dto != null) {
+                skipped.add(dto.getEmail());
+            }
+        }
+        List<CreateResidentDTO> toImport = List.copyOf(unique.values());
+
+        // 2. Hash passwords song song (BCrypt chiếm phần lớn thời gian import)
+        List<ResidentBulkRepository.NewUser> users = toImport.parallelStream()
+                .map(dto -> new ResidentBulkRepository.NewUser(dto.getFullName(), dto.getEmail().trim(),
+                        passwordEncoder.encode(dto.getPassword()), UserRole.RESIDENT))
+                .toList();
+
+        // 3. Batch insert users → residents → resident_stations
+        Map<String, Long> userIds = residentBulkRepository.insertUsers(users);
+        List<ResidentBulkRepository.NewResident> newResidents = toImport.stream()
+                .map(dto -> new ResidentBulkRepository.NewResident(
+                        userIds.get(dto.getEmail().trim().toLowerCase(Locale.ROOT)), true,
+                        dto.getNotificationEnabled() == null || dto.getNotificationEnabled()))
+                .toList();
+        Map<Long, Long> residentIds = residentBulkRepository.insertResidents(newResidents);
+
+        Map<Long, Set<String>> districtsByResident = new LinkedHashMap<>();
+        for (int i = 0; i < toImport.size(); i++) {
+            CreateResidentDTO dto = toImport.get(i);
+            ResidentBulkRepository.NewResident resident = newResidents.get(i);
+            if (resident.notificationEnabled() && dto.getDistricts() != null && !dto.getDistricts().isEmpty()) {
+                districtsByResident.put(residentIds.get(resident.userId()), new LinkedHashSet<>(dto.getDistricts()));
+            }
+        }
+        int subscriptions = residentBulkRepository.insertStations(districtsByResident);
+
+        // 4. Build lại subscriber index sau khi commit
+        eventPublisher.publishEvent(new ResidentsImportedEvent(toImport.size()));
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Imported {} residents ({} skipped, {} subscriptions) in {}ms",
+                toImport.size(), skipped.size(), subscriptions, elapsed);
+        return ResidentImportResultDTO.builder()
+                .requested(residents.size())
+                .imported(toImport.size())
+                .skipped(skipped.size())
+                .skippedEmails(skipped)
+                .subscriptions(subscriptions)
+                .elapsedMs(elapsed)
+                .build();
+    }
+
+    /**
+     * Danh sách residents cho ADMIN theo keyset (afterId = id cuối của trang trước)
+     * Districts của cả trang được load trong 1 query
+     */
+    @Transactional(readOnly = true)
+    public ResidentPageDTO listResidents(Long afterId, int size, String district) {
+        int pageSize = Math.max(1, Math.min(size, adminPageMaxSize));
+        long cursor = afterId != null ? afterId : 0L;
+
+        List<Resident> residents = district == null || district.isBlank()
+                ? residentRepository.findPageAfter(cursor, Limit.of(pageSize))
+                : residentRepository.findPageAfterByDistrict(cursor, district, Limit.of(pageSize));
+
+        Map<Long, List<String>> districts = new HashMap<>();
+        if (!residents.isEmpty()) {
+            List<Long> ids = residents.stream().map(Resident::getId).toList();
+            for (ResidentDistrictDTO row : residentStationRepository.findDistrictsByResidentIds(ids)) {
+                districts.computeIfAbsent(row.getResidentId(), id -> new ArrayList<>()).add(row.getDistrict());
+            }
+        }
+
+        List<ResidentDTO> items = residents.stream()
+                .map(resident -> mapToDTO(resident, districts.getOrDefault(resident.getId(), List.of())))
+                .toList();
+        Long nextCursor = residents.size() == pageSize ? residents.get(residents.size() - 1).getId() : null;
+        return ResidentPageDTO.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Thống kê subscriber theo district (COUNT / SUM trong DB)
+     */
+    @Transactional(readOnly = true)
+    public SubscriberStatsDTO getSubscriberStats() {
+        return SubscriberStatsDTO.builder()
+                .residents(residentRepository.count())
+                .alertRecipients(residentRepository.countByIsVerifiedTrueAndNotificationEnabledTrue())
+                .districts(residentStationRepository.countSubscribersByDistrict())
+                .build();
+    }
+
     /**
      * Map Resident entity → ResidentDTO
      */
     private ResidentDTO mapToDTO(Resident resident) {
+        return mapToDTO(resident, resident.getStations().stream()
+                .map(ResidentStation::getDistrict)
+                .collect(Collectors.toList()));
+    }
+
+    private ResidentDTO mapToDTO(Resident resident, List<String> districts) {
         ResidentDTO dto = new ResidentDTO();
         dto.setId(resident.getId());
         dto.setUserId(resident.getUser().getId());
@@ -120,13 +282,7 @@ public class ResidentService {
         dto.setNotificationEnabled(resident.getNotificationEnabled());
         dto.setCreatedAt(resident.getCreatedAt());
         dto.setUpdatedAt(resident.getUpdatedAt());
-
-        // Map subscribed stations (từ ResidentStation)
-        dto.setDistricts(
-                resident.getStations().stream()
-                        .map(ResidentStation::getDistrict)
-                        .collect(Collectors.toList()));
-
+        dto.setDistricts(districts);
         return dto;
     }
 }
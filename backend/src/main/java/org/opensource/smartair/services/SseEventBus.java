@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.opensource.smartair.dtos.SseBusMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * Bus phân phối event SSE giữa các replica backend
+ * Orion-LD chỉ gửi notification tới 1 instance; instance đó publish lên bus
+ * và mọi replica (kể cả chính nó) fan-out tới subscribers cục bộ
+ * - local: trong process (mặc định, 1 replica / test)
+ * - redis: Redis pub/sub (sse.bus=redis)
+ */
+public interface SseEventBus {
+
+    /**
+     * Publish event tới mọi replica
+     */
+    void publish(SseBusMessage message);
+
+    /**
+     * Đăng ký listener nhận event (gọi 1 lần cho mỗi message)
+     */
+    void subscribe(Consumer<SseBusMessage> listener);
+}
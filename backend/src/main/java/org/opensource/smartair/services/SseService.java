@@ -21,9 +21,13 @@
  */
 package org.opensource.smartair.services;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensource.smartair.dtos.*;
+import org.opensource.smartair.utils.PipelineTrace;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
@@ -36,6 +40,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * Service for managing SSE (Server-Sent Events) streams
  * Uses Reactor Sinks for reactive streaming
  * Fetches initial data from Orion-LD when client connects
+ * broadcastX publish lên SseEventBus; mỗi replica fan-out tới sinks cục bộ trong deliver()
  */
 @Slf4j
 @Service
@@ -43,6 +48,9 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SseService {
 
     private final OrionLdClient orionLdClient;
+    private final MeterRegistry meterRegistry;
+    private final LatencyTrackerService latencyTracker;
+    private final SseEventBus eventBus;
 
     // Separate sinks for each data type
     private final Map<String, Sinks.Many<SseEventDTO<WeatherDataDTO>>> weatherSinks = new ConcurrentHashMap<>();
@@ -71,6 +79,166 @@ public class SseService {
     private final Sinks.Many<SseEventDTO<AirQualityDataDTO>> airQualityAlertSink = Sinks.many().multicast()
             .onBackpressureBuffer();
 
+    /**
+     * Gauges cho số subscriber theo topic (sse.subscribers) và số stream đang mở (sse.streams)
+     */
+    /**
+     * Nhận event từ SseEventBus (của mọi replica) và fan-out tới sinks cục bộ
+     */
+    @PostConstruct
+    void subscribeToBus() {
+        eventBus.subscribe(this::deliver);
+    }
+
+    @PostConstruct
+    void registerMeters() {
+        registerTopicGauges("weather", weatherSinks);
+        registerTopicGauges("airquality", airQualitySinks);
+        registerTopicGauges("platform", platformSinks);
+        registerTopicGauges("device", deviceSinks);
+        registerTopicGauges("weather-history", weatherHistorySinks);
+        registerTopicGauges("airquality-history", airQualityHistorySinks);
+        registerGlobalGauge("aggregated-weather-history", aggregatedWeatherHistorySink);
+        registerGlobalGauge("aggregated-airquality-history", aggregatedAirQualityHistorySink);
+        registerGlobalGauge("all-platforms", allPlatformsSink);
+        registerGlobalGauge("all-environment", allEnvironmentSink);
+        registerGlobalGauge("airquality-alerts", airQualityAlertSink);
+    }
+
+    private void registerTopicGauges(String topic, Map<String, ? extends Sinks.Many<?>> sinks) {
+        Gauge.builder("sse.subscribers", sinks, map -> map.values().stream()
+                .mapToInt(Sinks.Many::currentSubscriberCount)
+                .sum())
+                .tag("topic", topic)
+                .description("Active SSE subscribers per topic")
+                .register(meterRegistry);
+        Gauge.builder("sse.streams", sinks, Map::size)
+                .tag("topic", topic)
+                .description("Open per-key sinks per topic")
+                .register(meterRegistry);
+    }
+
+    private void registerGlobalGauge(String topic, Sinks.Many<?> sink) {
+        Gauge.builder("sse.subscribers", sink, Sinks.Many::currentSubscriberCount)
+                .tag("topic", topic)
+                .description("Active SSE subscribers per topic")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Đếm kết quả tryEmitNext theo topic (ok, fail_overflow, fail_non_serialized, ...)
+     */
+    private void recordEmit(String topic, Sinks.EmitResult result) {
+        meterRegistry.counter("sse.emit", "topic", topic,
+                "result", result.isSuccess() ? "ok" : result.name().toLowerCase()).increment();
+    }
+
+    private void recordNoSubscriber(String topic) {
+        meterRegistry.counter("sse.emit", "topic", topic, "result", "no_subscriber").increment();
+    }
+
+    // ============ Broadcast (qua SseEventBus) ============
+
+    /**
+     * Broadcast weather data to subscribed clients (mọi replica)
+     */
+    public void broadcastWeather(WeatherDataDTO data) {
+        broadcastWeather(data, null);
+    }
+
+    /**
+     * Broadcast weather data kèm PipelineTrace để đo latency end-to-end
+     */
+    public void broadcastWeather(WeatherDataDTO data, PipelineTrace trace) {
+        publish(SseTopic.WEATHER, data.getDistrict(), data, trace);
+    }
+
+    /**
+     * Broadcast air quality data to subscribed clients (mọi replica)
+     */
+    public void broadcastAirQuality(AirQualityDataDTO data) {
+        broadcastAirQuality(data, null);
+    }
+
+    /**
+     * Broadcast air quality data kèm PipelineTrace để đo latency end-to-end
+     */
+    public void broadcastAirQuality(AirQualityDataDTO data, PipelineTrace trace) {
+        publish(SseTopic.AIR_QUALITY, data.getDistrict(), data, trace);
+    }
+
+    public void broadcastPlatform(PlatformDataDTO data) {
+        publish(SseTopic.PLATFORM, data.getEntityId(), data, null);
+    }
+
+    public void broadcastDevice(DeviceDataDTO data) {
+        publish(SseTopic.DEVICE, data.getEntityId(), data, null);
+    }
+
+    public void broadcastWeatherHistory(String district, Map<String, Object> historyData) {
+        publish(SseTopic.WEATHER_HISTORY, district, historyData, null);
+    }
+
+    public void broadcastAirQualityHistory(String district, Map<String, Object> historyData) {
+        publish(SseTopic.AIR_QUALITY_HISTORY, district, historyData, null);
+    }
+
+    public void broadcastAggregatedWeatherHistoryUpdate(Map<String, Object> aggregatedData) {
+        publish(SseTopic.AGGREGATED_WEATHER_HISTORY, null, aggregatedData, null);
+    }
+
+    public void broadcastAggregatedAirQualityHistoryUpdate(Map<String, Object> aggregatedData) {
+        publish(SseTopic.AGGREGATED_AIR_QUALITY_HISTORY, null, aggregatedData, null);
+    }
+
+    public void broadcastAllEnvironmentData(Map<String, AirQualityDataDTO> dataMap) {
+        publish(SseTopic.ALL_ENVIRONMENT, null, dataMap, null);
+    }
+
+    private void publish(SseTopic topic, String key, Object payload, PipelineTrace trace) {
+        eventBus.publish(SseBusMessage.builder()
+                .topic(topic)
+                .key(key)
+                .payload(payload)
+                .trace(trace)
+                .build());
+    }
+
+    /**
+     * Fan-out weather chỉ tới subscriber của replica này, cho nguồn mà replica nào cũng nhận
+     * (MQTT direct-ingest) - publish lên bus sẽ nhân bản event theo số replica
+     */
+    public void broadcastWeatherLocally(WeatherDataDTO data) {
+        emitWeather(data, null);
+    }
+
+    /**
+     * Fan-out air quality chỉ tới subscriber của replica này (xem broadcastWeatherLocally)
+     */
+    public void broadcastAirQualityLocally(AirQualityDataDTO data) {
+        emitAirQuality(data, null);
+    }
+
+    /**
+     * Nhận event từ SseEventBus (của chính replica này hoặc replica khác) và fan-out cục bộ
+     */
+    @SuppressWarnings("unchecked")
+    void deliver(SseBusMessage message) {
+        Object payload = message.getPayload();
+        switch (message.getTopic()) {
+            case WEATHER -> emitWeather((WeatherDataDTO) payload, message.getTrace());
+            case AIR_QUALITY -> emitAirQuality((AirQualityDataDTO) payload, message.getTrace());
+            case PLATFORM -> emitPlatform((PlatformDataDTO) payload);
+            case DEVICE -> emitDevice((DeviceDataDTO) payload);
+            case WEATHER_HISTORY -> emitWeatherHistory(message.getKey(), (Map<String, Object>) payload);
+            case AIR_QUALITY_HISTORY -> emitAirQualityHistory(message.getKey(), (Map<String, Object>) payload);
+            case AGGREGATED_WEATHER_HISTORY -> emitAggregatedWeatherHistoryUpdate((Map<String, Object>) payload);
+            case AGGREGATED_AIR_QUALITY_HISTORY ->
+                emitAggregatedAirQualityHistoryUpdate((Map<String, Object>) payload);
+            case ALL_ENVIRONMENT -> emitAllEnvironmentData((Map<String, AirQualityDataDTO>) payload);
+        }
+    }
+
     // ============ Weather Streams ============
 
     /**
@@ -123,19 +291,19 @@ public class SseService {
                 .doOnCancel(() -> log.info("Client unsubscribed from aggregated weather history"));
     }
 
-    // ✅ NEW: Broadcast Aggregated Weather History
-    public void broadcastAggregatedWeatherHistoryUpdate(Map<String, Object> aggregatedData) {
+    private void emitAggregatedWeatherHistoryUpdate(Map<String, Object> aggregatedData) {
         int subscriberCount = aggregatedWeatherHistorySink.currentSubscriberCount();
         log.info("📊 Broadcasting aggregated weather history update to {} subscribers", subscriberCount);
 
         if (subscriberCount > 0) {
             try {
-                aggregatedWeatherHistorySink.tryEmitNext(aggregatedData);
+                recordEmit("aggregated-weather-history", aggregatedWeatherHistorySink.tryEmitNext(aggregatedData));
                 log.debug("✅ Successfully broadcasted aggregated weather history");
             } catch (Exception e) {
                 log.error("❌ Error broadcasting aggregated weather history: {}", e.getMessage());
             }
         } else {
+            recordNoSubscriber("aggregated-weather-history");
             log.debug("⚠️ No subscribers for aggregated weather history");
         }
     }
@@ -148,12 +316,12 @@ public class SseService {
                 .doOnCancel(() -> log.info("Client unsubscribed from aggregated air quality history"));
     }
 
-    public void broadcastAggregatedAirQualityHistoryUpdate(Map<String, Object> aggregatedData) {
+    private void emitAggregatedAirQualityHistoryUpdate(Map<String, Object> aggregatedData) {
         log.debug("Broadcasting aggregated air quality history update to {} subscribers",
                 aggregatedAirQualityHistorySink.currentSubscriberCount());
 
         try {
-            aggregatedAirQualityHistorySink.tryEmitNext(aggregatedData);
+            recordEmit("aggregated-airquality-history", aggregatedAirQualityHistorySink.tryEmitNext(aggregatedData));
         } catch (Exception e) {
             log.error("Error broadcasting aggregated air quality history: {}", e.getMessage());
         }
@@ -181,7 +349,7 @@ public class SseService {
                 });
     }
 
-    public void broadcastWeatherHistory(String district, Map<String, Object> historyData) {
+    private void emitWeatherHistory(String district, Map<String, Object> historyData) {
         if (district == null || historyData == null || historyData.isEmpty()) {
             log.warn("Invalid weather history data for district: {}", district);
             return;
@@ -192,12 +360,14 @@ public class SseService {
 
         if (sink != null) {
             Sinks.EmitResult result = sink.tryEmitNext(historyData);
+            recordEmit("weather-history", result);
             if (result.isSuccess()) {
                 log.debug("Broadcasted weather history update for district: {}", district);
             } else {
                 log.warn("Failed to broadcast weather history for district {}: {}", district, result);
             }
         } else {
+            recordNoSubscriber("weather-history");
             log.debug("No subscribers for weather history in district: {}", district);
         }
     }
@@ -224,7 +394,7 @@ public class SseService {
                 });
     }
 
-    public void broadcastAirQualityHistory(String district, Map<String, Object> historyData) {
+    private void emitAirQualityHistory(String district, Map<String, Object> historyData) {
         if (district == null || historyData == null || historyData.isEmpty()) {
             log.warn("Invalid air quality history data for district: {}", district);
             return;
@@ -235,26 +405,30 @@ public class SseService {
 
         if (sink != null) {
             Sinks.EmitResult result = sink.tryEmitNext(historyData);
+            recordEmit("airquality-history", result);
             if (result.isSuccess()) {
                 log.debug("Broadcasted air quality history update for district: {}", district);
             } else {
                 log.warn("Failed to broadcast air quality history for district {}: {}", district, result);
             }
         } else {
+            recordNoSubscriber("airquality-history");
             log.debug("No subscribers for air quality history in district: {}", district);
         }
     }
 
     /**
-     * Broadcast weather data to subscribed clients
+     * Fan-out weather update tới subscribers cục bộ
      */
-    public void broadcastWeather(WeatherDataDTO data) {
+    private void emitWeather(WeatherDataDTO data, PipelineTrace trace) {
         String district = data.getDistrict();
         if (district == null) {
             log.warn("Weather data missing district, cannot broadcast");
             return;
         }
 
+        latencyTracker.markEmitted(trace);
+
         String key = "weather:" + district;
         Sinks.Many<SseEventDTO<WeatherDataDTO>> sink = weatherSinks.get(key);
 
@@ -264,15 +438,18 @@ public class SseService {
                     .district(district)
                     .timestamp(data.getObservedAt())
                     .data(data)
+                    .trace(trace)
                     .build();
 
             Sinks.EmitResult result = sink.tryEmitNext(event);
+            recordEmit("weather", result);
             if (result.isSuccess()) {
                 log.debug("Broadcasted weather update for district: {}", district);
             } else {
                 log.warn("Failed to broadcast weather update for district {}: {}", district, result);
             }
         } else {
+            recordNoSubscriber("weather");
             log.debug("No subscribers for weather updates in district: {}", district);
         }
     }
@@ -319,15 +496,17 @@ public class SseService {
     }
 
     /**
-     * Broadcast air quality data to subscribed clients
+     * Fan-out air quality update (và alert nếu AQI >= 4) tới subscribers cục bộ
      */
-    public void broadcastAirQuality(AirQualityDataDTO data) {
+    private void emitAirQuality(AirQualityDataDTO data, PipelineTrace trace) {
         String district = data.getDistrict();
         if (district == null) {
             log.warn("Air quality data missing district, cannot broadcast");
             return;
         }
 
+        latencyTracker.markEmitted(trace);
+
         String key = "airquality:" + district;
         Sinks.Many<SseEventDTO<AirQualityDataDTO>> sink = airQualitySinks.get(key);
 
@@ -337,20 +516,23 @@ public class SseService {
                     .district(district)
                     .timestamp(data.getObservedAt())
                     .data(data)
+                    .trace(trace)
                     .build();
 
             Sinks.EmitResult result = sink.tryEmitNext(event);
+            recordEmit("airquality", result);
             if (result.isSuccess()) {
                 log.debug("Broadcasted air quality update for district: {}", district);
             } else {
                 log.warn("Failed to broadcast air quality update for district {}: {}", district, result);
             }
         } else {
+            recordNoSubscriber("airquality");
             log.debug("No subscribers for air quality updates in district: {}", district);
         }
 
         if (shouldBroadcastAlert(data)) {
-            broadcastAirQualityAlert(data);
+            broadcastAirQualityAlert(data, trace);
         }
     }
 
@@ -377,15 +559,17 @@ public class SseService {
      * Broadcast air quality ALERT tới tất cả clients đang subscribe alert stream
      * Chỉ gửi khi AQI >= 4
      */
-    private void broadcastAirQualityAlert(AirQualityDataDTO data) {
+    private void broadcastAirQualityAlert(AirQualityDataDTO data, PipelineTrace trace) {
         SseEventDTO<AirQualityDataDTO> alertEvent = SseEventDTO.<AirQualityDataDTO>builder()
                 .eventType("airquality.alert")
                 .district(data.getDistrict())
                 .timestamp(data.getObservedAt())
                 .data(data)
+                .trace(trace)
                 .build();
 
         Sinks.EmitResult result = airQualityAlertSink.tryEmitNext(alertEvent);
+        recordEmit("airquality-alerts", result);
         if (result.isSuccess()) {
             log.info("Broadcasted air quality ALERT for {} (AQI: {}, Level: {})",
                     data.getDistrict(), data.getAirQualityIndex(), data.getAirQualityLevel());
@@ -447,10 +631,10 @@ public class SseService {
     }
 
     /**
-     * Broadcast platform data to subscribed clients
+     * Fan-out platform update tới subscribers cục bộ
      * Also broadcasts to ALL platforms stream for map view
      */
-    public void broadcastPlatform(PlatformDataDTO data) {
+    private void emitPlatform(PlatformDataDTO data) {
         String platformId = data.getEntityId();
         if (platformId == null) {
             log.warn("Platform data missing entity ID, cannot broadcast");
@@ -470,17 +654,20 @@ public class SseService {
 
         if (sink != null) {
             Sinks.EmitResult result = sink.tryEmitNext(event);
+            recordEmit("platform", result);
             if (result.isSuccess()) {
                 log.debug("Broadcasted platform update: {}", platformId);
             } else {
                 log.warn("Failed to broadcast platform update {}: {}", platformId, result);
             }
         } else {
+            recordNoSubscriber("platform");
             log.debug("No subscribers for platform: {}", platformId);
         }
 
         // Also broadcast to ALL platforms stream (for map view)
         Sinks.EmitResult globalResult = allPlatformsSink.tryEmitNext(event);
+        recordEmit("all-platforms", globalResult);
         if (globalResult.isSuccess()) {
             log.debug("Broadcasted platform update to global stream: {}", platformId);
         }
@@ -567,13 +754,14 @@ public class SseService {
                 });
     }
 
-    public void broadcastAllEnvironmentData(Map<String, AirQualityDataDTO> dataMap) {
+    private void emitAllEnvironmentData(Map<String, AirQualityDataDTO> dataMap) {
         if (dataMap == null || dataMap.isEmpty()) {
             log.warn("Empty environment data map, not broadcasting");
             return;
         }
 
         Sinks.EmitResult result = allEnvironmentSink.tryEmitNext(dataMap);
+        recordEmit("all-environment", result);
         if (result.isSuccess()) {
             log.debug("Broadcasted environment data update to Python service ({} stations)",
                     dataMap.size());
@@ -583,9 +771,9 @@ public class SseService {
     }
 
     /**
-     * Broadcast device data to subscribed clients
+     * Fan-out device update tới subscribers cục bộ
      */
-    public void broadcastDevice(DeviceDataDTO data) {
+    private void emitDevice(DeviceDataDTO data) {
         String deviceId = data.getEntityId();
         if (deviceId == null) {
             log.warn("Device data missing entity ID, cannot broadcast");
@@ -604,12 +792,14 @@ public class SseService {
                     .build();
 
             Sinks.EmitResult result = sink.tryEmitNext(event);
+            recordEmit("device", result);
             if (result.isSuccess()) {
                 log.debug("Broadcasted device update: {}", deviceId);
             } else {
                 log.warn("Failed to broadcast device update {}: {}", deviceId, result);
             }
         } else {
+            recordNoSubscriber("device");
             log.debug("No subscribers for device: {}", deviceId);
         }
     }
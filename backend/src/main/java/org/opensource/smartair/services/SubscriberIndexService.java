@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensource.smartair.dtos.AlertRecipientDTO;
+import org.opensource.smartair.dtos.ResidentSubscriptionChangedEvent;
+import org.opensource.smartair.dtos.ResidentsImportedEvent;
+import org.opensource.smartair.repositories.ResidentStationRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index district → người nhận cảnh báo (email, fullName)
+ * - Build 1 lần lúc startup từ resident_stations (1 query projection, không JOIN FETCH entity)
+ * - Cập nhật theo từng resident sau khi transaction của ResidentService/AuthService commit
+ * - Trước khi build xong (hoặc build lỗi): cold miss đọc từ DB theo district
+ *   (index idx_resident_stations_district) rồi giữ lại trong index
+ *
+ * - Rebuild định kỳ (notification.subscriber-index.rebuild-interval-ms, mặc định 5 phút)
+ *
+ * Event sau commit chỉ tới replica đã xử lý request: thay đổi subscription trên replica khác
+ * được thấy sau tối đa một chu kỳ rebuild (trong khoảng đó cảnh báo có thể gửi theo danh sách cũ).
+ *
+ * Đọc không lock: mỗi district giữ một List immutable, ghi thay cả list (copy-on-write).
+ * Ghi (build, cold load, refresh) serialize qua monitor của service và đọc DB trong lock,
+ * nên một refresh sau commit không bị snapshot cũ của build ghi đè.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SubscriberIndexService {
+
+    private final ResidentStationRepository residentStationRepository;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Key: district, Value: danh sách người nhận (immutable)
+     */
+    private final Map<String, List<AlertRecipientDTO>> recipientsByDistrict = new ConcurrentHashMap<>();
+
+    /**
+     * Reverse index: residentId → districts đang có trong recipientsByDistrict (để xóa khi refresh)
+     */
+    private final Map<Long, Set<String>> districtsByResident = new HashMap<>();
+
+    /**
+     * true khi index đã chứa toàn bộ subscriptions: district vắng mặt = không có người nhận
+     */
+    private volatile boolean fullyLoaded = false;
+
+    @PostConstruct
+    void registerMeters() {
+        Gauge.builder("notification.subscriber.index.districts", recipientsByDistrict, Map::size)
+                .description("Districts with alert recipients in the subscriber index")
+                .register(meterRegistry);
+        Gauge.builder("notification.subscriber.index.recipients", recipientsByDistrict,
+                index -> index.values().stream().mapToInt(List::size).sum())
+                .description("(district, recipient) pairs in the subscriber index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build toàn bộ index khi application sẵn sàng
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Không chặn startup: getRecipients() sẽ fallback query theo district
+            log.error("Failed to build subscriber index, falling back to per-district queries", e);
+        }
+    }
+
+    /**
+     * Đồng bộ thay đổi subscription từ replica khác (event sau commit chỉ tới replica xử lý request)
+     */
+    @Scheduled(fixedDelayString = "${notification.subscriber-index.rebuild-interval-ms:300000}",
+            initialDelayString = "${notification.subscriber-index.rebuild-interval-ms:300000}")
+    public void rebuildPeriodically() {
+        buildOnStartup();
+    }
+
+    /**
+     * Load lại toàn bộ index từ DB
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        List<AlertRecipientDTO> rows = residentStationRepository.findAllAlertRecipients();
+
+        Map<String, List<AlertRecipientDTO>> grouped = new HashMap<>();
+        districtsByResident.clear();
+        for (AlertRecipientDTO row : rows) {
+            grouped.computeIfAbsent(row.getDistrict(), d -> new ArrayList<>()).add(row);
+            districtsByResident.computeIfAbsent(row.getResidentId(), id -> new HashSet<>()).add(row.getDistrict());
+        }
+
+        // Thay từng district thay vì clear(): getRecipients() không lock nên không được thấy index rỗng
+        grouped.forEach((district, recipients) -> recipientsByDistrict.put(district, List.copyOf(recipients)));
+        recipientsByDistrict.keySet().retainAll(grouped.keySet());
+        fullyLoaded = true;
+
+        log.info("Subscriber index built: {} districts, {} recipients in {}ms",
+                recipientsByDistrict.size(), rows.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Người nhận cảnh báo của district - O(số subscriber của district)
+     */
+    public List<AlertRecipientDTO> getRecipients(String district) {
+        if (district == null) {
+            return List.of();
+        }
+        List<AlertRecipientDTO> recipients = recipientsByDistrict.get(district);
+        if (recipients != null) {
+            return recipients;
+        }
+        if (fullyLoaded) {
+            return List.of();
+        }
+        return loadDistrict(district);
+    }
+
+    /**
+     * Cập nhật index cho resident sau khi transaction đăng ký / cập nhật profile commit
+     * (fallbackExecution: vẫn chạy nếu event được publish ngoài transaction)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onResidentSubscriptionChanged(ResidentSubscriptionChangedEvent event) {
+        try {
+            refreshResident(event.residentId());
+        } catch (Exception e) {
+            log.error("Failed to refresh subscriber index for resident {}, rebuilding", event.residentId(), e);
+            invalidate();
+            buildOnStartup();
+        }
+    }
+
+    /**
+     * Bulk import: build lại toàn bộ index một lần sau khi commit
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onResidentsImported(ResidentsImportedEvent event) {
+        log.info("{} residents imported, rebuilding subscriber index", event.count());
+        buildOnStartup();
+    }
+
+    /**
+     * Đọc lại các subscriptions của một resident và thay thế entries cũ trong index
+     */
+    public synchronized void refreshResident(Long residentId) {
+        List<AlertRecipientDTO> current = residentStationRepository.findAlertRecipientsByResidentId(residentId);
+
+        // 1. Xóa resident khỏi các district cũ
+        Set<String> previous = districtsByResident.remove(residentId);
+        if (previous != null) {
+            for (String district : previous) {
+                recipientsByDistrict.computeIfPresent(district, (d, recipients) -> {
+                    List<AlertRecipientDTO> remaining = recipients.stream()
+                            .filter(r -> !residentId.equals(r.getResidentId()))
+                            .toList();
+                    return remaining.isEmpty() ? null : remaining;
+                });
+            }
+        }
+
+        // 2. Thêm vào các district hiện tại
+        // Chưa fullyLoaded: chỉ sửa district đã load, district chưa load sẽ cold miss đọc DB
+        Set<String> indexed = new HashSet<>();
+        for (AlertRecipientDTO recipient : current) {
+            String district = recipient.getDistrict();
+            if (!fullyLoaded && !recipientsByDistrict.containsKey(district)) {
+                continue;
+            }
+            recipientsByDistrict.merge(district, List.of(recipient), (existing, added) -> {
+                List<AlertRecipientDTO> merged = new ArrayList<>(existing.size() + 1);
+                merged.addAll(existing);
+                merged.addAll(added);
+                return List.copyOf(merged);
+            });
+            indexed.add(district);
+        }
+        if (!indexed.isEmpty()) {
+            districtsByResident.put(residentId, indexed);
+        }
+
+        log.debug("Subscriber index refreshed for resident {}: {} districts", residentId, current.size());
+    }
+
+    /**
+     * Bỏ toàn bộ index - getRecipients() quay về cold miss cho tới khi rebuild thành công
+     */
+    private synchronized void invalidate() {
+        fullyLoaded = false;
+        recipientsByDistrict.clear();
+        districtsByResident.clear();
+    }
+
+    private synchronized List<AlertRecipientDTO> loadDistrict(String district) {
+        List<AlertRecipientDTO> cached = recipientsByDistrict.get(district);
+        if (cached != null || fullyLoaded) {
+            return cached != null ? cached : List.of();
+        }
+
+        List<AlertRecipientDTO> recipients = List.copyOf(residentStationRepository.findAlertRecipientsByDistrict(district));
+        if (!recipients.isEmpty()) {
+            recipientsByDistrict.put(district, recipients);
+            for (AlertRecipientDTO recipient : recipients) {
+                districtsByResident.computeIfAbsent(recipient.getResidentId(), id -> new HashSet<>()).add(district);
+            }
+        }
+        log.debug("Subscriber index cold miss for {}: {} recipients loaded", district, recipients.size());
+        return recipients;
+    }
+}
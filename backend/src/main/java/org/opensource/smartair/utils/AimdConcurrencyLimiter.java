@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limiter (Additive Increase / Multiplicative Decrease)
+ * - Tăng limit thêm 1 khi request thành công trong ngưỡng latency và đang dùng >= 1/2 limit
+ * - Giảm limit theo backoffRatio khi request lỗi hoặc chậm hơn ngưỡng latency
+ * Request vượt quá limit bị từ chối ngay thay vì xếp hàng chờ connection pool
+ */
+public class AimdConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+            double backoffRatio, long latencyThresholdMillis) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limiter bounds: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Thử lấy 1 slot. Trả về false nếu đã đạt limit hiện tại
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Request hoàn thành thành công - điều chỉnh limit theo latency đo được
+     */
+    public void onSuccess(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        if (rttNanos > latencyThresholdNanos) {
+            decrease();
+        } else if (current * 2 >= (int) limit) {
+            increase();
+        }
+    }
+
+    /**
+     * Request lỗi do upstream (timeout, connection refused, 5xx) - giảm limit
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        decrease();
+    }
+
+    /**
+     * Request bị hủy (client ngắt kết nối) - chỉ trả slot, không điều chỉnh limit
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void increase() {
+        limit = Math.min(maxLimit, limit + 1);
+    }
+
+    private synchronized void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
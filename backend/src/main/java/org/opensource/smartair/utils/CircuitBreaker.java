@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker 3 trạng thái: CLOSED → OPEN → HALF_OPEN
+ * - CLOSED: cho qua tất cả, mở mạch khi lỗi liên tiếp đạt failureThreshold
+ * - OPEN: từ chối ngay trong openDuration
+ * - HALF_OPEN: chỉ cho halfOpenProbes request thăm dò; thành công → CLOSED, lỗi → OPEN
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int probesInFlight;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, int halfOpenProbes) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDuration.toMillis();
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Kiểm tra request có được phép đi qua không
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                // fall through: request đầu tiên sau openDuration là probe
+            case HALF_OPEN:
+            default:
+                if (probesInFlight >= halfOpenProbes) {
+                    return false;
+                }
+                probesInFlight++;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probesInFlight = 0;
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            trip();
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            trip();
+        }
+    }
+
+    /**
+     * Request đã được cho qua nhưng bị hủy - trả lại slot probe nếu đang HALF_OPEN
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void trip() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probesInFlight = 0;
+        consecutiveFailures = 0;
+    }
+}
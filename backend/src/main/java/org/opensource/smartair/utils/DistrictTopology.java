@@ -0,0 +1,578 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Topology (arc dùng chung) của tập polygon phường/xã, theo cách TopoJSON dựng topology:
+ * - Tọa độ snap về lưới 1e-6 độ (độ chính xác của GeoJSON gốc)
+ * - Junction: điểm xuất hiện ở nhiều ring với cặp điểm kề khác nhau; ring được cắt tại junction
+ *   thành arc, arc trùng nhau (kể cả ngược chiều) chỉ lưu một lần
+ * - Simplify Douglas-Peucker trên từng arc (giữ 2 đầu mút) nên ranh giới chung của hai phường
+ *   được simplify giống hệt nhau, không sinh khe hở / chồng lấn như simplify từng polygon
+ * Xuất GeoJSON hoặc TopoJSON (quantized, delta-encoded) theo tolerance và bước lượng tử
+ */
+public class DistrictTopology {
+
+    private static final double FINE_SCALE = 1e6;
+    private static final int FINE_DECIMALS = 6;
+
+    private final long originX;
+    private final long originY;
+
+    /**
+     * Arc: x,y xen kẽ trên lưới fine (tuyệt đối)
+     */
+    private final List<long[]> arcs;
+
+    /**
+     * Mỗi feature: polygons → rings → arc refs (~i = arc i ngược chiều)
+     */
+    private final List<int[][][]> features;
+
+    private final int sharedArcs;
+
+    private DistrictTopology(long originX, long originY, List<long[]> arcs, List<int[][][]> features, int sharedArcs) {
+        this.originX = originX;
+        this.originY = originY;
+        this.arcs = arcs;
+        this.features = features;
+        this.sharedArcs = sharedArcs;
+    }
+
+    /**
+     * Dựng topology từ danh sách Polygon / MultiPolygon (x = lon, y = lat)
+     */
+    public static DistrictTopology build(List<Geometry> geometries) {
+        List<List<List<long[]>>> rings = new ArrayList<>();
+        long minX = Long.MAX_VALUE;
+        long minY = Long.MAX_VALUE;
+        for (Geometry geometry : geometries) {
+            List<List<long[]>> polygons = new ArrayList<>();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                if (!(geometry.getGeometryN(i) instanceof Polygon polygon) || polygon.isEmpty()) {
+                    continue;
+                }
+                List<long[]> polygonRings = new ArrayList<>();
+                polygonRings.add(toFineRing(polygon.getExteriorRing()));
+                for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+                    polygonRings.add(toFineRing(polygon.getInteriorRingN(h)));
+                }
+                for (long[] ring : polygonRings) {
+                    for (int p = 0; p < ring.length; p += 2) {
+                        minX = Math.min(minX, ring[p]);
+                        minY = Math.min(minY, ring[p + 1]);
+                    }
+                }
+                polygons.add(polygonRings);
+            }
+            rings.add(polygons);
+        }
+        if (minX == Long.MAX_VALUE) {
+            minX = 0;
+            minY = 0;
+        }
+
+        Set<Long> junctions = findJunctions(rings, minX, minY);
+
+        ArcCollector collector = new ArcCollector();
+        List<int[][][]> features = new ArrayList<>(rings.size());
+        for (List<List<long[]>> polygons : rings) {
+            int[][][] feature = new int[polygons.size()][][];
+            for (int p = 0; p < polygons.size(); p++) {
+                List<long[]> polygonRings = polygons.get(p);
+                feature[p] = new int[polygonRings.size()][];
+                for (int r = 0; r < polygonRings.size(); r++) {
+                    feature[p][r] = cutRing(polygonRings.get(r), junctions, collector, minX, minY);
+                }
+            }
+            features.add(feature);
+        }
+        return new DistrictTopology(minX, minY, collector.arcs, features, collector.shared);
+    }
+
+    public int getArcCount() {
+        return arcs.size();
+    }
+
+    /**
+     * Số arc được tham chiếu từ hơn một ring (ranh giới chung giữa hai phường/xã)
+     */
+    public int getSharedArcCount() {
+        return sharedArcs;
+    }
+
+    public int getFeatureCount() {
+        return features.size();
+    }
+
+    /**
+     * FeatureCollection GeoJSON; properties[i] là properties của feature i
+     *
+     * @param toleranceDegrees tolerance Douglas-Peucker (0 = không simplify)
+     * @param quantumDegrees   bước lượng tử tọa độ (vd: 0.0001 ≈ 11m)
+     */
+    public byte[] toGeoJson(ObjectMapper objectMapper, List<? extends JsonNode> properties,
+            double toleranceDegrees, double quantumDegrees) {
+        long quantum = toFineSteps(quantumDegrees);
+        long[][] quantized = quantizedArcs(toFineSteps(toleranceDegrees), quantum);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("type", "FeatureCollection");
+            json.writeArrayFieldStart("features");
+            for (int f = 0; f < features.size(); f++) {
+                json.writeStartObject();
+                json.writeStringField("type", "Feature");
+                json.writeFieldName("properties");
+                json.writeTree(properties.get(f));
+                json.writeFieldName("geometry");
+                writeGeoJsonGeometry(json, features.get(f), quantized, quantum);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * TopoJSON Topology với một object "districts" (GeometryCollection), arcs quantized + delta-encoded
+     */
+    public byte[] toTopoJson(ObjectMapper objectMapper, List<? extends JsonNode> properties,
+            double toleranceDegrees, double quantumDegrees) {
+        long quantum = toFineSteps(quantumDegrees);
+        long[][] quantized = quantizedArcs(toFineSteps(toleranceDegrees), quantum);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("type", "Topology");
+
+            json.writeObjectFieldStart("transform");
+            json.writeArrayFieldStart("scale");
+            json.writeNumber(decimal(quantum));
+            json.writeNumber(decimal(quantum));
+            json.writeEndArray();
+            json.writeArrayFieldStart("translate");
+            json.writeNumber(decimal(originX));
+            json.writeNumber(decimal(originY));
+            json.writeEndArray();
+            json.writeEndObject();
+
+            json.writeObjectFieldStart("objects");
+            json.writeObjectFieldStart("districts");
+            json.writeStringField("type", "GeometryCollection");
+            json.writeArrayFieldStart("geometries");
+            for (int f = 0; f < features.size(); f++) {
+                int[][][] feature = features.get(f);
+                json.writeStartObject();
+                json.writeStringField("type", feature.length == 1 ? "Polygon" : "MultiPolygon");
+                json.writeArrayFieldStart("arcs");
+                for (int[][] polygon : feature) {
+                    if (feature.length > 1) {
+                        json.writeStartArray();
+                    }
+                    for (int[] ring : polygon) {
+                        json.writeArray(ring, 0, ring.length);
+                    }
+                    if (feature.length > 1) {
+                        json.writeEndArray();
+                    }
+                }
+                json.writeEndArray();
+                json.writeFieldName("properties");
+                json.writeTree(properties.get(f));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndObject();
+
+            json.writeArrayFieldStart("arcs");
+            for (long[] arc : quantized) {
+                json.writeStartArray();
+                long previousX = 0;
+                long previousY = 0;
+                for (int p = 0; p < arc.length; p += 2) {
+                    json.writeStartArray();
+                    json.writeNumber(arc[p] - previousX);
+                    json.writeNumber(arc[p + 1] - previousY);
+                    json.writeEndArray();
+                    previousX = arc[p];
+                    previousY = arc[p + 1];
+                }
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Arc sau khi simplify và lượng tử: tọa độ nguyên theo bước quantum, gốc (originX, originY)
+     */
+    private long[][] quantizedArcs(long tolerance, long quantum) {
+        long[][] result = new long[arcs.size()][];
+        for (int i = 0; i < arcs.size(); i++) {
+            long[] arc = arcs.get(i);
+            boolean closed = arc[0] == arc[arc.length - 2] && arc[1] == arc[arc.length - 1];
+            long[] q = quantize(tolerance > 0 ? douglasPeucker(arc, tolerance) : arc, quantum);
+            if (closed && q.length < 8) {
+                // Ring đóng bị simplify suy biến: giữ hình dạng gốc (chỉ lượng tử)
+                q = quantize(arc, quantum);
+            }
+            result[i] = q;
+        }
+        return result;
+    }
+
+    private long[] quantize(long[] arc, long quantum) {
+        long[] out = new long[arc.length];
+        int n = 0;
+        for (int p = 0; p < arc.length; p += 2) {
+            long x = Math.round((arc[p] - originX) / (double) quantum);
+            long y = Math.round((arc[p + 1] - originY) / (double) quantum);
+            if (n == 0 || x != out[n - 2] || y != out[n - 1]) {
+                out[n++] = x;
+                out[n++] = y;
+            }
+        }
+        if (n == 2) {
+            // Arc ngắn hơn một bước lượng tử: giữ 2 điểm trùng nhau để ring vẫn tham chiếu được
+            out[n++] = out[0];
+            out[n++] = out[1];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private void writeGeoJsonGeometry(JsonGenerator json, int[][][] feature, long[][] quantized, long quantum)
+            throws IOException {
+        List<List<long[]>> polygons = new ArrayList<>();
+        for (int[][] polygon : feature) {
+            List<long[]> rings = new ArrayList<>();
+            for (int r = 0; r < polygon.length; r++) {
+                long[] ring = stitch(polygon[r], quantized);
+                if (ring.length >= 8) {
+                    rings.add(ring);
+                } else if (r == 0) {
+                    break;
+                }
+            }
+            if (!rings.isEmpty()) {
+                polygons.add(rings);
+            }
+        }
+        if (polygons.isEmpty()) {
+            json.writeNull();
+            return;
+        }
+
+        json.writeStartObject();
+        json.writeStringField("type", polygons.size() == 1 ? "Polygon" : "MultiPolygon");
+        json.writeArrayFieldStart("coordinates");
+        for (List<long[]> rings : polygons) {
+            if (polygons.size() > 1) {
+                json.writeStartArray();
+            }
+            for (long[] ring : rings) {
+                json.writeStartArray();
+                for (int p = 0; p < ring.length; p += 2) {
+                    json.writeStartArray();
+                    json.writeNumber(decimal(originX + ring[p] * quantum));
+                    json.writeNumber(decimal(originY + ring[p + 1] * quantum));
+                    json.writeEndArray();
+                }
+                json.writeEndArray();
+            }
+            if (polygons.size() > 1) {
+                json.writeEndArray();
+            }
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    /**
+     * Nối các arc của một ring (bỏ điểm đầu trùng với điểm cuối arc trước)
+     */
+    private static long[] stitch(int[] refs, long[][] quantized) {
+        int length = 0;
+        for (int ref : refs) {
+            length += quantized[ref < 0 ? ~ref : ref].length;
+        }
+        long[] out = new long[length];
+        int n = 0;
+        for (int ref : refs) {
+            long[] arc = quantized[ref < 0 ? ~ref : ref];
+            int points = arc.length / 2;
+            for (int k = 0; k < points; k++) {
+                int p = ref < 0 ? (points - 1 - k) * 2 : k * 2;
+                if (n >= 2 && arc[p] == out[n - 2] && arc[p + 1] == out[n - 1]) {
+                    continue;
+                }
+                out[n++] = arc[p];
+                out[n++] = arc[p + 1];
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static long[] toFineRing(LineString ring) {
+        Coordinate[] coordinates = ring.getCoordinates();
+        long[] out = new long[coordinates.length * 2];
+        int n = 0;
+        for (Coordinate coordinate : coordinates) {
+            long x = Math.round(coordinate.x * FINE_SCALE);
+            long y = Math.round(coordinate.y * FINE_SCALE);
+            if (n == 0 || x != out[n - 2] || y != out[n - 1]) {
+                out[n++] = x;
+                out[n++] = y;
+            }
+        }
+        if (out[n - 2] != out[0] || out[n - 1] != out[1]) {
+            out[n++] = out[0];
+            out[n++] = out[1];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static Set<Long> findJunctions(List<List<List<long[]>>> rings, long minX, long minY) {
+        Map<Long, long[]> neighbours = new HashMap<>();
+        Set<Long> junctions = new HashSet<>();
+        for (List<List<long[]>> polygons : rings) {
+            for (List<long[]> polygonRings : polygons) {
+                for (long[] ring : polygonRings) {
+                    int m = ring.length / 2 - 1;
+                    for (int i = 0; i < m; i++) {
+                        long point = key(ring, i, minX, minY);
+                        long previous = key(ring, (i - 1 + m) % m, minX, minY);
+                        long next = key(ring, (i + 1) % m, minX, minY);
+                        long[] pair = { Math.min(previous, next), Math.max(previous, next) };
+                        long[] existing = neighbours.putIfAbsent(point, pair);
+                        if (existing != null && (existing[0] != pair[0] || existing[1] != pair[1])) {
+                            junctions.add(point);
+                        }
+                    }
+                }
+            }
+        }
+        return junctions;
+    }
+
+    private static int[] cutRing(long[] ring, Set<Long> junctions, ArcCollector collector, long minX, long minY) {
+        int m = ring.length / 2 - 1;
+        int start = -1;
+        for (int i = 0; i < m && start < 0; i++) {
+            if (junctions.contains(key(ring, i, minX, minY))) {
+                start = i;
+            }
+        }
+
+        if (start < 0) {
+            // Không có junction: cả ring là một arc đóng, xoay về điểm nhỏ nhất để so trùng
+            int smallest = 0;
+            for (int i = 1; i < m; i++) {
+                if (key(ring, i, minX, minY) < key(ring, smallest, minX, minY)) {
+                    smallest = i;
+                }
+            }
+            long[] arc = new long[(m + 1) * 2];
+            for (int k = 0; k <= m; k++) {
+                int i = (smallest + k) % m;
+                arc[2 * k] = ring[2 * i];
+                arc[2 * k + 1] = ring[2 * i + 1];
+            }
+            return new int[] { collector.add(arc) };
+        }
+
+        List<Integer> refs = new ArrayList<>();
+        int arcStart = 0;
+        for (int k = 1; k <= m; k++) {
+            int i = (start + k) % m;
+            if (k == m || junctions.contains(key(ring, i, minX, minY))) {
+                long[] arc = new long[(k - arcStart + 1) * 2];
+                for (int j = arcStart; j <= k; j++) {
+                    int index = (start + j) % m;
+                    arc[2 * (j - arcStart)] = ring[2 * index];
+                    arc[2 * (j - arcStart) + 1] = ring[2 * index + 1];
+                }
+                refs.add(collector.add(arc));
+                arcStart = k;
+            }
+        }
+        return refs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long key(long[] ring, int index, long minX, long minY) {
+        return ((ring[2 * index] - minX) << 32) | (ring[2 * index + 1] - minY);
+    }
+
+    /**
+     * Douglas-Peucker trên tọa độ nguyên, giữ điểm đầu / cuối
+     */
+    static long[] douglasPeucker(long[] arc, long tolerance) {
+        int points = arc.length / 2;
+        if (points <= 2) {
+            return arc;
+        }
+        boolean[] keep = new boolean[points];
+        keep[0] = true;
+        keep[points - 1] = true;
+        double toleranceSquared = (double) tolerance * tolerance;
+
+        int[] stack = new int[points * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = points - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceSquared(arc, i, first, last);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistance > toleranceSquared) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        long[] out = new long[arc.length];
+        int n = 0;
+        for (int i = 0; i < points; i++) {
+            if (keep[i]) {
+                out[n++] = arc[2 * i];
+                out[n++] = arc[2 * i + 1];
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static double segmentDistanceSquared(long[] arc, int p, int a, int b) {
+        double px = arc[2 * p], py = arc[2 * p + 1];
+        double ax = arc[2 * a], ay = arc[2 * a + 1];
+        double bx = arc[2 * b], by = arc[2 * b + 1];
+        double dx = bx - ax, dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double ex = px - (ax + t * dx), ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    private static long toFineSteps(double degrees) {
+        return Math.max(degrees > 0 ? 1 : 0, Math.round(degrees * FINE_SCALE));
+    }
+
+    private static BigDecimal decimal(long fine) {
+        return BigDecimal.valueOf(fine, FINE_DECIMALS).stripTrailingZeros();
+    }
+
+    /**
+     * Arc duy nhất theo dãy điểm; arc trùng với một arc đã có theo chiều ngược trả ~index
+     */
+    private static final class ArcCollector {
+        private final List<long[]> arcs = new ArrayList<>();
+        private final Map<ArcKey, Integer> index = new HashMap<>();
+        private final Set<Integer> referenced = new HashSet<>();
+        private int shared;
+
+        int add(long[] arc) {
+            Integer forward = index.get(new ArcKey(arc));
+            if (forward != null) {
+                markShared(forward);
+                return forward;
+            }
+            Integer backward = index.get(new ArcKey(reverse(arc)));
+            if (backward != null) {
+                markShared(backward);
+                return ~backward;
+            }
+            int id = arcs.size();
+            arcs.add(arc);
+            index.put(new ArcKey(arc), id);
+            referenced.add(id);
+            return id;
+        }
+
+        private void markShared(int id) {
+            if (referenced.remove(id)) {
+                shared++;
+            }
+        }
+
+        private static long[] reverse(long[] arc) {
+            long[] out = new long[arc.length];
+            int points = arc.length / 2;
+            for (int i = 0; i < points; i++) {
+                out[2 * i] = arc[2 * (points - 1 - i)];
+                out[2 * i + 1] = arc[2 * (points - 1 - i) + 1];
+            }
+            return out;
+        }
+    }
+
+    private record ArcKey(long[] points) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ArcKey key && Arrays.equals(points, key.points);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(points);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Raster IDW (inverse distance weighting) có cập nhật incremental
+ * Mỗi cell giữ tổng Σ w·v và Σ w của các trạm trong bán kính ảnh hưởng, giá trị = Σ w·v / Σ w
+ * (NaN khi không có trạm nào trong bán kính). Khi một trạm đổi giá trị chỉ các cell trong bán kính
+ * của trạm đó được cộng delta w·(v_mới - v_cũ) - O(cell trong bán kính) thay vì O(cells × trạm).
+ * Full rebuild (khởi động, định kỳ để xóa sai số cộng dồn) chạy song song theo hàng trên ForkJoin common pool.
+ *
+ * Hàng 0 là hàng phía nam (minLat), cột 0 phía tây (minLon); khoảng cách tính equirectangular
+ * quanh vĩ độ giữa grid (sai số không đáng kể trên phạm vi một thành phố).
+ * Thread-safe: update / rebuild / snapshot đồng bộ trên instance. Rebuild tính ngoài lock, nên
+ * update / remove trong lúc đó được ghi vào journal và replay lên grid mới khi swap.
+ */
+public class IdwGrid {
+
+    private static final double METERS_PER_DEGREE_LAT = 110_574.0;
+    private static final double METERS_PER_DEGREE_LON_EQUATOR = 111_320.0;
+
+    private final double minLat;
+    private final double minLon;
+    private final double cellLat;
+    private final double cellLon;
+    private final int rows;
+    private final int cols;
+    private final double radiusMeters;
+    private final double minDistanceMeters;
+    private final double power;
+    private final double metersPerDegreeLon;
+
+    private double[] weightedSum;
+    private double[] weightSum;
+    private final Map<String, Station> stations = new HashMap<>();
+    private long version;
+
+    /**
+     * Update / remove từ lúc rebuild đầu tiên đang chạy bắt đầu (chỉ ghi khi activeRebuilds > 0)
+     */
+    private final List<Change> journal = new ArrayList<>();
+    private int activeRebuilds;
+
+    /**
+     * Vùng cell bị thay đổi (hàng [row, row + rows), cột [col, col + cols))
+     */
+    public record Region(int row, int col, int rows, int cols) {
+        public boolean isEmpty() {
+            return rows <= 0 || cols <= 0;
+        }
+    }
+
+    public record Station(String id, double lat, double lon, double value) {
+    }
+
+    /**
+     * station == null: trạm bị xóa
+     */
+    private record Change(String stationId, Station station) {
+    }
+
+    public IdwGrid(double minLat, double minLon, double maxLat, double maxLon,
+            double cellMeters, double radiusMeters, double power) {
+        if (maxLat <= minLat || maxLon <= minLon || cellMeters <= 0 || radiusMeters <= 0) {
+            throw new IllegalArgumentException("Invalid grid bounds / cell size / radius");
+        }
+        double centerLat = (minLat + maxLat) / 2;
+        this.metersPerDegreeLon = METERS_PER_DEGREE_LON_EQUATOR * Math.cos(Math.toRadians(centerLat));
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.cellLat = cellMeters / METERS_PER_DEGREE_LAT;
+        this.cellLon = cellMeters / metersPerDegreeLon;
+        this.rows = (int) Math.ceil((maxLat - minLat) / cellLat);
+        this.cols = (int) Math.ceil((maxLon - minLon) / cellLon);
+        this.radiusMeters = radiusMeters;
+        // Trạm nằm giữa cell: không để trọng số vô hạn
+        this.minDistanceMeters = cellMeters / 2;
+        this.power = power;
+        this.weightedSum = new double[rows * cols];
+        this.weightSum = new double[rows * cols];
+    }
+
+    /**
+     * Thêm / cập nhật giá trị (và vị trí) của một trạm
+     *
+     * @return vùng cell bị ảnh hưởng (rỗng nếu giá trị không đổi hoặc trạm nằm ngoài grid + bán kính)
+     */
+    public synchronized Region update(String stationId, double lat, double lon, double value) {
+        record(new Change(stationId, new Station(stationId, lat, lon, value)));
+        return apply(stationId, lat, lon, value);
+    }
+
+    private Region apply(String stationId, double lat, double lon, double value) {
+        Station previous = stations.get(stationId);
+        if (previous != null && previous.lat() == lat && previous.lon() == lon) {
+            if (previous.value() == value) {
+                return new Region(0, 0, 0, 0);
+            }
+            stations.put(stationId, new Station(stationId, lat, lon, value));
+            version++;
+            return accumulate(weightedSum, null, lat, lon, value - previous.value(), 0);
+        }
+
+        Region removed = previous != null
+                ? accumulateBoth(previous.lat(), previous.lon(), previous.value(), -1)
+                : new Region(0, 0, 0, 0);
+        stations.put(stationId, new Station(stationId, lat, lon, value));
+        Region added = accumulateBoth(lat, lon, value, 1);
+        version++;
+        return union(removed, added);
+    }
+
+    /**
+     * Xóa trạm khỏi grid
+     */
+    public synchronized Region remove(String stationId) {
+        record(new Change(stationId, null));
+        return applyRemove(stationId);
+    }
+
+    private Region applyRemove(String stationId) {
+        Station previous = stations.remove(stationId);
+        if (previous == null) {
+            return new Region(0, 0, 0, 0);
+        }
+        version++;
+        return accumulateBoth(previous.lat(), previous.lon(), previous.value(), -1);
+    }
+
+    /**
+     * Tính lại toàn bộ grid từ danh sách trạm (thay thế trạm hiện có), song song theo hàng
+     */
+    public void rebuild(List<Station> replacement) {
+        int journalStart;
+        synchronized (this) {
+            journalStart = journal.size();
+            activeRebuilds++;
+        }
+        double[] newWeighted = new double[rows * cols];
+        double[] newWeights = new double[rows * cols];
+        // Mỗi task ghi một hàng riêng nên không cần đồng bộ giữa các task
+        IntStream.range(0, rows).parallel().forEach(row -> {
+            for (Station station : replacement) {
+                accumulateRow(newWeighted, newWeights, row, station.lat(), station.lon(), station.value(), 1);
+            }
+        });
+        synchronized (this) {
+            stations.clear();
+            replacement.forEach(station -> stations.put(station.id(), station));
+            weightedSum = newWeighted;
+            weightSum = newWeights;
+            // Update / remove tới trong lúc tính mới hơn danh sách trạm của rebuild: áp lại lên grid mới
+            for (Change change : journal.subList(journalStart, journal.size())) {
+                Station station = change.station();
+                if (station != null) {
+                    apply(station.id(), station.lat(), station.lon(), station.value());
+                } else {
+                    applyRemove(change.stationId());
+                }
+            }
+            if (--activeRebuilds == 0) {
+                journal.clear();
+            }
+            version++;
+        }
+    }
+
+    /**
+     * Rebuild từ các trạm hiện có (xóa sai số floating point cộng dồn từ các update incremental)
+     */
+    public void rebuild() {
+        List<Station> current;
+        synchronized (this) {
+            current = new ArrayList<>(stations.values());
+        }
+        rebuild(current);
+    }
+
+    public synchronized float[] values() {
+        return values(new Region(0, 0, rows, cols));
+    }
+
+    /**
+     * Giá trị nội suy của một vùng, row-major (NaN = không có dữ liệu)
+     */
+    public synchronized float[] values(Region region) {
+        float[] result = new float[Math.max(0, region.rows()) * Math.max(0, region.cols())];
+        int i = 0;
+        for (int row = region.row(); row < region.row() + region.rows(); row++) {
+            int offset = row * cols;
+            for (int col = region.col(); col < region.col() + region.cols(); col++) {
+                double weights = weightSum[offset + col];
+                result[i++] = weights > 0 ? (float) (weightedSum[offset + col] / weights) : Float.NaN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * float32 little-endian (đọc trực tiếp bằng Float32Array ở frontend)
+     */
+    public static byte[] toBytes(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    public synchronized double valueAt(double lat, double lon) {
+        int row = (int) Math.floor((lat - minLat) / cellLat);
+        int col = (int) Math.floor((lon - minLon) / cellLon);
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return Double.NaN;
+        }
+        double weights = weightSum[row * cols + col];
+        return weights > 0 ? weightedSum[row * cols + col] / weights : Double.NaN;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized List<Station> getStations() {
+        return List.copyOf(stations.values());
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getCellLat() {
+        return cellLat;
+    }
+
+    public double getCellLon() {
+        return cellLon;
+    }
+
+    private void record(Change change) {
+        if (activeRebuilds > 0) {
+            journal.add(change);
+        }
+    }
+
+    private Region accumulateBoth(double lat, double lon, double value, int sign) {
+        return accumulate(weightedSum, weightSum, lat, lon, value * sign, sign);
+    }
+
+    /**
+     * Cộng w·valueDelta vào weighted (và w·weightSign vào weights nếu khác null) cho mọi cell
+     * trong bán kính của điểm (lat, lon)
+     */
+    private Region accumulate(double[] weighted, double[] weights, double lat, double lon,
+            double valueDelta, int weightSign) {
+        double radiusLat = radiusMeters / METERS_PER_DEGREE_LAT;
+        int rowFrom = Math.max(0, (int) Math.floor((lat - radiusLat - minLat) / cellLat));
+        int rowTo = Math.min(rows - 1, (int) Math.floor((lat + radiusLat - minLat) / cellLat));
+        double radiusLon = radiusMeters / metersPerDegreeLon;
+        int colFrom = Math.max(0, (int) Math.floor((lon - radiusLon - minLon) / cellLon));
+        int colTo = Math.min(cols - 1, (int) Math.floor((lon + radiusLon - minLon) / cellLon));
+        if (rowFrom > rowTo || colFrom > colTo) {
+            return new Region(0, 0, 0, 0);
+        }
+
+        for (int row = rowFrom; row <= rowTo; row++) {
+            double dy = (minLat + (row + 0.5) * cellLat - lat) * METERS_PER_DEGREE_LAT;
+            int offset = row * cols;
+            for (int col = colFrom; col <= colTo; col++) {
+                double dx = (minLon + (col + 0.5) * cellLon - lon) * metersPerDegreeLon;
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                if (distance > radiusMeters) {
+                    continue;
+                }
+                double weight = weight(distance);
+                weighted[offset + col] += weight * valueDelta;
+                if (weights != null) {
+                    weights[offset + col] += weight * weightSign;
+                }
+            }
+        }
+        return new Region(rowFrom, colFrom, rowTo - rowFrom + 1, colTo - colFrom + 1);
+    }
+
+    private void accumulateRow(double[] weighted, double[] weights, int row,
+            double lat, double lon, double value, int weightSign) {
+        double dy = (minLat + (row + 0.5) * cellLat - lat) * METERS_PER_DEGREE_LAT;
+        if (Math.abs(dy) > radiusMeters) {
+            return;
+        }
+        double radiusLon = radiusMeters / metersPerDegreeLon;
+        int colFrom = Math.max(0, (int) Math.floor((lon - radiusLon - minLon) / cellLon));
+        int colTo = Math.min(cols - 1, (int) Math.floor((lon + radiusLon - minLon) / cellLon));
+        int offset = row * cols;
+        for (int col = colFrom; col <= colTo; col++) {
+            double dx = (minLon + (col + 0.5) * cellLon - lon) * metersPerDegreeLon;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance > radiusMeters) {
+                continue;
+            }
+            double weight = weight(distance);
+            weighted[offset + col] += weight * value;
+            weights[offset + col] += weight * weightSign;
+        }
+    }
+
+    private double weight(double distanceMeters) {
+        double distance = Math.max(distanceMeters, minDistanceMeters);
+        return power == 2 ? 1.0 / (distance * distance) : Math.pow(distance, -power);
+    }
+
+    private static Region union(Region a, Region b) {
+        if (a.isEmpty()) {
+            return b;
+        }
+        if (b.isEmpty()) {
+            return a;
+        }
+        int row = Math.min(a.row(), b.row());
+        int col = Math.min(a.col(), b.col());
+        int rowEnd = Math.max(a.row() + a.rows(), b.row() + b.rows());
+        int colEnd = Math.max(a.col() + a.cols(), b.col() + b.cols());
+        return new Region(row, col, rowEnd - row, colEnd - col);
+    }
+}
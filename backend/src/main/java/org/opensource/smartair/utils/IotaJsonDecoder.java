@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dựng entity NGSI-LD (normalized) từ payload IoTA-JSON thô mà ETL / cảm biến publish lên Mosquitto,
+ * giống cách IoT Agent ánh xạ theo cấu hình provisioning (iot-agent-provisioning.sh):
+ * - object_id → tên thuộc tính (humidity → relativeHumidity, aqi → airQualityIndex, co → CO, ...)
+ * - latitude / longitude → GeoProperty location
+ * - refDevice / refPointOfInterest → Relationship
+ * - entity id: urn:ngsi-ld:{WeatherObserved|AirQualityObserved}:Hanoi-{stationName}
+ *
+ * Kết quả đi qua NgsiTransformerService như notification từ Orion-LD, nên DTO hai đường giống nhau
+ */
+public final class IotaJsonDecoder {
+
+    public static final String WEATHER_TYPE = "weatherObserved";
+    public static final String AIR_QUALITY_TYPE = "airQualityObserved";
+
+    private static final Map<String, String> WEATHER_ATTRIBUTES = Map.ofEntries(
+            Map.entry("stationName", "stationName"),
+            Map.entry("stationCode", "stationCode"),
+            Map.entry("temperature", "temperature"),
+            Map.entry("feelsLikeTemperature", "feelsLikeTemperature"),
+            Map.entry("pressure", "atmosphericPressure"),
+            Map.entry("humidity", "relativeHumidity"),
+            Map.entry("weatherType", "weatherType"),
+            Map.entry("weatherDescription", "weatherDescription"),
+            Map.entry("windSpeed", "windSpeed"),
+            Map.entry("windDirection", "windDirection"),
+            Map.entry("visibility", "visibility"),
+            Map.entry("cloudiness", "cloudiness"),
+            Map.entry("precipitation", "precipitation"),
+            Map.entry("pressureTendency", "pressureTendency"),
+            Map.entry("illuminance", "illuminance"));
+
+    private static final Map<String, String> AIR_QUALITY_ATTRIBUTES = Map.ofEntries(
+            Map.entry("stationName", "stationName"),
+            Map.entry("stationCode", "stationCode"),
+            Map.entry("co", "CO"),
+            Map.entry("no", "NO"),
+            Map.entry("no2", "NO2"),
+            Map.entry("nox", "NOx"),
+            Map.entry("o3", "O3"),
+            Map.entry("so2", "SO2"),
+            Map.entry("pm2_5", "pm2_5"),
+            Map.entry("pm10", "pm10"),
+            Map.entry("nh3", "NH3"),
+            Map.entry("aqi", "airQualityIndex"),
+            Map.entry("airQualityLevel", "airQualityLevel"),
+            Map.entry("temperature", "temperature"),
+            Map.entry("humidity", "relativeHumidity"),
+            Map.entry("windSpeed", "windSpeed"),
+            Map.entry("windDirection", "windDirection"),
+            Map.entry("precipitation", "precipitation"),
+            Map.entry("reliability", "reliability"),
+            Map.entry("coLevel", "CO_Level"));
+
+    private static final List<String> RELATIONSHIPS = List.of("refDevice", "refPointOfInterest");
+
+    private IotaJsonDecoder() {
+    }
+
+    /**
+     * Topic IoTA-JSON: /{apikey}/{device_id}/attrs → device_id (null nếu không phải topic đo đạc)
+     */
+    public static String deviceIdFromTopic(String topic) {
+        if (topic == null || !topic.endsWith("/attrs")) {
+            return null;
+        }
+        String[] parts = topic.split("/");
+        // "", apikey, device_id, "attrs"
+        return parts.length == 4 && !parts[2].isEmpty() ? parts[2] : null;
+    }
+
+    /**
+     * Entity type theo quy ước device_id: weather-* / real-weather-sensor-* và airquality-* / real-dust-sensor-*
+     */
+    public static String entityTypeForDevice(String deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        if (deviceId.startsWith("weather-") || deviceId.startsWith("real-weather-sensor-")) {
+            return WEATHER_TYPE;
+        }
+        if (deviceId.startsWith("airquality-") || deviceId.startsWith("real-dust-sensor-")) {
+            return AIR_QUALITY_TYPE;
+        }
+        return null;
+    }
+
+    /**
+     * @param receivedAt observedAt dùng khi payload không có dateObserved (ISO-8601)
+     * @return entity NGSI-LD normalized, null nếu device không thuộc loại hỗ trợ hoặc thiếu stationName
+     */
+    public static Map<String, Object> toEntity(String deviceId, Map<String, Object> payload, String receivedAt) {
+        String type = entityTypeForDevice(deviceId);
+        if (type == null || !(payload.get("stationName") instanceof String stationName) || stationName.isBlank()) {
+            return null;
+        }
+        String observedAt = payload.get("dateObserved") instanceof String date ? date : receivedAt;
+
+        Map<String, Object> entity = new LinkedHashMap<>();
+        entity.put("id", (WEATHER_TYPE.equals(type)
+                ? "urn:ngsi-ld:WeatherObserved:Hanoi-"
+                : "urn:ngsi-ld:AirQualityObserved:Hanoi-") + stationName);
+        entity.put("type", type);
+
+        Map<String, String> attributes = WEATHER_TYPE.equals(type) ? WEATHER_ATTRIBUTES : AIR_QUALITY_ATTRIBUTES;
+        for (Map.Entry<String, Object> field : payload.entrySet()) {
+            String name = attributes.get(field.getKey());
+            if (name != null && field.getValue() != null) {
+                entity.put(name, Map.of("type", "Property", "value", field.getValue(), "observedAt", observedAt));
+            }
+        }
+        for (String relationship : RELATIONSHIPS) {
+            if (payload.get(relationship) instanceof String object && !object.isBlank()) {
+                entity.put(relationship, Map.of("type", "Relationship", "object", object));
+            }
+        }
+        if (payload.get("latitude") instanceof Number lat && payload.get("longitude") instanceof Number lon) {
+            entity.put("location", Map.of("type", "GeoProperty", "value",
+                    Map.of("type", "Point", "coordinates", List.of(lon.doubleValue(), lat.doubleValue()))));
+        }
+        return entity;
+    }
+}
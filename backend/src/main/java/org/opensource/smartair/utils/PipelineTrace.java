@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+/**
+ * Mốc thời gian của một observation khi đi qua pipeline:
+ * sensor (observedAt) → nhận notification → transform → emit vào sink → ghi ra SSE
+ *
+ * Được gắn vào SseEventDTO (không serialize) nên một event có thể được ghi
+ * cho nhiều subscriber, mỗi lần ghi ghi nhận một mẫu latency riêng
+ */
+public class PipelineTrace {
+
+    private final String entityType;
+    private final long receivedAtMillis;
+    private final long receivedAtNanos;
+
+    private volatile String district;
+    private volatile long observedAtMillis = -1;
+    private volatile long transformedAtNanos;
+    private volatile long emittedAtNanos;
+
+    public PipelineTrace(String entityType) {
+        this.entityType = entityType;
+        this.receivedAtMillis = System.currentTimeMillis();
+        this.receivedAtNanos = System.nanoTime();
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public long getReceivedAtMillis() {
+        return receivedAtMillis;
+    }
+
+    public long getReceivedAtNanos() {
+        return receivedAtNanos;
+    }
+
+    public String getDistrict() {
+        return district;
+    }
+
+    public void setDistrict(String district) {
+        this.district = district;
+    }
+
+    /**
+     * @return epoch millis của observedAt, -1 nếu không có / không parse được
+     */
+    public long getObservedAtMillis() {
+        return observedAtMillis;
+    }
+
+    public void setObservedAtMillis(long observedAtMillis) {
+        this.observedAtMillis = observedAtMillis;
+    }
+
+    public long getTransformedAtNanos() {
+        return transformedAtNanos;
+    }
+
+    public void setTransformedAtNanos(long transformedAtNanos) {
+        this.transformedAtNanos = transformedAtNanos;
+    }
+
+    public long getEmittedAtNanos() {
+        return emittedAtNanos;
+    }
+
+    public void setEmittedAtNanos(long emittedAtNanos) {
+        this.emittedAtNanos = emittedAtNanos;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool các kết nối SMTP (Transport) đã connect + authenticate sẵn
+ * - Mỗi batch email mượn 1 Transport và gửi tuần tự trên cùng kết nối
+ * - Transport được trả về pool để batch sau dùng lại (không handshake TLS/AUTH lại)
+ * - Kết nối bị server đóng (idle timeout) được phát hiện khi mượn và connect lại
+ * Số kết nối tối đa = size (khớp với số worker gửi song song)
+ */
+@Slf4j
+public class SmtpConnectionPool implements AutoCloseable {
+
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+
+    private final Semaphore permits;
+    private final BlockingQueue<Transport> idle;
+    private volatile boolean closed;
+
+    public SmtpConnectionPool(Session session, String protocol, String host, int port,
+            String username, String password, int size) {
+        this.session = session;
+        this.protocol = protocol;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.permits = new Semaphore(size);
+        this.idle = new LinkedBlockingQueue<>(size);
+    }
+
+    /**
+     * Mượn 1 Transport đã connect (block nếu tất cả đang được dùng)
+     */
+    public Transport borrow() throws MessagingException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("SMTP connection pool is closed");
+        }
+        permits.acquire();
+        Transport transport = idle.poll();
+        try {
+            if (transport == null || !transport.isConnected()) {
+                closeQuietly(transport);
+                transport = connect();
+            }
+            return transport;
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Trả Transport về pool; healthy = false khi kết nối lỗi giữa chừng → đóng hẳn
+     */
+    public void release(Transport transport, boolean healthy) {
+        try {
+            if (!healthy || closed || !idle.offer(transport)) {
+                closeQuietly(transport);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            closeQuietly(transport);
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        Transport transport = session.getTransport(protocol);
+        transport.connect(host, port, username, password);
+        log.debug("Opened SMTP connection to {}:{}", host, port);
+        return transport;
+    }
+
+    private void closeQuietly(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+}
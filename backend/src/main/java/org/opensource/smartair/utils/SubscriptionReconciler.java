@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * So sánh trạng thái subscription mong muốn với những gì Orion-LD đang có
+ * → danh sách cần tạo / cập nhật / xóa (thuần, không gọi mạng)
+ *
+ * So sánh theo entities, watchedAttributes, notification.attributes, endpoint, format, sysAttrs và throttling;
+ * tên thuộc tính / type được rút về local name vì Orion-LD có thể trả dạng expanded (URI đầy đủ)
+ * nếu request không kèm đúng @context
+ */
+public final class SubscriptionReconciler {
+
+    private SubscriptionReconciler() {
+    }
+
+    /**
+     * Một subscription mong muốn
+     *
+     * @param entityId           null = mọi entity của entityType
+     * @param watchedAttributes  chỉ notify khi request update chạm vào các thuộc tính này (rỗng = mọi thuộc tính)
+     * @param notifiedAttributes projection "attrs" của notification (rỗng = toàn bộ entity)
+     * @param throttlingSeconds  khoảng tối thiểu giữa 2 notification của subscription này (0 = không throttle)
+     */
+    public record Spec(String id, String entityType, String entityId, List<String> watchedAttributes,
+            List<String> notifiedAttributes, int throttlingSeconds) {
+
+        public Map<String, Object> toPayload(String endpointUri, String context) {
+            Map<String, Object> entity = new LinkedHashMap<>();
+            entity.put("type", entityType);
+            if (entityId != null) {
+                entity.put("id", entityId);
+            }
+
+            Map<String, Object> notification = new LinkedHashMap<>();
+            if (!notifiedAttributes.isEmpty()) {
+                notification.put("attributes", notifiedAttributes);
+            }
+            notification.put("format", "normalized");
+            // createdAt / modifiedAt trong notification để phía nhận bỏ được bản trùng
+            notification.put("sysAttrs", true);
+            notification.put("endpoint", Map.of("uri", endpointUri, "accept", "application/json"));
+
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("id", id);
+            payload.put("type", "Subscription");
+            payload.put("entities", List.of(entity));
+            if (!watchedAttributes.isEmpty()) {
+                payload.put("watchedAttributes", watchedAttributes);
+            }
+            if (throttlingSeconds > 0) {
+                payload.put("throttling", throttlingSeconds);
+            }
+            payload.put("notification", notification);
+            payload.put("@context", context);
+            return payload;
+        }
+    }
+
+    /**
+     * @param create    chưa có trên Orion-LD
+     * @param update    có nhưng khác spec (được xóa và tạo lại)
+     * @param delete    id do backend quản lý nhưng không còn trong trạng thái mong muốn
+     * @param unchanged số subscription đã đúng spec
+     */
+    public record Plan(List<Spec> create, List<Spec> update, List<String> delete, int unchanged) {
+
+        public boolean isEmpty() {
+            return create.isEmpty() && update.isEmpty() && delete.isEmpty();
+        }
+    }
+
+    /**
+     * @param existing subscription đang có trên Orion-LD (GET /ngsi-ld/v1/subscriptions)
+     * @param owned    id nào do backend quản lý (chỉ những id này mới bị xóa)
+     */
+    public static Plan plan(List<Spec> desired, List<Map<String, Object>> existing, Predicate<String> owned,
+            String endpointUri) {
+        Map<String, Map<String, Object>> existingById = new LinkedHashMap<>();
+        for (Map<String, Object> subscription : existing) {
+            if (subscription.get("id") instanceof String id) {
+                existingById.put(id, subscription);
+            }
+        }
+
+        List<Spec> create = new ArrayList<>();
+        List<Spec> update = new ArrayList<>();
+        Set<String> desiredIds = new HashSet<>();
+        int unchanged = 0;
+        for (Spec spec : desired) {
+            desiredIds.add(spec.id());
+            Map<String, Object> current = existingById.get(spec.id());
+            if (current == null) {
+                create.add(spec);
+            } else if (!matches(spec, current, endpointUri)) {
+                update.add(spec);
+            } else {
+                unchanged++;
+            }
+        }
+
+        List<String> delete = new ArrayList<>();
+        for (String id : existingById.keySet()) {
+            if (!desiredIds.contains(id) && owned.test(id)) {
+                delete.add(id);
+            }
+        }
+        return new Plan(create, update, delete, unchanged);
+    }
+
+    static boolean matches(Spec spec, Map<String, Object> current, String endpointUri) {
+        List<?> entities = current.get("entities") instanceof List<?> list ? list : List.of();
+        if (entities.size() != 1 || !(entities.get(0) instanceof Map<?, ?> entity)
+                || !Objects.equals(localName(entity.get("type")), spec.entityType())
+                || !Objects.equals(entity.get("id"), spec.entityId())) {
+            return false;
+        }
+        if (!localNames(current.get("watchedAttributes")).equals(new HashSet<>(spec.watchedAttributes()))) {
+            return false;
+        }
+        int throttling = current.get("throttling") instanceof Number number ? number.intValue() : 0;
+        if (throttling != spec.throttlingSeconds()) {
+            return false;
+        }
+
+        Map<?, ?> notification = current.get("notification") instanceof Map<?, ?> map ? map : Map.of();
+        Map<?, ?> endpoint = notification.get("endpoint") instanceof Map<?, ?> map ? map : Map.of();
+        Object format = notification.get("format");
+        return Objects.equals(endpoint.get("uri"), endpointUri)
+                && (format == null || "normalized".equals(format))
+                && Boolean.TRUE.equals(notification.get("sysAttrs"))
+                && localNames(notification.get("attributes")).equals(new HashSet<>(spec.notifiedAttributes()));
+    }
+
+    private static Set<String> localNames(Object values) {
+        Set<String> names = new HashSet<>();
+        if (values instanceof List<?> list) {
+            for (Object value : list) {
+                names.add(localName(value));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * "https://smartdatamodels.org/dataModel.Environment/pm2_5" → "pm2_5"
+     */
+    static String localName(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String name = value.toString();
+        int separator = Math.max(name.lastIndexOf('/'), name.lastIndexOf('#'));
+        return separator >= 0 ? name.substring(separator + 1) : name;
+    }
+}
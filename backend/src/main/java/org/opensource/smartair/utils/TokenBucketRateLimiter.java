@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket theo key (email, IP, ...), giữ trong memory của từng replica
+ * - Mỗi key có tối đa capacity token, hồi refillPerMinute token / phút
+ * - Mỗi lần tryAcquire tiêu 1 token; hết token thì từ chối ngay
+ * Số key bị giới hạn bởi maxKeys: khi đầy, bucket đã hồi đủ token (idle) bị dọn trước;
+ * vẫn đầy thì key mới không bị giới hạn (fail-open)
+ */
+public class TokenBucketRateLimiter {
+
+    private final int capacity;
+    private final double tokensPerNano;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketRateLimiter(int capacity, double refillPerMinute, int maxKeys) {
+        this(capacity, refillPerMinute, maxKeys, System::nanoTime);
+    }
+
+    public TokenBucketRateLimiter(int capacity, double refillPerMinute, int maxKeys, LongSupplier nanoClock) {
+        if (capacity < 1 || refillPerMinute <= 0) {
+            throw new IllegalArgumentException("Invalid token bucket: capacity=" + capacity
+                    + ", refillPerMinute=" + refillPerMinute);
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Tiêu 1 token của key.
+     *
+     * @return 0 nếu được phép, ngược lại số giây cần chờ tới khi có token (>= 1)
+     */
+    public long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                evictIdle(now);
+                if (buckets.size() >= maxKeys) {
+                    return 0;
+                }
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Dọn các bucket đã hồi đầy token (không còn giới hạn gì)
+     */
+    public void evictIdle() {
+        evictIdle(nanoClock.getAsLong());
+    }
+
+    private void evictIdle(long now) {
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private final class Bucket {
+
+        private double tokens;
+        private long updatedAt;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updatedAt = now;
+        }
+
+        synchronized long tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bảo vệ một upstream (QuantumLeap, Orion-LD) bằng:
+ * - AIMD concurrency limiter: giới hạn số request đồng thời theo latency quan sát được
+ * - Circuit breaker với half-open probing
+ * - Stale fallback: trả response tốt gần nhất (theo cache key) khi upstream lỗi hoặc bị từ chối
+ *
+ * Metrics (tag upstream=&lt;name&gt;): upstream.limiter.limit, upstream.limiter.inflight,
+ * upstream.circuit.state (0=closed, 1=half-open, 2=open), upstream.rejections{reason},
+ * upstream.stale.served, upstream.request{outcome} (latency timer)
+ */
+@Slf4j
+public class UpstreamGuard {
+
+    private final String name;
+    private final AimdConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+    private final long staleMaxAgeMillis;
+    private final int staleMaxEntries;
+
+    private final Map<String, StaleEntry> lastGood = new ConcurrentHashMap<>();
+
+    private final Counter rejectedByLimit;
+    private final Counter rejectedByCircuit;
+    private final Counter staleServed;
+    private final Timer successTimer;
+    private final Timer clientErrorTimer;
+    private final Timer failureTimer;
+
+    public UpstreamGuard(String name, AimdConcurrencyLimiter limiter, CircuitBreaker circuitBreaker,
+            Duration staleMaxAge, int staleMaxEntries, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
+        this.staleMaxAgeMillis = staleMaxAge.toMillis();
+        this.staleMaxEntries = staleMaxEntries;
+
+        Gauge.builder("upstream.limiter.limit", limiter, AimdConcurrencyLimiter::getLimit)
+                .tag("upstream", name)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("upstream.limiter.inflight", limiter, AimdConcurrencyLimiter::getInFlight)
+                .tag("upstream", name)
+                .description("Requests currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("upstream.circuit.state", circuitBreaker, cb -> switch (cb.getState()) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        })
+                .tag("upstream", name)
+                .description("Circuit breaker state: 0=closed, 1=half-open, 2=open")
+                .register(meterRegistry);
+        Gauge.builder("upstream.stale.entries", lastGood, Map::size)
+                .tag("upstream", name)
+                .register(meterRegistry);
+
+        this.rejectedByLimit = Counter.builder("upstream.rejections")
+                .tag("upstream", name).tag("reason", "limit")
+                .register(meterRegistry);
+        this.rejectedByCircuit = Counter.builder("upstream.rejections")
+                .tag("upstream", name).tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.staleServed = Counter.builder("upstream.stale.served")
+                .tag("upstream", name)
+                .register(meterRegistry);
+        this.successTimer = requestTimer(meterRegistry, "success");
+        this.clientErrorTimer = requestTimer(meterRegistry, "client_error");
+        this.failureTimer = requestTimer(meterRegistry, "failure");
+    }
+
+    /**
+     * Chạy một request qua circuit breaker + limiter.
+     * Response thành công (non-empty) được lưu làm "last good" cho cacheKey.
+     * Lỗi được propagate để caller tự quyết định retry / fallback.
+     */
+    public <T> Mono<T> execute(String cacheKey, Mono<T> request) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquire()) {
+                rejectedByCircuit.increment();
+                return Mono.error(new UpstreamRejectedException(name, "circuit_open"));
+            }
+            if (!limiter.tryAcquire()) {
+                circuitBreaker.onIgnored();
+                rejectedByLimit.increment();
+                return Mono.error(new UpstreamRejectedException(name, "limit"));
+            }
+
+            long start = System.nanoTime();
+            // Slot được trả đúng một lần: downstream (zip / when) có thể cancel nguồn đã hoàn tất
+            AtomicBoolean released = new AtomicBoolean();
+            return request
+                    .doOnSuccess(value -> {
+                        if (!released.compareAndSet(false, true)) {
+                            return;
+                        }
+                        long elapsed = System.nanoTime() - start;
+                        successTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                        limiter.onSuccess(elapsed);
+                        circuitBreaker.onSuccess();
+                        if (value != null && cacheKey != null) {
+                            remember(cacheKey, value);
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (!released.compareAndSet(false, true)) {
+                            return;
+                        }
+                        long elapsed = System.nanoTime() - start;
+                        if (isUpstreamFailure(error)) {
+                            failureTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                            limiter.onDropped();
+                            circuitBreaker.onFailure();
+                        } else {
+                            // 4xx (vd: 404 no history) là response hợp lệ từ upstream khỏe mạnh
+                            clientErrorTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                            limiter.onSuccess(elapsed);
+                            circuitBreaker.onSuccess();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (!released.compareAndSet(false, true)) {
+                            return;
+                        }
+                        limiter.onIgnored();
+                        circuitBreaker.onIgnored();
+                    });
+        });
+    }
+
+    /**
+     * Fallback cho onErrorResume: trả response tốt gần nhất nếu lỗi là do upstream
+     * và còn entry chưa quá staleMaxAge, ngược lại propagate lỗi gốc
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> staleOrError(String cacheKey, Throwable error) {
+        if (cacheKey != null && isUpstreamFailure(error)) {
+            StaleEntry entry = lastGood.get(cacheKey);
+            if (entry != null && System.currentTimeMillis() - entry.storedAt() <= staleMaxAgeMillis) {
+                staleServed.increment();
+                log.warn("Serving stale {} response for {} ({}ms old): {}", name, cacheKey,
+                        System.currentTimeMillis() - entry.storedAt(), error.getMessage());
+                return Mono.just((T) entry.value());
+            }
+        }
+        return Mono.error(error);
+    }
+
+    /**
+     * Dùng cho onErrorMap sau staleOrError: lỗi upstream không còn stale fallback → UpstreamUnavailableException
+     */
+    public RuntimeException unavailable(Throwable error) {
+        if (error instanceof UpstreamUnavailableException unavailable) {
+            return unavailable;
+        }
+        return new UpstreamUnavailableException(name, name + " unavailable: " + error.getMessage(), error);
+    }
+
+    /**
+     * Lỗi do upstream quá tải / không khả dụng (tính vào breaker và limiter)
+     */
+    public static boolean isUpstreamFailure(Throwable error) {
+        if (error instanceof UpstreamRejectedException
+                || error instanceof WebClientRequestException
+                || error instanceof TimeoutException
+                || error instanceof io.netty.handler.timeout.TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status >= 500 || status == 429;
+        }
+        return error.getCause() != null && error.getCause() != error && isUpstreamFailure(error.getCause());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AimdConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private Timer requestTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("upstream.request")
+                .tag("upstream", name)
+                .tag("outcome", outcome)
+                .description("Upstream request latency (excluding locally rejected requests)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Đầy: bỏ entry đã quá staleMaxAge (không còn được phục vụ), vẫn đầy thì bỏ entry cũ nhất
+     */
+    private void remember(String cacheKey, Object value) {
+        long now = System.currentTimeMillis();
+        if (lastGood.size() >= staleMaxEntries && !lastGood.containsKey(cacheKey)) {
+            lastGood.values().removeIf(entry -> now - entry.storedAt() > staleMaxAgeMillis);
+            if (lastGood.size() >= staleMaxEntries) {
+                lastGood.entrySet().stream()
+                        .min(Comparator.comparingLong(entry -> entry.getValue().storedAt()))
+                        .ifPresent(oldest -> lastGood.remove(oldest.getKey(), oldest.getValue()));
+            }
+        }
+        lastGood.put(cacheKey, new StaleEntry(value, now));
+    }
+
+    private record StaleEntry(Object value, long storedAt) {
+    }
+}
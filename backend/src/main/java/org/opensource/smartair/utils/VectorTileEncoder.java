@@ -0,0 +1,272 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoder Mapbox Vector Tile 2.1 (một layer, feature polygon) không phụ thuộc thư viện protobuf
+ * - Geometry đầu vào đã ở hệ tọa độ tile (0..extent, trục y hướng xuống), được làm tròn về integer
+ * - Ring ngoài được đảo thành chiều kim đồng hồ (diện tích dương theo spec), ring trong ngược lại
+ * - Ring suy biến sau khi làm tròn (&lt; 3 điểm hoặc diện tích 0) bị bỏ qua
+ * Không thread-safe: mỗi tile dùng một instance
+ */
+public class VectorTileEncoder {
+
+    private static final int CMD_MOVE_TO = 1;
+    private static final int CMD_LINE_TO = 2;
+    private static final int CMD_CLOSE_PATH = 7;
+    private static final int GEOM_TYPE_POLYGON = 3;
+
+    private final String layerName;
+    private final int extent;
+
+    private final Map<String, Integer> keys = new LinkedHashMap<>();
+    private final Map<Object, Integer> values = new LinkedHashMap<>();
+    private final List<byte[]> features = new ArrayList<>();
+
+    public VectorTileEncoder(String layerName, int extent) {
+        this.layerName = layerName;
+        this.extent = extent;
+    }
+
+    /**
+     * Thêm một feature Polygon/MultiPolygon, trả false nếu không còn ring hợp lệ sau khi làm tròn.
+     * Attribute hỗ trợ String, Integer/Long, Float/Double, Boolean; giá trị null bị bỏ qua
+     */
+    public boolean addPolygonFeature(long id, Map<String, ?> attributes, Geometry geometry) {
+        GeometryWriter geometryWriter = new GeometryWriter();
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            if (geometry.getGeometryN(i) instanceof Polygon polygon && !polygon.isEmpty()) {
+                if (geometryWriter.ring(polygon.getExteriorRing(), true)) {
+                    for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+                        geometryWriter.ring(polygon.getInteriorRingN(h), false);
+                    }
+                }
+            }
+        }
+        if (geometryWriter.commands.isEmpty()) {
+            return false;
+        }
+
+        IntList tags = new IntList();
+        for (Map.Entry<String, ?> attribute : attributes.entrySet()) {
+            if (attribute.getValue() == null) {
+                continue;
+            }
+            tags.add(keys.computeIfAbsent(attribute.getKey(), k -> keys.size()));
+            tags.add(values.computeIfAbsent(attribute.getValue(), v -> values.size()));
+        }
+
+        ProtoWriter feature = new ProtoWriter();
+        feature.varintField(1, id);
+        feature.packedField(2, tags);
+        feature.varintField(3, GEOM_TYPE_POLYGON);
+        feature.packedField(4, geometryWriter.commands);
+        features.add(feature.toByteArray());
+        return true;
+    }
+
+    public int getFeatureCount() {
+        return features.size();
+    }
+
+    /**
+     * Tile đã encode; mảng rỗng nếu không có feature nào
+     */
+    public byte[] encode() {
+        if (features.isEmpty()) {
+            return new byte[0];
+        }
+        ProtoWriter layer = new ProtoWriter();
+        layer.varintField(15, 2);
+        layer.bytesField(1, layerName.getBytes(StandardCharsets.UTF_8));
+        for (byte[] feature : features) {
+            layer.bytesField(2, feature);
+        }
+        for (String key : keys.keySet()) {
+            layer.bytesField(3, key.getBytes(StandardCharsets.UTF_8));
+        }
+        for (Object value : values.keySet()) {
+            layer.bytesField(4, encodeValue(value));
+        }
+        layer.varintField(5, extent);
+
+        ProtoWriter tile = new ProtoWriter();
+        tile.bytesField(3, layer.toByteArray());
+        return tile.toByteArray();
+    }
+
+    private static byte[] encodeValue(Object value) {
+        ProtoWriter writer = new ProtoWriter();
+        if (value instanceof String s) {
+            writer.bytesField(1, s.getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer || value instanceof Long) {
+            writer.varintField(6, zigZag(((Number) value).longValue()));
+        } else if (value instanceof Float || value instanceof Double) {
+            writer.fixed64Field(3, Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean b) {
+            writer.varintField(7, b ? 1 : 0);
+        } else {
+            throw new IllegalArgumentException("Unsupported attribute type: " + value.getClass().getName());
+        }
+        return writer.toByteArray();
+    }
+
+    private static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    /**
+     * Command stream của geometry; cursor dùng chung cho mọi ring của feature (delta encoding)
+     */
+    private static final class GeometryWriter {
+        private final IntList commands = new IntList();
+        private int cursorX;
+        private int cursorY;
+
+        boolean ring(LineString ring, boolean exterior) {
+            Coordinate[] coordinates = ring.getCoordinates();
+            int[] xs = new int[coordinates.length];
+            int[] ys = new int[coordinates.length];
+            int n = 0;
+            // Bỏ điểm đóng ring và các điểm trùng nhau sau khi làm tròn
+            for (int i = 0; i < coordinates.length - 1; i++) {
+                int x = (int) Math.round(coordinates[i].x);
+                int y = (int) Math.round(coordinates[i].y);
+                if (n == 0 || x != xs[n - 1] || y != ys[n - 1]) {
+                    xs[n] = x;
+                    ys[n] = y;
+                    n++;
+                }
+            }
+            while (n > 1 && xs[n - 1] == xs[0] && ys[n - 1] == ys[0]) {
+                n--;
+            }
+            if (n < 3) {
+                return false;
+            }
+
+            long doubleArea = 0;
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n;
+                doubleArea += (long) xs[i] * ys[j] - (long) xs[j] * ys[i];
+            }
+            if (doubleArea == 0) {
+                return false;
+            }
+            boolean reverse = exterior ? doubleArea < 0 : doubleArea > 0;
+
+            commands.add(command(CMD_MOVE_TO, 1));
+            moveCursor(xs, ys, reverse ? n - 1 : 0);
+            commands.add(command(CMD_LINE_TO, n - 1));
+            for (int k = 1; k < n; k++) {
+                moveCursor(xs, ys, reverse ? n - 1 - k : k);
+            }
+            commands.add(command(CMD_CLOSE_PATH, 1));
+            return true;
+        }
+
+        private void moveCursor(int[] xs, int[] ys, int index) {
+            commands.add((int) zigZag(xs[index] - cursorX));
+            commands.add((int) zigZag(ys[index] - cursorY));
+            cursorX = xs[index];
+            cursorY = ys[index];
+        }
+
+        private static int command(int id, int count) {
+            return (id & 0x7) | (count << 3);
+        }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * Protobuf wire format tối thiểu: varint (0), fixed64 (1), length-delimited (2)
+     */
+    private static final class ProtoWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void varintField(int field, long value) {
+            varint((long) field << 3);
+            varint(value);
+        }
+
+        void fixed64Field(int field, long value) {
+            varint(((long) field << 3) | 1);
+            for (int i = 0; i < 8; i++) {
+                out.write((int) (value >>> (8 * i)) & 0xFF);
+            }
+        }
+
+        void bytesField(int field, byte[] bytes) {
+            varint(((long) field << 3) | 2);
+            varint(bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        void packedField(int field, IntList list) {
+            ProtoWriter packed = new ProtoWriter();
+            for (int i = 0; i < list.size; i++) {
+                packed.varint(list.data[i] & 0xFFFFFFFFL);
+            }
+            bytesField(field, packed.toByteArray());
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.controllers.AdminPipelineController;
+import org.opensource.smartair.dtos.JwtClaims;
+import org.opensource.smartair.services.JwtService;
+import org.opensource.smartair.services.LatencyTrackerService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Chỉ /actuator/health public; endpoint actuator khác cần JWT ADMIN hoặc management.scrape-token,
+ * báo cáo vận hành dưới /api/admin (vd: freshness của pipeline) chỉ cho ADMIN
+ */
+class ActuatorSecurityTest {
+
+    private static final String SCRAPE_TOKEN = "scrape-secret";
+
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("test", Map.of("management.scrape-token", SCRAPE_TOKEN)));
+        context.register(TestConfig.class, SecurityConfig.class, MetricsScrapeTokenFilter.class);
+        context.refresh();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void healthIsPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/health/readiness")).andExpect(status().isOk());
+    }
+
+    @Test
+    void prometheusRequiresAdminOrScrapeToken() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer wrong-token"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer resident-jwt"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer admin-jwt"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer " + SCRAPE_TOKEN))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void scrapeTokenIsOnlyValidForActuator() throws Exception {
+        mockMvc.perform(get("/api/admin/users").header("Authorization", "Bearer " + SCRAPE_TOKEN))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void pipelineFreshnessRequiresAdmin() throws Exception {
+        mockMvc.perform(get("/api/admin/pipeline/freshness")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/admin/pipeline/freshness").header("Authorization", "Bearer resident-jwt"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/admin/pipeline/freshness").header("Authorization", "Bearer " + SCRAPE_TOKEN))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/api/admin/pipeline/freshness").header("Authorization", "Bearer admin-jwt"))
+                .andExpect(status().isOk());
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class TestConfig {
+
+        /**
+         * JwtService mock không đăng ký làm bean (Spring sẽ inject @Value vào field của mock)
+         */
+        @Bean
+        JwtAuthenticationFilter jwtAuthenticationFilter() {
+            JwtService jwtService = mock(JwtService.class);
+            when(jwtService.parseAndVerify(anyString())).thenAnswer(invocation -> switch (
+                    invocation.<String>getArgument(0)) {
+                case "admin-jwt" -> claims("ADMIN");
+                case "resident-jwt" -> claims("RESIDENT");
+                default -> throw new IllegalArgumentException("invalid token");
+            });
+            return new JwtAuthenticationFilter(jwtService);
+        }
+
+        @Bean
+        UserDetailsService userDetailsService() {
+            return mock(UserDetailsService.class);
+        }
+
+        @Bean
+        AdminPipelineController adminPipelineController() {
+            LatencyTrackerService latencyTracker = mock(LatencyTrackerService.class);
+            when(latencyTracker.getFreshnessReport()).thenReturn(Map.of("districts", Map.of()));
+            return new AdminPipelineController(latencyTracker);
+        }
+
+        @Bean
+        StubEndpoints stubEndpoints() {
+            return new StubEndpoints();
+        }
+
+        private static JwtClaims claims(String role) {
+            return new JwtClaims(1L, "user@example.com", role, "User", Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Thay cho actuator endpoints / admin API thật: chỉ kiểm tra phần authorization
+     */
+    @RestController
+    static class StubEndpoints {
+
+        @GetMapping({"/actuator/health", "/actuator/health/readiness", "/actuator/prometheus",
+                "/actuator/metrics", "/api/admin/users"})
+        String ok() {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.ApiResponseDTO;
+import org.opensource.smartair.dtos.GeometryFormat;
+import org.opensource.smartair.dtos.NgsiNotificationDTO;
+import org.opensource.smartair.dtos.ResidentDTO;
+import org.opensource.smartair.dtos.SseBusMessage;
+import org.opensource.smartair.models.Resident;
+import org.opensource.smartair.models.UserRole;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runtime hints cho native image: DTO, entity, Jackson Map binding, resource
+ */
+class NativeHintsConfigTest {
+
+    private final RuntimeHints hints = registerHints();
+
+    private static RuntimeHints registerHints() {
+        RuntimeHints hints = new RuntimeHints();
+        new NativeHintsConfig.SmartairRuntimeHints().registerHints(hints, NativeHintsConfigTest.class.getClassLoader());
+        return hints;
+    }
+
+    @Test
+    void registersJacksonBindingForDtos() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection().onType(ApiResponseDTO.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(NgsiNotificationDTO.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(SseBusMessage.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(GeometryFormat.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(ResidentDTO.class.getMethod("getEmail")))
+                .accepts(hints);
+    }
+
+    @Test
+    void registersEntitiesAndTheirEnums() {
+        for (Class<?> entity : NativeHintsConfig.ENTITIES) {
+            assertThat(RuntimeHintsPredicates.reflection().onType(entity)
+                    .withMemberCategories(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                            MemberCategory.INVOKE_DECLARED_METHODS))
+                    .as(entity.getSimpleName())
+                    .accepts(hints);
+        }
+        assertThat(RuntimeHintsPredicates.reflection().onType(Resident.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(UserRole.class)).accepts(hints);
+    }
+
+    @Test
+    void registersMapBindingAndResources() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(LinkedHashMap.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("static/ha_noi_with_latlon2.geojson"))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("templates/email/air-quality-alert.mustache"))
+                .accepts(hints);
+        assertThat(getClass().getClassLoader().getResource("templates/email/air-quality-alert.mustache"))
+                .isNotNull();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SqlLoggingCheck + application-prod.properties
+ */
+class SqlLoggingCheckTest {
+
+    private static final List<String> LOGGERS = List.of(
+            SqlLoggingCheck.SQL_LOGGER, SqlLoggingCheck.BIND_LOGGER, SqlLoggingCheck.LEGACY_BIND_LOGGER);
+
+    @AfterEach
+    void resetLevels() {
+        LOGGERS.forEach(name -> logger(name).setLevel(null));
+    }
+
+    @Test
+    void reportsDevStyleSqlLogging() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.jpa.show-sql", "true");
+        logger(SqlLoggingCheck.SQL_LOGGER).setLevel(Level.DEBUG);
+        logger(SqlLoggingCheck.LEGACY_BIND_LOGGER).setLevel(Level.TRACE);
+
+        assertThat(new SqlLoggingCheck(environment).findVerboseSqlLogging()).containsExactly(
+                "spring.jpa.show-sql=true",
+                "org.hibernate.SQL at DEBUG",
+                "org.hibernate.type.descriptor.sql.BasicBinder at TRACE");
+    }
+
+    @Test
+    void prodProfileTurnsSqlLoggingOff() throws Exception {
+        // Dev levels trước, rồi áp logging.level.* của application-prod.properties như LoggingSystem
+        logger(SqlLoggingCheck.SQL_LOGGER).setLevel(Level.DEBUG);
+        logger(SqlLoggingCheck.BIND_LOGGER).setLevel(Level.TRACE);
+        Properties prod = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application-prod.properties"));
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.jpa.show-sql", "true");
+        prod.stringPropertyNames().forEach(key -> environment.setProperty(key, prod.getProperty(key)));
+        for (String name : LOGGERS) {
+            String level = prod.getProperty("logging.level." + name);
+            assertThat(level).as(name).isNotNull();
+            logger(name).setLevel(Level.toLevel(level));
+        }
+
+        assertThat(new SqlLoggingCheck(environment).findVerboseSqlLogging()).isEmpty();
+    }
+
+    private static Logger logger(String name) {
+        return (Logger) LoggerFactory.getLogger(name);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.configs;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Readiness theo các việc khởi động chạy nền
+ */
+class StartupTasksHealthIndicatorTest {
+
+    @Test
+    void outOfServiceUntilEveryTaskCompletes() {
+        CompletableFuture<Void> geojson = new CompletableFuture<>();
+        CompletableFuture<Void> subscriptions = new CompletableFuture<>();
+        Map<String, CompletableFuture<?>> tasks = new LinkedHashMap<>();
+        tasks.put("geojson", geojson);
+        tasks.put("orionSubscriptions", subscriptions);
+        StartupTasksHealthIndicator indicator = new StartupTasksHealthIndicator(tasks);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(indicator.health().getDetails()).containsEntry("geojson", "pending");
+
+        geojson.complete(null);
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(indicator.health().getDetails().get("geojson").toString()).startsWith("done");
+
+        subscriptions.complete(null);
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void downWhenTaskFails() {
+        CompletableFuture<Void> geojson = new CompletableFuture<>();
+        StartupTasksHealthIndicator indicator = new StartupTasksHealthIndicator(Map.of("geojson", geojson));
+
+        geojson.completeExceptionally(new IllegalStateException("broken GeoJSON"));
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(indicator.health().getDetails()).containsEntry("geojson", "failed");
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.GeometryFormat;
+import org.opensource.smartair.services.DistrictSpatialIndex;
+import org.opensource.smartair.services.DistrictTileService;
+import org.opensource.smartair.services.GeoJsonService;
+import org.opensource.smartair.services.PollutantGridService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GeoController: chọn gzip theo q-value của Accept-Encoding, If-None-Match so sánh weak và nhận danh sách ETag
+ */
+class GeoControllerTest {
+
+    private static final String ETAG = "\"districts-z10\"";
+    private static final String GZIP_ETAG = "\"districts-z10-gzip\"";
+
+    private final GeoJsonService geoJsonService = mock(GeoJsonService.class);
+    private final DistrictTileService districtTileService = mock(DistrictTileService.class);
+    private final GeoController controller = new GeoController(mock(DistrictSpatialIndex.class),
+            mock(PollutantGridService.class), districtTileService, geoJsonService);
+
+    @Test
+    void acceptEncodingHonoursQualityValues() {
+        assertThat(GeoController.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(GeoController.acceptsGzip("br;q=1.0, gzip;q=0.5")).isTrue();
+        assertThat(GeoController.acceptsGzip("GZIP")).isTrue();
+        assertThat(GeoController.acceptsGzip("*")).isTrue();
+        assertThat(GeoController.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(GeoController.acceptsGzip("gzip; q=0.0, identity")).isFalse();
+        assertThat(GeoController.acceptsGzip("*;q=1, gzip;q=0")).isFalse();
+        assertThat(GeoController.acceptsGzip("identity")).isFalse();
+        assertThat(GeoController.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    void ifNoneMatchUsesWeakComparisonAndLists() {
+        assertThat(GeoController.notModified(ETAG, ETAG)).isTrue();
+        assertThat(GeoController.notModified("W/" + ETAG, ETAG)).isTrue();
+        assertThat(GeoController.notModified("\"other\", W/" + ETAG, ETAG)).isTrue();
+        assertThat(GeoController.notModified("*", ETAG)).isTrue();
+        assertThat(GeoController.notModified("\"other\"", ETAG)).isFalse();
+        assertThat(GeoController.notModified(GZIP_ETAG, ETAG)).isFalse();
+        assertThat(GeoController.notModified(null, ETAG)).isFalse();
+    }
+
+    @Test
+    void gzipRefusedByQualityServesIdentityBody() {
+        when(geoJsonService.getSimplifiedDistricts(10, GeometryFormat.GEOJSON)).thenReturn(encoded());
+
+        ResponseEntity<byte[]> response = controller.simplifiedDistricts(10, "geojson", "gzip;q=0, identity", null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo(ETAG);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(new String(response.getBody(), StandardCharsets.UTF_8)).isEqualTo("{}");
+    }
+
+    @Test
+    void weakenedEtagFromProxyRevalidates() {
+        when(geoJsonService.getSimplifiedDistricts(10, GeometryFormat.GEOJSON)).thenReturn(encoded());
+        when(districtTileService.getTile(anyInt(), anyInt(), anyInt()))
+                .thenReturn(new DistrictTileService.DistrictTile(new byte[]{1}, "\"tile-1\"", Set.of("A")));
+
+        assertThat(controller.simplifiedDistricts(10, "geojson", "gzip", "W/" + GZIP_ETAG).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(controller.districtTile(12, 3256, 1800, "\"tile-0\", W/\"tile-1\"").getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    private static GeoJsonService.EncodedDistricts encoded() {
+        return new GeoJsonService.EncodedDistricts("application/geo+json", "{}".getBytes(StandardCharsets.UTF_8),
+                ETAG, new byte[]{31, -117}, GZIP_ETAG);
+    }
+}
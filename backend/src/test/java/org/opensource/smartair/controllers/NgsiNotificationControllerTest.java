@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.controllers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.WeatherDataDTO;
+import org.opensource.smartair.services.DistrictRegistry;
+import org.opensource.smartair.services.EntityVersionTracker;
+import org.opensource.smartair.services.LatencyTrackerService;
+import org.opensource.smartair.services.NgsiTransformerService;
+import org.opensource.smartair.services.NotificationService;
+import org.opensource.smartair.services.OrionLdClient;
+import org.opensource.smartair.services.QuantumLeapClient;
+import org.opensource.smartair.services.SseService;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Entity xử lý lỗi vẫn trả 200 (Orion-LD không gửi lại), được đếm outcome=error,
+ * và cùng lần đo đến lại sau đó không bị EntityVersionTracker coi là trùng
+ */
+class NgsiNotificationControllerTest {
+
+    private static final String WEATHER = "urn:ngsi-ld:WeatherObserved:PhuongHoanKiem";
+
+    private final NgsiTransformerService transformer = mock(NgsiTransformerService.class);
+    private final SseService sseService = mock(SseService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void failedEntityIsProcessedAgainWhenItArrivesAgain() {
+        NgsiNotificationController controller = newController();
+        WeatherDataDTO data = new WeatherDataDTO();
+        data.setDistrict("PhuongHoanKiem");
+        when(transformer.transformWeatherObserved(anyMap()))
+                .thenThrow(new IllegalStateException("transform failed"))
+                .thenReturn(data);
+
+        Map<String, Object> notification = notification("2025-11-01T10:00:00Z");
+
+        assertThat(controller.receiveNotification(null, null, notification).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        verify(sseService, never()).broadcastWeather(any(), any());
+        assertThat(meterRegistry.timer("ngsi.notification.handle", "outcome", "error").count()).isEqualTo(1);
+
+        assertThat(controller.receiveNotification(null, null, notification).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        verify(sseService).broadcastWeather(any(), any());
+
+        // Lần đến thứ ba, sau khi đã xử lý thành công, mới là trùng
+        assertThat(controller.receiveNotification(null, null, notification).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        verify(sseService, times(1)).broadcastWeather(any(), any());
+        assertThat(meterRegistry.counter("ngsi.entities.dropped",
+                "type", "weatherObserved", "reason", "duplicate").count()).isEqualTo(1.0);
+    }
+
+    private NgsiNotificationController newController() {
+        EntityVersionTracker versionTracker = new EntityVersionTracker(meterRegistry);
+        ReflectionTestUtils.setField(versionTracker, "maxEntries", 100);
+        ReflectionTestUtils.setField(versionTracker, "ttlMinutes", 1440L);
+
+        NgsiNotificationController controller = new NgsiNotificationController(transformer, sseService,
+                mock(QuantumLeapClient.class), mock(OrionLdClient.class), mock(NotificationService.class),
+                mock(DistrictRegistry.class), meterRegistry, mock(LatencyTrackerService.class), versionTracker);
+        // Query QuantumLeap chạy sau delay - đặt thật xa để test không chạm tới
+        ReflectionTestUtils.setField(controller, "quantumLeapDelaySeconds", 3600);
+        return controller;
+    }
+
+    private static Map<String, Object> notification(String observedAt) {
+        Map<String, Object> entity = Map.of(
+                "id", WEATHER,
+                "type", "weatherObserved",
+                "temperature", Map.of("type", "Property", "value", 27.5, "observedAt", observedAt));
+        return Map.of("data", List.of(entity));
+    }
+}
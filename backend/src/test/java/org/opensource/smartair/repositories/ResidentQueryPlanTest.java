@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.repositories;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.DistrictSubscriberCountDTO;
+import org.opensource.smartair.models.Resident;
+import org.opensource.smartair.models.UserRole;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plan của các query resident / subscription trên H2 (MySQL mode, schema sinh từ entity)
+ * SQL thật do Hibernate sinh ra được bắt qua StatementInspector rồi chạy EXPLAIN với cùng tham số
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-plan;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "org.opensource.smartair.repositories.ResidentQueryPlanTest$SqlCapture"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ResidentBulkRepository.class)
+class ResidentQueryPlanTest {
+
+    private static final int RESIDENTS = 300;
+    private static final int DISTRICTS = 30;
+
+    @Autowired
+    private ResidentRepository residentRepository;
+    @Autowired
+    private ResidentStationRepository residentStationRepository;
+    @Autowired
+    private ResidentBulkRepository residentBulkRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        SqlCapture.STATEMENTS.clear();
+        // ANALYZE commit transaction hiện tại: dữ liệu seed được giữ lại và dùng chung cho các test
+        if (residentRepository.count() > 0) {
+            return;
+        }
+        List<ResidentBulkRepository.NewUser> users = IntStream.range(0, RESIDENTS)
+                .mapToObj(i -> new ResidentBulkRepository.NewUser("Resident " + i, "r" + i + "@example.com",
+                        "hash", UserRole.RESIDENT))
+                .toList();
+        Map<String, Long> userIds = residentBulkRepository.insertUsers(users);
+
+        List<ResidentBulkRepository.NewResident> residents = IntStream.range(0, RESIDENTS)
+                .mapToObj(i -> new ResidentBulkRepository.NewResident(userIds.get("r" + i + "@example.com"),
+                        i % 3 != 0, i % 5 != 0))
+                .toList();
+        Map<Long, Long> residentIds = residentBulkRepository.insertResidents(residents);
+
+        Map<Long, List<String>> districts = new LinkedHashMap<>();
+        for (ResidentBulkRepository.NewResident resident : residents) {
+            long id = residentIds.get(resident.userId());
+            districts.put(id, seededDistricts(id));
+        }
+        residentBulkRepository.insertStations(districts);
+        jdbcTemplate.execute("ANALYZE");
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    void alertRecipientsByDistrictAreFullyIndexed() {
+        residentStationRepository.findAlertRecipientsByDistrict("District3");
+
+        // Tùy thống kê, optimizer đi từ idx_resident_stations_district hoặc từ idx_residents_verified_notification
+        // rồi probe (resident_id, district) - không bảng nào bị scan toàn bộ
+        String plan = explainLast("District3");
+        assertThat(plan).contains("idx_resident_stations_").doesNotContain("tablescan");
+    }
+
+    @Test
+    void removedSubscriptionsAreDeletedThroughResidentDistrictIndex() {
+        residentStationRepository.findDistrictsByResidentIds(List.of(1L, 2L, 3L));
+        assertThat(explainLast(1L, 2L, 3L)).contains("idx_resident_stations_resident_district");
+
+        residentStationRepository.deleteByResidentIdAndDistrictIn(1L, List.of("District1"));
+        assertThat(explainLast(1L, "District1")).contains("idx_resident_stations_resident_district");
+    }
+
+    @Test
+    void alertRecipientCountUsesVerifiedNotificationIndex() {
+        long count = residentRepository.countByIsVerifiedTrueAndNotificationEnabledTrue();
+
+        assertThat(count).isEqualTo(IntStream.range(0, RESIDENTS).filter(i -> i % 3 != 0 && i % 5 != 0).count());
+        assertThat(explainLast()).contains("idx_residents_verified_notification");
+    }
+
+    @Test
+    void keysetPagesWalkPrimaryKeyWithoutOffset() {
+        List<Long> seen = new ArrayList<>();
+        long cursor = 0;
+        List<Resident> page;
+        do {
+            page = residentRepository.findPageAfter(cursor, Limit.of(64));
+            page.forEach(resident -> seen.add(resident.getId()));
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 64);
+
+        assertThat(seen).hasSize(RESIDENTS).isSorted().doesNotHaveDuplicates();
+        String sql = SqlCapture.last();
+        assertThat(sql.toLowerCase()).doesNotContain("offset");
+        assertThat(explain(sql, 0L, 64)).contains("id > ?1").contains("index sorted").doesNotContain("tablescan");
+    }
+
+    @Test
+    void subscriberCountsAreAggregatedInDatabase() {
+        List<DistrictSubscriberCountDTO> counts = residentStationRepository.countSubscribersByDistrict();
+
+        assertThat(SqlCapture.last().toLowerCase()).contains("group by");
+
+        // Kỳ vọng tính lại từ seed: resident id subscribe District(id % 30) và District((id + 7) % 30)
+        Map<String, Long> expectedSubscribers = new HashMap<>();
+        Map<String, Long> expectedRecipients = new HashMap<>();
+        List<Long> expectedDistrict5 = new ArrayList<>();
+        for (Resident resident : residentRepository.findAll()) {
+            long id = resident.getId();
+            boolean recipient = resident.getIsVerified() && resident.getNotificationEnabled();
+            for (String district : seededDistricts(id)) {
+                expectedSubscribers.merge(district, 1L, Long::sum);
+                expectedRecipients.merge(district, recipient ? 1L : 0L, Long::sum);
+                if (district.equals("District5")) {
+                    expectedDistrict5.add(id);
+                }
+            }
+        }
+
+        assertThat(counts).hasSize(DISTRICTS);
+        assertThat(counts).allSatisfy(c -> {
+            assertThat(c.getSubscribers()).as(c.getDistrict()).isEqualTo(expectedSubscribers.get(c.getDistrict()));
+            assertThat(c.getAlertRecipients()).as(c.getDistrict()).isEqualTo(expectedRecipients.get(c.getDistrict()));
+        });
+
+        assertThat(residentRepository.findPageAfterByDistrict(0L, "District5", Limit.of(RESIDENTS)))
+                .extracting(Resident::getId)
+                .containsExactlyElementsOf(expectedDistrict5.stream().sorted().toList());
+    }
+
+    private static List<String> seededDistricts(long residentId) {
+        return List.of("District" + (residentId % DISTRICTS), "District" + ((residentId + 7) % DISTRICTS));
+    }
+
+    private String explainLast(Object... params) {
+        return explain(SqlCapture.last(), params);
+    }
+
+    private String explain(String sql, Object... params) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, params).toLowerCase();
+    }
+
+    /**
+     * Ghi lại SQL Hibernate gửi xuống JDBC
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+
+        static String last() {
+            return STATEMENTS.get(STATEMENTS.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.AuthResponseDTO;
+import org.opensource.smartair.dtos.LoginAccountDTO;
+import org.opensource.smartair.dtos.LoginRequestDTO;
+import org.opensource.smartair.models.UserRole;
+import org.opensource.smartair.repositories.ResidentBulkRepository;
+import org.opensource.smartair.repositories.ResidentRepository;
+import org.opensource.smartair.repositories.UserRepository;
+import org.opensource.smartair.utils.RateLimitedException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AuthService.login: 1 query, rate limit trước BCrypt, rehash khi tăng BCrypt strength
+ */
+class AuthServiceLoginTest {
+
+    private static final String EMAIL = "resident@example.com";
+    private static final String PASSWORD = "secret123";
+
+    private UserRepository userRepository;
+    private PasswordEncoder passwordEncoder;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        passwordEncoder = spy(new BCryptPasswordEncoder(5));
+
+        JwtService jwtService = new JwtService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtService, "secretKey",
+                "test-secret-key-test-secret-key-test-secret-key-0123456789");
+        ReflectionTestUtils.setField(jwtService, "expiration", 60_000L);
+        jwtService.init();
+
+        // 3 lần / email, IP không giới hạn thực tế
+        LoginRateLimiter rateLimiter = new LoginRateLimiter(new SimpleMeterRegistry(), 3, 1, 1000, 1000, 1000);
+
+        authService = new AuthService(userRepository, mock(ResidentRepository.class),
+                mock(ResidentBulkRepository.class), passwordEncoder, jwtService, rateLimiter,
+                mock(ApplicationEventPublisher.class));
+        authService.initDummyPasswordHash();
+    }
+
+    @Test
+    void loginBuildsResponseFromSingleQuery() {
+        String hash = passwordEncoder.encode(PASSWORD);
+        when(userRepository.findLoginAccount(EMAIL)).thenReturn(List.of(
+                account(hash, "PhuongHoanKiem"),
+                account(hash, "PhuongBaDinh")));
+
+        AuthResponseDTO response = authService.login(login(PASSWORD), "10.0.0.1");
+
+        assertThat(response.getToken()).isNotBlank();
+        assertThat(response.getSubscribedDistricts()).containsExactlyInAnyOrder("PhuongHoanKiem", "PhuongBaDinh");
+        verify(userRepository, times(1)).findLoginAccount(EMAIL);
+        verify(userRepository, never()).updatePassword(eq(1L), anyString());
+    }
+
+    @Test
+    void unknownEmailStillRunsBcrypt() {
+        when(userRepository.findLoginAccount(EMAIL)).thenReturn(List.of());
+
+        assertThatThrownBy(() -> authService.login(login(PASSWORD), "10.0.0.1"))
+                .isInstanceOf(BadCredentialsException.class);
+        verify(passwordEncoder).matches(eq(PASSWORD), anyString());
+    }
+
+    @Test
+    void burstIsRejectedBeforeBcrypt() {
+        when(userRepository.findLoginAccount(EMAIL)).thenReturn(List.of());
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> authService.login(login("wrong"), "10.0.0.1"))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+
+        assertThatThrownBy(() -> authService.login(login("wrong"), "10.0.0.2"))
+                .isInstanceOf(RateLimitedException.class)
+                .satisfies(e -> assertThat(((RateLimitedException) e).getRetryAfterSeconds()).isPositive());
+        verify(passwordEncoder, times(3)).matches(anyString(), anyString());
+        verify(userRepository, times(3)).findLoginAccount(EMAIL);
+    }
+
+    @Test
+    void weakerHashIsUpgradedOnSuccessfulLogin() {
+        String legacyHash = new BCryptPasswordEncoder(4).encode(PASSWORD);
+        when(userRepository.findLoginAccount(EMAIL)).thenReturn(List.of(account(legacyHash, null)));
+
+        authService.login(login(PASSWORD), "10.0.0.1");
+
+        verify(userRepository).updatePassword(eq(1L), anyString());
+    }
+
+    private LoginRequestDTO login(String password) {
+        LoginRequestDTO dto = new LoginRequestDTO();
+        dto.setEmail(EMAIL);
+        dto.setPassword(password);
+        return dto;
+    }
+
+    private LoginAccountDTO account(String hash, String district) {
+        return LoginAccountDTO.builder()
+                .userId(1L)
+                .email(EMAIL)
+                .passwordHash(hash)
+                .fullName("Nguyễn Văn A")
+                .role(UserRole.RESIDENT)
+                .residentId(10L)
+                .isVerified(true)
+                .district(district)
+                .build();
+    }
+}
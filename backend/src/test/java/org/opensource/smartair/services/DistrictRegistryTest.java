@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DistrictRegistry và chuẩn hóa tên phường/xã, đối chiếu với cách cũ (regex / split)
+ */
+class DistrictRegistryTest {
+
+    private static GeoJsonService geoJsonService;
+    private static DistrictRegistry registry;
+
+    @BeforeAll
+    static void setUp() {
+        geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        registry = new DistrictRegistry(geoJsonService);
+        registry.build();
+    }
+
+    @Test
+    void backendFormatMatchesRegexConversion() throws IOException {
+        List<String[]> names = new ArrayList<>();
+        try (InputStream in = new ClassPathResource("static/ha_noi_with_latlon2.geojson").getInputStream()) {
+            for (JsonNode feature : new ObjectMapper().readTree(in).get("features")) {
+                names.add(new String[] {
+                        feature.get("properties").get("Tên đơn vị").asText(),
+                        feature.get("properties").get("Phân loại").asText() });
+            }
+        }
+        names.add(new String[] { "Phường  Ô Chợ Dừa", "Phường" });
+        names.add(new String[] { "Xã\tSóc-Sơn  Đông", "Xã" });
+        names.add(new String[] { "Thị trấn Đông Anh", "Thị trấn" });
+        names.add(new String[] { "PhườngHoàn Kiếm", "Phường" });
+
+        for (String[] name : names) {
+            assertThat(geoJsonService.convertToBackendFormat(name[0], name[1]))
+                    .as(name[0])
+                    .isEqualTo(legacyConvert(name[0], name[1]));
+        }
+    }
+
+    @Test
+    void registryCoversEveryDistrictWithPolygonIndexAndIds() {
+        assertThat(registry.size()).isEqualTo(126);
+        List<GeoJsonService.DistrictFeature> features = geoJsonService.getDistrictFeatures();
+        for (String slug : registry.slugs()) {
+            DistrictRegistry.District district = registry.get(slug);
+            assertThat(features.get(district.polygonIndex()).district()).isEqualTo(slug);
+            assertThat(district.weatherObservedId()).isEqualTo("urn:ngsi-ld:WeatherObserved:Hanoi-" + slug);
+            assertThat(district.airQualityObservedId()).isEqualTo("urn:ngsi-ld:AirQualityObserved:Hanoi-" + slug);
+            assertThat(district.platformId()).isEqualTo("urn:ngsi-ld:Platform:EnvironmentStation-" + slug);
+        }
+        assertThat(registry.get("PhuongHoanKiem").name()).isEqualTo("Phường Hoàn Kiếm");
+    }
+
+    @Test
+    void parsesEveryIdFamilyToTheCanonicalSlugInstance() {
+        for (String slug : registry.slugs()) {
+            String canonical = registry.get(slug).slug();
+            for (String entityId : List.of(
+                    "urn:ngsi-ld:WeatherObserved:Hanoi-" + slug,
+                    "urn:ngsi-ld:AirQualityObserved:Hanoi-" + slug + "-2025-11-05T10:00:00Z",
+                    "urn:ngsi-ld:Device:AirQualitySensor-" + slug,
+                    "urn:ngsi-ld:Device:WeatherSensor-" + slug,
+                    "urn:ngsi-ld:Platform:EnvironmentStation-" + slug)) {
+                assertThat(registry.districtFromEntityId(new String(entityId))).as(entityId).isSameAs(canonical);
+            }
+        }
+    }
+
+    @Test
+    void matchesLegacyParserOnUnusualIds() {
+        for (String entityId : List.of(
+                "urn:ngsi-ld:AirQualityObserved:Hanoi-PhuongKhongCo",
+                "urn:ngsi-ld:Device:real-dust-sensor-hoangmai-001",
+                "urn:ngsi-ld:Platform:EnvironmentStation-PhuongHoanKiem:extra",
+                "urn:ngsi-ld:WeatherObserved:Foo-Hanoi-PhuongBaDinh",
+                "urn:ngsi-ld:WeatherObserved",
+                "urn:ngsi-ld:WeatherObserved:",
+                "PhuongHoanKiem")) {
+            assertThat(registry.districtFromEntityId(entityId)).as(entityId)
+                    .isEqualTo(legacyExtractDistrictFromId(entityId));
+        }
+        assertThat(registry.districtFromEntityId(null)).isNull();
+        // Cách cũ trả "" cho slug rỗng
+        assertThat(registry.districtFromEntityId("urn:ngsi-ld:Device:Sensor-")).isNull();
+        assertThat(registry.findByEntityId("urn:ngsi-ld:Device:real-dust-sensor-hoangmai-001")).isNull();
+    }
+
+    private static String legacyConvert(String name, String classification) {
+        String cleanName = name.replaceFirst("^(Phường|Xã)\\s+", "");
+        String withoutDiacritics = cleanName
+                .replaceAll("[àáạảãâầấậẩẫăằắặẳẵ]", "a")
+                .replaceAll("[èéẹẻẽêềếệểễ]", "e")
+                .replaceAll("[ìíịỉĩ]", "i")
+                .replaceAll("[òóọỏõôồốộổỗơờớợởỡ]", "o")
+                .replaceAll("[ùúụủũưừứựửữ]", "u")
+                .replaceAll("[ỳýỵỷỹ]", "y")
+                .replaceAll("đ", "d")
+                .replaceAll("[ÀÁẠẢÃÂẦẤẬẨẪĂẰẮẶẲẴ]", "A")
+                .replaceAll("[ÈÉẸẺẼÊỀẾỆỂỄ]", "E")
+                .replaceAll("[ÌÍỊỈĨ]", "I")
+                .replaceAll("[ÒÓỌỎÕÔỒỐỘỔỖƠỜỚỢỞỠ]", "O")
+                .replaceAll("[ÙÚỤỦŨƯỪỨỰỬỮ]", "U")
+                .replaceAll("[ỲÝỴỶỸ]", "Y")
+                .replaceAll("Đ", "D");
+        StringBuilder result = new StringBuilder();
+        for (String word : withoutDiacritics.split("[\\s\\-]+")) {
+            if (!word.isEmpty()) {
+                result.append(word.substring(0, 1).toUpperCase()).append(word.substring(1).toLowerCase());
+            }
+        }
+        return (classification.equals("Phường") ? "Phuong" : "Xa") + result;
+    }
+
+    private static String legacyExtractDistrictFromId(String entityId) {
+        String[] parts = entityId.split(":");
+        if (parts.length < 4) {
+            return null;
+        }
+        String lastPart = parts[3];
+        if (lastPart.contains("Hanoi-")) {
+            String[] subParts = lastPart.split("-");
+            if (subParts.length >= 2) {
+                return subParts[1];
+            }
+        }
+        if (lastPart.contains("Sensor-")) {
+            return lastPart.substring(lastPart.indexOf("Sensor-") + 7);
+        }
+        if (lastPart.contains("Station-")) {
+            return lastPart.substring(lastPart.indexOf("Station-") + 8);
+        }
+        return null;
+    }
+}
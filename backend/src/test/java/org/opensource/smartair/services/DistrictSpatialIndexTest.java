@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.opensource.smartair.dtos.DistrictLocationDTO;
+import org.opensource.smartair.dtos.NearbyStationDTO;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * DistrictSpatialIndex trên GeoJSON thật (126 phường/xã), đối chiếu với scan tuần tự
+ */
+class DistrictSpatialIndexTest {
+
+    private static GeoJsonService geoJsonService;
+    private static DistrictSpatialIndex index;
+
+    @BeforeAll
+    static void setUp() {
+        geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        index = new DistrictSpatialIndex(geoJsonService);
+        index.build();
+    }
+
+    @Test
+    void indexesEveryDistrict() {
+        assertThat(index.size()).isEqualTo(126);
+    }
+
+    @Test
+    void districtAtMatchesLinearScan() {
+        GeometryFactory factory = new GeometryFactory();
+        List<GeoJsonService.DistrictFeature> features = geoJsonService.getDistrictFeatures();
+        Random random = new Random(42);
+        int inside = 0;
+
+        for (int i = 0; i < 2000; i++) {
+            double lat = 20.55 + random.nextDouble() * 0.85;
+            double lon = 105.30 + random.nextDouble() * 0.75;
+            Point point = factory.createPoint(new Coordinate(lon, lat));
+            Optional<String> expected = features.stream()
+                    .filter(f -> f.geometry().covers(point))
+                    .map(GeoJsonService.DistrictFeature::district)
+                    .findFirst();
+
+            Optional<String> actual = index.districtAt(lat, lon).map(DistrictLocationDTO::getDistrict);
+            assertThat(actual).as("lat=%s lon=%s", lat, lon).isEqualTo(expected);
+            inside += actual.isPresent() ? 1 : 0;
+        }
+        assertThat(inside).isGreaterThan(500);
+        assertThat(index.districtAt(10.77, 106.70)).isEmpty();
+    }
+
+    @Test
+    void nearestStationsAreSortedAndStartAtTheStation() {
+        GeoJsonService.DistrictFeature hoanKiem = geoJsonService.getDistrictFeatures().stream()
+                .filter(f -> f.district().equals("PhuongHoanKiem"))
+                .findFirst()
+                .orElseThrow();
+
+        List<NearbyStationDTO> nearest = index.nearestStations(
+                hoanKiem.stationLatitude(), hoanKiem.stationLongitude(), 5);
+
+        assertThat(nearest).hasSize(5);
+        assertThat(nearest.get(0).getDistrict()).isEqualTo("PhuongHoanKiem");
+        assertThat(nearest.get(0).getDistanceMeters()).isLessThan(1.0);
+        assertThat(nearest).isSortedAccordingTo(Comparator.comparingDouble(NearbyStationDTO::getDistanceMeters));
+        // Đối chiếu brute force theo haversine
+        List<String> expected = geoJsonService.getDistrictFeatures().stream()
+                .sorted(Comparator.comparingDouble(f -> DistrictSpatialIndex.haversineMeters(
+                        hoanKiem.stationLatitude(), hoanKiem.stationLongitude(),
+                        f.stationLatitude(), f.stationLongitude())))
+                .limit(5)
+                .map(GeoJsonService.DistrictFeature::district)
+                .toList();
+        assertThat(nearest).extracting(NearbyStationDTO::getDistrict).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void districtsWithinBoundingBox() {
+        GeoJsonService.DistrictFeature hoanKiem = geoJsonService.getDistrictFeatures().stream()
+                .filter(f -> f.district().equals("PhuongHoanKiem"))
+                .findFirst()
+                .orElseThrow();
+        double lat = hoanKiem.stationLatitude();
+        double lon = hoanKiem.stationLongitude();
+
+        assertThat(index.districtsWithin(lat - 0.001, lon - 0.001, lat + 0.001, lon + 0.001))
+                .extracting(DistrictLocationDTO::getDistrict)
+                .contains("PhuongHoanKiem");
+        assertThat(index.districtsWithin(20.0, 105.0, 22.0, 107.0)).hasSize(126);
+        assertThatThrownBy(() -> index.districtsWithin(21.1, 105.8, 21.0, 105.9))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * DistrictTileService trên GeoJSON thật: nội dung MVT, LRU cache và invalidate theo mức AQI
+ */
+class DistrictTileServiceTest {
+
+    private static GeoJsonService geoJsonService;
+    private static GeoJsonService.DistrictFeature hoanKiem;
+
+    private DistrictTileService service;
+
+    @BeforeAll
+    static void loadGeoJson() {
+        geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        hoanKiem = geoJsonService.getDistrictFeatures().stream()
+                .filter(f -> f.district().equals("PhuongHoanKiem"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @BeforeEach
+    void setUp() {
+        service = new DistrictTileService(geoJsonService, mock(OrionLdClient.class), mock(SseEventBus.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", 64);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @Test
+    void tileContainsDistrictPolygonsWithClockwiseExteriorRings() {
+        int[] tile = tileOf(hoanKiem.stationLatitude(), hoanKiem.stationLongitude(), 14);
+        service.onAirQuality(observation("PhuongHoanKiem", 3));
+
+        DistrictTileService.DistrictTile result = service.getTile(14, tile[0], tile[1]);
+
+        assertThat(result.isEmpty()).isFalse();
+        assertThat(result.districts()).contains("PhuongHoanKiem");
+        DecodedLayer layer = decode(result.data());
+        assertThat(layer.name).isEqualTo("districts");
+        assertThat(layer.extent).isEqualTo(4096);
+        assertThat(layer.featureCount).isEqualTo(result.districts().size());
+        assertThat(layer.strings).contains("district", "name", "aqi", "PhuongHoanKiem");
+        assertThat(layer.firstRingAreas).allMatch(area -> area > 0);
+    }
+
+    @Test
+    void tileOutsideHanoiIsEmpty() {
+        DistrictTileService.DistrictTile result = service.getTile(14, 0, 0);
+
+        assertThat(result.isEmpty()).isTrue();
+        assertThat(result.districts()).isEmpty();
+    }
+
+    @Test
+    void lowZoomTileCoversAllDistrictsAndIsSmallerThanGeoJson() {
+        int[] tile = tileOf(hoanKiem.stationLatitude(), hoanKiem.stationLongitude(), 7);
+
+        DistrictTileService.DistrictTile result = service.getTile(7, tile[0], tile[1]);
+
+        assertThat(result.districts()).hasSize(geoJsonService.getDistrictFeatures().size());
+        assertThat(result.data().length).isLessThan(200_000);
+    }
+
+    @Test
+    void cachedTileIsInvalidatedOnlyWhenAqiLevelChanges() {
+        int[] tile = tileOf(hoanKiem.stationLatitude(), hoanKiem.stationLongitude(), 14);
+        service.onAirQuality(observation("PhuongHoanKiem", 2));
+        DistrictTileService.DistrictTile first = service.getTile(14, tile[0], tile[1]);
+        DistrictTileService.DistrictTile empty = service.getTile(14, 0, 0);
+
+        service.onAirQuality(observation("PhuongHoanKiem", 2));
+        assertThat(service.getTile(14, tile[0], tile[1])).isSameAs(first);
+
+        service.onAirQuality(observation("PhuongHoanKiem", 4));
+        DistrictTileService.DistrictTile second = service.getTile(14, tile[0], tile[1]);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.etag()).isNotEqualTo(first.etag());
+        assertThat(service.getTile(14, 0, 0)).isSameAs(empty);
+    }
+
+    @Test
+    void rejectsTilesOutsideTheZoomLevel() {
+        assertThatThrownBy(() -> service.getTile(2, 4, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getTile(-1, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static AirQualityDataDTO observation(String district, int aqi) {
+        AirQualityDataDTO data = new AirQualityDataDTO();
+        data.setDistrict(district);
+        data.setAirQualityIndex(aqi);
+        return data;
+    }
+
+    private static int[] tileOf(double lat, double lon, int z) {
+        double n = 1 << z;
+        double phi = Math.toRadians(lat);
+        return new int[] {
+                (int) Math.floor((lon + 180) / 360 * n),
+                (int) Math.floor((1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2 * n)
+        };
+    }
+
+    private record DecodedLayer(String name, int extent, int featureCount, List<String> strings,
+            List<Long> firstRingAreas) {
+    }
+
+    /**
+     * Giải mã tối thiểu một tile một layer: tên, extent, số feature, key/value string,
+     * diện tích (x2) ring đầu tiên của mỗi feature
+     */
+    private static DecodedLayer decode(byte[] tile) {
+        ByteBuffer tileBuffer = ByteBuffer.wrap(tile);
+        assertThat(readVarint(tileBuffer) >>> 3).isEqualTo(3);
+        ByteBuffer layer = slice(tileBuffer);
+
+        String name = null;
+        int extent = 0;
+        int features = 0;
+        List<String> strings = new ArrayList<>();
+        List<Long> areas = new ArrayList<>();
+        while (layer.hasRemaining()) {
+            long tag = readVarint(layer);
+            int field = (int) (tag >>> 3);
+            if ((tag & 7) == 0) {
+                long value = readVarint(layer);
+                if (field == 5) {
+                    extent = (int) value;
+                }
+                continue;
+            }
+            ByteBuffer body = slice(layer);
+            switch (field) {
+                case 1 -> name = StandardCharsets.UTF_8.decode(body).toString();
+                case 2 -> {
+                    features++;
+                    areas.add(firstRingArea(body));
+                }
+                case 3 -> strings.add(StandardCharsets.UTF_8.decode(body).toString());
+                case 4 -> {
+                    if ((readVarint(body) >>> 3) == 1) {
+                        strings.add(StandardCharsets.UTF_8.decode(slice(body)).toString());
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return new DecodedLayer(name, extent, features, strings, areas);
+    }
+
+    private static long firstRingArea(ByteBuffer feature) {
+        while (feature.hasRemaining()) {
+            long tag = readVarint(feature);
+            if ((tag & 7) == 0) {
+                readVarint(feature);
+                continue;
+            }
+            ByteBuffer body = slice(feature);
+            if ((tag >>> 3) != 4) {
+                continue;
+            }
+            int[] commands = new int[body.remaining()];
+            int size = 0;
+            while (body.hasRemaining()) {
+                commands[size++] = (int) readVarint(body);
+            }
+            assertThat(commands[0]).isEqualTo(9);
+            int lineTo = commands[3];
+            assertThat(lineTo & 7).isEqualTo(2);
+            int points = (lineTo >>> 3) + 1;
+            long[] xs = new long[points];
+            long[] ys = new long[points];
+            long x = 0;
+            long y = 0;
+            for (int i = 0; i < points; i++) {
+                int offset = i == 0 ? 1 : 2 + 2 * i;
+                x += zigZagDecode(commands[offset]);
+                y += zigZagDecode(commands[offset + 1]);
+                xs[i] = x;
+                ys[i] = y;
+            }
+            assertThat(commands[2 + 2 * points]).isEqualTo(15);
+            long area = 0;
+            for (int i = 0; i < points; i++) {
+                int j = (i + 1) % points;
+                area += xs[i] * ys[j] - xs[j] * ys[i];
+            }
+            return area;
+        }
+        throw new AssertionError("Feature has no geometry");
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer) {
+        int length = (int) readVarint(buffer);
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    private static long zigZagDecode(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.AlertRecipientDTO;
+import org.opensource.smartair.models.EmailOutbox;
+import org.opensource.smartair.models.EmailOutboxStatus;
+import org.opensource.smartair.repositories.EmailOutboxRepository;
+import org.opensource.smartair.utils.SmtpConnectionPool;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * EmailOutboxService gửi qua GreenMail (SMTP local)
+ * Repository được mock - test tập trung vào batch, pool kết nối và retry
+ */
+class EmailOutboxServiceTest {
+
+    private static final int PARALLELISM = 4;
+    private static final int BATCH_SIZE = 50;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private EmailOutboxRepository repository;
+    private SmtpConnectionPool connectionPool;
+    private ThreadPoolTaskExecutor executor;
+    private EmailOutboxService outboxService;
+
+    private final Collection<Long> sentIds = new ConcurrentLinkedQueue<>();
+    private final Collection<EmailOutbox> savedFailures = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        connectionPool = new SmtpConnectionPool(mailSender.getSession(), "smtp",
+                mailSender.getHost(), mailSender.getPort(), null, null, PARALLELISM);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(PARALLELISM);
+        executor.setMaxPoolSize(PARALLELISM);
+        executor.initialize();
+
+        EmailService emailService = new EmailService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(emailService, "fromEmail", "alerts@airtrack.test");
+        ReflectionTestUtils.setField(emailService, "fromName", "AirTrack");
+        ReflectionTestUtils.setField(emailService, "frontendUrl", "http://localhost:5137");
+
+        repository = mock(EmailOutboxRepository.class);
+        when(repository.markSent(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            sentIds.addAll(ids);
+            return ids.size();
+        });
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            Iterable<EmailOutbox> emails = invocation.getArgument(0);
+            emails.forEach(savedFailures::add);
+            return emails;
+        });
+
+        outboxService = new EmailOutboxService(repository, emailService, connectionPool, executor,
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        outboxService.registerMeters();
+        ReflectionTestUtils.setField(outboxService, "batchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(outboxService, "parallelism", PARALLELISM);
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxService, "initialBackoffSeconds", 30L);
+        ReflectionTestUtils.setField(outboxService, "maxBackoffSeconds", 1800L);
+        ReflectionTestUtils.setField(outboxService, "leaseSeconds", 300L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        connectionPool.close();
+    }
+
+    @Test
+    void deliversAllClaimedEmailsInBatchesOverPooledConnections() {
+        int total = 1000;
+        List<EmailOutbox> emails = pendingEmails(total);
+        when(repository.findDueForUpdate(anyCollection(), any(), any()))
+                .thenReturn(new ArrayList<>(emails.subList(0, 200)))
+                .thenReturn(new ArrayList<>(emails.subList(200, 400)))
+                .thenReturn(new ArrayList<>(emails.subList(400, 600)))
+                .thenReturn(new ArrayList<>(emails.subList(600, 800)))
+                .thenReturn(new ArrayList<>(emails.subList(800, 1000)))
+                .thenReturn(List.of());
+
+        long start = System.nanoTime();
+        outboxService.processOutbox();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(total);
+        assertThat(sentIds).hasSize(total).doesNotHaveDuplicates();
+        assertThat(savedFailures).isEmpty();
+        // Kết nối được trả về pool để dùng lại, không đóng sau mỗi batch
+        assertThat(connectionPool.getIdleCount()).isBetween(1, PARALLELISM);
+
+        System.out.printf("Email outbox throughput: %d messages in %.2fs (%.0f msg/s, batch=%d, parallelism=%d)%n",
+                total, seconds, total / seconds, BATCH_SIZE, PARALLELISM);
+    }
+
+    @Test
+    void failedRecipientIsRescheduledWithBackoffWithoutFailingTheBatch() {
+        List<EmailOutbox> batch = pendingEmails(3);
+        batch.get(1).setRecipientEmail("not an address");
+
+        EmailOutboxService.DeliveryResult result = outboxService.deliver(batch);
+        outboxService.record(result);
+
+        assertThat(result.sent()).hasSize(2);
+        assertThat(greenMail.getReceivedMessages()).hasSize(2);
+
+        EmailOutbox failed = batch.get(1);
+        assertThat(savedFailures).containsExactly(failed);
+        assertThat(failed.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(29));
+        assertThat(failed.getLastError()).isNotBlank();
+    }
+
+    @Test
+    void emailIsMarkedFailedAfterMaxAttempts() {
+        EmailOutbox email = pendingEmails(1).get(0);
+        email.setRecipientEmail("not an address");
+        email.setAttempts(2);
+
+        outboxService.record(outboxService.deliver(List.of(email)));
+
+        assertThat(email.getStatus()).isEqualTo(EmailOutboxStatus.FAILED);
+        assertThat(email.getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    void unavailableConnectionReturnsBatchToPendingWithoutSpendingAttempts() throws Exception {
+        SmtpConnectionPool downPool = mock(SmtpConnectionPool.class);
+        when(downPool.borrow()).thenThrow(new MessagingException("Connection refused"));
+        EmailOutboxService service = new EmailOutboxService(repository, new EmailService(new SimpleMeterRegistry()),
+                downPool, executor, mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        service.registerMeters();
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+
+        List<EmailOutbox> batch = pendingEmails(3);
+        batch.get(0).setAttempts(2);
+        for (int outage = 0; outage < 5; outage++) {
+            service.record(service.deliver(batch));
+        }
+
+        assertThat(batch).allSatisfy(email -> assertThat(email.getStatus()).isEqualTo(EmailOutboxStatus.PENDING));
+        assertThat(batch.get(0).getAttempts()).isEqualTo(2);
+        assertThat(batch.get(1).getAttempts()).isZero();
+    }
+
+    @Test
+    void closedPoolDoesNotLeaveBatchInSending() {
+        connectionPool.close();
+        List<EmailOutbox> batch = pendingEmails(2);
+
+        EmailOutboxService.DeliveryResult result = outboxService.deliver(batch);
+        outboxService.record(result);
+
+        assertThat(result.notAttempted()).containsExactlyElementsOf(batch);
+        assertThat(result.failed()).isEmpty();
+        assertThat(batch).allSatisfy(email -> assertThat(email.getStatus()).isEqualTo(EmailOutboxStatus.PENDING));
+    }
+
+    @Test
+    void backoffGrowsExponentiallyAndIsCapped() {
+        assertThat(outboxService.backoffSeconds(1)).isBetween(30L, 33L);
+        assertThat(outboxService.backoffSeconds(3)).isBetween(120L, 132L);
+        assertThat(outboxService.backoffSeconds(30)).isBetween(1800L, 1980L);
+    }
+
+    private List<EmailOutbox> pendingEmails(int count) {
+        AirQualityDataDTO airQuality = AirQualityDataDTO.builder()
+                .district("PhuongHoanKiem")
+                .airQualityIndex(5)
+                .airQualityLevel("very poor")
+                .pm2_5(180.0)
+                .build();
+
+        EmailService renderer = new EmailService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(renderer, "frontendUrl", "http://localhost:5137");
+
+        List<AlertRecipientDTO> recipients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            recipients.add(AlertRecipientDTO.builder()
+                    .residentId((long) i + 1)
+                    .district("PhuongHoanKiem")
+                    .email("resident" + i + "@airtrack.test")
+                    .fullName("Resident " + i)
+                    .build());
+        }
+
+        List<EmailOutbox> emails = renderer.renderAirQualityAlerts(recipients, airQuality);
+        for (int i = 0; i < emails.size(); i++) {
+            emails.get(i).setId((long) i + 1);
+            emails.get(i).setStatus(EmailOutboxStatus.SENDING);
+        }
+        return emails;
+    }
+}
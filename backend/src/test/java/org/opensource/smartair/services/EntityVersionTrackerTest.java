@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.services.EntityVersionTracker.Verdict;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bỏ notification trùng / đến trễ theo version (observedAt, modifiedAt) của từng entity
+ */
+class EntityVersionTrackerTest {
+
+    private static final String WEATHER = "urn:ngsi-ld:WeatherObserved:Hanoi-PhuongHoanKiem";
+    private static final String AIR_QUALITY = "urn:ngsi-ld:AirQualityObserved:Hanoi-PhuongHoanKiem";
+
+    private static final long T0 = EntityVersionTracker.toEpochMillis("2025-11-05T03:00:00.000Z");
+    private static final long T1 = EntityVersionTracker.toEpochMillis("2025-11-05T04:00:00.000Z");
+
+    @Test
+    void dropsRedeliveredAndOutOfOrderObservations() {
+        EntityVersionTracker tracker = newTracker(100);
+
+        assertThat(tracker.check(WEATHER, T1, 0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.check(WEATHER, T1, 0)).isEqualTo(Verdict.DUPLICATE);
+        assertThat(tracker.check(WEATHER, T0, 0)).isEqualTo(Verdict.OUT_OF_ORDER);
+        // Entity khác không bị ảnh hưởng
+        assertThat(tracker.check(AIR_QUALITY, T0, 0)).isEqualTo(Verdict.ACCEPTED);
+    }
+
+    @Test
+    void republishedObservationIsDuplicateEvenWhenModifiedLater() {
+        EntityVersionTracker tracker = newTracker(100);
+
+        assertThat(tracker.check(WEATHER, T0, T0 + 100)).isEqualTo(Verdict.ACCEPTED);
+        // ETL publish lại cùng lần đo: Orion-LD tăng modifiedAt nhưng observedAt không đổi
+        assertThat(tracker.check(WEATHER, T0, T0 + 200)).isEqualTo(Verdict.DUPLICATE);
+        assertThat(tracker.check(WEATHER, T1, T1 + 100)).isEqualTo(Verdict.ACCEPTED);
+    }
+
+    @Test
+    void modifiedAtOrdersEntitiesWithoutObservedAt() {
+        EntityVersionTracker tracker = newTracker(100);
+        String device = "urn:ngsi-ld:Device:WeatherSensor-PhuongHoanKiem";
+
+        assertThat(tracker.check(device, 0, T0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.check(device, 0, T0)).isEqualTo(Verdict.DUPLICATE);
+        assertThat(tracker.check(device, 0, T0 - 1)).isEqualTo(Verdict.OUT_OF_ORDER);
+        assertThat(tracker.check(device, 0, T1)).isEqualTo(Verdict.ACCEPTED);
+    }
+
+    @Test
+    void rollbackRestoresPreviousVersionSoRedeliveryIsAccepted() {
+        EntityVersionTracker tracker = newTracker(100);
+
+        assertThat(tracker.check(WEATHER, T0, 0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.check(WEATHER, T1, 0)).isEqualTo(Verdict.ACCEPTED);
+        tracker.rollback(WEATHER, T1, 0);
+
+        assertThat(tracker.check(WEATHER, T0, 0)).isEqualTo(Verdict.DUPLICATE);
+        assertThat(tracker.check(WEATHER, T1, 0)).isEqualTo(Verdict.ACCEPTED);
+
+        // Rollback của version đã bị thay thế không ảnh hưởng version mới
+        tracker.rollback(WEATHER, T0, 0);
+        assertThat(tracker.check(WEATHER, T1, 0)).isEqualTo(Verdict.DUPLICATE);
+
+        // Rollback entity đầu tiên thì quên hẳn entity
+        assertThat(tracker.check(AIR_QUALITY, T0, 0)).isEqualTo(Verdict.ACCEPTED);
+        tracker.rollback(AIR_QUALITY, T0, 0);
+        assertThat(tracker.peek(AIR_QUALITY, T0, 0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.size()).isEqualTo(1);
+    }
+
+    @Test
+    void peekDoesNotRecord() {
+        EntityVersionTracker tracker = newTracker(100);
+
+        assertThat(tracker.peek(WEATHER, T1, 0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.check(WEATHER, T1, 0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.peek(WEATHER, T0, 0)).isEqualTo(Verdict.OUT_OF_ORDER);
+        assertThat(tracker.peek(WEATHER, T1, 0)).isEqualTo(Verdict.DUPLICATE);
+    }
+
+    @Test
+    void entitiesWithoutTimestampsAreNeverDropped() {
+        EntityVersionTracker tracker = newTracker(100);
+
+        assertThat(tracker.check("urn:ngsi-ld:Device:WeatherSensor-PhuongHoanKiem", 0, 0))
+                .isEqualTo(Verdict.UNVERSIONED);
+        assertThat(tracker.check("urn:ngsi-ld:Device:WeatherSensor-PhuongHoanKiem", 0, 0))
+                .isEqualTo(Verdict.UNVERSIONED);
+        assertThat(tracker.size()).isZero();
+        assertThat(EntityVersionTracker.toEpochMillis("not a timestamp")).isZero();
+        assertThat(EntityVersionTracker.toEpochMillis("2025-11-05T10:00:00+07:00")).isEqualTo(T0);
+    }
+
+    @Test
+    void stopsTrackingNewEntitiesAtCapacityAndPurgesExpired() {
+        EntityVersionTracker tracker = newTracker(1);
+
+        assertThat(tracker.check(WEATHER, T0, 0)).isEqualTo(Verdict.ACCEPTED);
+        assertThat(tracker.check(AIR_QUALITY, T0, 0)).isEqualTo(Verdict.UNVERSIONED);
+        assertThat(tracker.check(AIR_QUALITY, T0, 0)).isEqualTo(Verdict.UNVERSIONED);
+        assertThat(tracker.size()).isEqualTo(1);
+
+        ReflectionTestUtils.setField(tracker, "ttlMinutes", -1L);
+        tracker.purgeExpired();
+        assertThat(tracker.size()).isZero();
+        assertThat(tracker.check(AIR_QUALITY, T0, 0)).isEqualTo(Verdict.ACCEPTED);
+    }
+
+    private static EntityVersionTracker newTracker(int maxEntries) {
+        EntityVersionTracker tracker = new EntityVersionTracker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracker, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(tracker, "ttlMinutes", 1440L);
+        return tracker;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.opensource.smartair.dtos.GeometryFormat;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stream-parse GeoJSON (JsonParser) đối chiếu với cây JsonNode, và load nền khi khởi động
+ */
+class GeoJsonServiceTest {
+
+    @Test
+    void streamingParseMatchesJsonTree() throws IOException {
+        GeoJsonService service = new GeoJsonService();
+        service.loadDistricts();
+
+        JsonNode features;
+        try (InputStream in = new ClassPathResource("static/ha_noi_with_latlon2.geojson").getInputStream()) {
+            features = new ObjectMapper().readTree(in).get("features");
+        }
+        assertThat(service.getAllDistricts()).hasSize(features.size());
+
+        List<GeoJsonService.DistrictFeature> parsed = service.getDistrictFeatures();
+        assertThat(parsed).hasSize(features.size());
+        for (int i = 0; i < features.size(); i++) {
+            JsonNode feature = features.get(i);
+            GeoJsonService.DistrictFeature district = parsed.get(i);
+            assertThat(district.name()).isEqualTo(feature.get("properties").get("Tên đơn vị").asText());
+            assertThat(district.stationLatitude()).isEqualTo(feature.get("properties").get("lat").asDouble());
+            assertThat(district.stationLongitude()).isEqualTo(feature.get("properties").get("lon").asDouble());
+            assertThat(coordinates(district.geometry()))
+                    .as(district.district())
+                    .isEqualTo(coordinates(feature.get("geometry")));
+        }
+    }
+
+    @Test
+    void asyncLoadBlocksGettersUntilParsedAndCompletesWhenLoaded() throws Exception {
+        GeoJsonService service = new GeoJsonService();
+        assertThat(service.getSimplifiedDistricts(10, GeometryFormat.GEOJSON)).isNull();
+        assertThat(service.whenLoaded()).isNotDone();
+
+        service.loadDistrictsAsync();
+
+        assertThat(service.getDistrictFeatures()).hasSize(126);
+        service.whenLoaded().get(30, TimeUnit.SECONDS);
+        assertThat(service.getSimplifiedDistricts(10, GeometryFormat.GEOJSON)).isNotNull();
+        assertThat(service.getSimplifiedDistricts(20, GeometryFormat.TOPOJSON)).isNotNull();
+    }
+
+    /**
+     * Tọa độ [lon, lat] theo thứ tự polygon → ring → position
+     */
+    private static List<List<Double>> coordinates(Geometry geometry) {
+        List<List<Double>> result = new ArrayList<>();
+        List<Polygon> polygons = new ArrayList<>();
+        if (geometry instanceof MultiPolygon) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                polygons.add((Polygon) geometry.getGeometryN(i));
+            }
+        } else {
+            polygons.add((Polygon) geometry);
+        }
+        for (Polygon polygon : polygons) {
+            addRing(result, polygon.getExteriorRing().getCoordinates());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                addRing(result, polygon.getInteriorRingN(i).getCoordinates());
+            }
+        }
+        return result;
+    }
+
+    private static void addRing(List<List<Double>> result, Coordinate[] ring) {
+        for (Coordinate coordinate : ring) {
+            result.add(List.of(coordinate.x, coordinate.y));
+        }
+    }
+
+    private static List<List<Double>> coordinates(JsonNode geometry) {
+        List<List<Double>> result = new ArrayList<>();
+        JsonNode polygons = "MultiPolygon".equals(geometry.get("type").asText())
+                ? geometry.get("coordinates")
+                : new ObjectMapper().createArrayNode().add(geometry.get("coordinates"));
+        for (JsonNode polygon : polygons) {
+            for (JsonNode ring : polygon) {
+                for (JsonNode position : ring) {
+                    result.add(List.of(position.get(0).asDouble(), position.get(1).asDouble()));
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InMemoryAlertThrottleStore: một cảnh báo / (district, level) / window, kể cả khi nhiều thread cùng gọi
+ */
+class InMemoryAlertThrottleStoreTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InMemoryAlertThrottleStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new InMemoryAlertThrottleStore(meterRegistry);
+    }
+
+    @Test
+    void secondAcquireInWindowIsThrottled() {
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isFalse();
+
+        // Key khác (district / level) có window riêng
+        assertThat(store.tryAcquire("PhuongHoanKiem", "very_poor", Duration.ofMinutes(30))).isTrue();
+        assertThat(store.tryAcquire("PhuongBaDinh", "poor", Duration.ofMinutes(30))).isTrue();
+
+        assertThat(counter("acquired")).isEqualTo(3);
+        assertThat(counter("throttled")).isEqualTo(1);
+    }
+
+    @Test
+    void expiredWindowCanBeAcquiredAgain() throws InterruptedException {
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMillis(20))).isTrue();
+        Thread.sleep(40);
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMillis(20))).isTrue();
+    }
+
+    @Test
+    void releaseReopensWindow() {
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+
+        store.release("PhuongHoanKiem", "poor");
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+    }
+
+    @Test
+    void onlyOneConcurrentCallerAcquires() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30));
+                }));
+            }
+            start.countDown();
+
+            int acquired = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(5, TimeUnit.SECONDS)) {
+                    acquired++;
+                }
+            }
+            assertThat(acquired).isEqualTo(1);
+            assertThat(counter("throttled")).isEqualTo(threads - 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double counter(String result) {
+        return meterRegistry.counter("notification.throttle", "store", "memory", "result", result).count();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.JwtClaims;
+import org.opensource.smartair.models.User;
+import org.opensource.smartair.models.UserRole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * JwtService.parseAndVerify + verified-token cache
+ */
+class JwtServiceTest {
+
+    private static final String SECRET = "test-secret-key-test-secret-key-test-secret-key-0123456789";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtService jwtService;
+
+    private final User user = User.builder()
+            .id(7L)
+            .email("resident@example.com")
+            .fullName("Nguyễn Văn A")
+            .role(UserRole.RESIDENT)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtService = newService(SECRET, 60_000L, meterRegistry);
+    }
+
+    @Test
+    void verifiesOnceThenServesFromCache() {
+        String token = jwtService.generateToken(user);
+
+        JwtClaims first = jwtService.parseAndVerify(token);
+        JwtClaims second = jwtService.parseAndVerify(token);
+
+        assertThat(first.userId()).isEqualTo(7L);
+        assertThat(first.email()).isEqualTo("resident@example.com");
+        assertThat(first.role()).isEqualTo("RESIDENT");
+        assertThat(second).isSameAs(first);
+        assertThat(meterRegistry.counter("jwt.verify", "result", "verified").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("jwt.verify", "result", "cache_hit").count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsTokenSignedWithAnotherKey() {
+        JwtService other = newService(SECRET.replace('t', 'x'), 60_000L, new SimpleMeterRegistry());
+        String forged = other.generateToken(user);
+
+        assertThatThrownBy(() -> jwtService.parseAndVerify(forged)).isInstanceOf(JwtException.class);
+        assertThat(jwtService.validateToken(forged, "resident@example.com")).isFalse();
+    }
+
+    @Test
+    void cachedTokenIsRejectedAfterExpiry() {
+        String token = jwtService.generateToken(user);
+        JwtClaims claims = jwtService.parseAndVerify(token);
+
+        // Giả lập entry trong cache đã quá hạn
+        @SuppressWarnings("unchecked")
+        Map<String, JwtClaims> cache = (Map<String, JwtClaims>) ReflectionTestUtils.getField(jwtService,
+                "verifiedTokens");
+        cache.replaceAll((key, value) -> new JwtClaims(claims.userId(), claims.email(), claims.role(),
+                claims.fullName(), System.currentTimeMillis() - 1));
+
+        // Entry quá hạn không được dùng lại: token được verify lại bằng parser
+        assertThat(jwtService.parseAndVerify(token)).isNotSameAs(claims);
+        assertThat(meterRegistry.counter("jwt.verify", "result", "verified").count()).isEqualTo(2);
+
+        JwtService shortLived = newService(SECRET, -1_000L, new SimpleMeterRegistry());
+        String expired = shortLived.generateToken(user);
+        assertThatThrownBy(() -> shortLived.parseAndVerify(expired)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(shortLived.isTokenExpired(expired)).isTrue();
+    }
+
+    private JwtService newService(String secret, long expirationMillis, SimpleMeterRegistry registry) {
+        JwtService service = new JwtService(registry);
+        ReflectionTestUtils.setField(service, "secretKey", secret);
+        ReflectionTestUtils.setField(service, "expiration", expirationMillis);
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", 100);
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.utils.PipelineTrace;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LatencyTrackerService: 4 mốc của pipeline → stage timers, ingest lag, end-to-end và freshness theo district
+ */
+class LatencyTrackerServiceTest {
+
+    private static final String TYPE = "weatherObserved";
+
+    private SimpleMeterRegistry meterRegistry;
+    private LatencyTrackerService tracker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new LatencyTrackerService(meterRegistry);
+        tracker.registerMeters();
+    }
+
+    @Test
+    void fullPipelineRecordsEveryStageAndEndToEnd() {
+        String observedAt = Instant.now().minusSeconds(60).toString();
+
+        PipelineTrace trace = tracker.start(TYPE);
+        tracker.markTransformed(trace, "PhuongHoanKiem", observedAt);
+        tracker.markEmitted(trace);
+        tracker.markWritten(trace);
+
+        for (String stage : new String[]{"transform", "emit", "write"}) {
+            assertThat(meterRegistry.timer("pipeline.stage", "type", TYPE, "stage", stage).count())
+                    .as(stage).isEqualTo(1);
+        }
+        assertThat(meterRegistry.timer("pipeline.ingest.lag", "type", TYPE).totalTime(TimeUnit.SECONDS))
+                .isGreaterThanOrEqualTo(59);
+        assertThat(meterRegistry.timer("pipeline.end.to.end", "type", TYPE).totalTime(TimeUnit.SECONDS))
+                .isGreaterThanOrEqualTo(59);
+    }
+
+    @Test
+    void eachSubscriberWriteIsOneEndToEndSample() {
+        PipelineTrace trace = tracker.start(TYPE);
+        tracker.markTransformed(trace, "PhuongHoanKiem", Instant.now().toString());
+        tracker.markEmitted(trace);
+
+        tracker.markWritten(trace);
+        tracker.markWritten(trace);
+        tracker.markWritten(trace);
+
+        assertThat(meterRegistry.timer("pipeline.end.to.end", "type", TYPE).count()).isEqualTo(3);
+        assertThat(meterRegistry.timer("pipeline.stage", "type", TYPE, "stage", "write").count()).isEqualTo(3);
+    }
+
+    @Test
+    void writeBeforeEmitIsIgnored() {
+        PipelineTrace trace = tracker.start(TYPE);
+        tracker.markTransformed(trace, "PhuongHoanKiem", Instant.now().toString());
+
+        tracker.markWritten(trace);
+        tracker.markWritten(null);
+
+        assertThat(meterRegistry.timer("pipeline.stage", "type", TYPE, "stage", "write").count()).isZero();
+        assertThat(meterRegistry.timer("pipeline.end.to.end", "type", TYPE).count()).isZero();
+    }
+
+    @Test
+    void missingObservedAtSkipsLagButKeepsStages() {
+        PipelineTrace trace = tracker.start(TYPE);
+        tracker.markTransformed(trace, "PhuongHoanKiem", "not-a-date");
+        tracker.markEmitted(trace);
+        tracker.markWritten(trace);
+
+        assertThat(meterRegistry.timer("pipeline.stage", "type", TYPE, "stage", "write").count()).isEqualTo(1);
+        assertThat(meterRegistry.timer("pipeline.ingest.lag", "type", TYPE).count()).isZero();
+        assertThat(meterRegistry.timer("pipeline.end.to.end", "type", TYPE).count()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void freshnessReportTracksLatestObservationAndDelivery() {
+        Instant older = Instant.now().minusSeconds(120);
+        Instant newer = Instant.now().minusSeconds(30);
+
+        PipelineTrace first = tracker.start(TYPE);
+        tracker.markTransformed(first, "PhuongHoanKiem", newer.toString());
+        // Observation cũ đến sau không kéo observedAt lùi lại
+        PipelineTrace late = tracker.start(TYPE);
+        tracker.markTransformed(late, "PhuongHoanKiem", older.toString());
+
+        Map<String, Object> item = (Map<String, Object>) ((Map<String, Map<String, Object>>) tracker
+                .getFreshnessReport().get("districts")).get("PhuongHoanKiem").get(TYPE);
+        assertThat(item.get("observedAt")).isEqualTo(Instant.ofEpochMilli(newer.toEpochMilli()).toString());
+        assertThat(item.get("lastDeliveredAt")).isNull();
+
+        tracker.markEmitted(first);
+        tracker.markWritten(first);
+
+        item = (Map<String, Object>) ((Map<String, Map<String, Object>>) tracker
+                .getFreshnessReport().get("districts")).get("PhuongHoanKiem").get(TYPE);
+        assertThat(item.get("lastDeliveredAt")).isNotNull();
+        assertThat(meterRegistry.get("pipeline.freshness.lag.max").tag("type", TYPE).gauge().value())
+                .isBetween(29.0, 60.0);
+        assertThat(meterRegistry.get("pipeline.freshness.lag.max").tag("type", "airQualityObserved").gauge().value())
+                .isZero();
+    }
+}
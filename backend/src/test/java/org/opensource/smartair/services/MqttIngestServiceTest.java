@@ -0,0 +1,302 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.SseEventDTO;
+import org.opensource.smartair.dtos.WeatherDataDTO;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * MQTT direct-ingest với broker nhúng (Moquette): payload IoTA-JSON do ETL publish
+ * phải tới subscriber SSE dưới dạng DTO giống đường notification Orion-LD
+ */
+class MqttIngestServiceTest {
+
+    private static final String DISTRICT = "PhuongHoanKiem";
+    private static final String WEATHER_ENTITY = "urn:ngsi-ld:WeatherObserved:Hanoi-" + DISTRICT;
+
+    private static Server broker;
+    private static String brokerUrl;
+    private static DistrictRegistry districtRegistry;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SseService sseService;
+    private EntityVersionTracker versionTracker;
+    private MqttIngestService ingest;
+    private MqttClient publisher;
+
+    @TempDir
+    static Path brokerData;
+
+    @BeforeAll
+    static void startBroker() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Properties config = new Properties();
+        config.setProperty("host", "127.0.0.1");
+        config.setProperty("port", String.valueOf(port));
+        config.setProperty("websocket_port", "disabled");
+        config.setProperty("allow_anonymous", "true");
+        config.setProperty("persistence_enabled", "false");
+        config.setProperty("data_path", brokerData.toString());
+        broker = new Server();
+        broker.startServer(new MemoryConfig(config));
+        brokerUrl = "tcp://127.0.0.1:" + port;
+
+        GeoJsonService geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        districtRegistry = new DistrictRegistry(geoJsonService);
+        districtRegistry.build();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        broker.stopServer();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        sseService = newSseService(new InMemorySseEventBus());
+        versionTracker = new EntityVersionTracker(meterRegistry);
+        ReflectionTestUtils.setField(versionTracker, "maxEntries", 100);
+        ReflectionTestUtils.setField(versionTracker, "ttlMinutes", 1440L);
+        ingest = newIngest(sseService, versionTracker);
+
+        publisher = new MqttClient(brokerUrl, MqttClient.generateClientId(), new MemoryPersistence());
+        publisher.connect();
+    }
+
+    private SseService newSseService(SseEventBus eventBus) {
+        OrionLdClient orionLdClient = mock(OrionLdClient.class);
+        when(orionLdClient.getLatestWeather(anyString())).thenReturn(Mono.empty());
+        when(orionLdClient.getLatestAirQuality(anyString())).thenReturn(Mono.empty());
+        SseService service = new SseService(orionLdClient, meterRegistry, new LatencyTrackerService(meterRegistry),
+                eventBus);
+        service.subscribeToBus();
+        service.registerMeters();
+        return service;
+    }
+
+    private MqttIngestService newIngest(SseService replica, EntityVersionTracker tracker) throws Exception {
+        MqttIngestService service = new MqttIngestService(new NgsiTransformerService(districtRegistry), replica,
+                districtRegistry, tracker, new ObjectMapper(), meterRegistry, brokerUrl,
+                List.of("/hanoi/+/attrs"), "");
+        service.ensureConnected();
+        assertThat(service.isConnected()).isTrue();
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        publisher.disconnect();
+        publisher.close();
+        ingest.disconnect();
+    }
+
+    @Test
+    void weatherPayloadReachesSseSubscribers() throws Exception {
+        BlockingQueue<SseEventDTO<WeatherDataDTO>> events = new LinkedBlockingQueue<>();
+        Disposable subscription = sseService.subscribeWeather(DISTRICT).subscribe(events::add);
+
+        publish("/hanoi/weather-phuong-hoan-kiem/attrs", weatherPayload("2025-11-05T03:00:00.000Z"));
+
+        SseEventDTO<WeatherDataDTO> event = events.poll(5, TimeUnit.SECONDS);
+        assertThat(event).isNotNull();
+        WeatherDataDTO data = event.getData();
+        assertThat(data.getEntityId()).isEqualTo(WEATHER_ENTITY);
+        assertThat(data.getDistrict()).isEqualTo(DISTRICT);
+        assertThat(data.getObservedAt()).isEqualTo("2025-11-05T03:00:00.000Z");
+        assertThat(data.getTemperature()).isEqualTo(27.4);
+        assertThat(data.getAtmosphericPressure()).isEqualTo(1012);
+        assertThat(data.getRelativeHumidity()).isEqualTo(0.7);
+        assertThat(data.getPrecipitation()).isEqualTo(0.0);
+        assertThat(data.getLocation().getLat()).isEqualTo(21.0285);
+        assertThat(data.getRefDevice()).isEqualTo("urn:ngsi-ld:Device:WeatherSensor-" + DISTRICT);
+        awaitCount("weatherObserved", "broadcast", 1);
+        assertThat(meterRegistry.timer("mqtt.ingest.lag").count()).isEqualTo(1);
+
+        subscription.dispose();
+    }
+
+    @Test
+    void everyReplicaFansOutLocallySoSubscribersSeeEachMessageOnce() throws Exception {
+        // Hai replica dùng chung bus: nếu ingest publish lên bus, subscriber nhận mỗi message hai lần
+        InMemorySseEventBus bus = new InMemorySseEventBus();
+        SseService replicaA = newSseService(bus);
+        SseService replicaB = newSseService(bus);
+        ingest.disconnect();
+        // Mỗi replica có EntityVersionTracker riêng như khi chạy thật
+        EntityVersionTracker trackerB = new EntityVersionTracker(meterRegistry);
+        ReflectionTestUtils.setField(trackerB, "maxEntries", 100);
+        ReflectionTestUtils.setField(trackerB, "ttlMinutes", 1440L);
+        ingest = newIngest(replicaA, versionTracker);
+        MqttIngestService ingestB = newIngest(replicaB, trackerB);
+
+        BlockingQueue<SseEventDTO<WeatherDataDTO>> events = new LinkedBlockingQueue<>();
+        Disposable subscription = replicaA.subscribeWeather(DISTRICT).subscribe(events::add);
+
+        publish("/hanoi/weather-phuong-hoan-kiem/attrs", weatherPayload("2025-11-05T03:00:00.000Z"));
+
+        assertThat(events.poll(5, TimeUnit.SECONDS)).isNotNull();
+        awaitCount("weatherObserved", "broadcast", 2);
+        assertThat(events.poll(500, TimeUnit.MILLISECONDS)).isNull();
+
+        subscription.dispose();
+        ingestB.disconnect();
+    }
+
+    @Test
+    void observationsAlreadyDeliveredByOrionOrRedeliveredAreDropped() throws Exception {
+        BlockingQueue<SseEventDTO<WeatherDataDTO>> events = new LinkedBlockingQueue<>();
+        Disposable subscription = sseService.subscribeWeather(DISTRICT).subscribe(events::add);
+
+        // Notification Orion-LD của lần đo 03:00 đã được xử lý
+        versionTracker.check(WEATHER_ENTITY, Instant.parse("2025-11-05T03:00:00Z").toEpochMilli(), 0);
+
+        String topic = "/hanoi/weather-phuong-hoan-kiem/attrs";
+        publish(topic, weatherPayload("2025-11-05T02:00:00.000Z"));
+        publish(topic, weatherPayload("2025-11-05T03:00:00.000Z"));
+        awaitCount("weatherObserved", "stale", 2);
+
+        publish(topic, weatherPayload("2025-11-05T04:00:00.000Z"));
+        publish(topic, weatherPayload("2025-11-05T04:00:00.000Z"));
+        awaitCount("weatherObserved", "duplicate", 1);
+
+        assertThat(events.poll(5, TimeUnit.SECONDS).getData().getObservedAt()).isEqualTo("2025-11-05T04:00:00.000Z");
+        assertThat(events).isEmpty();
+        awaitCount("weatherObserved", "broadcast", 1);
+
+        // Live update không ghi đè version của Orion-LD: notification 04:00 vẫn được xử lý
+        assertThat(versionTracker.peek(WEATHER_ENTITY, Instant.parse("2025-11-05T04:00:00Z").toEpochMilli(), 0))
+                .isEqualTo(EntityVersionTracker.Verdict.ACCEPTED);
+
+        subscription.dispose();
+    }
+
+    private static Map<String, Object> weatherPayload(String dateObserved) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("device_id", "weather-phuong-hoan-kiem");
+        payload.put("stationName", DISTRICT);
+        payload.put("stationCode", "HN-PHUONGHOANKIEM");
+        payload.put("dateObserved", dateObserved);
+        payload.put("temperature", 27.4);
+        payload.put("pressure", 1012);
+        payload.put("humidity", 70);
+        payload.put("precipitation", 0.001);
+        payload.put("latitude", 21.0285);
+        payload.put("longitude", 105.8542);
+        payload.put("refDevice", "urn:ngsi-ld:Device:WeatherSensor-" + DISTRICT);
+        return payload;
+    }
+
+    @Test
+    void airQualityPayloadMapsIotAgentAttributeNames() throws Exception {
+        BlockingQueue<SseEventDTO<AirQualityDataDTO>> events = new LinkedBlockingQueue<>();
+        Disposable subscription = sseService.subscribeAirQuality(DISTRICT).subscribe(events::add);
+
+        publish("/hanoi/airquality-phuong-hoan-kiem/attrs", Map.of(
+                "stationName", DISTRICT,
+                "aqi", 4,
+                "airQualityLevel", "poor",
+                "pm2_5", 61.2,
+                "co", 410.5,
+                "coLevel", "good",
+                "refPointOfInterest", "urn:ngsi-ld:PointOfInterest:Hanoi-" + DISTRICT));
+
+        SseEventDTO<AirQualityDataDTO> event = events.poll(5, TimeUnit.SECONDS);
+        assertThat(event).isNotNull();
+        AirQualityDataDTO data = event.getData();
+        assertThat(data.getAirQualityIndex()).isEqualTo(4);
+        assertThat(data.getPm2_5()).isEqualTo(61.2);
+        assertThat(data.getCo()).isEqualTo(410.5);
+        assertThat(data.getCoLevel()).isEqualTo("good");
+        assertThat(data.getObservedAt()).isNotNull();
+        assertThat(data.getRefPointOfInterest()).isEqualTo("urn:ngsi-ld:PointOfInterest:Hanoi-" + DISTRICT);
+        // Không có dateObserved: observedAt là thời điểm nhận, không tính lag
+        awaitCount("airQualityObserved", "broadcast", 1);
+        assertThat(meterRegistry.find("mqtt.ingest.lag").timer()).isNull();
+
+        subscription.dispose();
+    }
+
+    @Test
+    void unknownStationsAndMalformedPayloadsAreDroppedWithoutDisconnecting() throws Exception {
+        publish("/hanoi/weather-nowhere/attrs", Map.of("stationName", "Nowhere", "temperature", 30));
+        publisher.publish("/hanoi/weather-phuong-hoan-kiem/attrs", "not json".getBytes(), 1, false);
+        publish("/hanoi/gps-tracker-01/attrs", Map.of("stationName", DISTRICT));
+
+        awaitCount("weatherObserved", "error", 1);
+        awaitCount("weatherObserved", "unmapped", 1);
+        awaitCount("unknown", "ignored", 1);
+        assertThat(ingest.isConnected()).isTrue();
+    }
+
+    private void publish(String topic, Map<String, Object> payload) throws Exception {
+        publisher.publish(topic, new ObjectMapper().writeValueAsBytes(payload), 1, false);
+    }
+
+    private void awaitCount(String type, String result, double expected) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (meterRegistry.counter("mqtt.ingest.messages", "type", type, "result", result).count() >= expected) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        assertThat(meterRegistry.counter("mqtt.ingest.messages", "type", type, "result", result).count())
+                .as(type + "/" + result)
+                .isEqualTo(expected);
+    }
+}
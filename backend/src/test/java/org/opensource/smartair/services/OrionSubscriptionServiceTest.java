@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * OrionSubscriptionService.reconcile: thao tác bị Orion-LD từ chối được đếm là failed (result=error),
+ * không bị tính vào created / deleted
+ */
+class OrionSubscriptionServiceTest {
+
+    private final Set<String> rejectedIds = ConcurrentHashMap.newKeySet();
+    private volatile String existing = "[]";
+    private HttpServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private OrionSubscriptionService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ngsi-ld/v1/subscriptions", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            byte[] response = new byte[0];
+            int status = switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    response = existing.getBytes(StandardCharsets.UTF_8);
+                    yield 200;
+                }
+                case "POST" -> rejectedIds.stream().anyMatch(body::contains) ? 500 : 201;
+                // Subscription đã bị xóa ngoài backend
+                case "DELETE" -> 404;
+                default -> 405;
+            };
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+            if (response.length > 0) {
+                exchange.getResponseBody().write(response);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        service = new OrionSubscriptionService("http://127.0.0.1:" + server.getAddress().getPort(), "hanoi",
+                mock(DistrictRegistry.class), meterRegistry);
+        ReflectionTestUtils.setField(service, "backendUrl", "http://backend:8081");
+        ReflectionTestUtils.setField(service, "projectionEnabled", true);
+        ReflectionTestUtils.setField(service, "weatherWatchedAttributes", List.of("temperature"));
+        ReflectionTestUtils.setField(service, "airQualityWatchedAttributes", List.of("airQualityIndex"));
+        ReflectionTestUtils.setField(service, "platformWatchedAttributes", List.of("status"));
+        ReflectionTestUtils.setField(service, "deviceWatchedAttributes", List.of("deviceState"));
+        // throttling = 0 → một subscription / type, không phụ thuộc DistrictRegistry
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void rejectedCreateIsCountedAsFailedNotCreated() {
+        rejectedIds.add(OrionSubscriptionService.WEATHER_SUBSCRIPTION_ID);
+
+        OrionSubscriptionService.ReconcileResult result = service.reconcile().block(Duration.ofSeconds(10));
+
+        assertThat(result.created()).isEqualTo(3);
+        assertThat(result.failed()).isEqualTo(1);
+        assertThat(counter("create", "ok")).isEqualTo(3);
+        assertThat(counter("create", "error")).isEqualTo(1);
+    }
+
+    @Test
+    void deletingSubscriptionAlreadyGoneCountsAsDeleted() {
+        existing = "[{\"id\":\"urn:ngsi-ld:Subscription:WeatherObserved-Backend:old\",\"type\":\"Subscription\"}]";
+
+        OrionSubscriptionService.ReconcileResult result = service.reconcile().block(Duration.ofSeconds(10));
+
+        assertThat(result.deleted()).isEqualTo(1);
+        assertThat(result.created()).isEqualTo(4);
+        assertThat(result.failed()).isZero();
+    }
+
+    private double counter(String action, String result) {
+        return meterRegistry.counter("orion.subscriptions.reconcile", "action", action, "result", result).count();
+    }
+}
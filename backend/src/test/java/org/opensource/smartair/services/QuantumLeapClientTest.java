@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.utils.AimdConcurrencyLimiter;
+import org.opensource.smartair.utils.CircuitBreaker;
+import org.opensource.smartair.utils.UpstreamGuard;
+import org.opensource.smartair.utils.UpstreamRejectedException;
+import org.opensource.smartair.utils.UpstreamUnavailableException;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * QuantumLeapClient: upstream lỗi không còn bị che thành history rỗng
+ * - 5xx / circuit open, không có stale → UpstreamUnavailableException (API trả 503)
+ * - có response tốt gần đây → stale; 404 → history rỗng
+ */
+class QuantumLeapClientTest {
+
+    private static final String ENTITY = "urn:ngsi-ld:WeatherObserved:Hanoi-PhuongHoanKiem";
+
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private HttpServer server;
+    private UpstreamGuard guard;
+    private QuantumLeapClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            Integer status = statuses.poll();
+            byte[] body = "{\"entityId\":\"%s\",\"index\":[],\"values\":[]}".formatted(ENTITY)
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status != null ? status : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        guard = new UpstreamGuard("quantumleap", new AimdConcurrencyLimiter(10, 1, 10, 0.9, 5000),
+                new CircuitBreaker(2, Duration.ofMinutes(1), 1), Duration.ofMinutes(5), 16,
+                new SimpleMeterRegistry());
+        client = new QuantumLeapClient("http://127.0.0.1:" + server.getAddress().getPort(), "hanoi", guard,
+                mock(DistrictRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void serverErrorWithoutStaleResponseIsUnavailable() {
+        statuses.add(503);
+
+        assertThatThrownBy(() -> history("temperature"))
+                .isInstanceOf(UpstreamUnavailableException.class)
+                .hasMessageContaining("quantumleap");
+    }
+
+    @Test
+    void serverErrorServesLastGoodResponse() {
+        statuses.add(200);
+        statuses.add(500);
+
+        Map<String, Object> fresh = history("temperature");
+        assertThat(fresh).containsEntry("entityId", ENTITY);
+        assertThat(history("temperature")).isEqualTo(fresh);
+    }
+
+    @Test
+    void openCircuitIsUnavailableNotEmptyHistory() {
+        statuses.add(500);
+        statuses.add(500);
+        assertThatThrownBy(() -> history("temperature")).isInstanceOf(UpstreamUnavailableException.class);
+        assertThatThrownBy(() -> history("temperature")).isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(guard.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // Mạch mở: bị từ chối cục bộ, không gọi tới QuantumLeap
+        assertThatThrownBy(() -> history("pm2_5")).isInstanceOf(UpstreamRejectedException.class);
+    }
+
+    @Test
+    void notFoundIsEmptyHistory() {
+        statuses.add(404);
+
+        assertThat(history("temperature")).isEmpty();
+    }
+
+    private Map<String, Object> history(String attribute) {
+        return client.getAttributeHistory(ENTITY, attribute, null, null, null, null, 10).block(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * RedisAlertThrottleStore với StringRedisTemplate mock:
+ * SET NX PX, near-cache theo PTTL, release compare-and-delete, fallback cục bộ khi Redis lỗi
+ */
+class RedisAlertThrottleStoreTest {
+
+    private static final String KEY = "smartair:alert-throttle:PhuongHoanKiem:poor";
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOps;
+    private SimpleMeterRegistry meterRegistry;
+    private RedisAlertThrottleStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        meterRegistry = new SimpleMeterRegistry();
+        store = new RedisAlertThrottleStore(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(store, "keyPrefix", "smartair:alert-throttle:");
+    }
+
+    @Test
+    void acquiredWindowIsServedFromNearCache() {
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isFalse();
+
+        verify(valueOps, times(1)).setIfAbsent(eq(KEY), anyString(), any(Duration.class));
+        assertThat(counter("acquired")).isEqualTo(1);
+        assertThat(counter("near_cache")).isEqualTo(1);
+    }
+
+    @Test
+    void windowHeldByOtherReplicaAdoptsItsExpire() {
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(redisTemplate.getExpire(KEY, TimeUnit.MILLISECONDS)).thenReturn(60_000L);
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isFalse();
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isFalse();
+
+        // Lần 2 trả lời từ near-cache theo PTTL của replica kia
+        verify(valueOps, times(1)).setIfAbsent(eq(KEY), anyString(), any(Duration.class));
+        assertThat(counter("throttled")).isEqualTo(1);
+        assertThat(counter("near_cache")).isEqualTo(1);
+    }
+
+    @Test
+    void expiredNearCacheEntryGoesBackToRedis() throws InterruptedException {
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMillis(20))).isTrue();
+        Thread.sleep(40);
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMillis(20))).isTrue();
+
+        verify(valueOps, times(2)).setIfAbsent(eq(KEY), anyString(), any(Duration.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseDeletesOwnKeyAndClearsNearCache() {
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+
+        store.release("PhuongHoanKiem", "poor");
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(KEY)), anyString());
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+        verify(valueOps, times(2)).setIfAbsent(eq(KEY), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void redisFailureFallsBackToLocalThrottle() {
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isFalse();
+
+        assertThat(counter("error")).isEqualTo(1);
+        assertThat(counter("near_cache")).isEqualTo(1);
+        verify(redisTemplate, never()).getExpire(anyString(), any(TimeUnit.class));
+    }
+
+    @Test
+    void concurrentFallbackAcquiresOnce() throws Exception {
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30));
+                }));
+            }
+            start.countDown();
+
+            int acquired = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(5, TimeUnit.SECONDS)) {
+                    acquired++;
+                }
+            }
+            assertThat(acquired).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseSurvivesRedisFailure() {
+        when(redisTemplate.execute(any(RedisScript.class), any(List.class), anyString()))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+        when(valueOps.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        store.release("PhuongHoanKiem", "poor");
+
+        assertThat(store.tryAcquire("PhuongHoanKiem", "poor", Duration.ofMinutes(30))).isTrue();
+    }
+
+    private double counter(String result) {
+        return meterRegistry.counter("notification.throttle", "store", "redis", "result", result).count();
+    }
+}
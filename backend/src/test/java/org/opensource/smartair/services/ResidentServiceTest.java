@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.UpdateResidentDTO;
+import org.opensource.smartair.models.Resident;
+import org.opensource.smartair.models.User;
+import org.opensource.smartair.repositories.ResidentBulkRepository;
+import org.opensource.smartair.repositories.ResidentRepository;
+import org.opensource.smartair.repositories.ResidentStationRepository;
+import org.opensource.smartair.repositories.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ResidentService.updateResident: chỉ DELETE / INSERT phần chênh lệch của districts
+ */
+class ResidentServiceTest {
+
+    private final ResidentRepository residentRepository = mock(ResidentRepository.class);
+    private final ResidentStationRepository residentStationRepository = mock(ResidentStationRepository.class);
+    private final ResidentBulkRepository residentBulkRepository = mock(ResidentBulkRepository.class);
+
+    private final ResidentService residentService = new ResidentService(residentRepository,
+            mock(UserRepository.class), residentStationRepository, residentBulkRepository,
+            mock(PasswordEncoder.class), mock(ApplicationEventPublisher.class));
+
+    @Test
+    void updateOnlyWritesChangedDistricts() {
+        residentWithId(5L);
+        when(residentStationRepository.findDistrictsByResidentId(5L))
+                .thenReturn(List.of("PhuongHoanKiem", "PhuongBaDinh", "PhuongCauGiay"));
+
+        residentService.updateResident(1L, update(List.of("PhuongHoanKiem", "PhuongCauGiay", "PhuongTayHo")));
+
+        verify(residentStationRepository).deleteByResidentIdAndDistrictIn(5L, Set.of("PhuongBaDinh"));
+        verify(residentBulkRepository).insertStations(5L, Set.of("PhuongTayHo"));
+    }
+
+    @Test
+    void unchangedDistrictsDoNotTouchTheTable() {
+        residentWithId(5L);
+        when(residentStationRepository.findDistrictsByResidentId(5L)).thenReturn(List.of("PhuongHoanKiem"));
+
+        residentService.updateResident(1L, update(List.of("PhuongHoanKiem")));
+
+        verify(residentStationRepository, never()).deleteByResidentIdAndDistrictIn(anyLong(), anyCollection());
+        verify(residentBulkRepository, never()).insertStations(eq(5L), anyCollection());
+    }
+
+    private Resident residentWithId(Long id) {
+        Resident resident = Resident.builder()
+                .id(id)
+                .user(User.builder().id(1L).email("resident@example.com").fullName("Nguyễn Văn A").build())
+                .build();
+        when(residentRepository.findByUserId(1L)).thenReturn(Optional.of(resident));
+        when(residentRepository.save(any(Resident.class))).thenReturn(resident);
+        return resident;
+    }
+
+    private UpdateResidentDTO update(List<String> districts) {
+        UpdateResidentDTO dto = new UpdateResidentDTO();
+        dto.setDistricts(districts);
+        return dto;
+    }
+}
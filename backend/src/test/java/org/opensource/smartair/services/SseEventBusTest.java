@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.AirQualityDataDTO;
+import org.opensource.smartair.dtos.SseBusMessage;
+import org.opensource.smartair.dtos.SseEventDTO;
+import org.opensource.smartair.dtos.SseTopic;
+import org.opensource.smartair.dtos.WeatherDataDTO;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fan-out SSE giữa nhiều replica qua SseEventBus
+ * Hai SseService dùng chung một InMemorySseEventBus đóng vai hai replica sau load balancer
+ */
+class SseEventBusTest {
+
+    private static final String DISTRICT = "PhuongHoanKiem";
+
+    @Test
+    void broadcastOnOneReplicaReachesSubscribersOnAnother() {
+        InMemorySseEventBus bus = new InMemorySseEventBus();
+        SseService replicaA = newReplica(bus);
+        SseService replicaB = newReplica(bus);
+
+        List<SseEventDTO<WeatherDataDTO>> onA = new CopyOnWriteArrayList<>();
+        List<SseEventDTO<WeatherDataDTO>> onB = new CopyOnWriteArrayList<>();
+        Disposable subA = replicaA.subscribeWeather(DISTRICT).subscribe(onA::add);
+        Disposable subB = replicaB.subscribeWeather(DISTRICT).subscribe(onB::add);
+
+        replicaA.broadcastWeather(WeatherDataDTO.builder()
+                .district(DISTRICT)
+                .temperature(29.5)
+                .build());
+
+        assertThat(onA).hasSize(1);
+        assertThat(onB).hasSize(1);
+        assertThat(onB.get(0).getData().getTemperature()).isEqualTo(29.5);
+
+        subA.dispose();
+        subB.dispose();
+    }
+
+    @Test
+    void alertIsDerivedOnEveryReplica() {
+        InMemorySseEventBus bus = new InMemorySseEventBus();
+        SseService replicaA = newReplica(bus);
+        SseService replicaB = newReplica(bus);
+
+        List<SseEventDTO<AirQualityDataDTO>> alertsOnB = new CopyOnWriteArrayList<>();
+        Disposable sub = replicaB.subscribeAirQualityAlerts().subscribe(alertsOnB::add);
+
+        replicaA.broadcastAirQuality(AirQualityDataDTO.builder()
+                .district(DISTRICT)
+                .airQualityIndex(5)
+                .airQualityLevel("very-poor")
+                .build());
+
+        assertThat(alertsOnB).hasSize(1);
+        sub.dispose();
+    }
+
+    @Test
+    void redisBusRoundTripsTypedPayloads() throws Exception {
+        RedisSseEventBus bus = new RedisSseEventBus(mock(ReactiveStringRedisTemplate.class),
+                mock(ReactiveRedisConnectionFactory.class), new ObjectMapper().findAndRegisterModules(),
+                new SimpleMeterRegistry());
+
+        SseBusMessage weather = bus.decode(bus.encode(SseBusMessage.builder()
+                .topic(SseTopic.WEATHER)
+                .key(DISTRICT)
+                .origin("replica-a")
+                .payload(WeatherDataDTO.builder().district(DISTRICT).temperature(31.0).build())
+                .build()));
+        assertThat(weather.getPayload()).isInstanceOf(WeatherDataDTO.class);
+        assertThat(((WeatherDataDTO) weather.getPayload()).getTemperature()).isEqualTo(31.0);
+        assertThat(weather.getOrigin()).isEqualTo("replica-a");
+
+        SseBusMessage environment = bus.decode(bus.encode(SseBusMessage.builder()
+                .topic(SseTopic.ALL_ENVIRONMENT)
+                .payload(Map.of(DISTRICT, AirQualityDataDTO.builder().airQualityIndex(3).build()))
+                .build()));
+        @SuppressWarnings("unchecked")
+        Map<String, AirQualityDataDTO> dataMap = (Map<String, AirQualityDataDTO>) environment.getPayload();
+        assertThat(dataMap.get(DISTRICT)).isInstanceOf(AirQualityDataDTO.class);
+        assertThat(dataMap.get(DISTRICT).getAirQualityIndex()).isEqualTo(3);
+    }
+
+    private SseService newReplica(SseEventBus bus) {
+        OrionLdClient orionLdClient = mock(OrionLdClient.class);
+        when(orionLdClient.getLatestWeather(anyString())).thenReturn(Mono.empty());
+        when(orionLdClient.getLatestAirQuality(anyString())).thenReturn(Mono.empty());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SseService service = new SseService(orionLdClient, meterRegistry,
+                new LatencyTrackerService(meterRegistry), bus);
+        service.subscribeToBus();
+        service.registerMeters();
+        return service;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.dtos.AlertRecipientDTO;
+import org.opensource.smartair.dtos.ResidentSubscriptionChangedEvent;
+import org.opensource.smartair.repositories.ResidentStationRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * SubscriberIndexService: index district → người nhận phải khớp resident_stations sau build,
+ * refresh theo resident, cold miss khi chưa build và rebuild định kỳ
+ */
+class SubscriberIndexServiceTest {
+
+    private static final String HOAN_KIEM = "PhuongHoanKiem";
+    private static final String BA_DINH = "PhuongBaDinh";
+    private static final String CAU_GIAY = "PhuongCauGiay";
+
+    private final ResidentStationRepository repository = mock(ResidentStationRepository.class);
+    private final SubscriberIndexService index = new SubscriberIndexService(repository, new SimpleMeterRegistry());
+
+    @Test
+    void buildGroupsRecipientsByDistrict() {
+        when(repository.findAllAlertRecipients()).thenReturn(List.of(
+                recipient(1L, HOAN_KIEM), recipient(2L, HOAN_KIEM), recipient(2L, BA_DINH)));
+
+        index.buildOnStartup();
+
+        assertThat(index.getRecipients(HOAN_KIEM)).extracting(AlertRecipientDTO::getResidentId).containsExactly(1L, 2L);
+        assertThat(index.getRecipients(BA_DINH)).extracting(AlertRecipientDTO::getResidentId).containsExactly(2L);
+        // Đã load toàn bộ: district vắng mặt = không có người nhận, không query DB
+        assertThat(index.getRecipients(CAU_GIAY)).isEmpty();
+        assertThat(index.getRecipients(null)).isEmpty();
+        verify(repository, never()).findAlertRecipientsByDistrict(anyString());
+    }
+
+    @Test
+    void subscriptionChangeMovesResidentBetweenDistricts() {
+        when(repository.findAllAlertRecipients()).thenReturn(List.of(
+                recipient(1L, HOAN_KIEM), recipient(2L, HOAN_KIEM), recipient(2L, BA_DINH)));
+        index.buildOnStartup();
+
+        // Resident 2 bỏ Hoàn Kiếm + Ba Đình, đăng ký Cầu Giấy
+        when(repository.findAlertRecipientsByResidentId(2L)).thenReturn(List.of(recipient(2L, CAU_GIAY)));
+        index.onResidentSubscriptionChanged(new ResidentSubscriptionChangedEvent(2L));
+
+        assertThat(index.getRecipients(HOAN_KIEM)).extracting(AlertRecipientDTO::getResidentId).containsExactly(1L);
+        assertThat(index.getRecipients(BA_DINH)).isEmpty();
+        assertThat(index.getRecipients(CAU_GIAY)).extracting(AlertRecipientDTO::getResidentId).containsExactly(2L);
+
+        // Hủy toàn bộ subscriptions
+        when(repository.findAlertRecipientsByResidentId(2L)).thenReturn(List.of());
+        index.onResidentSubscriptionChanged(new ResidentSubscriptionChangedEvent(2L));
+        assertThat(index.getRecipients(CAU_GIAY)).isEmpty();
+    }
+
+    @Test
+    void coldMissReadsDistrictFromDatabaseUntilBuilt() {
+        when(repository.findAllAlertRecipients()).thenThrow(new IllegalStateException("database down"));
+        when(repository.findAlertRecipientsByDistrict(HOAN_KIEM)).thenReturn(List.of(recipient(1L, HOAN_KIEM)));
+        when(repository.findAlertRecipientsByDistrict(BA_DINH)).thenReturn(List.of());
+        index.buildOnStartup();
+
+        assertThat(index.getRecipients(HOAN_KIEM)).extracting(AlertRecipientDTO::getResidentId).containsExactly(1L);
+        assertThat(index.getRecipients(HOAN_KIEM)).hasSize(1);
+        verify(repository, times(1)).findAlertRecipientsByDistrict(HOAN_KIEM);
+
+        // District rỗng không được cache: query lại cho tới khi index build xong
+        assertThat(index.getRecipients(BA_DINH)).isEmpty();
+        assertThat(index.getRecipients(BA_DINH)).isEmpty();
+        verify(repository, times(2)).findAlertRecipientsByDistrict(BA_DINH);
+
+        // Chưa build: refresh chỉ sửa district đã load, district khác vẫn cold miss
+        when(repository.findAlertRecipientsByResidentId(1L))
+                .thenReturn(List.of(recipient(1L, HOAN_KIEM), recipient(1L, BA_DINH)));
+        index.refreshResident(1L);
+        assertThat(index.getRecipients(HOAN_KIEM)).hasSize(1);
+        assertThat(index.getRecipients(BA_DINH)).isEmpty();
+        verify(repository, times(3)).findAlertRecipientsByDistrict(BA_DINH);
+    }
+
+    @Test
+    void periodicRebuildPicksUpChangesMadeOnOtherReplicas() {
+        when(repository.findAllAlertRecipients())
+                .thenReturn(List.of(recipient(1L, HOAN_KIEM), recipient(2L, BA_DINH)))
+                // Replica khác: resident 1 chuyển sang Cầu Giấy, resident 2 hủy đăng ký
+                .thenReturn(List.of(recipient(1L, CAU_GIAY)));
+        index.buildOnStartup();
+
+        index.rebuildPeriodically();
+
+        assertThat(index.getRecipients(HOAN_KIEM)).isEmpty();
+        assertThat(index.getRecipients(BA_DINH)).isEmpty();
+        assertThat(index.getRecipients(CAU_GIAY)).extracting(AlertRecipientDTO::getResidentId).containsExactly(1L);
+
+        // Reverse index cũng được build lại: refresh không để sót entry cũ
+        when(repository.findAlertRecipientsByResidentId(1L)).thenReturn(List.of(recipient(1L, HOAN_KIEM)));
+        index.refreshResident(1L);
+        assertThat(index.getRecipients(CAU_GIAY)).isEmpty();
+        assertThat(index.getRecipients(HOAN_KIEM)).extracting(AlertRecipientDTO::getResidentId).containsExactly(1L);
+    }
+
+    private static AlertRecipientDTO recipient(Long residentId, String district) {
+        return new AlertRecipientDTO(residentId, district, "resident" + residentId + "@example.com",
+                "Resident " + residentId);
+    }
+}
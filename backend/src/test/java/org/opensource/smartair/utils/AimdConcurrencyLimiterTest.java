@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AimdConcurrencyLimiter: tăng cộng khi nhanh và đủ tải, giảm nhân khi lỗi / chậm, giữ trong [min, max]
+ */
+class AimdConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void rejectsBeyondLimitAndReleasesSlots() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(2, 1, 10, 0.5, 100);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+
+        limiter.onIgnored();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void additiveIncreaseOnlyWhenLimitIsUsed() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(4, 1, 5, 0.5, 100);
+
+        // 1 request / limit 4: dưới 1/2 limit nên không tăng
+        limiter.tryAcquire();
+        limiter.onSuccess(FAST);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        // 2 request đồng thời: đủ 1/2 limit → +1
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.onSuccess(FAST);
+        limiter.onSuccess(FAST);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+
+        // Không vượt maxLimit
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.onSuccess(FAST);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void multiplicativeDecreaseOnFailureOrSlowResponse() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(16, 2, 20, 0.5, 100);
+
+        limiter.tryAcquire();
+        limiter.onDropped();
+        assertThat(limiter.getLimit()).isEqualTo(8);
+
+        limiter.tryAcquire();
+        limiter.onSuccess(SLOW);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        // Không xuống dưới minLimit
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.onDropped();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void initialLimitIsClampedAndBoundsValidated() {
+        assertThat(new AimdConcurrencyLimiter(100, 1, 10, 0.9, 100).getLimit()).isEqualTo(10);
+        assertThat(new AimdConcurrencyLimiter(0, 3, 10, 0.9, 100).getLimit()).isEqualTo(3);
+        assertThatThrownBy(() -> new AimdConcurrencyLimiter(5, 0, 10, 0.9, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AimdConcurrencyLimiter(5, 10, 5, 0.9, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
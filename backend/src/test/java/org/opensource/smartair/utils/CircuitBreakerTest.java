@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CircuitBreaker: CLOSED → OPEN sau failureThreshold lỗi liên tiếp, HALF_OPEN sau openDuration
+ * với số probe giới hạn; probe thành công đóng mạch, probe lỗi mở lại
+ */
+class CircuitBreakerTest {
+
+    private static final Duration OPEN = Duration.ofMillis(50);
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofMinutes(1), 1);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void halfOpenProbeSuccessCloses() throws InterruptedException {
+        CircuitBreaker breaker = tripped(2);
+        Thread.sleep(OPEN.toMillis() + 20);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        // Hết slot probe
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void halfOpenProbeFailureReopens() throws InterruptedException {
+        CircuitBreaker breaker = tripped(1);
+        Thread.sleep(OPEN.toMillis() + 20);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void cancelledProbeReturnsItsSlot() throws InterruptedException {
+        CircuitBreaker breaker = tripped(1);
+        Thread.sleep(OPEN.toMillis() + 20);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onIgnored();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    private static CircuitBreaker tripped(int halfOpenProbes) {
+        CircuitBreaker breaker = new CircuitBreaker(1, OPEN, halfOpenProbes);
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+}
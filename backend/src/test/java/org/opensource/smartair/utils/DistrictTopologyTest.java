@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.opensource.smartair.dtos.GeometryFormat;
+import org.opensource.smartair.services.GeoJsonService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Topology arc dùng chung + simplify theo zoom trên GeoJSON thật (126 phường/xã)
+ */
+class DistrictTopologyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    private static GeoJsonService geoJsonService;
+    private static List<GeoJsonService.DistrictFeature> features;
+
+    @BeforeAll
+    static void setUp() {
+        geoJsonService = new GeoJsonService();
+        geoJsonService.loadDistricts();
+        features = geoJsonService.getDistrictFeatures();
+    }
+
+    @Test
+    void neighbouringDistrictsShareArcs() {
+        DistrictTopology topology = DistrictTopology.build(
+                features.stream().map(GeoJsonService.DistrictFeature::geometry).toList());
+
+        assertThat(topology.getFeatureCount()).isEqualTo(features.size());
+        assertThat(topology.getSharedArcCount()).isGreaterThan(features.size());
+    }
+
+    @Test
+    void fullDetailLevelReproducesOriginalGeometry() throws IOException {
+        List<Geometry> decoded = geoJsonGeometries(body(16, GeometryFormat.GEOJSON));
+
+        assertThat(decoded).hasSize(features.size());
+        for (int i = 0; i < features.size(); i++) {
+            Geometry original = features.get(i).geometry().norm();
+            assertThat(decoded.get(i).norm().equalsExact(original, 1e-9))
+                    .as(features.get(i).district())
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void lowerZoomIsSmallerAndTopoJsonSmallerThanGeoJson() throws IOException {
+        int previous = Integer.MAX_VALUE;
+        for (int zoom : new int[] { 16, 13, 11, 8 }) {
+            GeoJsonService.EncodedDistricts geoJson = geoJsonService.getSimplifiedDistricts(zoom, GeometryFormat.GEOJSON);
+            GeoJsonService.EncodedDistricts topoJson = geoJsonService.getSimplifiedDistricts(zoom, GeometryFormat.TOPOJSON);
+
+            assertThat(geoJson.body().length).isLessThan(previous);
+            assertThat(topoJson.body().length).isLessThan(geoJson.body().length);
+            assertThat(geoJson.gzipBody().length).isLessThan(geoJson.body().length);
+            assertThat(gunzip(geoJson.gzipBody())).isEqualTo(geoJson.body());
+            assertThat(geoJson.etag()).isNotEqualTo(geoJson.gzipEtag());
+            previous = geoJson.body().length;
+        }
+    }
+
+    @Test
+    void simplifiedNeighboursKeepSharedBoundary() throws IOException {
+        List<Geometry> simplified = geoJsonGeometries(body(8, GeometryFormat.GEOJSON));
+        int hoanKiem = indexOf("PhuongHoanKiem");
+        int neighbours = 0;
+
+        for (int i = 0; i < features.size(); i++) {
+            if (i == hoanKiem || !features.get(i).geometry().touches(features.get(hoanKiem).geometry())) {
+                continue;
+            }
+            double sharedLength = simplified.get(i).getBoundary()
+                    .intersection(simplified.get(hoanKiem).getBoundary()).getLength();
+            if (sharedLength > 0) {
+                neighbours++;
+            }
+            // Không chồng lấn: hai polygon simplify chỉ chạm nhau trên ranh giới chung
+            assertThat(simplified.get(i).intersection(simplified.get(hoanKiem)).getArea()).isLessThan(1e-12);
+        }
+        assertThat(neighbours).isGreaterThan(0);
+    }
+
+    @Test
+    void topoJsonDecodesToSameGeometryAsGeoJson() throws IOException {
+        for (int zoom : new int[] { 8, 12 }) {
+            List<Geometry> fromGeoJson = geoJsonGeometries(body(zoom, GeometryFormat.GEOJSON));
+            List<Geometry> fromTopoJson = topoJsonGeometries(body(zoom, GeometryFormat.TOPOJSON));
+
+            assertThat(fromTopoJson).hasSize(fromGeoJson.size());
+            for (int i = 0; i < fromGeoJson.size(); i++) {
+                assertThat(fromTopoJson.get(i).norm().equalsExact(fromGeoJson.get(i).norm(), 1e-9))
+                        .as("zoom %d, %s", zoom, features.get(i).district())
+                        .isTrue();
+            }
+        }
+    }
+
+    private static byte[] body(int zoom, GeometryFormat format) {
+        return geoJsonService.getSimplifiedDistricts(zoom, format).body();
+    }
+
+    private static int indexOf(String district) {
+        for (int i = 0; i < features.size(); i++) {
+            if (features.get(i).district().equals(district)) {
+                return i;
+            }
+        }
+        throw new AssertionError(district);
+    }
+
+    private static List<Geometry> geoJsonGeometries(byte[] body) throws IOException {
+        List<Geometry> result = new ArrayList<>();
+        for (JsonNode feature : MAPPER.readTree(body).get("features")) {
+            JsonNode geometry = feature.get("geometry");
+            JsonNode coordinates = geometry.get("coordinates");
+            if ("Polygon".equals(geometry.get("type").asText())) {
+                result.add(polygon(coordinates));
+            } else {
+                Polygon[] polygons = new Polygon[coordinates.size()];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = polygon(coordinates.get(i));
+                }
+                result.add(FACTORY.createMultiPolygon(polygons));
+            }
+        }
+        return result;
+    }
+
+    private static Polygon polygon(JsonNode rings) {
+        LinearRing[] linearRings = new LinearRing[rings.size()];
+        for (int r = 0; r < rings.size(); r++) {
+            Coordinate[] coordinates = new Coordinate[rings.get(r).size()];
+            for (int p = 0; p < coordinates.length; p++) {
+                JsonNode position = rings.get(r).get(p);
+                coordinates[p] = new Coordinate(position.get(0).asDouble(), position.get(1).asDouble());
+            }
+            linearRings[r] = FACTORY.createLinearRing(coordinates);
+        }
+        return FACTORY.createPolygon(linearRings[0], Arrays.copyOfRange(linearRings, 1, linearRings.length));
+    }
+
+    /**
+     * Giải mã TopoJSON (transform + delta) về GeoJSON-style coordinates rồi dựng JTS geometry
+     */
+    private static List<Geometry> topoJsonGeometries(byte[] body) throws IOException {
+        JsonNode topology = MAPPER.readTree(body);
+        double scale = topology.at("/transform/scale/0").asDouble();
+        double translateX = topology.at("/transform/translate/0").asDouble();
+        double translateY = topology.at("/transform/translate/1").asDouble();
+
+        List<double[][]> arcs = new ArrayList<>();
+        for (JsonNode arc : topology.get("arcs")) {
+            double[][] points = new double[arc.size()][];
+            long x = 0;
+            long y = 0;
+            for (int i = 0; i < arc.size(); i++) {
+                x += arc.get(i).get(0).asLong();
+                y += arc.get(i).get(1).asLong();
+                points[i] = new double[] { x, y };
+            }
+            arcs.add(points);
+        }
+
+        List<Geometry> result = new ArrayList<>();
+        for (JsonNode geometry : topology.at("/objects/districts/geometries")) {
+            JsonNode polygons = "Polygon".equals(geometry.get("type").asText())
+                    ? MAPPER.createArrayNode().add(geometry.get("arcs"))
+                    : geometry.get("arcs");
+            List<Polygon> decoded = new ArrayList<>();
+            for (JsonNode polygon : polygons) {
+                var rings = MAPPER.createArrayNode();
+                for (JsonNode ring : polygon) {
+                    var positions = MAPPER.createArrayNode();
+                    long lastX = Long.MIN_VALUE;
+                    long lastY = Long.MIN_VALUE;
+                    for (JsonNode ref : ring) {
+                        int index = ref.asInt();
+                        double[][] arc = arcs.get(index < 0 ? ~index : index);
+                        for (int k = 0; k < arc.length; k++) {
+                            double[] point = arc[index < 0 ? arc.length - 1 - k : k];
+                            if ((long) point[0] == lastX && (long) point[1] == lastY) {
+                                continue;
+                            }
+                            lastX = (long) point[0];
+                            lastY = (long) point[1];
+                            positions.add(MAPPER.createArrayNode()
+                                    .add(new BigDecimal(translateX + point[0] * scale)
+                                            .setScale(6, RoundingMode.HALF_UP).doubleValue())
+                                    .add(new BigDecimal(translateY + point[1] * scale)
+                                            .setScale(6, RoundingMode.HALF_UP).doubleValue()));
+                        }
+                    }
+                    if (positions.size() >= 4) {
+                        rings.add(positions);
+                    } else if (rings.isEmpty()) {
+                        break;
+                    }
+                }
+                // Polygon có ring ngoài suy biến sau khi lượng tử bị bỏ (giống output GeoJSON)
+                if (!rings.isEmpty()) {
+                    decoded.add(polygon(rings));
+                }
+            }
+            result.add(decoded.size() == 1 ? decoded.get(0)
+                    : FACTORY.createMultiPolygon(decoded.toArray(Polygon[]::new)));
+        }
+        return result;
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * IdwGrid: update incremental phải cho cùng kết quả với full rebuild và IDW tính trực tiếp,
+ * kể cả update tới trong lúc rebuild đang chạy
+ */
+class IdwGridTest {
+
+    private static final double MIN_LAT = 20.56;
+    private static final double MIN_LON = 105.29;
+    private static final double MAX_LAT = 21.39;
+    private static final double MAX_LON = 106.02;
+
+    @Test
+    void incrementalUpdatesMatchFullRebuild() {
+        IdwGrid incremental = newGrid();
+        Random random = new Random(7);
+        List<IdwGrid.Station> stations = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            stations.add(new IdwGrid.Station("s" + i, MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                    MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON), random.nextDouble() * 200));
+        }
+        incremental.rebuild(stations);
+
+        // 500 bản tin: đổi giá trị, thỉnh thoảng dời vị trí hoặc xóa trạm
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(stations.size());
+            IdwGrid.Station station = stations.get(index);
+            double lat = station.lat();
+            double lon = station.lon();
+            if (i % 50 == 0) {
+                lat += 0.01;
+                lon -= 0.01;
+            }
+            IdwGrid.Station updated = new IdwGrid.Station(station.id(), lat, lon, random.nextDouble() * 200);
+            stations.set(index, updated);
+            IdwGrid.Region region = incremental.update(updated.id(), updated.lat(), updated.lon(), updated.value());
+            assertThat(region.isEmpty()).isFalse();
+        }
+        incremental.remove(stations.remove(0).id());
+
+        IdwGrid rebuilt = newGrid();
+        rebuilt.rebuild(stations);
+
+        float[] expected = rebuilt.values();
+        float[] actual = incremental.values();
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.length; i++) {
+            if (Float.isNaN(expected[i])) {
+                assertThat(actual[i]).as("cell %d", i).isNaN();
+            } else {
+                assertThat(actual[i]).as("cell %d", i).isCloseTo(expected[i], within(1e-3f));
+            }
+        }
+    }
+
+    @Test
+    void updatesDuringRebuildAreNotLost() throws Exception {
+        IdwGrid grid = newGrid();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        List<IdwGrid.Station> seed = List.of(
+                new IdwGrid.Station("a", 21.00, 105.80, 100),
+                new IdwGrid.Station("b", 21.02, 105.85, 20));
+        // Danh sách trạm chặn phần tính song song cho tới khi các update bên dưới đã chạy
+        List<IdwGrid.Station> blocking = new AbstractList<>() {
+            @Override
+            public IdwGrid.Station get(int index) {
+                computing.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return seed.get(index);
+            }
+
+            @Override
+            public int size() {
+                return seed.size();
+            }
+        };
+
+        Thread rebuild = new Thread(() -> grid.rebuild(blocking));
+        rebuild.start();
+        assertThat(computing.await(5, TimeUnit.SECONDS)).isTrue();
+        grid.update("a", 21.00, 105.80, 60);
+        grid.remove("b");
+        grid.update("c", 21.05, 105.90, 150);
+        proceed.countDown();
+        rebuild.join(5000);
+
+        IdwGrid expected = newGrid();
+        expected.rebuild(List.of(
+                new IdwGrid.Station("a", 21.00, 105.80, 60),
+                new IdwGrid.Station("c", 21.05, 105.90, 150)));
+        assertThat(grid.getStations()).containsExactlyInAnyOrderElementsOf(expected.getStations());
+        float[] actual = grid.values();
+        float[] wanted = expected.values();
+        for (int i = 0; i < wanted.length; i++) {
+            if (Float.isNaN(wanted[i])) {
+                assertThat(actual[i]).as("cell %d", i).isNaN();
+            } else {
+                assertThat(actual[i]).as("cell %d", i).isCloseTo(wanted[i], within(1e-3f));
+            }
+        }
+    }
+
+    @Test
+    void cellValueIsInverseDistanceWeightedMean() {
+        IdwGrid grid = newGrid();
+        grid.update("a", 21.00, 105.80, 100);
+        grid.update("b", 21.02, 105.85, 20);
+
+        // Điểm giữa hai trạm: khoảng cách gần bằng nhau → gần trung bình cộng
+        double middle = grid.valueAt(21.01, 105.825);
+        assertThat(middle).isBetween(40.0, 80.0);
+        // Gần trạm a → gần 100; ngoài bán kính của cả hai → NaN
+        assertThat(grid.valueAt(21.0001, 105.8001)).isGreaterThan(90);
+        assertThat(grid.valueAt(20.57, 106.01)).isNaN();
+        // Giá trị không đổi → không có vùng nào cần gửi lại
+        assertThat(grid.update("a", 21.00, 105.80, 100).isEmpty()).isTrue();
+    }
+
+    @Test
+    void regionValuesAreLittleEndianFloat32() {
+        IdwGrid grid = newGrid();
+        IdwGrid.Region region = grid.update("a", 21.00, 105.80, 42);
+
+        byte[] bytes = IdwGrid.toBytes(grid.values(region));
+        assertThat(bytes).hasSize(region.rows() * region.cols() * Float.BYTES);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int centerRow = region.rows() / 2;
+        int centerCol = region.cols() / 2;
+        assertThat(buffer.getFloat((centerRow * region.cols() + centerCol) * Float.BYTES)).isEqualTo(42f);
+    }
+
+    private static IdwGrid newGrid() {
+        return new IdwGrid(MIN_LAT, MIN_LON, MAX_LAT, MAX_LON, 500, 15_000, 2);
+    }
+}
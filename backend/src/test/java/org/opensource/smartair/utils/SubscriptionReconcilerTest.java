@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import org.junit.jupiter.api.Test;
+import org.opensource.smartair.utils.SubscriptionReconciler.Plan;
+import org.opensource.smartair.utils.SubscriptionReconciler.Spec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriptionReconcilerTest {
+
+    private static final String ENDPOINT = "http://backend:8081/api/notify/ngsi";
+    private static final String CONTEXT = "https://example.org/context.jsonld";
+
+    private static final Spec WEATHER_BA_DINH = new Spec("urn:ngsi-ld:Subscription:WeatherObserved-Backend:BaDinh",
+            "weatherObserved", "urn:ngsi-ld:WeatherObserved:Hanoi-BaDinh",
+            List.of("temperature"), List.of("temperature", "windSpeed"), 30);
+    private static final Spec DEVICE = new Spec("urn:ngsi-ld:Subscription:Device-Backend",
+            "Device", null, List.of(), List.of(), 0);
+
+    @Test
+    void payloadOmitsUnsetOptionalFields() {
+        Map<String, Object> weather = WEATHER_BA_DINH.toPayload(ENDPOINT, CONTEXT);
+        assertEquals(List.of("temperature"), weather.get("watchedAttributes"));
+        assertEquals(30, weather.get("throttling"));
+        assertEquals(List.of(Map.of("type", "weatherObserved", "id", "urn:ngsi-ld:WeatherObserved:Hanoi-BaDinh")),
+                weather.get("entities"));
+
+        Map<String, Object> device = DEVICE.toPayload(ENDPOINT, CONTEXT);
+        assertFalse(device.containsKey("watchedAttributes"));
+        assertFalse(device.containsKey("throttling"));
+        assertFalse(((Map<?, ?>) device.get("notification")).containsKey("attributes"));
+        assertEquals(true, ((Map<?, ?>) device.get("notification")).get("sysAttrs"));
+    }
+
+    @Test
+    void existingSubscriptionWithExpandedNamesIsUnchanged() {
+        Map<String, Object> existing = asExisting(WEATHER_BA_DINH);
+        existing.put("watchedAttributes", List.of("https://smartdatamodels.org/dataModel.Weather/temperature"));
+        existing.put("isActive", true);
+
+        Plan plan = SubscriptionReconciler.plan(List.of(WEATHER_BA_DINH), List.of(existing), id -> true, ENDPOINT);
+
+        assertEquals(1, plan.unchanged());
+        assertTrue(plan.isEmpty());
+    }
+
+    @Test
+    void plansCreateUpdateAndDeleteOnlyOwnedStaleSubscriptions() {
+        Map<String, Object> drifted = asExisting(DEVICE);
+        drifted.put("throttling", 5);
+        Map<String, Object> stale = asExisting(new Spec("urn:ngsi-ld:Subscription:Device-Backend:old",
+                "Device", null, List.of(), List.of(), 0));
+        Map<String, Object> foreign = asExisting(new Spec("urn:ngsi-ld:Subscription:QuantumLeap",
+                "weatherObserved", null, List.of(), List.of(), 0));
+
+        Plan plan = SubscriptionReconciler.plan(List.of(WEATHER_BA_DINH, DEVICE),
+                List.of(drifted, stale, foreign),
+                id -> id.startsWith("urn:ngsi-ld:Subscription:Device-Backend"), ENDPOINT);
+
+        assertEquals(List.of(WEATHER_BA_DINH), plan.create());
+        assertEquals(List.of(DEVICE), plan.update());
+        assertEquals(List.of("urn:ngsi-ld:Subscription:Device-Backend:old"), plan.delete());
+        assertEquals(0, plan.unchanged());
+    }
+
+    @Test
+    void endpointOrProjectionChangeIsDrift() {
+        Map<String, Object> otherEndpoint = asExisting(WEATHER_BA_DINH);
+        otherEndpoint.put("notification", Map.of("endpoint", Map.of("uri", "http://old:8081/api/notify/ngsi"),
+                "attributes", List.of("temperature", "windSpeed")));
+        Map<String, Object> narrowerProjection = asExisting(WEATHER_BA_DINH);
+        narrowerProjection.put("notification", Map.of("endpoint", Map.of("uri", ENDPOINT),
+                "attributes", List.of("temperature")));
+
+        assertFalse(SubscriptionReconciler.matches(WEATHER_BA_DINH, otherEndpoint, ENDPOINT));
+        assertFalse(SubscriptionReconciler.matches(WEATHER_BA_DINH, narrowerProjection, ENDPOINT));
+    }
+
+    private static Map<String, Object> asExisting(Spec spec) {
+        // Orion-LD trả payload kèm các field runtime (status, timesSent, ...); bỏ @context như khi GET
+        Map<String, Object> existing = new HashMap<>(spec.toPayload(ENDPOINT, CONTEXT));
+        existing.remove("@context");
+        existing.put("status", "active");
+        return existing;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @Project smart-air-ngsi-ld
+ * @Authors 
+ *    - TT (trungthanhcva2206@gmail.com)
+ *    - Tankchoi (tadzltv22082004@gmail.com)
+ *    - Panh (panh812004.apn@gmail.com)
+ * @Copyright (C) 2025 TAA. All rights reserved
+ * @GitHub https://github.com/trungthanhcva2206/smart-air-ngsi-ld
+ */
+package org.opensource.smartair.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * UpstreamGuard: circuit breaker + limiter quanh request, stale fallback chỉ cho lỗi upstream
+ * (không cho 4xx) và chỉ trong staleMaxAge, cache stale có giới hạn số entry
+ */
+class UpstreamGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void upstreamFailureServesLastGoodResponse() {
+        UpstreamGuard guard = newGuard(5, Duration.ofMinutes(5), 16);
+
+        assertThat(call(guard, "a", Mono.just("fresh"))).isEqualTo("fresh");
+        assertThat(call(guard, "a", Mono.error(new TimeoutException("read timeout")))).isEqualTo("fresh");
+        assertThat(meterRegistry.counter("upstream.stale.served", "upstream", "test").count()).isEqualTo(1);
+
+        // Không có entry cho key: lỗi gốc được propagate
+        assertThatThrownBy(() -> call(guard, "b", Mono.error(new TimeoutException("read timeout"))))
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void clientErrorIsNotMaskedByStaleAndDoesNotTripCircuit() {
+        UpstreamGuard guard = newGuard(1, Duration.ofMinutes(5), 16);
+        call(guard, "a", Mono.just("fresh"));
+
+        WebClientResponseException notFound = WebClientResponseException.create(404, "Not Found", null, null, null);
+        assertThatThrownBy(() -> call(guard, "a", Mono.error(notFound))).isSameAs(notFound);
+        assertThat(guard.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        WebClientResponseException unavailable = WebClientResponseException.create(503, "Unavailable", null, null,
+                null);
+        assertThat(call(guard, "a", Mono.error(unavailable))).isEqualTo("fresh");
+        assertThat(guard.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void staleResponseExpires() throws InterruptedException {
+        UpstreamGuard guard = newGuard(5, Duration.ofMillis(50), 16);
+        call(guard, "a", Mono.just("fresh"));
+        Thread.sleep(80);
+
+        assertThatThrownBy(() -> call(guard, "a", Mono.error(new TimeoutException("read timeout"))))
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void openCircuitRejectsWithoutCallingUpstream() {
+        UpstreamGuard guard = newGuard(1, Duration.ofMinutes(5), 16);
+        call(guard, "a", Mono.just("fresh"));
+        call(guard, "a", Mono.error(new TimeoutException("read timeout")));
+
+        Mono<String> request = Mono.fromCallable(() -> {
+            throw new AssertionError("upstream must not be called while the circuit is open");
+        });
+        // Bị từ chối cục bộ vẫn là lỗi upstream: stale được phục vụ, key khác thì lỗi
+        assertThat(call(guard, "a", request)).isEqualTo("fresh");
+        assertThatThrownBy(() -> call(guard, "b", request)).isInstanceOf(UpstreamRejectedException.class);
+        assertThat(meterRegistry.counter("upstream.rejections", "upstream", "test", "reason", "circuit_open")
+                .count()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrencyLimitRejectsAndReleasesSlot() {
+        UpstreamGuard guard = new UpstreamGuard("test", new AimdConcurrencyLimiter(1, 1, 1, 0.5, 1000),
+                new CircuitBreaker(5, Duration.ofMinutes(1), 1), Duration.ofMinutes(5), 16, meterRegistry);
+
+        // Request đang chạy giữ slot duy nhất
+        var inFlight = guard.execute("a", Mono.never()).subscribe();
+        assertThatThrownBy(() -> call(guard, "b", Mono.just("fresh"))).isInstanceOf(UpstreamRejectedException.class);
+        assertThat(meterRegistry.counter("upstream.rejections", "upstream", "test", "reason", "limit").count())
+                .isEqualTo(1);
+
+        inFlight.dispose();
+        assertThat(guard.getLimiter().getInFlight()).isZero();
+        assertThat(call(guard, "b", Mono.just("fresh"))).isEqualTo("fresh");
+    }
+
+    @Test
+    void cancelAfterCompletionReleasesSlotOnce() {
+        UpstreamGuard guard = newGuard(5, Duration.ofMinutes(5), 16);
+
+        // zip hủy nguồn đã hoàn tất khi nguồn còn lại lỗi
+        assertThatThrownBy(() -> Mono.zip(guard.execute("a", Mono.just("fresh")),
+                Mono.<String>error(new IllegalStateException("other source failed")))
+                .block(Duration.ofSeconds(5))).isInstanceOf(IllegalStateException.class);
+        // Downstream hủy ngay trong onNext
+        guard.execute("b", Mono.just("fresh")).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnNext(String value) {
+                cancel();
+            }
+        });
+
+        assertThat(guard.getLimiter().getInFlight()).isZero();
+    }
+
+    @Test
+    void fullStaleCacheEvictsExpiredThenOldestEntries() throws InterruptedException {
+        UpstreamGuard guard = newGuard(100, Duration.ofMillis(200), 2);
+        call(guard, "a", Mono.just("A"));
+        Thread.sleep(250);
+        call(guard, "b", Mono.just("B"));
+        Thread.sleep(5);
+        // Đầy: "a" đã quá staleMaxAge nên bị bỏ trước
+        call(guard, "c", Mono.just("C"));
+        assertThat(staleOrNull(guard, "b")).isEqualTo("B");
+        assertThat(staleOrNull(guard, "c")).isEqualTo("C");
+
+        // Đầy, không entry nào hết hạn: bỏ entry cũ nhất ("b")
+        Thread.sleep(5);
+        call(guard, "d", Mono.just("D"));
+        assertThat(staleOrNull(guard, "b")).isNull();
+        assertThat(staleOrNull(guard, "c")).isEqualTo("C");
+        assertThat(staleOrNull(guard, "d")).isEqualTo("D");
+    }
+
+    private UpstreamGuard newGuard(int failureThreshold, Duration staleMaxAge, int staleMaxEntries) {
+        return new UpstreamGuard("test", new AimdConcurrencyLimiter(10, 1, 10, 0.5, 1000),
+                new CircuitBreaker(failureThreshold, Duration.ofMinutes(1), 1), staleMaxAge, staleMaxEntries,
+                meterRegistry);
+    }
+
+    private static String call(UpstreamGuard guard, String key, Mono<String> request) {
+        return guard.execute(key, request)
+                .onErrorResume(e -> guard.staleOrError(key, e))
+                .block(Duration.ofSeconds(5));
+    }
+
+    private static String staleOrNull(UpstreamGuard guard, String key) {
+        return guard.<String>staleOrError(key, new TimeoutException("probe"))
+                .onErrorResume(TimeoutException.class, e -> Mono.empty())
+                .block(Duration.ofSeconds(5));
+    }
+}